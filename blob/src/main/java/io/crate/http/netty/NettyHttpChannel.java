@@ -23,6 +23,7 @@ package io.crate.http.netty;
 
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.UnicodeUtil;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.ReleasableBytesStreamOutput;
@@ -75,40 +76,8 @@ public class NettyHttpChannel extends HttpChannel {
 
     @Override
     public void sendResponse(RestResponse response) {
-        // Decide whether to close the connection or not.
-        boolean http10 = nettyRequest.getProtocolVersion().equals(HttpVersion.HTTP_1_0);
-        boolean close =
-                HttpHeaders.Values.CLOSE.equalsIgnoreCase(nettyRequest.headers().get(HttpHeaders.Names.CONNECTION)) ||
-                        (http10 && !HttpHeaders.Values.KEEP_ALIVE.equalsIgnoreCase(nettyRequest.headers().get(HttpHeaders.Names.CONNECTION)));
-
-        // Build the response object.
-        HttpResponseStatus status = getStatus(response.status());
-        org.jboss.netty.handler.codec.http.HttpResponse resp;
-        if (http10) {
-            resp = new DefaultHttpResponse(HttpVersion.HTTP_1_0, status);
-            if (!close) {
-                resp.headers().add(HttpHeaders.Names.CONNECTION, "Keep-Alive");
-            }
-        } else {
-            resp = new DefaultHttpResponse(HttpVersion.HTTP_1_1, status);
-        }
-        if (RestUtils.isBrowser(nettyRequest.headers().get(HttpHeaders.Names.USER_AGENT))) {
-            if (transport.settings().getAsBoolean("http.cors.enabled", true)) {
-                // Add support for cross-origin Ajax requests (CORS)
-                resp.headers().add("Access-Control-Allow-Origin", transport.settings().get("http.cors.allow-origin", "*"));
-                if (nettyRequest.getMethod() == HttpMethod.OPTIONS) {
-                    // Allow Ajax requests based on the CORS "preflight" request
-                    resp.headers().add("Access-Control-Max-Age", transport.settings().getAsInt("http.cors.max-age", 1728000));
-                    resp.headers().add("Access-Control-Allow-Methods", transport.settings().get("http.cors.allow-methods", "OPTIONS, HEAD, GET, POST, PUT, DELETE"));
-                    resp.headers().add("Access-Control-Allow-Headers", transport.settings().get("http.cors.allow-headers", "X-Requested-With, Content-Type, Content-Length"));
-                }
-            }
-        }
-
-        String opaque = nettyRequest.headers().get("X-Opaque-Id");
-        if (opaque != null) {
-            resp.headers().add("X-Opaque-Id", opaque);
-        }
+        boolean close = closeConnection();
+        org.jboss.netty.handler.codec.http.HttpResponse resp = newResponse(response.status(), close);
 
         // Add all custom headers
         Map<String, List<String>> customHeaders = response.getHeaders();
@@ -146,21 +115,7 @@ public class NettyHttpChannel extends HttpChannel {
             resp.headers().add(HttpHeaders.Names.CONTENT_TYPE, response.contentType());
             resp.headers().add(HttpHeaders.Names.CONTENT_LENGTH, String.valueOf(buffer.readableBytes()));
 
-            if (transport.resetCookies) {
-                String cookieString = nettyRequest.headers().get(HttpHeaders.Names.COOKIE);
-                if (cookieString != null) {
-                    CookieDecoder cookieDecoder = new CookieDecoder();
-                    Set<Cookie> cookies = cookieDecoder.decode(cookieString);
-                    if (!cookies.isEmpty()) {
-                        // Reset the cookies if necessary.
-                        CookieEncoder cookieEncoder = new CookieEncoder(true);
-                        for (Cookie cookie : cookies) {
-                            cookieEncoder.addCookie(cookie);
-                        }
-                        resp.headers().add(HttpHeaders.Names.SET_COOKIE, cookieEncoder.encode());
-                    }
-                }
-            }
+            resetCookies(resp);
 
             ChannelFuture future = channel.write(resp);
             if (response.contentThreadSafe() && content instanceof Releasable) {
@@ -177,6 +132,165 @@ public class NettyHttpChannel extends HttpChannel {
         }
     }
 
+    /**
+     * @return true if the connection should be closed after the response has been sent
+     */
+    private boolean closeConnection() {
+        boolean http10 = nettyRequest.getProtocolVersion().equals(HttpVersion.HTTP_1_0);
+        return HttpHeaders.Values.CLOSE.equalsIgnoreCase(nettyRequest.headers().get(HttpHeaders.Names.CONNECTION)) ||
+                (http10 && !HttpHeaders.Values.KEEP_ALIVE.equalsIgnoreCase(nettyRequest.headers().get(HttpHeaders.Names.CONNECTION)));
+    }
+
+    private org.jboss.netty.handler.codec.http.HttpResponse newResponse(RestStatus restStatus, boolean close) {
+        boolean http10 = nettyRequest.getProtocolVersion().equals(HttpVersion.HTTP_1_0);
+
+        // Build the response object.
+        HttpResponseStatus status = getStatus(restStatus);
+        org.jboss.netty.handler.codec.http.HttpResponse resp;
+        if (http10) {
+            resp = new DefaultHttpResponse(HttpVersion.HTTP_1_0, status);
+            if (!close) {
+                resp.headers().add(HttpHeaders.Names.CONNECTION, "Keep-Alive");
+            }
+        } else {
+            resp = new DefaultHttpResponse(HttpVersion.HTTP_1_1, status);
+        }
+        if (RestUtils.isBrowser(nettyRequest.headers().get(HttpHeaders.Names.USER_AGENT))) {
+            if (transport.settings().getAsBoolean("http.cors.enabled", true)) {
+                // Add support for cross-origin Ajax requests (CORS)
+                resp.headers().add("Access-Control-Allow-Origin", transport.settings().get("http.cors.allow-origin", "*"));
+                if (nettyRequest.getMethod() == HttpMethod.OPTIONS) {
+                    // Allow Ajax requests based on the CORS "preflight" request
+                    resp.headers().add("Access-Control-Max-Age", transport.settings().getAsInt("http.cors.max-age", 1728000));
+                    resp.headers().add("Access-Control-Allow-Methods", transport.settings().get("http.cors.allow-methods", "OPTIONS, HEAD, GET, POST, PUT, DELETE"));
+                    resp.headers().add("Access-Control-Allow-Headers", transport.settings().get("http.cors.allow-headers", "X-Requested-With, Content-Type, Content-Length"));
+                }
+            }
+        }
+
+        String opaque = nettyRequest.headers().get("X-Opaque-Id");
+        if (opaque != null) {
+            resp.headers().add("X-Opaque-Id", opaque);
+        }
+        return resp;
+    }
+
+    private void resetCookies(org.jboss.netty.handler.codec.http.HttpResponse resp) {
+        if (transport.resetCookies) {
+            String cookieString = nettyRequest.headers().get(HttpHeaders.Names.COOKIE);
+            if (cookieString != null) {
+                CookieDecoder cookieDecoder = new CookieDecoder();
+                Set<Cookie> cookies = cookieDecoder.decode(cookieString);
+                if (!cookies.isEmpty()) {
+                    // Reset the cookies if necessary.
+                    CookieEncoder cookieEncoder = new CookieEncoder(true);
+                    for (Cookie cookie : cookies) {
+                        cookieEncoder.addCookie(cookie);
+                    }
+                    resp.headers().add(HttpHeaders.Names.SET_COOKIE, cookieEncoder.encode());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the response can be sent in chunks using {@link #startChunkedResponse(RestStatus, String)},
+     * this requires HTTP/1.1 and isn't supported for JSONP requests.
+     */
+    public boolean supportsChunkedResponse() {
+        return nettyRequest.getProtocolVersion().equals(HttpVersion.HTTP_1_1) && request.param("callback") == null;
+    }
+
+    /**
+     * sends the headers of a response with chunked transfer-encoding, the content has to be written
+     * using the returned {@link ChunkedResponse} which must be finished or aborted.
+     * Instead of this method {@link #sendResponse(RestResponse)} must be used if
+     * {@link #supportsChunkedResponse()} returns false.
+     */
+    public ChunkedResponse startChunkedResponse(RestStatus status, String contentType) {
+        boolean close = closeConnection();
+        org.jboss.netty.handler.codec.http.HttpResponse resp = newResponse(status, close);
+        resp.setChunked(true);
+        resp.headers().add(HttpHeaders.Names.TRANSFER_ENCODING, HttpHeaders.Values.CHUNKED);
+        resp.headers().add(HttpHeaders.Names.CONTENT_TYPE, contentType);
+        resetCookies(resp);
+        channel.write(resp);
+        return new ChunkedResponse(close);
+    }
+
+    public class ChunkedResponse {
+
+        private final boolean close;
+        private volatile ChannelFuture lastWrite;
+
+        private ChunkedResponse(boolean close) {
+            this.close = close;
+        }
+
+        /**
+         * writes a chunk of the content, empty content is skipped as an empty chunk marks the end of the response
+         */
+        public void write(BytesReference content) {
+            if (content.length() == 0) {
+                return;
+            }
+            lastWrite = channel.write(new DefaultHttpChunk(content.toChannelBuffer()));
+        }
+
+        /**
+         * @return false if the chunks written so far exceed the write buffer of the channel,
+         * further chunks should only be written once they are flushed, see {@link #onFlushed(ActionListener)}
+         */
+        public boolean isWritable() {
+            return channel.isWritable();
+        }
+
+        /**
+         * calls the listener once all chunks written so far have been flushed to the client.
+         * The listener fails if they couldn't be written, e.g. because the client closed the connection.
+         *
+         * The listener may be called by a network thread and must not block.
+         */
+        public void onFlushed(final ActionListener<Void> listener) {
+            ChannelFuture future = lastWrite;
+            if (future == null) {
+                listener.onResponse(null);
+                return;
+            }
+            future.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    if (future.isSuccess()) {
+                        listener.onResponse(null);
+                    } else if (future.isCancelled()) {
+                        listener.onFailure(new IllegalStateException("writing the response has been cancelled"));
+                    } else {
+                        listener.onFailure(future.getCause());
+                    }
+                }
+            });
+        }
+
+        /**
+         * writes the last chunk, the response is complete afterwards
+         */
+        public void finish() {
+            ChannelFuture future = channel.write(HttpChunk.LAST_CHUNK);
+            if (close) {
+                future.addListener(ChannelFutureListener.CLOSE);
+            }
+        }
+
+        /**
+         * closes the connection without finishing the response,
+         * used if a failure occurs after the headers have been sent so the client doesn't
+         * mistake the partial content for a complete response
+         */
+        public void abort() {
+            channel.close();
+        }
+    }
+
     private HttpResponseStatus getStatus(RestStatus status) {
         switch (status) {
             case CONTINUE:
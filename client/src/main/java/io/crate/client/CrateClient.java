@@ -23,6 +23,9 @@ package io.crate.client;
 
 import io.crate.action.sql.SQLBulkRequest;
 import io.crate.action.sql.SQLBulkResponse;
+import io.crate.action.sql.SQLFetchRequest;
+import io.crate.action.sql.SQLPrepareRequest;
+import io.crate.action.sql.SQLPrepareResponse;
 import io.crate.action.sql.SQLRequest;
 import io.crate.action.sql.SQLResponse;
 import org.elasticsearch.ElasticsearchException;
@@ -128,6 +131,55 @@ public class CrateClient {
         internalClient.bulkSql(bulkRequest, listener);
     }
 
+    /**
+     * fetches the next rows of the cursor of a {@link SQLResponse} to a
+     * {@link SQLRequest} with a fetchSize, see {@link SQLResponse#cursorId()}
+     */
+    public ActionFuture<SQLResponse> fetchSql(String cursorId) {
+        return fetchSql(new SQLFetchRequest(cursorId));
+    }
+
+    public ActionFuture<SQLResponse> fetchSql(SQLFetchRequest fetchRequest) {
+        return internalClient.fetchSql(fetchRequest);
+    }
+
+    public void fetchSql(SQLFetchRequest fetchRequest, ActionListener<SQLResponse> listener) {
+        internalClient.fetchSql(fetchRequest, listener);
+    }
+
+    /**
+     * prepares the statement on one of the nodes, the handle of the response can be used to
+     * execute it without sending and parsing the statement again, see {@link #sqlPrepared(String, Object[])}
+     */
+    public ActionFuture<SQLPrepareResponse> prepareSql(String stmt) {
+        return prepareSql(new SQLPrepareRequest(stmt));
+    }
+
+    public ActionFuture<SQLPrepareResponse> prepareSql(SQLPrepareRequest prepareRequest) {
+        return internalClient.prepareSql(prepareRequest);
+    }
+
+    public void prepareSql(SQLPrepareRequest prepareRequest, ActionListener<SQLPrepareResponse> listener) {
+        internalClient.prepareSql(prepareRequest, listener);
+    }
+
+    /**
+     * executes a statement prepared with {@link #prepareSql(String)}
+     */
+    public ActionFuture<SQLResponse> sqlPrepared(String handle, Object[] args) {
+        return sql(preparedRequest(handle, args));
+    }
+
+    public void sqlPrepared(String handle, Object[] args, ActionListener<SQLResponse> listener) {
+        sql(preparedRequest(handle, args), listener);
+    }
+
+    private static SQLRequest preparedRequest(String handle, Object[] args) {
+        SQLRequest request = new SQLRequest(null, args);
+        request.handle(handle);
+        return request;
+    }
+
     public Settings settings() {
         return settings;
     }
@@ -51,7 +51,11 @@ public class InternalCrateClient {
         actionsBuilder.put(SQLAction.INSTANCE,
                            new TransportActionNodeProxy(settings, SQLAction.INSTANCE, transportService))
                       .put(SQLBulkAction.INSTANCE,
-                           new TransportActionNodeProxy(settings, SQLBulkAction.INSTANCE, transportService));
+                           new TransportActionNodeProxy(settings, SQLBulkAction.INSTANCE, transportService))
+                      .put(SQLFetchAction.INSTANCE,
+                           new TransportActionNodeProxy(settings, SQLFetchAction.INSTANCE, transportService))
+                      .put(SQLPrepareAction.INSTANCE,
+                           new TransportActionNodeProxy(settings, SQLPrepareAction.INSTANCE, transportService));
         this.actions = actionsBuilder.immutableMap();
     }
 
@@ -63,6 +67,14 @@ public class InternalCrateClient {
         return execute(SQLBulkAction.INSTANCE, bulkRequest);
     }
 
+    public ActionFuture<SQLResponse> fetchSql(final SQLFetchRequest fetchRequest) {
+        return execute(SQLFetchAction.INSTANCE, fetchRequest);
+    }
+
+    public ActionFuture<SQLPrepareResponse> prepareSql(final SQLPrepareRequest prepareRequest) {
+        return execute(SQLPrepareAction.INSTANCE, prepareRequest);
+    }
+
     protected <Request extends ActionRequest, Response extends ActionResponse,
             RequestBuilder extends ActionRequestBuilder<Request, Response, RequestBuilder, Client>, Client extends ElasticsearchClient> ActionFuture<Response> execute(final Action<Request,
             Response, RequestBuilder, Client> action, final Request request) {
@@ -85,6 +97,14 @@ public class InternalCrateClient {
         execute(SQLBulkAction.INSTANCE, bulkRequest, listener);
     }
 
+    public void fetchSql(final SQLFetchRequest fetchRequest, final ActionListener<SQLResponse> listener) {
+        execute(SQLFetchAction.INSTANCE, fetchRequest, listener);
+    }
+
+    public void prepareSql(final SQLPrepareRequest prepareRequest, final ActionListener<SQLPrepareResponse> listener) {
+        execute(SQLPrepareAction.INSTANCE, prepareRequest, listener);
+    }
+
     protected <Request extends ActionRequest, Response extends ActionResponse,
             RequestBuilder extends ActionRequestBuilder<Request, Response,
                     RequestBuilder, Client>, Client extends ElasticsearchClient> void execute(final Action<Request,
@@ -24,6 +24,7 @@ package io.crate.client;
 import com.google.common.util.concurrent.SettableFuture;
 import io.crate.action.sql.SQLBulkRequest;
 import io.crate.action.sql.SQLBulkResponse;
+import io.crate.action.sql.SQLPrepareResponse;
 import io.crate.action.sql.SQLRequest;
 import io.crate.action.sql.SQLResponse;
 import io.crate.test.integration.CrateIntegrationTest;
@@ -42,6 +43,7 @@ import java.util.concurrent.atomic.AtomicReference;
 
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 
 @CrateIntegrationTest.ClusterScope(scope = CrateIntegrationTest.Scope.GLOBAL)
 public class CrateClientTest extends CrateIntegrationTest {
@@ -188,4 +190,46 @@ public class CrateClientTest extends CrateIntegrationTest {
         }
     }
 
+    @Test
+    public void testFetchSql() throws Exception {
+        long numTables = (Long) client.sql("select count(*) from information_schema.tables")
+                .actionGet().rows()[0][0];
+
+        SQLRequest request = new SQLRequest("select table_name from information_schema.tables");
+        request.fetchSize(2);
+        SQLResponse response = client.sql(request).actionGet();
+        assertThat(response.rows().length, is(2));
+        assertThat(response.cursorId(), is(notNullValue()));
+
+        long fetched = response.rows().length;
+        while (response.hasCursor()) {
+            response = client.fetchSql(response.cursorId()).actionGet();
+            assertThat(response.rows().length, is(lessThanOrEqualTo(2)));
+            fetched += response.rows().length;
+        }
+        assertThat(fetched, is(numTables));
+    }
+
+    @Test
+    public void testPrepareSql() throws Exception {
+        SQLPrepareResponse prepared = client.prepareSql(
+                "select count(*) from information_schema.tables where schema_name = ?").actionGet();
+        assertThat(prepared.handle(), is(notNullValue()));
+        // the outputs are unknown because no arguments were given
+        assertThat(prepared.cols(), is(nullValue()));
+
+        long numTables = (Long) client.sql(new SQLRequest(
+                "select count(*) from information_schema.tables where schema_name = ?",
+                new Object[]{"information_schema"})).actionGet().rows()[0][0];
+        for (int i = 0; i < 3; i++) {
+            SQLResponse response = client.sqlPrepared(prepared.handle(), new Object[]{"information_schema"})
+                    .actionGet();
+            assertThat(response.cols(), is(new String[]{"count(*)"}));
+            assertThat((Long) response.rows()[0][0], is(numTables));
+        }
+
+        prepared = client.prepareSql("select name from sys.cluster").actionGet();
+        assertThat(prepared.cols(), is(new String[]{"name"}));
+        assertThat(prepared.columnTypes(), is(new DataType[]{StringType.INSTANCE}));
+    }
 }
@@ -786,7 +786,7 @@ copyStatement
     : tableWithPartition (
         (FROM) => FROM expr ( WITH '(' genericProperties ')' )? -> ^(COPY_FROM tableWithPartition expr genericProperties?)
         |
-        ( '(' columnList ')' )? TO DIRECTORY? expr ( WITH '(' genericProperties ')' )? -> ^(COPY_TO tableWithPartition columnList? DIRECTORY? expr genericProperties?)
+        ( '(' columnList ')' )? orderClause? TO DIRECTORY? expr ( WITH '(' genericProperties ')' )? -> ^(COPY_TO tableWithPartition columnList? orderClause? DIRECTORY? expr genericProperties?)
     )
     ;
 // END COPY STATEMENT
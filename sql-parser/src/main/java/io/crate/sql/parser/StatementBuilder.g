@@ -699,10 +699,11 @@ assignment returns [Assignment value]
     ;
 
 copyTo returns [Statement value]
-    : ^(COPY_TO namedTable columnList? d=copyToTargetSpec[false] expr genericProperties?)
+    : ^(COPY_TO namedTable columnList? orderClause? d=copyToTargetSpec[false] expr genericProperties?)
         {
             $value = new CopyTo($namedTable.value,
                                 $columnList.value,
+                                $orderClause.value,
                                 $d.value,
                                 $expr.value,
                                 $genericProperties.value);
@@ -37,9 +37,11 @@ public class CopyTo extends Statement {
 
     private final Optional<GenericProperties> genericProperties;
     private final List<Expression> columns;
+    private final List<SortItem> orderBy;
 
     public CopyTo(Table table,
                   @Nullable List<Expression> columns,
+                  @Nullable List<SortItem> orderBy,
                   boolean directoryUri,
                   Expression targetUri,
                   @Nullable GenericProperties genericProperties) {
@@ -49,6 +51,7 @@ public class CopyTo extends Statement {
         this.targetUri = targetUri;
         this.genericProperties = Optional.fromNullable(genericProperties);
         this.columns = Objects.firstNonNull(columns, ImmutableList.<Expression>of());
+        this.orderBy = Objects.firstNonNull(orderBy, ImmutableList.<SortItem>of());
     }
 
     public Table table() {
@@ -67,6 +70,10 @@ public class CopyTo extends Statement {
         return columns;
     }
 
+    public List<SortItem> orderBy() {
+        return orderBy;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -76,6 +83,7 @@ public class CopyTo extends Statement {
 
         if (directoryUri != copyTo.directoryUri) return false;
         if (!columns.equals(copyTo.columns)) return false;
+        if (!orderBy.equals(copyTo.orderBy)) return false;
         if (!genericProperties.equals(copyTo.genericProperties)) return false;
         if (!table.equals(copyTo.table)) return false;
         if (!targetUri.equals(copyTo.targetUri)) return false;
@@ -90,6 +98,7 @@ public class CopyTo extends Statement {
         result = 31 * result + targetUri.hashCode();
         result = 31 * result + genericProperties.hashCode();
         result = 31 * result + columns.hashCode();
+        result = 31 * result + orderBy.hashCode();
         return result;
     }
 
@@ -98,6 +107,7 @@ public class CopyTo extends Statement {
         return Objects.toStringHelper(this)
                 .add("table", table)
                 .add("columns", columns)
+                .add("orderBy", orderBy)
                 .add("directoryUri", directoryUri)
                 .add("targetUri", targetUri)
                 .add("genericProperties", genericProperties)
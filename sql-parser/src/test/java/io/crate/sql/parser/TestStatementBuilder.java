@@ -117,6 +117,8 @@ public class TestStatementBuilder
         printStatement("copy foo (nae) to '/folder/file.extension'");
         printStatement("copy foo to '/folder/file.extension'");
         printStatement("copy foo to DIRECTORY '/folder'");
+        printStatement("copy foo order by bar desc to DIRECTORY '/folder'");
+        printStatement("copy foo (nae) order by nae, bar nulls first to '/folder/file.extension'");
         printStatement("copy foo to DIRECTORY ?");
         printStatement("copy foo to DIRECTORY '/folder' with (some_param=4)");
         printStatement("copy foo partition (a='x') to DIRECTORY '/folder' with (some_param=4)");
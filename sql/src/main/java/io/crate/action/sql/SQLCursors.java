@@ -0,0 +1,340 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.action.sql;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import io.crate.exceptions.CursorUnknownException;
+import io.crate.exceptions.UnhandledServerException;
+import io.crate.executor.BytesRefUtils;
+import io.crate.executor.transport.task.elasticsearch.ESSearchScroll;
+import io.crate.types.DataType;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Holds the open cursors of {@link io.crate.action.sql.SQLRequest}s with a
+ * {@link SQLRequest#fetchSize()} until their rows are fetched using the {@link io.crate.action.sql.SQLFetchAction}.
+ *
+ * The search of a plain select stays suspended on the shards and every fetch continues it
+ * for the requested number of rows (see {@link ESSearchScroll}).
+ * Other statements (e.g. aggregations) only have a result once their job finished,
+ * their cursors hold the rows of the finished job.
+ *
+ * A cursor is closed once all of its rows have been fetched, if it is closed explicitly
+ * or if it hasn't been accessed for the keep alive time.
+ * The number of open cursors per node is limited, further requests with a fetch size fail
+ * until cursors are closed.
+ *
+ * The cursor id contains the id of the node the cursor lives on, so fetch requests
+ * received by other nodes can be forwarded.
+ */
+@Singleton
+public class SQLCursors {
+
+    public static final String KEEP_ALIVE_SETTING = "sql.cursor.keep_alive";
+    public static final TimeValue KEEP_ALIVE_DEFAULT = TimeValue.timeValueMinutes(5);
+
+    public static final String MAX_OPEN_SETTING = "sql.cursor.max_open";
+    public static final int MAX_OPEN_DEFAULT = 100;
+
+    private static final char ID_SEPARATOR = ':';
+
+    private final ClusterService clusterService;
+    private final TimeValue keepAlive;
+    private final int maxOpen;
+    private final Cache<String, Cursor> cursors;
+
+    /**
+     * the rows of a cursor
+     */
+    interface Rows {
+
+        /**
+         * fetch the next <code>numRows</code> rows, less if there are no more rows
+         */
+        void fetch(int numRows, ActionListener<Object[][]> listener);
+
+        boolean exhausted();
+
+        void close();
+    }
+
+    private static class Cursor {
+        private final String[] cols;
+        private final DataType[] colTypes;
+        private final boolean includeTypes;
+        private final int fetchSize;
+        private final Rows rows;
+        private final AtomicBoolean fetching = new AtomicBoolean(false);
+
+        private Cursor(String[] cols, DataType[] colTypes, boolean includeTypes, int fetchSize, Rows rows) {
+            this.cols = cols;
+            this.colTypes = colTypes;
+            this.includeTypes = includeTypes;
+            this.fetchSize = fetchSize;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * the rows of a finished job, fetched rows are released as the cursor advances
+     */
+    private static class MaterializedRows implements Rows {
+        private final Object[][] rows;
+        private int position = 0;
+
+        private MaterializedRows(Object[][] rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public void fetch(int numRows, ActionListener<Object[][]> listener) {
+            Object[][] page;
+            synchronized (this) {
+                int from = position;
+                int to = (int) Math.min(rows.length, (long) from + numRows);
+                page = Arrays.copyOfRange(rows, from, to);
+                Arrays.fill(rows, from, to, null);
+                position = to;
+            }
+            listener.onResponse(page);
+        }
+
+        @Override
+        public synchronized boolean exhausted() {
+            return position >= rows.length;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class ScrollRows implements Rows {
+        private final ESSearchScroll scroll;
+
+        private ScrollRows(ESSearchScroll scroll) {
+            this.scroll = scroll;
+        }
+
+        @Override
+        public void fetch(int numRows, ActionListener<Object[][]> listener) {
+            scroll.fetch(numRows, listener);
+        }
+
+        @Override
+        public boolean exhausted() {
+            return scroll.exhausted();
+        }
+
+        @Override
+        public void close() {
+            scroll.close();
+        }
+    }
+
+    @Inject
+    public SQLCursors(Settings settings, ClusterService clusterService) {
+        this(clusterService,
+                settings.getAsTime(KEEP_ALIVE_SETTING, KEEP_ALIVE_DEFAULT),
+                settings.getAsInt(MAX_OPEN_SETTING, MAX_OPEN_DEFAULT));
+    }
+
+    public SQLCursors(ClusterService clusterService, TimeValue keepAlive, int maxOpen) {
+        this.clusterService = clusterService;
+        this.keepAlive = keepAlive;
+        this.maxOpen = maxOpen;
+        this.cursors = CacheBuilder.newBuilder()
+                .expireAfterAccess(keepAlive.millis(), TimeUnit.MILLISECONDS)
+                .removalListener(new RemovalListener<String, Cursor>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<String, Cursor> notification) {
+                        notification.getValue().rows.close();
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * the time a cursor is kept open without being accessed
+     */
+    public TimeValue keepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * responds with the response if it contains no more than <code>fetchSize</code> rows,
+     * otherwise the remaining rows are kept in a new cursor and the first page is returned
+     * together with the id of the cursor.
+     */
+    public void open(SQLResponse response, int fetchSize, ActionListener<SQLResponse> listener) {
+        Object[][] rows = response.rows();
+        if (fetchSize <= 0 || rows == null || rows.length <= fetchSize) {
+            listener.onResponse(response);
+            return;
+        }
+        String cursorId;
+        try {
+            cursorId = newCursorId();
+        } catch (Exception e) {
+            listener.onFailure(e);
+            return;
+        }
+        Cursor cursor = new Cursor(response.cols(), response.colTypes, response.includeTypes,
+                fetchSize, new MaterializedRows(rows));
+        cursors.put(cursorId, cursor);
+        nextPage(cursorId, cursor, fetchSize, response.requestStartedTime, listener);
+    }
+
+    /**
+     * open a cursor for a suspended search and fetch its first <code>fetchSize</code> rows,
+     * the cursor is closed immediately if the search has no more rows.
+     */
+    public void open(ESSearchScroll scroll,
+                     String[] cols,
+                     DataType[] colTypes,
+                     boolean includeTypes,
+                     int fetchSize,
+                     long requestStartedTime,
+                     ActionListener<SQLResponse> listener) {
+        String cursorId;
+        try {
+            cursorId = newCursorId();
+        } catch (Exception e) {
+            scroll.close();
+            listener.onFailure(e);
+            return;
+        }
+        Cursor cursor = new Cursor(cols, colTypes, includeTypes, fetchSize, new ScrollRows(scroll));
+        cursors.put(cursorId, cursor);
+        nextPage(cursorId, cursor, fetchSize, requestStartedTime, listener);
+    }
+
+    /**
+     * fetches the next <code>fetchSize</code> rows of the cursor, the cursor id of the response
+     * is null if these are the last rows.
+     *
+     * @param fetchSize the number of rows to fetch, 0 uses the fetch size the cursor was opened with
+     * @throws io.crate.exceptions.CursorUnknownException if the cursor is unknown or has been closed
+     */
+    public void fetch(String cursorId, int fetchSize, long requestStartedTime, ActionListener<SQLResponse> listener) {
+        Cursor cursor = cursors.getIfPresent(cursorId);
+        if (cursor == null) {
+            throw new CursorUnknownException(cursorId);
+        }
+        nextPage(cursorId, cursor, fetchSize > 0 ? fetchSize : cursor.fetchSize, requestStartedTime, listener);
+    }
+
+    /**
+     * @throws io.crate.exceptions.CursorUnknownException if the cursor is unknown or has been closed
+     */
+    public void close(String cursorId) {
+        Cursor cursor = cursors.getIfPresent(cursorId);
+        if (cursor == null) {
+            throw new CursorUnknownException(cursorId);
+        }
+        cursors.invalidate(cursorId);
+    }
+
+    private String newCursorId() {
+        cursors.cleanUp();
+        if (cursors.size() >= maxOpen) {
+            throw new UnhandledServerException(String.format(Locale.ENGLISH,
+                    "Cannot open more than %d cursors (%s), close cursors or fetch all of their rows",
+                    maxOpen, MAX_OPEN_SETTING));
+        }
+        return clusterService.localNode().id() + ID_SEPARATOR + UUID.randomUUID().toString();
+    }
+
+    private void nextPage(final String cursorId,
+                          final Cursor cursor,
+                          int fetchSize,
+                          final long requestStartedTime,
+                          final ActionListener<SQLResponse> listener) {
+        if (!cursor.fetching.compareAndSet(false, true)) {
+            listener.onFailure(new UnhandledServerException(String.format(Locale.ENGLISH,
+                    "Cursor %s is already fetching rows", cursorId)));
+            return;
+        }
+        cursor.rows.fetch(fetchSize, new ActionListener<Object[][]>() {
+            @Override
+            public void onResponse(Object[][] page) {
+                cursor.fetching.set(false);
+                boolean exhausted = cursor.rows.exhausted();
+                if (exhausted) {
+                    cursors.invalidate(cursorId);
+                }
+                BytesRefUtils.ensureStringTypesAreStrings(cursor.colTypes, page);
+                SQLResponse response = new SQLResponse(
+                        cursor.cols,
+                        page,
+                        cursor.colTypes,
+                        page.length,
+                        requestStartedTime,
+                        cursor.includeTypes
+                );
+                if (!exhausted) {
+                    response.cursorId(cursorId);
+                }
+                listener.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                cursor.fetching.set(false);
+                cursors.invalidate(cursorId);
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    /**
+     * @return the id of the node the cursor lives on or null if the cursorId is invalid
+     */
+    @Nullable
+    public static String nodeId(String cursorId) {
+        int idx = cursorId.indexOf(ID_SEPARATOR);
+        if (idx <= 0) {
+            return null;
+        }
+        return cursorId.substring(0, idx);
+    }
+
+    public long numOpenCursors() {
+        cursors.cleanUp();
+        return cursors.size();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.action.sql;
+
+import com.google.common.base.Objects;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+
+/**
+ * Request to fetch the next rows of a cursor opened by a {@link io.crate.action.sql.SQLRequest}
+ * with a {@link SQLRequest#fetchSize()} or to close it.
+ */
+public class SQLFetchRequest extends ActionRequest<SQLFetchRequest> {
+
+    private String cursorId;
+    private int fetchSize = 0;
+    private boolean close = false;
+    private long creationTime;
+
+    public SQLFetchRequest() {
+        this.creationTime = System.currentTimeMillis();
+    }
+
+    public SQLFetchRequest(String cursorId) {
+        this.cursorId = cursorId;
+        this.creationTime = System.currentTimeMillis();
+    }
+
+    public String cursorId() {
+        return cursorId;
+    }
+
+    public void cursorId(String cursorId) {
+        this.cursorId = cursorId;
+    }
+
+    /**
+     * the number of rows to fetch, 0 (the default) fetches as many rows as the
+     * fetchSize of the request that opened the cursor.
+     */
+    public int fetchSize() {
+        return fetchSize;
+    }
+
+    public void fetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * if set to true the cursor is closed and no rows are returned.
+     */
+    public boolean close() {
+        return close;
+    }
+
+    public void close(boolean close) {
+        this.close = close;
+    }
+
+    /**
+     * the system time in millis when the request was created.
+     */
+    public long creationTime() {
+        return creationTime;
+    }
+
+    @Override
+    public ActionRequestValidationException validate() {
+        ActionRequestValidationException e = null;
+        if (cursorId == null) {
+            e = new ActionRequestValidationException();
+            e.addValidationError("Attribute 'cursorId' must not be null");
+        }
+        if (fetchSize < 0) {
+            if (e == null) {
+                e = new ActionRequestValidationException();
+            }
+            e.addValidationError("Attribute 'fetchSize' must not be negative");
+        }
+        return e;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        cursorId = in.readString();
+        fetchSize = in.readVInt();
+        close = in.readBoolean();
+        creationTime = in.readVLong();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeString(cursorId);
+        out.writeVInt(fetchSize);
+        out.writeBoolean(close);
+        out.writeVLong(creationTime);
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("cursorId", cursorId)
+                .add("fetchSize", fetchSize)
+                .add("close", close).toString();
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.action.sql;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.crate.analyze.ParameterBindings;
+import io.crate.planner.Plan;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.settings.Settings;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the plans of data statements so that repeated executions of the same statement
+ * skip parsing, analysis and planning.
+ *
+ * Plans are cached by the statement text. The arguments of an execution are bound to the parameters
+ * of the cached plan (see {@link io.crate.analyze.ParameterBindings}), which is only possible if
+ * they are of the same types as the ones the plan has been created with and if neither analysis nor
+ * planning depend on their values (e.g. primary key lookups or partition pruning),
+ * other plans aren't cached.
+ * Each entry is only valid for the cluster state version it was planned against and
+ * all entries are invalidated if the metadata, the routing or the nodes of the cluster change.
+ *
+ * Plans are modified by the executor (the job id is set on the plan nodes) and by binding arguments,
+ * so a plan is never used by two executions at the same time: it is acquired before execution
+ * and released once the job finished. A few idle plans are kept per statement so that concurrent
+ * executions of the same statement can all be served from the cache.
+ */
+@Singleton
+public class SQLPlanCache implements ClusterStateListener {
+
+    /**
+     * maximum number of cached statements per node, 0 disables the cache
+     */
+    public static final String SIZE_SETTING = "sql.plan_cache.size";
+    public static final int SIZE_DEFAULT = 1000;
+
+    static final int MAX_IDLE_PLANS = 4;
+
+    private final ClusterService clusterService;
+    @Nullable
+    private final Cache<String, Entry> cache;
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+
+    /**
+     * a plan which is used by a single execution, see {@link #acquire(String, Object[])}
+     */
+    public static class CachedPlan {
+
+        private final String stmt;
+        private final long clusterStateVersion;
+        private final Plan plan;
+        private final String[] outputNames;
+        private final ParameterBindings bindings;
+
+        private CachedPlan(String stmt,
+                           long clusterStateVersion,
+                           Plan plan,
+                           String[] outputNames,
+                           ParameterBindings bindings) {
+            this.stmt = stmt;
+            this.clusterStateVersion = clusterStateVersion;
+            this.plan = plan;
+            this.outputNames = outputNames;
+            this.bindings = bindings;
+        }
+
+        public Plan plan() {
+            return plan;
+        }
+
+        public String[] outputNames() {
+            return outputNames;
+        }
+    }
+
+    private static class Entry {
+
+        private final long clusterStateVersion;
+        private final ArrayDeque<CachedPlan> idlePlans = new ArrayDeque<>(MAX_IDLE_PLANS);
+
+        private Entry(long clusterStateVersion) {
+            this.clusterStateVersion = clusterStateVersion;
+        }
+
+        /**
+         * removes an idle plan which can be executed with the given arguments
+         */
+        @Nullable
+        private synchronized CachedPlan poll(Object[] args) {
+            Iterator<CachedPlan> it = idlePlans.iterator();
+            while (it.hasNext()) {
+                CachedPlan cachedPlan = it.next();
+                if (cachedPlan.bindings.matches(args)) {
+                    it.remove();
+                    return cachedPlan;
+                }
+            }
+            return null;
+        }
+
+        private synchronized void add(CachedPlan cachedPlan) {
+            if (idlePlans.size() >= MAX_IDLE_PLANS) {
+                // prefer recently used argument types
+                idlePlans.pollFirst();
+            }
+            idlePlans.addLast(cachedPlan);
+        }
+    }
+
+    @Inject
+    public SQLPlanCache(Settings settings, ClusterService clusterService) {
+        this(clusterService, settings.getAsInt(SIZE_SETTING, SIZE_DEFAULT));
+        clusterService.add(this);
+    }
+
+    public SQLPlanCache(ClusterService clusterService, int size) {
+        this.clusterService = clusterService;
+        if (size > 0) {
+            this.cache = CacheBuilder.newBuilder()
+                    .maximumSize(size)
+                    .recordStats()
+                    .build();
+        } else {
+            this.cache = null;
+        }
+    }
+
+    public boolean enabled() {
+        return cache != null;
+    }
+
+    /**
+     * the version of the cluster state plans are currently created against,
+     * has to be read before the statement is analyzed.
+     */
+    public long clusterStateVersion() {
+        return clusterService.state().version();
+    }
+
+    /**
+     * returns an idle plan of the statement with the arguments bound to it
+     * or null if there is none for the current cluster state and the types of the arguments.
+     * The plan has to be given back using {@link #release(CachedPlan)} once its job finished.
+     */
+    @Nullable
+    public CachedPlan acquire(String stmt, Object[] args) {
+        if (cache == null) {
+            return null;
+        }
+        Entry entry = cache.getIfPresent(stmt);
+        CachedPlan cachedPlan = null;
+        if (entry != null && entry.clusterStateVersion == clusterStateVersion()) {
+            cachedPlan = entry.poll(args);
+        }
+        if (cachedPlan != null) {
+            try {
+                cachedPlan.bindings.bind(args);
+            } catch (IllegalArgumentException | ClassCastException e) {
+                // the value can't be converted to the type of the column it is compared with,
+                // the plan is dropped as it may be partially bound, the analyzer reports the error
+                cachedPlan = null;
+            }
+        }
+        if (cachedPlan == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return cachedPlan;
+    }
+
+    /**
+     * wraps a newly created plan so it is added to the cache once it is released.
+     *
+     * @param clusterStateVersion the cluster state version read before the statement has been analyzed
+     * @param bindings the parameters of the analyzed statement, see
+     *                 {@link io.crate.analyze.Analyzer.ParameterContext#bindings()}
+     * @return null if the plan can't be cached because it depends on the values of the arguments
+     */
+    @Nullable
+    public CachedPlan newCachedPlan(String stmt,
+                                    long clusterStateVersion,
+                                    Plan plan,
+                                    String[] outputNames,
+                                    @Nullable ParameterBindings bindings) {
+        if (bindings == null) {
+            return null;
+        }
+        return new CachedPlan(stmt, clusterStateVersion, plan, outputNames, bindings);
+    }
+
+    /**
+     * makes the plan available for further executions of its statement,
+     * unless the cluster state changed since it has been created.
+     */
+    public void release(CachedPlan cachedPlan) {
+        if (cache == null || cachedPlan.clusterStateVersion != clusterStateVersion()) {
+            return;
+        }
+        Entry entry = cache.getIfPresent(cachedPlan.stmt);
+        if (entry == null || entry.clusterStateVersion != cachedPlan.clusterStateVersion) {
+            // concurrent releases may replace each others entry, that only costs an idle plan
+            entry = new Entry(cachedPlan.clusterStateVersion);
+            cache.put(cachedPlan.stmt, entry);
+        }
+        entry.add(cachedPlan);
+    }
+
+    public void clear() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    @Override
+    public void clusterChanged(ClusterChangedEvent event) {
+        if (event.metaDataChanged() || event.routingTableChanged() || event.nodesChanged()) {
+            clear();
+        }
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public long evictions() {
+        return cache == null ? 0L : cache.stats().evictionCount();
+    }
+
+    public long size() {
+        return cache == null ? 0L : cache.size();
+    }
+}
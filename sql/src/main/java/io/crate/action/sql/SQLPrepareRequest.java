@@ -0,0 +1,112 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.action.sql;
+
+import com.google.common.base.Objects;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Request to prepare a statement on the node receiving it.
+ * The returned handle can be used instead of the statement in {@link io.crate.action.sql.SQLRequest}s,
+ * see {@link SQLRequest#handle(String)}.
+ */
+public class SQLPrepareRequest extends ActionRequest<SQLPrepareRequest> {
+
+    private String stmt;
+    private Object[] args = SQLRequest.EMPTY_ARGS;
+
+    public SQLPrepareRequest() {} // used for serialization
+
+    public SQLPrepareRequest(String stmt) {
+        this.stmt = stmt;
+    }
+
+    public SQLPrepareRequest(String stmt, Object[] args) {
+        this.stmt = stmt;
+        args(args);
+    }
+
+    public String stmt() {
+        return stmt;
+    }
+
+    public void stmt(String stmt) {
+        this.stmt = stmt;
+    }
+
+    /**
+     * example arguments which are used to analyze the statement on prepare.
+     * Without them the output columns of a statement with parameters are unknown
+     * until it is executed.
+     */
+    public Object[] args() {
+        return args;
+    }
+
+    public void args(Object[] args) {
+        this.args = Objects.firstNonNull(args, SQLRequest.EMPTY_ARGS);
+    }
+
+    @Override
+    public ActionRequestValidationException validate() {
+        if (stmt == null) {
+            ActionRequestValidationException e = new ActionRequestValidationException();
+            e.addValidationError("Attribute 'stmt' must not be null");
+            return e;
+        }
+        return null;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        stmt = in.readString();
+        int length = in.readVInt();
+        args = new Object[length];
+        for (int i = 0; i < length; i++) {
+            args[i] = in.readGenericValue();
+        }
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeString(stmt);
+        out.writeVInt(args.length);
+        for (Object arg : args) {
+            out.writeGenericValue(arg);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("stmt", stmt)
+                .add("args", Arrays.asList(args)).toString();
+    }
+}
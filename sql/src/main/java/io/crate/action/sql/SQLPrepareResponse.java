@@ -0,0 +1,97 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.action.sql;
+
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+
+/**
+ * Contains the handle of a prepared statement and its output columns.
+ */
+public class SQLPrepareResponse extends ActionResponse {
+
+    private String handle;
+    private String[] cols;
+    private DataType[] colTypes;
+
+    public SQLPrepareResponse() {} // used for serialization
+
+    public SQLPrepareResponse(String handle, @Nullable String[] cols, @Nullable DataType[] colTypes) {
+        this.handle = handle;
+        this.cols = cols;
+        this.colTypes = colTypes;
+    }
+
+    /**
+     * the handle to execute the statement with, see {@link SQLRequest#handle(String)}
+     */
+    public String handle() {
+        return handle;
+    }
+
+    /**
+     * the output columns of the statement or null if they are only known once it is executed
+     * because its analysis depends on the values of arguments which weren't given on prepare.
+     */
+    @Nullable
+    public String[] cols() {
+        return cols;
+    }
+
+    @Nullable
+    public DataType[] columnTypes() {
+        return colTypes;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        handle = in.readString();
+        if (in.readBoolean()) {
+            cols = in.readStringArray();
+            colTypes = new DataType[in.readVInt()];
+            for (int i = 0; i < colTypes.length; i++) {
+                colTypes[i] = DataTypes.fromStream(in);
+            }
+        }
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeString(handle);
+        out.writeBoolean(cols != null);
+        if (cols != null) {
+            out.writeStringArray(cols);
+            out.writeVInt(colTypes.length);
+            for (DataType colType : colTypes) {
+                DataTypes.toStream(colType, out);
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.action.sql;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.crate.analyze.Analysis;
+import io.crate.analyze.ParameterBindings;
+import io.crate.exceptions.PreparedStatementUnknownException;
+import io.crate.sql.tree.Statement;
+import io.crate.types.DataType;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.settings.Settings;
+
+import javax.annotation.Nullable;
+import java.util.UUID;
+
+/**
+ * Holds the statements prepared using the {@link io.crate.action.sql.SQLPrepareAction} on this node
+ * together with their analysis and the description of their outputs.
+ *
+ * The number of prepared statements is limited, the least recently used ones are evicted
+ * once the limit is reached, executing an evicted handle fails and the statement has to be prepared again.
+ *
+ * The handle contains the id of the node the statement has been prepared on, so requests
+ * received by other nodes can be forwarded.
+ */
+@Singleton
+public class SQLPreparedStatements {
+
+    public static final String MAX_SETTING = "sql.prepared_statements.max";
+    public static final int MAX_DEFAULT = 1000;
+
+    private static final char ID_SEPARATOR = ':';
+
+    private final ClusterService clusterService;
+    private final Cache<String, PreparedStatement> statements;
+
+    public static class PreparedStatement {
+
+        private final String stmt;
+        private final Statement statement;
+        private final long clusterStateVersion;
+        private Analysis analysis;
+        private final String[] outputNames;
+        private final DataType[] outputTypes;
+
+        /**
+         * @param clusterStateVersion the version of the cluster state read before the statement has been analyzed
+         * @param analysis the analysis of the statement with the example arguments of all its parameters,
+         *                 null if it has been analyzed without them
+         */
+        public PreparedStatement(String stmt,
+                                 Statement statement,
+                                 long clusterStateVersion,
+                                 @Nullable Analysis analysis,
+                                 @Nullable String[] outputNames,
+                                 @Nullable DataType[] outputTypes) {
+            this.stmt = stmt;
+            this.statement = statement;
+            this.clusterStateVersion = clusterStateVersion;
+            this.analysis = analysis;
+            this.outputNames = outputNames;
+            this.outputTypes = outputTypes;
+        }
+
+        public String stmt() {
+            return stmt;
+        }
+
+        /**
+         * the parsed statement
+         */
+        public Statement statement() {
+            return statement;
+        }
+
+        /**
+         * the output names or null if the statement can only be analyzed with its arguments
+         */
+        @Nullable
+        public String[] outputNames() {
+            return outputNames;
+        }
+
+        @Nullable
+        public DataType[] outputTypes() {
+            return outputTypes;
+        }
+
+        /**
+         * returns the analysis of the statement with the arguments bound to it, so the first execution
+         * doesn't have to analyze the statement again. Only statements prepared with example arguments
+         * of the same types as the given ones have such an analysis.
+         * Its plan is modified by the execution, so the analysis is only returned once,
+         * further executions use the {@link io.crate.action.sql.SQLPlanCache}.
+         *
+         * @return null if the analysis has already been used, the cluster state changed since
+         *         the statement has been analyzed or the analysis can't be bound to the arguments
+         */
+        @Nullable
+        public synchronized Analysis pollAnalysis(Object[] args, long clusterStateVersion) {
+            Analysis analysis = this.analysis;
+            this.analysis = null;
+            if (analysis == null || clusterStateVersion != this.clusterStateVersion) {
+                return null;
+            }
+            ParameterBindings bindings = analysis.parameterContext().bindings();
+            if (bindings == null || !bindings.matches(args)) {
+                return null;
+            }
+            try {
+                bindings.bind(args);
+            } catch (IllegalArgumentException | ClassCastException e) {
+                return null;
+            }
+            return analysis;
+        }
+    }
+
+    @Inject
+    public SQLPreparedStatements(Settings settings, ClusterService clusterService) {
+        this(clusterService, settings.getAsInt(MAX_SETTING, MAX_DEFAULT));
+    }
+
+    public SQLPreparedStatements(ClusterService clusterService, int max) {
+        this.clusterService = clusterService;
+        this.statements = CacheBuilder.newBuilder()
+                .maximumSize(max)
+                .build();
+    }
+
+    /**
+     * @return the handle of the prepared statement
+     */
+    public String add(PreparedStatement preparedStatement) {
+        String handle = clusterService.localNode().id() + ID_SEPARATOR + UUID.randomUUID().toString();
+        statements.put(handle, preparedStatement);
+        return handle;
+    }
+
+    public PreparedStatement get(String handle) throws PreparedStatementUnknownException {
+        PreparedStatement preparedStatement = statements.getIfPresent(handle);
+        if (preparedStatement == null) {
+            throw new PreparedStatementUnknownException(handle);
+        }
+        return preparedStatement;
+    }
+
+    /**
+     * @return the id of the node the statement has been prepared on or null if the handle is invalid
+     */
+    @Nullable
+    public static String nodeId(String handle) {
+        int idx = handle.indexOf(ID_SEPARATOR);
+        if (idx <= 0) {
+            return null;
+        }
+        return handle.substring(0, idx);
+    }
+
+    public long size() {
+        return statements.size();
+    }
+}
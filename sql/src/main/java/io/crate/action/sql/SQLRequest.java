@@ -22,9 +22,11 @@
 package io.crate.action.sql;
 
 import com.google.common.base.Objects;
+import org.elasticsearch.action.ActionRequestValidationException;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.Arrays;
 
@@ -34,7 +36,10 @@ import java.util.Arrays;
 public class SQLRequest extends SQLBaseRequest {
 
     public final static Object[] EMPTY_ARGS = new Object[0];
+
     private Object[] args;
+    private int fetchSize = 0;
+    private String handle;
 
     public SQLRequest() {} // used for serialization
 
@@ -72,6 +77,43 @@ public class SQLRequest extends SQLBaseRequest {
         this.args = Objects.firstNonNull(args, EMPTY_ARGS);
     }
 
+    /**
+     * the number of rows returned with the response, if the statement has more
+     * result rows a cursor is opened and the remaining rows can be fetched using the
+     * {@link io.crate.action.sql.SQLFetchAction}.
+     *
+     * 0 (the default) returns all rows at once.
+     */
+    public int fetchSize() {
+        return fetchSize;
+    }
+
+    public void fetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * the handle of a statement prepared using the {@link io.crate.action.sql.SQLPrepareAction},
+     * if set the prepared statement is executed with the args of this request
+     * and the statement isn't sent with the request.
+     */
+    @Nullable
+    public String handle() {
+        return handle;
+    }
+
+    public void handle(@Nullable String handle) {
+        this.handle = handle;
+    }
+
+    @Override
+    public ActionRequestValidationException validate() {
+        if (handle != null) {
+            return null;
+        }
+        return super.validate();
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         // doesn't call super to stay compatible with older crate version
@@ -85,6 +127,14 @@ public class SQLRequest extends SQLBaseRequest {
         }
         creationTime = in.readVLong();
         includeTypesOnResponse = in.readBoolean();
+        // fetchSize and handle are only sent if used, older clients never send them
+        if (in.available() > 0) {
+            fetchSize = in.readVInt();
+            handle = in.readOptionalString();
+            if (handle != null) {
+                stmt = null;
+            }
+        }
     }
 
     @Override
@@ -93,20 +143,28 @@ public class SQLRequest extends SQLBaseRequest {
 
         out.writeBoolean(false); // headers == null from TransportRequest base class
 
-        out.writeString(stmt);
+        // the statement of a prepared statement isn't sent
+        out.writeString(handle == null ? stmt : "");
         out.writeVInt(args.length);
         for (int i = 0; i < args.length; i++) {
             out.writeGenericValue(args[i]);
         }
         out.writeVLong(creationTime);
         out.writeBoolean(includeTypesOnResponse);
+        // optional trailing fields, a request without them can be read by older crate versions
+        if (fetchSize > 0 || handle != null) {
+            out.writeVInt(fetchSize);
+            out.writeOptionalString(handle);
+        }
     }
 
     @Override
     public String toString() {
         return Objects.toStringHelper(this)
                 .add("stmt", stmt)
+                .add("handle", handle)
                 .add("args", Arrays.asList(args))
+                .add("fetchSize", fetchSize)
                 .add("creationTime", creationTime).toString();
     }
 }
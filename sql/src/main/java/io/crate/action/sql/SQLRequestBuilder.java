@@ -51,4 +51,12 @@ public class SQLRequestBuilder extends ActionRequestBuilder<SQLRequest, SQLRespo
         request.includeTypesOnResponse(includeTypes);
     }
 
+    public void fetchSize(int fetchSize) {
+        request.fetchSize(fetchSize);
+    }
+
+    public void handle(String handle) {
+        request.handle(handle);
+    }
+
 }
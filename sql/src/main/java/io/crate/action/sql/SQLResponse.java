@@ -27,6 +27,7 @@ import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.Arrays;
 
@@ -36,6 +37,7 @@ public class SQLResponse extends SQLBaseResponse {
 
     private Object[][] rows;
     private long rowCount = NO_ROW_COUNT;
+    private String cursorId;
 
     public SQLResponse() {
     }
@@ -57,22 +59,46 @@ public class SQLResponse extends SQLBaseResponse {
 
     @Override
     public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
-        builder.startObject();
-        writeSharedAttributes(builder);
-        builder.startArray(Fields.ROWS);
+        startXContent(builder);
         if (rows != null) {
             for (int i = 0; i < rows.length; i++) {
-                builder.startArray();
-                for (int j = 0; j < cols.length; j++) {
-                    builder.value(rows[i][j]);
-                }
-                builder.endArray();
+                rowToXContent(builder, rows[i]);
             }
         }
+        endXContent(builder);
+        return builder;
+    }
+
+    /**
+     * writes the attributes preceding the rows and starts the rows array.
+     *
+     * Together with {@link #rowToXContent(XContentBuilder, Object[])} and {@link #endXContent(XContentBuilder)}
+     * this can be used instead of {@link #toXContent(XContentBuilder, Params)} to write the rows in chunks.
+     */
+    public void startXContent(XContentBuilder builder) throws IOException {
+        builder.startObject();
+        writeSharedAttributes(builder);
+        builder.startArray(Fields.ROWS);
+    }
+
+    public void rowToXContent(XContentBuilder builder, Object[] row) throws IOException {
+        builder.startArray();
+        for (int j = 0; j < cols.length; j++) {
+            builder.value(row[j]);
+        }
+        builder.endArray();
+    }
+
+    /**
+     * closes the rows array and writes the attributes following the rows
+     */
+    public void endXContent(XContentBuilder builder) throws IOException {
         builder.endArray();
         builder.field(Fields.ROWCOUNT, rowCount());
+        if (cursorId != null) {
+            builder.field(Fields.CURSOR, cursorId);
+        }
         builder.endObject();
-        return builder;
     }
 
     public Object[][] rows(){
@@ -95,6 +121,23 @@ public class SQLResponse extends SQLBaseResponse {
         this.rows = rows;
     }
 
+    /**
+     * the id of the cursor the remaining rows can be fetched from using the
+     * {@link io.crate.action.sql.SQLFetchAction} or null if the response contains all rows.
+     */
+    @Nullable
+    public String cursorId() {
+        return cursorId;
+    }
+
+    public void cursorId(@Nullable String cursorId) {
+        this.cursorId = cursorId;
+    }
+
+    public boolean hasCursor() {
+        return cursorId != null;
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         // don't user super.readFrom to stay binary backward compatible
@@ -124,6 +167,10 @@ public class SQLResponse extends SQLBaseResponse {
         } else {
             colTypes = EMPTY_TYPES;
         }
+        // the cursor id is only sent if there is a cursor, older clients never request one
+        if (in.available() > 0) {
+            cursorId = in.readString();
+        }
     }
 
     @Override
@@ -148,6 +195,9 @@ public class SQLResponse extends SQLBaseResponse {
                 DataTypes.toStream(colTypes[i], out);
             }
         }
+        if (cursorId != null) {
+            out.writeString(cursorId);
+        }
     }
 
     @Override
@@ -157,6 +207,7 @@ public class SQLResponse extends SQLBaseResponse {
                 "colTypes=" + ((colTypes !=null) ? Arrays.toString(colTypes): null) +
                 ", rows=" + ((rows!=null) ? rows.length: -1)  +
                 ", rowCount=" + rowCount  +
+                ", cursor=" + cursorId  +
                 ", duration=" + duration()  +
                 '}';
     }
@@ -0,0 +1,185 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.action.sql;
+
+import io.crate.Streamer;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Compact binary encoding of a {@link io.crate.action.sql.SQLResponse} which can be requested
+ * instead of JSON by REST clients.
+ *
+ * The column names and types are written once, followed by the values column by column.
+ * Values of primitive types are written using the {@link io.crate.Streamer} of their type,
+ * values of other types (or columns which contain values that don't match their type)
+ * are written as generic values:
+ *
+ * <pre>
+ *     byte     version
+ *     vint     number of columns
+ *     string[] column names
+ *     boolean  types included, if true followed by the column types
+ *     long     rowcount
+ *     vlong    duration
+ *     vint     number of rows
+ *     per column:
+ *       byte   encoding (typed or generic)
+ *       values of all rows
+ *     optional string cursor
+ * </pre>
+ */
+public class SQLResponseBinaryFormat {
+
+    public static final String FORMAT_NAME = "binary";
+    public static final String CONTENT_TYPE = "application/x-crate-binary";
+
+    static final byte VERSION = 1;
+
+    private static final byte ENCODING_TYPED = 0;
+    private static final byte ENCODING_GENERIC = 1;
+
+    public static void writeTo(SQLResponse response, StreamOutput out) throws IOException {
+        String[] cols = response.cols();
+        Object[][] rows = response.rows() == null ? new Object[0][] : response.rows();
+        DataType[] types = response.columnTypes();
+        boolean typed = types != null && types.length == cols.length && cols.length > 0;
+
+        out.writeByte(VERSION);
+        out.writeStringArray(cols);
+        out.writeBoolean(typed);
+        if (typed) {
+            for (DataType type : types) {
+                DataTypes.toStream(type, out);
+            }
+        }
+        out.writeLong(response.rowCount());
+        out.writeVLong(Math.max(0L, response.duration()));
+        out.writeVInt(rows.length);
+        for (int c = 0; c < cols.length; c++) {
+            DataType type = typed ? types[c] : null;
+            if (type != null && isStreamable(type) && valuesMatch(type, rows, c)) {
+                out.writeByte(ENCODING_TYPED);
+                Streamer<?> streamer = type.streamer();
+                boolean isString = isString(type);
+                for (Object[] row : rows) {
+                    Object value = row[c];
+                    if (isString && value instanceof String) {
+                        value = new BytesRef((String) value);
+                    }
+                    streamer.writeValueTo(out, value);
+                }
+            } else {
+                out.writeByte(ENCODING_GENERIC);
+                for (Object[] row : rows) {
+                    out.writeGenericValue(row[c]);
+                }
+            }
+        }
+        out.writeOptionalString(response.cursorId());
+    }
+
+    public static SQLResponse readFrom(StreamInput in) throws IOException {
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException(String.format(Locale.ENGLISH,
+                    "Unsupported binary response version %d", version));
+        }
+        String[] cols = in.readStringArray();
+        boolean typed = in.readBoolean();
+        DataType[] types = SQLBaseResponse.EMPTY_TYPES;
+        if (typed) {
+            types = new DataType[cols.length];
+            for (int i = 0; i < cols.length; i++) {
+                types[i] = DataTypes.fromStream(in);
+            }
+        }
+        long rowCount = in.readLong();
+        long duration = in.readVLong();
+        int numRows = in.readVInt();
+        Object[][] rows = new Object[numRows][cols.length];
+        for (int c = 0; c < cols.length; c++) {
+            byte encoding = in.readByte();
+            if (encoding == ENCODING_TYPED) {
+                Streamer<?> streamer = types[c].streamer();
+                boolean isString = isString(types[c]);
+                for (int r = 0; r < numRows; r++) {
+                    Object value = streamer.readValueFrom(in);
+                    if (isString && value != null) {
+                        value = ((BytesRef) value).utf8ToString();
+                    }
+                    rows[r][c] = value;
+                }
+            } else {
+                for (int r = 0; r < numRows; r++) {
+                    rows[r][c] = in.readGenericValue();
+                }
+            }
+        }
+        SQLResponse response = new SQLResponse(cols, rows, types, rowCount, 0L, typed);
+        response.duration = duration;
+        response.cursorId(in.readOptionalString());
+        return response;
+    }
+
+    private static boolean isStreamable(DataType type) {
+        return DataTypes.PRIMITIVE_TYPES.contains(type);
+    }
+
+    private static boolean isString(DataType type) {
+        return type.equals(DataTypes.STRING) || type.equals(DataTypes.IP);
+    }
+
+    /**
+     * @return true if all values of the column can be written by the streamer of its type
+     */
+    private static boolean valuesMatch(DataType type, Object[][] rows, int column) {
+        Class<?> expectedClass;
+        if (isString(type)) {
+            expectedClass = null;
+        } else if (type.equals(DataTypes.BOOLEAN)) {
+            expectedClass = Boolean.class;
+        } else {
+            expectedClass = Number.class;
+        }
+        for (Object[] row : rows) {
+            Object value = row[column];
+            if (value == null) {
+                continue;
+            }
+            if (expectedClass == null) {
+                if (!(value instanceof String || value instanceof BytesRef)) {
+                    return false;
+                }
+            } else if (!expectedClass.isInstance(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
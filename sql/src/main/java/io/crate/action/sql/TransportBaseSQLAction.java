@@ -28,12 +28,12 @@ import com.google.common.cache.LoadingCache;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
-import io.crate.analyze.Analysis;
-import io.crate.analyze.Analyzer;
+import io.crate.analyze.*;
 import io.crate.exceptions.*;
 import io.crate.executor.Executor;
 import io.crate.executor.Job;
 import io.crate.executor.TaskResult;
+import io.crate.metadata.ColumnIdent;
 import io.crate.operation.collect.StatsTables;
 import io.crate.planner.Plan;
 import io.crate.planner.PlanPrinter;
@@ -79,6 +79,7 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
     private final Provider<Executor> executorProvider;
     private final Provider<DDLAnalysisDispatcher> dispatcherProvider;
     private final StatsTables statsTables;
+    private final SQLPlanCache planCache;
 
     public TransportBaseSQLAction(Settings settings,
                                   String actionName,
@@ -87,13 +88,15 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
                                   Planner planner,
                                   Provider<Executor> executorProvider,
                                   Provider<DDLAnalysisDispatcher> dispatcherProvider,
-                                  StatsTables statsTables) {
+                                  StatsTables statsTables,
+                                  SQLPlanCache planCache) {
         super(settings, actionName, threadPool);
         this.analyzer = analyzer;
         this.planner = planner;
         this.executorProvider = executorProvider;
         this.dispatcherProvider = dispatcherProvider;
         this.statsTables = statsTables;
+        this.planCache = planCache;
     }
 
     public abstract Analysis getAnalysis(Statement statement, TRequest request);
@@ -107,16 +110,63 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
             Plan plan, String[] outputNames, List<TaskResult> result,
             long requestCreationTime, boolean includeTypesOnResponse);
 
+    /**
+     * the parsed statement of the request
+     */
+    protected Statement statement(TRequest request) throws Exception {
+        return statementCache.get(request.stmt());
+    }
+
+    /**
+     * the arguments which are bound to the plan of the request if it is cached in the
+     * {@link io.crate.action.sql.SQLPlanCache} by its statement,
+     * null if the plan of the request shouldn't be cached.
+     */
+    @Nullable
+    protected Object[] planCacheArgs(TRequest request) {
+        return null;
+    }
+
+    /**
+     * creates the plan of the analyzed request
+     */
+    protected Plan plan(Analysis analysis, TRequest request) {
+        return planner.plan(analysis);
+    }
+
+    /**
+     * executes the plan as a suspended job whose rows are fetched on demand.
+     *
+     * @return true if the listener has been (or will be) called,
+     *         false if the plan has to be executed as a regular job.
+     */
+    protected boolean executeSuspended(Plan plan,
+                                       String[] outputNames,
+                                       TRequest request,
+                                       ActionListener<TResponse> listener) {
+        return false;
+    }
 
     @Override
     protected void doExecute(TRequest request, ActionListener<TResponse> listener) {
         logger.debug("{}", request);
         try {
-            Statement statement = statementCache.get(request.stmt());
+            Object[] cacheArgs = planCache.enabled() ? planCacheArgs(request) : null;
+            long clusterStateVersion = 0L;
+            if (cacheArgs != null) {
+                SQLPlanCache.CachedPlan cachedPlan = planCache.acquire(request.stmt(), cacheArgs);
+                if (cachedPlan != null) {
+                    executePlan(cachedPlan.plan(), cachedPlan.outputNames(), listener, request, cachedPlan);
+                    return;
+                }
+                clusterStateVersion = planCache.clusterStateVersion();
+            }
+            Statement statement = statement(request);
             Analysis analysis = getAnalysis(statement, request);
 
             if (analysis.isData()) {
-                processWithPlanner(analysis, request, listener);
+                processWithPlanner(analysis, request, listener,
+                        cacheArgs != null && isCacheable(analysis), clusterStateVersion);
             } else {
                 processNonData(analysis, request, listener);
             }
@@ -150,14 +200,37 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
     }
 
 
-    private void processWithPlanner(Analysis analysis, TRequest request, ActionListener<TResponse> listener) {
+    /**
+     * only plans which don't depend on anything but the statement, its arguments and the cluster state
+     * can be cached. Inserts into tables without a primary key contain a generated id.
+     */
+    private static boolean isCacheable(Analysis analysis) {
+        if (analysis instanceof SelectAnalysis
+                || analysis instanceof UpdateAnalysis
+                || analysis instanceof DeleteAnalysis) {
+            return true;
+        }
+        if (analysis instanceof InsertFromValuesAnalysis) {
+            List<ColumnIdent> primaryKey = ((InsertFromValuesAnalysis) analysis).table().primaryKey();
+            return !(primaryKey.size() == 1 && primaryKey.get(0).name().equals("_id"));
+        }
+        return false;
+    }
+
+    private void processWithPlanner(Analysis analysis,
+                                    TRequest request,
+                                    ActionListener<TResponse> listener,
+                                    boolean cachePlan,
+                                    long clusterStateVersion) {
         final String[] outputNames = analysis.outputNames().toArray(new String[analysis.outputNames().size()]);
 
         if (analysis.hasNoResult()) {
             listener.onResponse(emptyResponse(outputNames, request.creationTime()));
             return;
         }
-        final Plan plan = planner.plan(analysis);
+        final Plan plan = plan(analysis, request);
+        // read before the plan is printed or executed, which reads the values of the arguments
+        ParameterBindings bindings = cachePlan ? analysis.parameterContext().bindings() : null;
         tracePlan(plan);
 
         if (plan.isEmpty()) {
@@ -167,12 +240,23 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
             statsTables.jobStarted(jobId, request.stmt());
             listener.onResponse(emptyResponse(outputNames, request.creationTime()));
             statsTables.jobFinished(jobId, null);
-        } else {
-            executePlan(plan, outputNames, listener, request);
+        } else if (!executeSuspended(plan, outputNames, request, listener)) {
+            SQLPlanCache.CachedPlan cachedPlan = null;
+            if (cachePlan) {
+                cachedPlan = planCache.newCachedPlan(request.stmt(), clusterStateVersion, plan, outputNames, bindings);
+            }
+            executePlan(plan, outputNames, listener, request, cachedPlan);
         }
     }
 
-    private void executePlan(final Plan plan, final String[] outputNames, final ActionListener<TResponse> listener, final TRequest request) {
+    /**
+     * @param cachedPlan if not null it is released to the plan cache once the job finished
+     */
+    private void executePlan(final Plan plan,
+                             final String[] outputNames,
+                             final ActionListener<TResponse> listener,
+                             final TRequest request,
+                             @Nullable final SQLPlanCache.CachedPlan cachedPlan) {
         Executor executor = executorProvider.get();
         Job job = executor.newJob(plan);
         final UUID jobId = job.id();
@@ -183,6 +267,9 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
         Futures.addCallback(Futures.allAsList(resultFutureList), new FutureCallback<List<TaskResult>>() {
             @Override
             public void onSuccess(@Nullable List<TaskResult> result) {
+                if (cachedPlan != null) {
+                    planCache.release(cachedPlan);
+                }
                 TResponse response;
 
                 try {
@@ -210,6 +297,9 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
 
             @Override
             public void onFailure(@Nonnull Throwable t) {
+                if (cachedPlan != null) {
+                    planCache.release(cachedPlan);
+                }
                 logger.debug("Error processing SQLRequest", t);
                 if (jobId != null) {
                     statsTables.jobFinished(jobId, Exceptions.messageOf(t));
@@ -28,25 +28,40 @@ import io.crate.executor.BytesRefUtils;
 import io.crate.executor.Executor;
 import io.crate.executor.QueryResult;
 import io.crate.executor.TaskResult;
+import io.crate.executor.transport.TransportActionProvider;
+import io.crate.executor.transport.task.elasticsearch.ESSearchScroll;
+import io.crate.exceptions.Exceptions;
+import io.crate.exceptions.PreparedStatementUnknownException;
 import io.crate.operation.collect.StatsTables;
 import io.crate.planner.Plan;
+import io.crate.planner.PlanNode;
 import io.crate.planner.Planner;
+import io.crate.planner.node.dql.ESSearchNode;
 import io.crate.sql.tree.Statement;
 import io.crate.types.DataType;
 import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Provider;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.threadpool.ThreadPool;
-import org.elasticsearch.transport.BaseTransportRequestHandler;
-import org.elasticsearch.transport.TransportChannel;
-import org.elasticsearch.transport.TransportService;
+import org.elasticsearch.transport.*;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.UUID;
 
 
 public class TransportSQLAction extends TransportBaseSQLAction<SQLRequest, SQLResponse> {
 
+    private final SQLCursors cursors;
+    private final SQLPreparedStatements preparedStatements;
+    private final ClusterService clusterService;
+    private final TransportService transportService;
+    private final TransportActionProvider transportActionProvider;
+    private final StatsTables statsTables;
+
     @Inject
     protected TransportSQLAction(Settings settings, ThreadPool threadPool,
             Analyzer analyzer,
@@ -54,13 +69,185 @@ public class TransportSQLAction extends TransportBaseSQLAction<SQLRequest, SQLRe
             Provider<Executor> executor,
             Provider<DDLAnalysisDispatcher> dispatcher,
             TransportService transportService,
-            StatsTables statsTables) {
-        super(settings, SQLAction.NAME, threadPool, analyzer, planner, executor, dispatcher, statsTables);
+            StatsTables statsTables,
+            SQLCursors cursors,
+            SQLPlanCache planCache,
+            SQLPreparedStatements preparedStatements,
+            ClusterService clusterService,
+            TransportActionProvider transportActionProvider) {
+        super(settings, SQLAction.NAME, threadPool, analyzer, planner, executor, dispatcher, statsTables, planCache);
+        this.cursors = cursors;
+        this.preparedStatements = preparedStatements;
+        this.clusterService = clusterService;
+        this.transportService = transportService;
+        this.transportActionProvider = transportActionProvider;
+        this.statsTables = statsTables;
         transportService.registerHandler(SQLAction.NAME, new TransportHandler());
     }
 
+    @Override
+    protected void doExecute(final SQLRequest request, final ActionListener<SQLResponse> listener) {
+        if (request.handle() != null) {
+            String nodeId = SQLPreparedStatements.nodeId(request.handle());
+            if (nodeId != null && !nodeId.equals(clusterService.localNode().id())) {
+                forwardPrepared(nodeId, request, listener);
+                return;
+            }
+            try {
+                request.stmt(preparedStatements.get(request.handle()).stmt());
+            } catch (Exception e) {
+                listener.onFailure(buildSQLActionException(e));
+                return;
+            }
+        }
+        if (request.fetchSize() <= 0) {
+            super.doExecute(request, listener);
+            return;
+        }
+        super.doExecute(request, new ActionListener<SQLResponse>() {
+            @Override
+            public void onResponse(SQLResponse response) {
+                cursors.open(response, request.fetchSize(), new ActionListener<SQLResponse>() {
+                    @Override
+                    public void onResponse(SQLResponse firstPage) {
+                        listener.onResponse(firstPage);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable e) {
+                        listener.onFailure(buildSQLActionException(e));
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    /**
+     * prepared statements are node-local, so requests with a handle are executed
+     * by the node the statement has been prepared on.
+     */
+    private void forwardPrepared(String nodeId, SQLRequest request, final ActionListener<SQLResponse> listener) {
+        DiscoveryNode node = clusterService.state().nodes().get(nodeId);
+        if (node == null) {
+            // the node holding the prepared statement left the cluster
+            listener.onFailure(buildSQLActionException(new PreparedStatementUnknownException(request.handle())));
+            return;
+        }
+        transportService.sendRequest(node, SQLAction.NAME, request,
+                new BaseTransportResponseHandler<SQLResponse>() {
+                    @Override
+                    public SQLResponse newInstance() {
+                        return new SQLResponse();
+                    }
+
+                    @Override
+                    public void handleResponse(SQLResponse response) {
+                        listener.onResponse(response);
+                    }
+
+                    @Override
+                    public void handleException(TransportException exp) {
+                        listener.onFailure(buildSQLActionException(exp));
+                    }
+
+                    @Override
+                    public String executor() {
+                        return ThreadPool.Names.SAME;
+                    }
+                });
+    }
+
+    @Override
+    protected Statement statement(SQLRequest request) throws Exception {
+        if (request.handle() != null) {
+            return preparedStatements.get(request.handle()).statement();
+        }
+        return super.statement(request);
+    }
+
+    @Override
+    protected Object[] planCacheArgs(SQLRequest request) {
+        if (request.fetchSize() > 0) {
+            // plain selects with a fetch size are executed as suspended searches
+            return null;
+        }
+        return request.args();
+    }
+
+    /**
+     * sorted rows which are read with a cursor aren't limited to the default select limit
+     */
+    @Override
+    protected Plan plan(Analysis analysis, SQLRequest request) {
+        return planner.plan(analysis, request.fetchSize() > 0);
+    }
+
+    /**
+     * plain selects with a fetch size are executed as scroll searches which stay suspended
+     * on the shards between fetches. All other plans only have a result once their job finished.
+     */
+    @Override
+    protected boolean executeSuspended(Plan plan,
+                                       String[] outputNames,
+                                       SQLRequest request,
+                                       final ActionListener<SQLResponse> listener) {
+        if (request.fetchSize() <= 0) {
+            return false;
+        }
+        Iterator<PlanNode> it = plan.iterator();
+        PlanNode node = it.next();
+        if (!(node instanceof ESSearchNode) || it.hasNext()) {
+            return false;
+        }
+        ESSearchScroll scroll = new ESSearchScroll(
+                (ESSearchNode) node,
+                transportActionProvider.transportSearchAction(),
+                transportActionProvider.transportSearchScrollAction(),
+                transportActionProvider.transportClearScrollAction(),
+                cursors.keepAlive(),
+                request.fetchSize()
+        );
+        // the job is listed until the first page is returned, the remaining pages are fetched with the cursor
+        final UUID jobId = UUID.randomUUID();
+        statsTables.jobStarted(jobId, request.stmt());
+        cursors.open(
+                scroll,
+                outputNames,
+                plan.outputTypes().toArray(new DataType[plan.outputTypes().size()]),
+                request.includeTypesOnResponse(),
+                request.fetchSize(),
+                request.creationTime(),
+                new ActionListener<SQLResponse>() {
+                    @Override
+                    public void onResponse(SQLResponse firstPage) {
+                        statsTables.jobFinished(jobId, null);
+                        listener.onResponse(firstPage);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable e) {
+                        logger.debug("Error processing SQLRequest", e);
+                        statsTables.jobFinished(jobId, Exceptions.messageOf(e));
+                        listener.onFailure(buildSQLActionException(e));
+                    }
+                });
+        return true;
+    }
+
     @Override
     public Analysis getAnalysis(Statement statement, SQLRequest request) {
+        if (request.handle() != null) {
+            Analysis analysis = preparedStatements.get(request.handle())
+                    .pollAnalysis(request.args(), clusterService.state().version());
+            if (analysis != null) {
+                return analysis;
+            }
+        }
         return analyzer.analyze(statement, request.args(), SQLBulkRequest.EMPTY_BULK_ARGS);
     }
 
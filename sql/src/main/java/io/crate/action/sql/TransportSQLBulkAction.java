@@ -52,8 +52,9 @@ public class TransportSQLBulkAction extends TransportBaseSQLAction<SQLBulkReques
                                   Provider<Executor> executor,
                                   Provider<DDLAnalysisDispatcher> dispatcher,
                                   TransportService transportService,
-                                  StatsTables statsTables) {
-        super(settings, SQLBulkAction.NAME, threadPool, analyzer, planner, executor, dispatcher, statsTables);
+                                  StatsTables statsTables,
+                                  SQLPlanCache planCache) {
+        super(settings, SQLBulkAction.NAME, threadPool, analyzer, planner, executor, dispatcher, statsTables, planCache);
         transportService.registerHandler(SQLBulkAction.NAME, new TransportHandler());
     }
 
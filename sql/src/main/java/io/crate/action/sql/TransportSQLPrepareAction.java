@@ -0,0 +1,186 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.action.sql;
+
+import io.crate.analyze.AbstractDataAnalysis;
+import io.crate.analyze.Analysis;
+import io.crate.analyze.Analyzer;
+import io.crate.analyze.SelectAnalysis;
+import io.crate.planner.DataTypeVisitor;
+import io.crate.planner.symbol.Symbol;
+import io.crate.sql.parser.SqlParser;
+import io.crate.sql.tree.Statement;
+import io.crate.types.DataType;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.support.TransportAction;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.BaseTransportRequestHandler;
+import org.elasticsearch.transport.TransportChannel;
+import org.elasticsearch.transport.TransportService;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Parses and analyzes a statement and adds it to the {@link io.crate.action.sql.SQLPreparedStatements}
+ * of the node receiving the request.
+ */
+public class TransportSQLPrepareAction extends TransportAction<SQLPrepareRequest, SQLPrepareResponse> {
+
+    private final ClusterService clusterService;
+    private final Analyzer analyzer;
+    private final SQLPreparedStatements preparedStatements;
+    private final TransportSQLAction transportSQLAction;
+
+    @Inject
+    public TransportSQLPrepareAction(Settings settings,
+                                     ThreadPool threadPool,
+                                     TransportService transportService,
+                                     ClusterService clusterService,
+                                     Analyzer analyzer,
+                                     SQLPreparedStatements preparedStatements,
+                                     TransportSQLAction transportSQLAction) {
+        super(settings, SQLPrepareAction.NAME, threadPool);
+        this.clusterService = clusterService;
+        this.analyzer = analyzer;
+        this.preparedStatements = preparedStatements;
+        this.transportSQLAction = transportSQLAction;
+        transportService.registerHandler(SQLPrepareAction.NAME, new TransportHandler());
+    }
+
+    @Override
+    protected void doExecute(SQLPrepareRequest request, ActionListener<SQLPrepareResponse> listener) {
+        logger.debug("{}", request);
+        SQLPrepareResponse response;
+        try {
+            long clusterStateVersion = clusterService.state().version();
+            Statement statement = SqlParser.createStatement(request.stmt());
+            Analysis analysis;
+            // only an analysis with arguments for all parameters records their types
+            // and can be bound to the arguments of the first execution
+            boolean bound = true;
+            try {
+                analysis = analyzer.analyze(statement, request.args(), SQLBulkRequest.EMPTY_BULK_ARGS);
+            } catch (Exception e) {
+                if (!isMissingArgument(e)) {
+                    throw e;
+                }
+                analysis = analyzeUnbound(statement, request.args());
+                bound = false;
+            }
+            String[] outputNames = null;
+            DataType[] outputTypes = null;
+            if (analysis != null) {
+                outputNames = analysis.outputNames().toArray(new String[analysis.outputNames().size()]);
+                outputTypes = outputTypes(analysis);
+            }
+            String handle = preparedStatements.add(new SQLPreparedStatements.PreparedStatement(
+                    request.stmt(), statement, clusterStateVersion, bound ? analysis : null, outputNames, outputTypes));
+            response = new SQLPrepareResponse(handle, outputNames, outputTypes);
+        } catch (Exception e) {
+            logger.debug("Error preparing statement", e);
+            listener.onFailure(transportSQLAction.buildSQLActionException(e));
+            return;
+        }
+        listener.onResponse(response);
+    }
+
+    /**
+     * analyzes a statement with parameters which have no example arguments as if their arguments were null,
+     * which doesn't change the outputs of the statement. The analysis is only used to describe the outputs.
+     *
+     * @return null if the statement can't be analyzed without its arguments, e.g. because they are
+     *         the query term of a match predicate or the value of a primary key, in which case its outputs
+     *         are only known once it is executed
+     */
+    @Nullable
+    private Analysis analyzeUnbound(Statement statement, Object[] args) {
+        try {
+            return analyzer.analyzeUnbound(statement, args);
+        } catch (Exception e) {
+            logger.trace("Statement can't be described without its arguments", e);
+            return null;
+        }
+    }
+
+    private static DataType[] outputTypes(Analysis analysis) {
+        if (!(analysis instanceof SelectAnalysis)) {
+            return new DataType[0];
+        }
+        List<Symbol> outputSymbols = ((AbstractDataAnalysis) analysis).outputSymbols();
+        DataType[] types = new DataType[outputSymbols.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = DataTypeVisitor.fromSymbol(outputSymbols.get(i));
+        }
+        return types;
+    }
+
+    /**
+     * the analyzer fails with an {@link ArrayIndexOutOfBoundsException} (which might be wrapped)
+     * if a parameter of the statement isn't contained in the arguments.
+     */
+    private static boolean isMissingArgument(Throwable e) {
+        return e instanceof ArrayIndexOutOfBoundsException
+                || (e instanceof IllegalArgumentException && e.getCause() instanceof ArrayIndexOutOfBoundsException);
+    }
+
+    private class TransportHandler extends BaseTransportRequestHandler<SQLPrepareRequest> {
+
+        @Override
+        public SQLPrepareRequest newInstance() {
+            return new SQLPrepareRequest();
+        }
+
+        @Override
+        public void messageReceived(SQLPrepareRequest request, final TransportChannel channel) throws Exception {
+            // no need for a threaded listener
+            request.listenerThreaded(false);
+            execute(request, new ActionListener<SQLPrepareResponse>() {
+                @Override
+                public void onResponse(SQLPrepareResponse result) {
+                    try {
+                        channel.sendResponse(result);
+                    } catch (Throwable e) {
+                        onFailure(e);
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    try {
+                        channel.sendResponse(e);
+                    } catch (Exception e1) {
+                        logger.error("Failed to send response for sql prepare request", e1);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public String executor() {
+            return ThreadPool.Names.SAME;
+        }
+    }
+}
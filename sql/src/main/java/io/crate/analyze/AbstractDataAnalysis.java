@@ -343,10 +343,7 @@ public abstract class AbstractDataAnalysis extends Analysis {
         try {
             // resolve parameter to literal
             if (parameterOrLiteral.symbolType() == SymbolType.PARAMETER) {
-                normalized = Literal.newLiteral(
-                        reference.info().type(),
-                        reference.info().type().value(((Parameter) parameterOrLiteral).value())
-                );
+                normalized = ((Parameter) parameterOrLiteral).toLiteral(reference.info().type());
             } else {
                 try {
                     normalized = (Literal) parameterOrLiteral;
@@ -406,7 +403,7 @@ public abstract class AbstractDataAnalysis extends Analysis {
         Literal normalized;
         Symbol processed = normalizer.process(inputValue, null);
         if (processed instanceof Parameter) {
-            normalized = Literal.newLiteral(dataType, dataType.value(((Parameter) processed).value()));
+            normalized = ((Parameter) processed).toLiteral(dataType);
         } else {
             try {
                 normalized = (Literal)processed;
@@ -30,6 +30,9 @@ import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 import org.elasticsearch.common.inject.Inject;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 
 public class Analyzer {
@@ -54,7 +57,20 @@ public class Analyzer {
     }
 
     public Analysis analyze(Statement statement, Object[] parameters, Object[][] bulkParams) {
-        Context ctx = new Context(parameters, bulkParams);
+        return analyze(statement, new Context(new ParameterContext(parameters, bulkParams)));
+    }
+
+    /**
+     * analyzes a statement whose arguments aren't known yet, e.g. to describe the outputs of a prepared statement.
+     * Parameters without an argument resolve to null.
+     */
+    public Analysis analyzeUnbound(Statement statement, Object[] parameters) {
+        ParameterContext parameterContext = new ParameterContext(parameters, EMPTY_BULK_ARGS);
+        parameterContext.unbound = true;
+        return analyze(statement, new Context(parameterContext));
+    }
+
+    private Analysis analyze(Statement statement, Context ctx) {
         AbstractStatementAnalyzer statementAnalyzer = dispatcher.process(statement, ctx);
         assert ctx.analysis != null;
 
@@ -69,6 +85,11 @@ public class Analyzer {
         DataType[] bulkTypes;
 
         private int currentIdx = 0;
+        private boolean unbound = false;
+        private boolean parametersRead = false;
+        private boolean unboundParameterResolved = false;
+        private final List<Parameter> parameterSymbols = new ArrayList<>();
+        private final List<Integer> parameterIndices = new ArrayList<>();
 
         public ParameterContext(Object[] parameters, Object[][] bulkParameters) {
             this.parameters = parameters;
@@ -130,9 +151,29 @@ public class Analyzer {
             if (hasBulkParams()) {
                 return bulkParameters[currentIdx];
             }
+            parametersRead = true;
             return parameters;
         }
 
+        /**
+         * the parameter symbols of the statement, used to execute its plan with other arguments.
+         * Has to be called once the statement has been planned.
+         *
+         * @return null if the analysis or the plan depend on the values of the arguments
+         */
+        @Nullable
+        public ParameterBindings bindings() {
+            if (hasBulkParams() || parametersRead || unboundParameterResolved) {
+                return null;
+            }
+            for (Parameter parameter : parameterSymbols) {
+                if (!parameter.isBindable()) {
+                    return null;
+                }
+            }
+            return new ParameterBindings(parameters, parameterSymbols, parameterIndices);
+        }
+
         public Symbol getAsSymbol(int index) {
             try {
                 if (hasBulkParams()) {
@@ -140,7 +181,17 @@ public class Analyzer {
                     return io.crate.planner.symbol.Literal.newLiteral(
                             bulkTypes[index], bulkParameters[currentIdx][index]);
                 }
-                return new Parameter(parameters[index]);
+                Object value;
+                if (unbound && index >= parameters.length) {
+                    unboundParameterResolved = true;
+                    value = null;
+                } else {
+                    value = parameters[index];
+                }
+                Parameter parameter = new Parameter(value);
+                parameterSymbols.add(parameter);
+                parameterIndices.add(index);
+                return parameter;
             } catch (ArrayIndexOutOfBoundsException e) {
                 throw new IllegalArgumentException(String.format(Locale.ENGLISH,
                         "Tried to resolve a parameter but the arguments provided with the " +
@@ -153,8 +204,8 @@ public class Analyzer {
         final ParameterContext parameterCtx;
         Analysis analysis;
 
-        private Context(Object[] parameters, Object[][] bulkParams) {
-            this.parameterCtx = new ParameterContext(parameters, bulkParams);
+        private Context(ParameterContext parameterCtx) {
+            this.parameterCtx = parameterCtx;
         }
     }
 
@@ -29,6 +29,7 @@ import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.common.settings.Settings;
 
 import javax.annotation.Nullable;
+import java.util.List;
 
 public class CopyAnalysis extends AbstractDataAnalysis {
 
@@ -43,6 +44,9 @@ public class CopyAnalysis extends AbstractDataAnalysis {
     private Mode mode;
     private boolean directoryUri;
     private String partitionIdent = null;
+    private List<Symbol> sortSymbols;
+    private boolean[] reverseFlags;
+    private Boolean[] nullsFirst;
 
     public CopyAnalysis(ReferenceInfos referenceInfos,
                         Functions functions,
@@ -92,6 +96,38 @@ public class CopyAnalysis extends AbstractDataAnalysis {
         return settings;
     }
 
+    public void sortSymbols(List<Symbol> sortSymbols) {
+        this.sortSymbols = sortSymbols;
+    }
+
+    /**
+     * the symbols the rows of every exported file are sorted by
+     */
+    @Nullable
+    public List<Symbol> sortSymbols() {
+        return sortSymbols;
+    }
+
+    public boolean isSorted() {
+        return sortSymbols != null && sortSymbols.size() > 0;
+    }
+
+    public void reverseFlags(boolean[] reverseFlags) {
+        this.reverseFlags = reverseFlags;
+    }
+
+    public boolean[] reverseFlags() {
+        return reverseFlags;
+    }
+
+    public void nullsFirst(Boolean[] nullsFirst) {
+        this.nullsFirst = nullsFirst;
+    }
+
+    public Boolean[] nullsFirst() {
+        return nullsFirst;
+    }
+
     @Override
     public <C, R> R accept(AnalysisVisitor<C, R> analysisVisitor, C context) {
         return analysisVisitor.visitCopyAnalysis(this, context);
@@ -35,6 +35,8 @@ import java.util.Map;
 
 public class CopyStatementAnalyzer extends DataStatementAnalyzer<CopyAnalysis> {
 
+    private final static SelectStatementAnalyzer.SortSymbolValidator sortSymbolValidator =
+            new SelectStatementAnalyzer.SortSymbolValidator();
 
     @Override
     public Symbol visitCopyFromStatement(CopyFromStatement node, CopyAnalysis context) {
@@ -78,9 +80,45 @@ public class CopyStatementAnalyzer extends DataStatementAnalyzer<CopyAnalysis> {
             columns.add(process(expression, context));
         }
         context.outputSymbols(columns);
+
+        if (!node.orderBy().isEmpty()) {
+            addSorting(node.orderBy(), context);
+        }
         return null;
     }
 
+    private void addSorting(List<SortItem> orderBy, CopyAnalysis context) {
+        List<Symbol> sortSymbols = new ArrayList<>(orderBy.size());
+        context.reverseFlags(new boolean[orderBy.size()]);
+        context.nullsFirst(new Boolean[orderBy.size()]);
+
+        int i = 0;
+        for (SortItem sortItem : orderBy) {
+            sortSymbols.add(process(sortItem, context));
+            switch (sortItem.getNullOrdering()) {
+                case FIRST:
+                    context.nullsFirst()[i] = true;
+                    break;
+                case LAST:
+                    context.nullsFirst()[i] = false;
+                    break;
+                case UNDEFINED:
+                    context.nullsFirst()[i] = null;
+                    break;
+            }
+            context.reverseFlags()[i] = sortItem.getOrdering() == SortItem.Ordering.DESCENDING;
+            i++;
+        }
+        context.sortSymbols(sortSymbols);
+    }
+
+    @Override
+    protected Symbol visitSortItem(SortItem node, CopyAnalysis context) {
+        Symbol sortSymbol = super.visitSortItem(node, context);
+        sortSymbolValidator.process(sortSymbol, new SelectStatementAnalyzer.SortSymbolValidator.SortContext(context.table()));
+        return sortSymbol;
+    }
+
     private Settings settingsFromProperties(GenericProperties properties, CopyAnalysis context) {
         ImmutableSettings.Builder builder = ImmutableSettings.builder();
         for (Map.Entry<String, Expression> entry : properties.properties().entrySet()) {
@@ -0,0 +1,87 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.analyze;
+
+import io.crate.planner.symbol.Parameter;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+
+import java.util.List;
+
+/**
+ * The parameter symbols of an analyzed statement whose analysis and plan don't depend on the
+ * values of its arguments. The plan can be executed with other arguments of the same types
+ * by binding them to the parameters, which changes the literals the parameters resolved to.
+ */
+public class ParameterBindings {
+
+    private final DataType[] argumentTypes;
+    private final Parameter[] parameters;
+    private final int[] indices;
+
+    ParameterBindings(Object[] arguments, List<Parameter> parameters, List<Integer> indices) {
+        assert parameters.size() == indices.size();
+        this.argumentTypes = new DataType[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            argumentTypes[i] = guessType(arguments[i]);
+        }
+        this.parameters = parameters.toArray(new Parameter[parameters.size()]);
+        this.indices = new int[indices.size()];
+        for (int i = 0; i < this.indices.length; i++) {
+            this.indices[i] = indices.get(i);
+        }
+    }
+
+    /**
+     * @return true if the arguments are of the same types as the ones the statement has been analyzed with
+     */
+    public boolean matches(Object[] arguments) {
+        if (arguments.length != argumentTypes.length) {
+            return false;
+        }
+        for (int i = 0; i < arguments.length; i++) {
+            if (argumentTypes[i] == null || !argumentTypes[i].equals(guessType(arguments[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * binds the arguments to the parameters, they have to match, see {@link #matches(Object[])}
+     */
+    public void bind(Object[] arguments) {
+        assert matches(arguments) : "arguments must be of the same types";
+        for (int i = 0; i < parameters.length; i++) {
+            parameters[i].bind(arguments[indices[i]]);
+        }
+    }
+
+    private static DataType guessType(Object argument) {
+        try {
+            return DataTypes.guessType(argument, false);
+        } catch (IllegalArgumentException e) {
+            // e.g. mixed types in a list
+            return null;
+        }
+    }
+}
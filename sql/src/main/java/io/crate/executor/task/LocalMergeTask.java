@@ -36,6 +36,7 @@ import io.crate.executor.transport.TransportActionProvider;
 import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.collect.StatsTables;
 import io.crate.operation.merge.MergeOperation;
+import io.crate.operation.projectors.GroupingMemoryAccounting;
 import io.crate.planner.node.dql.MergeNode;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.common.logging.ESLogger;
@@ -61,6 +62,7 @@ public class LocalMergeTask implements Task<TaskResult> {
     private final StatsTables statsTables;
     private final ClusterService clusterService;
     private final Settings settings;
+    private final GroupingMemoryAccounting groupingMemoryAccounting;
     private final TransportActionProvider transportActionProvider;
     private final ImplementationSymbolVisitor symbolVisitor;
     private final ThreadPool threadPool;
@@ -76,6 +78,7 @@ public class LocalMergeTask implements Task<TaskResult> {
     public LocalMergeTask(ThreadPool threadPool,
                           ClusterService clusterService,
                           Settings settings,
+                          GroupingMemoryAccounting groupingMemoryAccounting,
                           TransportActionProvider transportActionProvider,
                           ImplementationSymbolVisitor implementationSymbolVisitor,
                           MergeNode mergeNode,
@@ -83,6 +86,7 @@ public class LocalMergeTask implements Task<TaskResult> {
         this.threadPool = threadPool;
         this.clusterService = clusterService;
         this.settings = settings;
+        this.groupingMemoryAccounting = groupingMemoryAccounting;
         this.transportActionProvider = transportActionProvider;
         this.symbolVisitor = implementationSymbolVisitor;
         this.mergeNode = mergeNode;
@@ -105,7 +109,7 @@ public class LocalMergeTask implements Task<TaskResult> {
         }
 
         final MergeOperation mergeOperation = new MergeOperation(
-                clusterService, settings, transportActionProvider, symbolVisitor, mergeNode);
+                clusterService, settings, groupingMemoryAccounting, transportActionProvider, symbolVisitor, mergeNode);
         final AtomicInteger countdown = new AtomicInteger(upstreamResults.size());
         final UUID operationId = UUID.randomUUID();
         statsTables.operationStarted(operationId, mergeNode.contextId(), mergeNode.id());
@@ -34,7 +34,9 @@ import org.elasticsearch.action.deletebyquery.TransportDeleteByQueryAction;
 import org.elasticsearch.action.get.TransportGetAction;
 import org.elasticsearch.action.get.TransportMultiGetAction;
 import org.elasticsearch.action.index.TransportIndexAction;
+import org.elasticsearch.action.search.TransportClearScrollAction;
 import org.elasticsearch.action.search.TransportSearchAction;
+import org.elasticsearch.action.search.TransportSearchScrollAction;
 import org.elasticsearch.action.update.TransportUpdateAction;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Provider;
@@ -58,6 +60,8 @@ public class TransportActionProvider {
     private final Provider<TransportMultiGetAction> transportMultiGetActionProvider;
     private final Provider<TransportIndexAction> transportIndexActionProvider;
     private final Provider<TransportSearchAction> transportSearchActionProvider;
+    private final Provider<TransportSearchScrollAction> transportSearchScrollActionProvider;
+    private final Provider<TransportClearScrollAction> transportClearScrollActionProvider;
     private final Provider<TransportUpdateAction> transportUpdateActionProvider;
 
     @Inject
@@ -76,6 +80,8 @@ public class TransportActionProvider {
                                    Provider<TransportMultiGetAction> transportMultiGetActionProvider,
                                    Provider<TransportIndexAction> transportIndexActionProvider,
                                    Provider<TransportSearchAction> transportSearchActionProvider,
+                                   Provider<TransportSearchScrollAction> transportSearchScrollActionProvider,
+                                   Provider<TransportClearScrollAction> transportClearScrollActionProvider,
                                    Provider<TransportUpdateAction> transportUpdateActionProvider) {
         this.transportCreateIndexActionProvider = transportCreateIndexActionProvider;
         this.transportDeleleteIndexActionProvider = transportDeleleteIndexActionProvider;
@@ -89,6 +95,8 @@ public class TransportActionProvider {
         this.transportMultiGetActionProvider = transportMultiGetActionProvider;
         this.transportIndexActionProvider = transportIndexActionProvider;
         this.transportSearchActionProvider = transportSearchActionProvider;
+        this.transportSearchScrollActionProvider = transportSearchScrollActionProvider;
+        this.transportClearScrollActionProvider = transportClearScrollActionProvider;
         this.transportUpdateActionProvider = transportUpdateActionProvider;
         this.transportShardBulkActionProvider = transportShardBulkActionProvider;
         this.transportCollectNodeActionProvider = transportCollectNodeActionProvider;
@@ -144,6 +152,14 @@ public class TransportActionProvider {
         return transportSearchActionProvider.get();
     }
 
+    public TransportSearchScrollAction transportSearchScrollAction() {
+        return transportSearchScrollActionProvider.get();
+    }
+
+    public TransportClearScrollAction transportClearScrollAction() {
+        return transportClearScrollActionProvider.get();
+    }
+
     public TransportUpdateAction transportUpdateAction() {
         return transportUpdateActionProvider.get();
     }
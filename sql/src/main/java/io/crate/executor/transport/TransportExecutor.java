@@ -38,6 +38,7 @@ import io.crate.metadata.ReferenceResolver;
 import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.collect.HandlerSideDataCollectOperation;
 import io.crate.operation.collect.StatsTables;
+import io.crate.operation.projectors.GroupingMemoryAccounting;
 import io.crate.planner.Plan;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.node.PlanNode;
@@ -64,6 +65,7 @@ public class TransportExecutor implements Executor {
     private final ThreadPool threadPool;
 
     private final Settings settings;
+    private final GroupingMemoryAccounting groupingMemoryAccounting;
     private final ClusterService clusterService;
     private final TransportActionProvider transportActionProvider;
 
@@ -72,6 +74,7 @@ public class TransportExecutor implements Executor {
 
     @Inject
     public TransportExecutor(Settings settings,
+                             GroupingMemoryAccounting groupingMemoryAccounting,
                              TransportActionProvider transportActionProvider,
                              ThreadPool threadPool,
                              Functions functions,
@@ -80,6 +83,7 @@ public class TransportExecutor implements Executor {
                              StatsTables statsTables,
                              ClusterService clusterService) {
         this.settings = settings;
+        this.groupingMemoryAccounting = groupingMemoryAccounting;
         this.transportActionProvider = transportActionProvider;
         this.handlerSideDataCollectOperation = handlerSideDataCollectOperation;
         this.threadPool = threadPool;
@@ -142,6 +146,7 @@ public class TransportExecutor implements Executor {
                         threadPool,
                         clusterService,
                         settings,
+                        groupingMemoryAccounting,
                         transportActionProvider,
                         new ImplementationSymbolVisitor(referenceResolver, functions, RowGranularity.CLUSTER),
                         node,
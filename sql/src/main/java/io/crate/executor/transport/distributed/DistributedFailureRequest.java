@@ -25,27 +25,43 @@ import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.transport.TransportRequest;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.UUID;
 
 public class DistributedFailureRequest extends TransportRequest {
 
     private UUID contextId;
+    private String upstreamId = null;
 
     public DistributedFailureRequest(UUID contextId) {
         this.contextId = contextId;
     }
 
+    /**
+     * @param upstreamId the upstream which failed, see {@link DistributedResultRequest#upstreamId()}
+     */
+    public DistributedFailureRequest(UUID contextId, @Nullable String upstreamId) {
+        this.contextId = contextId;
+        this.upstreamId = upstreamId;
+    }
+
     public DistributedFailureRequest() {}
 
     public UUID contextId() {
         return contextId;
     }
 
+    @Nullable
+    public String upstreamId() {
+        return upstreamId;
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         super.readFrom(in);
         contextId = new UUID(in.readLong(), in.readLong());
+        upstreamId = in.readOptionalString();
     }
 
     @Override
@@ -53,5 +69,6 @@ public class DistributedFailureRequest extends TransportRequest {
         super.writeTo(out);
         out.writeLong(contextId.getMostSignificantBits());
         out.writeLong(contextId.getLeastSignificantBits());
+        out.writeOptionalString(upstreamId);
     }
 }
@@ -38,11 +38,18 @@ import org.elasticsearch.common.io.stream.BytesStreamInput;
 import org.elasticsearch.common.io.stream.HandlesStreamInput;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -57,26 +64,97 @@ import java.util.*;
  *
  * this class is also responsible for this lazy-de-serialization.
  *
+ * the bytes buffered per context are limited to <code>maxBufferedBytesPerContext</code>,
+ * this includes the requests buffered until the context is created and the requests
+ * which wait until they can be merged into an existing context.
+ * requests exceeding it are rejected with an {@link EsRejectedExecutionException}
+ * so that the collector can retry them later.
+ *
+ * the contexts are kept in a concurrent map, each {@link ContextEntry} is a small state machine
+ * which is only locked by requests of its own context.
+ * the ids of closed contexts are remembered for <code>closedContextKeepAliveMs</code> so that
+ * retried or late requests of a finished merge are dropped instead of buffered forever.
+ *
  * the merge itself is done inside {@link DownstreamOperationContext}
  */
 public class DistributedRequestContextManager {
 
+    public static final String BUFFER_SIZE_SETTING = "distributed_merge.context_buffer_size";
+    public static final ByteSizeValue BUFFER_SIZE_DEFAULT = new ByteSizeValue(20, ByteSizeUnit.MB);
+
+    /**
+     * how long the id of a closed context is remembered, must exceed the time a collector retries a request
+     */
+    public static final TimeValue CLOSED_CONTEXT_KEEP_ALIVE = TimeValue.timeValueMinutes(1);
+
     private final ESLogger logger = Loggers.getLogger(getClass());
 
-    private final Map<UUID, DownstreamOperationContext> activeMergeOperations = new HashMap<>();
-    private final Map<UUID, List<BytesReference>> unreadStreams = new HashMap<>();
-    private final Set<UUID> unreadFailures = new HashSet<>();
-    private final Object lock = new Object();
+    private final ConcurrentMap<UUID, ContextEntry> contexts = new ConcurrentHashMap<>();
+    /**
+     * the ids of closed contexts with the time they were closed
+     */
+    private final ConcurrentMap<UUID, Long> closedContexts = new ConcurrentHashMap<>();
+    private final AtomicLong rejectedRequests = new AtomicLong();
     private final DownstreamOperationFactory downstreamOperationFactory;
     private final PlanNodeStreamerVisitor planNodeStreamerVisitor;
     private final StatsTables statsTables;
+    private final long maxBufferedBytesPerContext;
+    private final long closedContextKeepAliveMs;
+
+    private enum State {
+        /**
+         * requests arrived before the context was created, they are buffered
+         */
+        BUFFERING,
+        /**
+         * the context has been created, requests are merged directly
+         */
+        ACTIVE,
+        /**
+         * the merge finished, the entry has been removed
+         */
+        CLOSED
+    }
+
+    private static class ContextEntry {
+        private State state = State.BUFFERING;
+        private volatile DownstreamOperationContext operationContext;
+        private List<DistributedResultRequest> unreadRequests = new ArrayList<>();
+        private List<String> unreadFailures = new ArrayList<>();
+        private long bufferedBytes = 0L;
+    }
 
     public DistributedRequestContextManager(DownstreamOperationFactory downstreamOperationFactory,
                                             Functions functions,
                                             StatsTables statsTables) {
+        this(downstreamOperationFactory, functions, statsTables, BUFFER_SIZE_DEFAULT.bytes());
+    }
+
+    /**
+     * @param maxBufferedBytesPerContext max. number of bytes of requests which are buffered
+     *                                   until their context is created
+     */
+    public DistributedRequestContextManager(DownstreamOperationFactory downstreamOperationFactory,
+                                            Functions functions,
+                                            StatsTables statsTables,
+                                            long maxBufferedBytesPerContext) {
+        this(downstreamOperationFactory, functions, statsTables, maxBufferedBytesPerContext,
+                CLOSED_CONTEXT_KEEP_ALIVE.millis());
+    }
+
+    /**
+     * @param closedContextKeepAliveMs time the id of a closed context is remembered to drop late requests
+     */
+    public DistributedRequestContextManager(DownstreamOperationFactory downstreamOperationFactory,
+                                            Functions functions,
+                                            StatsTables statsTables,
+                                            long maxBufferedBytesPerContext,
+                                            long closedContextKeepAliveMs) {
         this.downstreamOperationFactory = downstreamOperationFactory;
         this.statsTables = statsTables;
         this.planNodeStreamerVisitor = new PlanNodeStreamerVisitor(functions);
+        this.maxBufferedBytesPerContext = maxBufferedBytesPerContext;
+        this.closedContextKeepAliveMs = closedContextKeepAliveMs;
     }
 
     /**
@@ -101,7 +179,7 @@ public class DistributedRequestContextManager {
                     @Override
                     public void finished() {
                         logger.trace("DoneCallback.finished: {} {}", mergeNode.contextId());
-                        activeMergeOperations.remove(mergeNode.contextId());
+                        close(mergeNode.contextId());
                         statsTables.operationFinished(operationId, null);
                     }
                 }
@@ -115,11 +193,13 @@ public class DistributedRequestContextManager {
      * use to retrieve the streamers to read the incoming rows
      */
     public Optional<Streamer<?>[]> getStreamer(UUID contextId) {
-        DownstreamOperationContext downstreamOperationContext = activeMergeOperations.get(contextId);
-        if (downstreamOperationContext != null) {
-            return Optional.of(downstreamOperationContext.streamers());
+        ContextEntry entry = contexts.get(contextId);
+        if (entry != null) {
+            DownstreamOperationContext downstreamOperationContext = entry.operationContext;
+            if (downstreamOperationContext != null) {
+                return Optional.of(downstreamOperationContext.streamers());
+            }
         }
-
         return Optional.absent();
     }
 
@@ -128,51 +208,101 @@ public class DistributedRequestContextManager {
      */
     public void addToContext(DistributedResultRequest request) throws Exception {
         logger.trace("addToContext: hasrows: {}", request.rowsRead());
-        DownstreamOperationContext operationContext;
         if (request.rowsRead()) {
-            operationContext = activeMergeOperations.get(request.contextId());
-            assert operationContext != null;
+            // the context existed when the rows were read but it might have been closed in the meantime
+            ContextEntry entry = contexts.get(request.contextId());
+            if (entry == null) {
+                logger.trace("addToContext: context {} already closed", request.contextId());
+                return;
+            }
+            DownstreamOperationContext operationContext = entry.operationContext;
             logger.trace("addToContext rowsRead: {}", operationContext);
             if (request.failure()) {
-                operationContext.addFailure(null);
+                operationContext.addFailure(request.upstreamId(), null);
             } else {
-                operationContext.add(request.rows());
+                long bytes = request.estimatedSizeInBytes();
+                synchronized (entry) {
+                    if (entry.state != State.ACTIVE) {
+                        logger.trace("addToContext: context {} already closed", request.contextId());
+                        return;
+                    }
+                    reserveBufferedBytes(entry, request.contextId(), bytes);
+                }
+                try {
+                    operationContext.add(request.upstreamId(), request.page(), request.isLast(), request.rows());
+                } finally {
+                    releaseBufferedBytes(entry, bytes);
+                }
             }
             logger.trace("addToContext rowsRead succes");
             return;
         }
-        synchronized (lock) {
-            operationContext = activeMergeOperations.get(request.contextId());
+
+        ContextEntry entry = entry(request.contextId());
+        if (entry == null) {
+            logger.trace("addToContext: context {} already closed", request.contextId());
+            return;
+        }
+        DownstreamOperationContext operationContext;
+        long bytes = request.estimatedSizeInBytes();
+        synchronized (entry) {
+            operationContext = entry.operationContext;
             logger.trace("addToContext: norows: operationContext: {} {} {}", this, request.contextId(), operationContext);
-            if (operationContext == null) {
+            if (entry.state == State.BUFFERING) {
                 logger.trace("addToContext: without context norows failure: {}", request.failure());
-                assert !request.rowsRead();
                 if (request.failure()) {
-                    unreadFailures.add(request.contextId());
+                    entry.unreadFailures.add(request.upstreamId());
                     logger.error("adding unread failure from distributed result for context: ", request.contextId());
                 } else {
                     assert request.memoryStream() != null;
-                    List<BytesReference> bytesStreamOutputs = unreadStreams.get(request.contextId());
-                    if (bytesStreamOutputs == null) {
-                        bytesStreamOutputs = new ArrayList<>();
-                        unreadStreams.put(request.contextId(), bytesStreamOutputs);
-                    }
-                    bytesStreamOutputs.add(request.memoryStream().bytes());
-                }
-            } else {
-                logger.trace("addToContext: with context norows failure: {}", request.failure());
-                if (request.failure()) {
-                    operationContext.addFailure(null);
-                    logger.error("addToContext: failure in distributed result");
-                    return;
+                    reserveBufferedBytes(entry, request.contextId(), bytes);
+                    entry.unreadRequests.add(request);
                 }
-                logger.trace("addToContext: using memory stream: ", request.memoryStream());
-                addFromBytesReference(request.memoryStream().bytes(), operationContext);
+                return;
+            } else if (entry.state == State.CLOSED) {
+                logger.trace("addToContext: context {} already closed", request.contextId());
+                return;
             }
+            if (!request.failure()) {
+                reserveBufferedBytes(entry, request.contextId(), bytes);
+            }
+        }
+        logger.trace("addToContext: with context norows failure: {}", request.failure());
+        if (request.failure()) {
+            operationContext.addFailure(request.upstreamId(), null);
+            logger.error("addToContext: failure in distributed result");
+            return;
+        }
+        logger.trace("addToContext: using memory stream: ", request.memoryStream());
+        try {
+            addFromMemoryStream(request, operationContext);
+        } finally {
+            releaseBufferedBytes(entry, bytes);
         }
         logger.trace("addToContext: finished");
     }
 
+    /**
+     * @return the entry of the context, a new buffering entry is created if it doesn't exist yet.
+     *         null if the context has been closed already.
+     */
+    @Nullable
+    private ContextEntry entry(UUID contextId) {
+        ContextEntry entry = contexts.get(contextId);
+        if (entry == null) {
+            // closed contexts are remembered before their entry is removed
+            if (closedContexts.containsKey(contextId)) {
+                return null;
+            }
+            entry = new ContextEntry();
+            ContextEntry existing = contexts.putIfAbsent(contextId, entry);
+            if (existing != null) {
+                entry = existing;
+            }
+        }
+        return entry;
+    }
+
     private SettableFuture<Object[][]> wrapActionListener(final Streamer<?>[] streamers,
                                                           final ActionListener<NodeMergeResponse> listener) {
         SettableFuture<Object[][]> settableFuture = SettableFuture.create();
@@ -191,49 +321,168 @@ public class DistributedRequestContextManager {
     }
 
     private void put(UUID contextId, DownstreamOperationContext downstreamOperationContext) {
-        List<BytesReference> bytesReferences;
-        synchronized (lock) {
+        List<DistributedResultRequest> requests;
+        List<String> failedUpstreams;
+        ContextEntry entry = entry(contextId);
+        assert entry != null : "context " + contextId + " created after it was closed";
+        synchronized (entry) {
             logger.trace("put: {} {}", contextId, downstreamOperationContext);
-            activeMergeOperations.put(contextId, downstreamOperationContext);
-            bytesReferences = unreadStreams.remove(contextId);
-            if (unreadFailures.contains(contextId)) {
-                unreadFailures.remove(contextId);
-                downstreamOperationContext.addFailure(null);
+            assert entry.state == State.BUFFERING : "context " + contextId + " created twice";
+            entry.operationContext = downstreamOperationContext;
+            entry.state = State.ACTIVE;
+            requests = entry.unreadRequests;
+            failedUpstreams = entry.unreadFailures;
+            entry.unreadRequests = null;
+            entry.unreadFailures = null;
+            entry.bufferedBytes = 0L;
+        }
+        for (String upstreamId : failedUpstreams) {
+            downstreamOperationContext.addFailure(upstreamId, null);
+        }
+        for (DistributedResultRequest request : requests) {
+            addFromMemoryStream(request, downstreamOperationContext);
+        }
+    }
+
+    private void close(UUID contextId) {
+        long now = System.currentTimeMillis();
+        expireClosedContexts(now);
+        closedContexts.put(contextId, now);
+        ContextEntry entry = contexts.remove(contextId);
+        if (entry != null) {
+            synchronized (entry) {
+                entry.state = State.CLOSED;
             }
         }
-        if (bytesReferences != null) {
-            for (BytesReference bytes : bytesReferences) {
-                addFromBytesReference(bytes, downstreamOperationContext);
+    }
+
+    /**
+     * forget the ids of contexts which have been closed longer than <code>closedContextKeepAliveMs</code>
+     */
+    private void expireClosedContexts(long now) {
+        Iterator<Map.Entry<UUID, Long>> it = closedContexts.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getValue() + closedContextKeepAliveMs < now) {
+                it.remove();
             }
         }
     }
 
-    private void addFromBytesReference(BytesReference bytesReference, DownstreamOperationContext ctx) {
+    private void addFromMemoryStream(DistributedResultRequest request, DownstreamOperationContext ctx) {
         // bytesReference must be wrapped into HandlesStreamInput because it has a different readString()
         // implementation than BytesStreamInput alone.
         // and the memoryOutputStream originates from a HandlesStreamOutput.
+        BytesReference bytesReference = request.memoryStream().bytes();
         HandlesStreamInput wrappedStream = new HandlesStreamInput(new BytesStreamInput(bytesReference));
         Object[][] rows = null;
         try {
             rows = DistributedResultRequest.readRemaining(ctx.streamers(), wrappedStream);
         } catch (IOException e) {
-            ctx.addFailure(e);
+            ctx.addFailure(request.upstreamId(), e);
             logger.error("unable to deserialize upstream result", e);
             return;
         }
         assert rows != null;
-        ctx.add(rows);
+        ctx.add(request.upstreamId(), request.page(), request.isLast(), rows);
     }
 
-    public void setFailure(UUID contextId) {
-        synchronized (lock) {
-            DownstreamOperationContext downstreamOperationContext = activeMergeOperations.get(contextId);
-            if (downstreamOperationContext == null) {
-                unreadFailures.add(contextId);
-            } else {
-                downstreamOperationContext.addFailure(null);
+    /**
+     * account for bytes which are buffered for a context, must be called while holding the lock of the entry
+     *
+     * @throws EsRejectedExecutionException if the buffer of the context would exceed its limit
+     */
+    private void reserveBufferedBytes(ContextEntry entry, UUID contextId, long bytes) {
+        long newBuffered = entry.bufferedBytes + bytes;
+        // a single request is always accepted so that the context can make progress
+        if (entry.bufferedBytes > 0 && newBuffered > maxBufferedBytesPerContext) {
+            rejectedRequests.incrementAndGet();
+            logger.debug("rejecting distributed result for context {}, {} bytes buffered already",
+                    contextId, entry.bufferedBytes);
+            throw new EsRejectedExecutionException(String.format(Locale.ENGLISH,
+                    "buffer for distributed results of context %s is full (%d bytes)", contextId, entry.bufferedBytes));
+        }
+        entry.bufferedBytes = newBuffered;
+    }
+
+    /**
+     * release the bytes of a request which has been merged into an active context
+     */
+    private void releaseBufferedBytes(ContextEntry entry, long bytes) {
+        synchronized (entry) {
+            if (entry.state == State.ACTIVE) {
+                entry.bufferedBytes -= bytes;
+            }
+        }
+    }
+
+    /**
+     * @return the number of bytes which are buffered because the context doesn't exist yet
+     * or because they wait to be merged
+     */
+    public long bufferedBytes(UUID contextId) {
+        ContextEntry entry = contexts.get(contextId);
+        if (entry == null) {
+            return 0L;
+        }
+        synchronized (entry) {
+            return entry.bufferedBytes;
+        }
+    }
+
+    /**
+     * @return the number of bytes which are buffered for all contexts
+     */
+    public long bufferedBytes() {
+        long sum = 0L;
+        for (ContextEntry entry : contexts.values()) {
+            synchronized (entry) {
+                sum += entry.bufferedBytes;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return the number of requests which have been rejected because a buffer was full
+     */
+    public long rejectedRequests() {
+        return rejectedRequests.get();
+    }
+
+    /**
+     * @return the number of contexts which are either active or buffering requests
+     */
+    public int numContexts() {
+        return contexts.size();
+    }
+
+    /**
+     * @return the number of closed contexts whose ids are still remembered
+     */
+    public int numClosedContexts() {
+        return closedContexts.size();
+    }
+
+    /**
+     * @param upstreamId the upstream which failed, null if the upstream doesn't send pages
+     */
+    public void setFailure(UUID contextId, @Nullable String upstreamId) {
+        ContextEntry entry = entry(contextId);
+        if (entry == null) {
+            logger.trace("setFailure: context {} already closed", contextId);
+            return;
+        }
+        DownstreamOperationContext downstreamOperationContext;
+        synchronized (entry) {
+            if (entry.state == State.BUFFERING) {
+                entry.unreadFailures.add(upstreamId);
+                return;
+            } else if (entry.state == State.CLOSED) {
+                return;
             }
+            downstreamOperationContext = entry.operationContext;
         }
+        downstreamOperationContext.addFailure(upstreamId, null);
     }
 
     public interface DoneCallback {
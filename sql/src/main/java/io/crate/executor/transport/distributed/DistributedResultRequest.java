@@ -23,23 +23,38 @@ package io.crate.executor.transport.distributed;
 
 import com.google.common.base.Optional;
 import io.crate.Streamer;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.elasticsearch.common.io.Streams;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.transport.TransportRequest;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.UUID;
 
 public class DistributedResultRequest extends TransportRequest {
 
+    private static final long BYTES_REF_SHALLOW_SIZE = RamUsageEstimator.shallowSizeOfInstance(BytesRef.class);
+    private static final long VALUE_SIZE = 16L;
+
     private DistributedRequestContextManager contextManager;
     private Streamer<?>[] streamers;
     private Object[][] rows;
     private UUID contextId;
     private BytesStreamOutput memoryStream;
 
+    /**
+     * upstreams which send their rows in multiple pages identify themselves,
+     * the receiver considers an upstream finished once it got all pages up to the last one.
+     * Without upstreamId the request contains all rows of an upstream.
+     */
+    private String upstreamId = null;
+    private int page = 0;
+    private boolean isLast = true;
+
     // TODO: change failure flag to string or enum so that the receiver can recreate the
     // exception and the error handling in the DistributedMergeTask can be simplified.
     private boolean failure = false;
@@ -53,10 +68,37 @@ public class DistributedResultRequest extends TransportRequest {
         this.streamers = streamers;
     }
 
+    /**
+     * a page of the rows of the given upstream
+     */
+    public DistributedResultRequest(UUID contextId,
+                                    Streamer<?>[] streamers,
+                                    String upstreamId,
+                                    int page,
+                                    boolean isLast) {
+        this(contextId, streamers);
+        this.upstreamId = upstreamId;
+        this.page = page;
+        this.isLast = isLast;
+    }
+
     public UUID contextId() {
         return contextId;
     }
 
+    @Nullable
+    public String upstreamId() {
+        return upstreamId;
+    }
+
+    public int page() {
+        return page;
+    }
+
+    public boolean isLast() {
+        return isLast;
+    }
+
     public BytesStreamOutput memoryStream() {
         return memoryStream;
     }
@@ -73,10 +115,39 @@ public class DistributedResultRequest extends TransportRequest {
         return memoryStream == null;
     }
 
+    /**
+     * @return the size of the buffered bytes if the rows haven't been read yet,
+     * otherwise a rough estimate of the memory used by the rows
+     */
+    public long estimatedSizeInBytes() {
+        if (memoryStream != null) {
+            return memoryStream.size();
+        }
+        if (rows == null) {
+            return 0L;
+        }
+        long size = RamUsageEstimator.NUM_BYTES_ARRAY_HEADER
+                + rows.length * RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+        for (Object[] row : rows) {
+            size += RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + row.length * RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+            for (Object value : row) {
+                if (value instanceof BytesRef) {
+                    size += BYTES_REF_SHALLOW_SIZE + RamUsageEstimator.sizeOf(((BytesRef) value).bytes);
+                } else if (value != null) {
+                    size += VALUE_SIZE;
+                }
+            }
+        }
+        return size;
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         super.readFrom(in);
         contextId = new UUID(in.readLong(), in.readLong());
+        upstreamId = in.readOptionalString();
+        page = in.readVInt();
+        isLast = in.readBoolean();
 
         if (in.readBoolean()) {
             failure= true;
@@ -119,6 +190,9 @@ public class DistributedResultRequest extends TransportRequest {
         super.writeTo(out);
         out.writeLong(contextId.getMostSignificantBits());
         out.writeLong(contextId.getLeastSignificantBits());
+        out.writeOptionalString(upstreamId);
+        out.writeVInt(page);
+        out.writeBoolean(isLast);
 
         if (failure) {
             out.writeBoolean(true);
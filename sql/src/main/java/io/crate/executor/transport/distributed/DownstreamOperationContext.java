@@ -31,6 +31,9 @@ import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 
 import javax.annotation.Nullable;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class DownstreamOperationContext {
@@ -44,6 +47,13 @@ public class DownstreamOperationContext {
     private final DistributedRequestContextManager.DoneCallback doneCallback;
     private boolean needsMoreRows = true;
     private final Object lock = new Object();
+    private final Map<String, UpstreamPages> upstreamPages = new HashMap<>();
+
+    private static class UpstreamPages {
+        private final BitSet received = new BitSet();
+        private int numPages = -1;
+        private boolean finished = false;
+    }
 
     public DownstreamOperationContext(DownstreamOperation downstreamOperation,
                                       final SettableFuture<Object[][]> listener,
@@ -69,6 +79,13 @@ public class DownstreamOperationContext {
     }
 
     public void addFailure(@Nullable Throwable failure) {
+        addFailure(null, failure);
+    }
+
+    /**
+     * @param upstreamId the upstream which failed, null if the upstream doesn't send pages
+     */
+    public void addFailure(@Nullable String upstreamId, @Nullable Throwable failure) {
         if (failure != null) {
             logger.error("addFailure local", failure);
         } else {
@@ -78,16 +95,31 @@ public class DownstreamOperationContext {
             boolean firstFailure = listener.setException(failure);
             logger.trace("addFailure first: {}", firstFailure);
         } finally {
-            if (mergeOperationsLeft.decrementAndGet() == 0) {
-                doneCallback.finished();
-                downstreamOperation.finished();
+            boolean upstreamFinished;
+            synchronized (lock) {
+                upstreamFinished = upstreamFinished(upstreamId, -1, true);
+            }
+            if (upstreamFinished) {
+                countDown();
             }
         }
     }
 
     public void add(Object[][] rows) {
+        add(null, 0, true, rows);
+    }
+
+    /**
+     * add a page of rows of an upstream
+     *
+     * @param upstreamId the upstream which sent the page, null if the upstream sends all its rows at once
+     * @param page the 0 based number of the page, pages may arrive in any order
+     * @param isLast true if this is the last page of the upstream
+     */
+    public void add(@Nullable String upstreamId, int page, boolean isLast, Object[][] rows) {
         assert rows != null;
-        logger.trace("add rows.size: {}", rows.length);
+        logger.trace("add rows.size: {} upstream: {} page: {} last: {}", rows.length, upstreamId, page, isLast);
+        boolean upstreamFinished;
         synchronized (lock) {
             if (needsMoreRows) {
                 try {
@@ -97,8 +129,46 @@ public class DownstreamOperationContext {
                     listener.setException(e);
                 }
             }
+            upstreamFinished = upstreamFinished(upstreamId, page, isLast);
+        }
+
+        if (upstreamFinished) {
+            countDown();
         }
+    }
+
+    /**
+     * track the pages received from an upstream, must be called while holding the lock
+     *
+     * @param page the received page or -1 if the upstream failed
+     * @return true if the upstream finished with this page, only returned once per upstream
+     */
+    private boolean upstreamFinished(@Nullable String upstreamId, int page, boolean isLast) {
+        if (upstreamId == null) {
+            return true;
+        }
+        UpstreamPages pages = upstreamPages.get(upstreamId);
+        if (pages == null) {
+            pages = new UpstreamPages();
+            upstreamPages.put(upstreamId, pages);
+        }
+        if (pages.finished) {
+            return false;
+        }
+        if (page < 0) {
+            pages.finished = true;
+            return true;
+        }
+        assert !pages.received.get(page) : "page " + page + " of upstream " + upstreamId + " received twice";
+        pages.received.set(page);
+        if (isLast) {
+            pages.numPages = page + 1;
+        }
+        pages.finished = pages.numPages == pages.received.cardinality();
+        return pages.finished;
+    }
 
+    private void countDown() {
         if (mergeOperationsLeft.decrementAndGet() == 0) {
             doneCallback.finished();
             downstreamOperation.finished();
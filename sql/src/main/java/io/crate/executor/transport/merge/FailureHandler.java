@@ -43,7 +43,7 @@ public class FailureHandler extends BaseTransportRequestHandler<DistributedFailu
 
     @Override
     public void messageReceived(DistributedFailureRequest request, TransportChannel channel) throws Exception {
-        contextManager.setFailure(request.contextId());
+        contextManager.setFailure(request.contextId(), request.upstreamId());
         channel.sendResponse(new DistributedResultResponse());
     }
 
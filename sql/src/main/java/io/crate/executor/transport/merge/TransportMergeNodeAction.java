@@ -34,6 +34,7 @@ import io.crate.operation.DownstreamOperationFactory;
 import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.collect.StatsTables;
 import io.crate.operation.merge.MergeOperation;
+import io.crate.operation.projectors.GroupingMemoryAccounting;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.node.PlanNodeStreamerVisitor;
 import io.crate.planner.node.dql.MergeNode;
@@ -66,6 +67,7 @@ public class TransportMergeNodeAction {
     @Inject
     public TransportMergeNodeAction(final ClusterService clusterService,
                                     final Settings settings,
+                                    final GroupingMemoryAccounting groupingMemoryAccounting,
                                     final TransportActionProvider transportActionProvider,
                                     TransportService transportService,
                                     ReferenceResolver referenceResolver,
@@ -87,18 +89,25 @@ public class TransportMergeNodeAction {
                 return new MergeOperation(
                         clusterService,
                         settings,
+                        groupingMemoryAccounting,
                         transportActionProvider,
                         implementationSymbolVisitor,
                         node
                 );
             }
-        }, functions, statsTables);
+        }, functions, statsTables, settings.getAsBytesSize(
+                DistributedRequestContextManager.BUFFER_SIZE_SETTING,
+                DistributedRequestContextManager.BUFFER_SIZE_DEFAULT).bytes());
 
         transportService.registerHandler(startMergeAction, new StartMergeHandler());
         transportService.registerHandler(failAction, new FailureHandler(contextManager));
         transportService.registerHandler(mergeRowsAction, new DistributedResultRequestHandler(contextManager));
     }
 
+    public DistributedRequestContextManager contextManager() {
+        return contextManager;
+    }
+
     public void startMerge(String node, NodeMergeRequest request, ActionListener<NodeMergeResponse> listener) {
         logger.trace("startMerge: {}", node);
         new AsyncMergeStartAction(node, request, listener).start();
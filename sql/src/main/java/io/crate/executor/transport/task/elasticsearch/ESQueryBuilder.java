@@ -139,6 +139,14 @@ public class ESQueryBuilder {
      * use to create a full elasticsearch query "statement" including fields, size, etc.
      */
     public BytesReference convert(ESSearchNode node) throws IOException {
+        return convert(node, node.offset(), node.limit());
+    }
+
+    /**
+     * like {@link #convert(ESSearchNode)} but with the given from and size instead of the
+     * offset and limit of the node, e.g. to scroll over the results page by page
+     */
+    public BytesReference convert(ESSearchNode node, int from, int size) throws IOException {
         assert node != null;
         List<? extends Reference> outputs;
 
@@ -179,8 +187,8 @@ public class ESQueryBuilder {
 
         addSorting(node.orderBy(), node.reverseFlags(), node.nullsFirst(), context.builder);
 
-        builder.field("from", node.offset());
-        builder.field("size", node.limit());
+        builder.field("from", from);
+        builder.field("size", size);
 
         builder.endObject();
         return builder.bytes();
@@ -935,8 +943,17 @@ public class ESQueryBuilder {
                     return false;
                 }
                 String like = prepare.v2().toString();
-                like = convertWildcard(like);
-                context.builder.startObject("wildcard").field(prepare.v1(), like).endObject();
+                LikeMatcher matcher = LikeMatcher.compile(like);
+                switch (matcher.kind()) {
+                    case EXACT:
+                        context.builder.startObject("term").field(prepare.v1(), matcher.literal()).endObject();
+                        break;
+                    case PREFIX:
+                        context.builder.startObject("prefix").field(prepare.v1(), matcher.literal()).endObject();
+                        break;
+                    default:
+                        context.builder.startObject("wildcard").field(prepare.v1(), convertWildcard(like)).endObject();
+                }
                 return true;
             }
         }
@@ -1084,6 +1101,12 @@ public class ESQueryBuilder {
 
         static class InConverter extends Converter<Function> {
 
+            /**
+             * IN lists with more values are executed as cached terms filter instead of
+             * a boolean query with a clause per value, they don't contribute to the score.
+             */
+            static final int TERMS_FILTER_THRESHOLD = 256;
+
             @Override
             public boolean convert(Function function, Context context) throws IOException {
                 assert (function != null);
@@ -1098,16 +1121,27 @@ public class ESQueryBuilder {
                         && ((SetType)setLiteral.valueType()).innerType().equals(DataTypes.STRING)) {
                     convertBytesRef = true;
                 }
+                Set values = (Set) setLiteral.value();
+                boolean useFilter = values.size() > TERMS_FILTER_THRESHOLD;
+                if (useFilter) {
+                    context.builder.startObject(Fields.FILTERED).startObject(Fields.FILTER);
+                }
                 context.builder.startObject("terms").field(refName);
                 context.builder.startArray();
-                for (Object o : (Set)setLiteral.value()) {
+                for (Object o : values) {
                     if (convertBytesRef) {
                         context.builder.value(((BytesRef) o).utf8ToString());
                     } else {
                         context.builder.value(o);
                     }
                 }
-                context.builder.endArray().endObject();
+                context.builder.endArray();
+                if (useFilter) {
+                    context.builder.field("_cache", true);
+                    context.builder.endObject().endObject().endObject();
+                } else {
+                    context.builder.endObject();
+                }
                 return true;
             }
 
@@ -0,0 +1,210 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.executor.transport.task.elasticsearch;
+
+import io.crate.exceptions.FailedShardsException;
+import io.crate.planner.node.dql.ESSearchNode;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.*;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHits;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Executes the search of an {@link ESSearchNode} as a scroll so that its rows can be fetched
+ * page by page. Between two fetches the search stays suspended on the shards, it is released once
+ * all rows are fetched, if it is closed or if it hasn't been continued within the keep alive time.
+ *
+ * Offset and limit of the node are applied while fetching,
+ * without a limit all matching rows are returned instead of the default select limit.
+ */
+public class ESSearchScroll {
+
+    private final ESLogger logger = Loggers.getLogger(getClass());
+
+    private final ESSearchNode searchNode;
+    private final TransportSearchAction transportSearchAction;
+    private final TransportSearchScrollAction transportSearchScrollAction;
+    private final TransportClearScrollAction transportClearScrollAction;
+    private final TimeValue keepAlive;
+    private final int pageSize;
+    private final ESFieldExtractor[] extractor;
+    private final int numColumns;
+    private final ESQueryBuilder queryBuilder = new ESQueryBuilder();
+
+    /**
+     * rows of the last page of the search which haven't been fetched yet
+     */
+    private final Deque<Object[]> buffer = new ArrayDeque<>();
+    private String scrollId = null;
+    private long hitsToSkip;
+    private long remainingRows;
+    private long remainingHits = -1L;
+    private boolean closed = false;
+
+    /**
+     * @param keepAlive time the search is kept open between two fetches
+     * @param pageSize number of hits the shards are asked for at once
+     */
+    public ESSearchScroll(ESSearchNode searchNode,
+                          TransportSearchAction transportSearchAction,
+                          TransportSearchScrollAction transportSearchScrollAction,
+                          TransportClearScrollAction transportClearScrollAction,
+                          TimeValue keepAlive,
+                          int pageSize) {
+        this.searchNode = searchNode;
+        this.transportSearchAction = transportSearchAction;
+        this.transportSearchScrollAction = transportSearchScrollAction;
+        this.transportClearScrollAction = transportClearScrollAction;
+        this.keepAlive = keepAlive;
+        this.pageSize = Math.max(1, pageSize);
+        this.extractor = ESSearchTask.buildExtractor(searchNode);
+        this.numColumns = searchNode.outputs().size();
+        this.hitsToSkip = searchNode.offset();
+        this.remainingRows = searchNode.isLimited() ? searchNode.limit() : Long.MAX_VALUE;
+    }
+
+    /**
+     * fetch the next <code>numRows</code> rows, less rows are returned if the search has no more rows.
+     * Only one fetch may run at a time.
+     */
+    public void fetch(final int numRows, final ActionListener<Object[][]> listener) {
+        synchronized (this) {
+            if (buffer.size() >= numRows || searchExhausted()) {
+                listener.onResponse(takeRows(numRows));
+                return;
+            }
+        }
+        ActionListener<SearchResponse> responseListener = new ActionListener<SearchResponse>() {
+            @Override
+            public void onResponse(SearchResponse searchResponse) {
+                if (searchResponse.getFailedShards() > 0) {
+                    onFailure(new FailedShardsException(searchResponse.getShardFailures()));
+                    return;
+                }
+                synchronized (ESSearchScroll.this) {
+                    addHits(searchResponse);
+                }
+                fetch(numRows, listener);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                listener.onFailure(ESSearchTask.searchFailure(e));
+            }
+        };
+        String currentScrollId;
+        synchronized (this) {
+            currentScrollId = scrollId;
+        }
+        if (currentScrollId == null) {
+            SearchRequest request = new SearchRequest();
+            try {
+                request.source(queryBuilder.convert(searchNode, 0, pageSize), false);
+            } catch (IOException e) {
+                listener.onFailure(e);
+                return;
+            }
+            request.indices(searchNode.indices());
+            request.routing(searchNode.whereClause().clusteredBy().orNull());
+            request.scroll(keepAlive);
+            transportSearchAction.execute(request, responseListener);
+        } else {
+            transportSearchScrollAction.execute(
+                    new SearchScrollRequest(currentScrollId).scroll(keepAlive), responseListener);
+        }
+    }
+
+    /**
+     * @return true if all rows have been fetched
+     */
+    public synchronized boolean exhausted() {
+        return buffer.isEmpty() && searchExhausted();
+    }
+
+    /**
+     * release the search on the shards, further fetches return no rows
+     */
+    public void close() {
+        String currentScrollId;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            buffer.clear();
+            currentScrollId = scrollId;
+        }
+        if (currentScrollId == null) {
+            return;
+        }
+        ClearScrollRequest request = new ClearScrollRequest();
+        request.addScrollId(currentScrollId);
+        transportClearScrollAction.execute(request, new ActionListener<ClearScrollResponse>() {
+            @Override
+            public void onResponse(ClearScrollResponse clearScrollResponse) {
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                logger.debug("Failed to clear scroll of search {}", e, searchNode);
+            }
+        });
+    }
+
+    private boolean searchExhausted() {
+        return closed || remainingRows <= 0 || remainingHits == 0;
+    }
+
+    private void addHits(SearchResponse searchResponse) {
+        scrollId = searchResponse.getScrollId();
+        SearchHits hits = searchResponse.getHits();
+        if (remainingHits < 0) {
+            remainingHits = hits.getTotalHits();
+        }
+        remainingHits = hits.getHits().length == 0 ? 0 : Math.max(0, remainingHits - hits.getHits().length);
+        Object[][] rows = ESSearchTask.rows(hits.getHits(), extractor, numColumns);
+        int from = (int) Math.min(rows.length, hitsToSkip);
+        hitsToSkip -= from;
+        buffer.addAll(Arrays.asList(rows).subList(from, rows.length));
+    }
+
+    private Object[][] takeRows(int numRows) {
+        int size = (int) Math.min(Math.min(numRows, buffer.size()), remainingRows);
+        Object[][] rows = new Object[size][];
+        for (int i = 0; i < size; i++) {
+            rows[i] = buffer.poll();
+        }
+        remainingRows -= size;
+        if (remainingRows <= 0) {
+            buffer.clear();
+        }
+        return rows;
+    }
+}
@@ -67,7 +67,7 @@ public class ESSearchTask implements Task<QueryResult> {
     public void start() {
         final SearchRequest request = new SearchRequest();
 
-        final ESFieldExtractor[] extractor = buildExtractor(searchNode.outputs());
+        final ESFieldExtractor[] extractor = buildExtractor(searchNode);
         final int numColumns = searchNode.outputs().size();
 
         try {
@@ -85,7 +85,8 @@ public class ESSearchTask implements Task<QueryResult> {
         }
     }
 
-    private ESFieldExtractor[] buildExtractor(final List<? extends Reference> outputs) {
+    static ESFieldExtractor[] buildExtractor(ESSearchNode searchNode) {
+        List<? extends Reference> outputs = searchNode.outputs();
         ESFieldExtractor[] extractors = new ESFieldExtractor[outputs.size()];
         int i = 0;
         for (final Reference reference : outputs) {
@@ -169,17 +170,7 @@ public class ESSearchTask implements Task<QueryResult> {
             if (searchResponse.getFailedShards() > 0) {
                 onFailure(new FailedShardsException(searchResponse.getShardFailures()));
             } else {
-                final SearchHit[] hits = searchResponse.getHits().getHits();
-                final Object[][] rows = new Object[hits.length][numColumns];
-
-                for (int r = 0; r < hits.length; r++) {
-                    rows[r] = new Object[numColumns];
-                    for (int c = 0; c < numColumns; c++) {
-                        rows[r][c] = extractor[c].extract(hits[r]);
-                    }
-                }
-
-                result.set(new QueryResult(rows));
+                result.set(new QueryResult(rows(searchResponse.getHits().getHits(), extractor, numColumns)));
             }
         }
 
@@ -187,13 +178,32 @@ public class ESSearchTask implements Task<QueryResult> {
         public void onFailure(Throwable e) {
             if (e instanceof SearchPhaseExecutionException) {
                 logger.error("Error executing SELECT statement", e);
-                ShardSearchFailure[] shardSearchFailures = ((SearchPhaseExecutionException) e).shardFailures();
-                if (shardSearchFailures.length > 0) {
-                    result.setException(Throwables.getRootCause(shardSearchFailures[0].failure()));
-                    return;
-                }
             }
-            result.setException(e);
+            result.setException(searchFailure(e));
+        }
+    }
+
+    static Object[][] rows(SearchHit[] hits, ESFieldExtractor[] extractor, int numColumns) {
+        final Object[][] rows = new Object[hits.length][numColumns];
+        for (int r = 0; r < hits.length; r++) {
+            rows[r] = new Object[numColumns];
+            for (int c = 0; c < numColumns; c++) {
+                rows[r][c] = extractor[c].extract(hits[r]);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return the failure of the first failed shard if the search failed on the shards
+     */
+    static Throwable searchFailure(Throwable e) {
+        if (e instanceof SearchPhaseExecutionException) {
+            ShardSearchFailure[] shardSearchFailures = ((SearchPhaseExecutionException) e).shardFailures();
+            if (shardSearchFailures.length > 0) {
+                return Throwables.getRootCause(shardSearchFailures[0].failure());
+            }
         }
+        return e;
     }
 }
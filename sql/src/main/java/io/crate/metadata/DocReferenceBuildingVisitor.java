@@ -21,37 +21,83 @@
 
 package io.crate.metadata;
 
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableSet;
 import io.crate.metadata.doc.DocSysColumns;
+import io.crate.planner.RowGranularity;
 import io.crate.planner.symbol.*;
+import io.crate.types.*;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Visitor to change regular column references into references using the DOC sys column.
  *
  * e.g.   s.t.colname -> s.t._DOC['colname']
+ *
+ * References which match the given predicate are kept, see {@link #readableFromFieldData(ReferenceInfo)}.
  */
-public class DocReferenceBuildingVisitor extends SymbolVisitor<Void, Symbol> {
+public class DocReferenceBuildingVisitor extends SymbolVisitor<Predicate<ReferenceInfo>, Symbol> {
 
     private final static DocReferenceBuildingVisitor INSTANCE = new DocReferenceBuildingVisitor();
 
+    /**
+     * types whose values are read from field data by the lucene doc collector
+     */
+    private final static Set<Integer> FIELD_DATA_TYPES = ImmutableSet.of(
+            ByteType.ID,
+            ShortType.ID,
+            IntegerType.ID,
+            LongType.ID,
+            TimestampType.ID,
+            FloatType.ID,
+            DoubleType.ID,
+            BooleanType.ID,
+            StringType.ID,
+            IpType.ID
+    );
+
     public static Symbol convert(Symbol symbol) {
-        return INSTANCE.process(symbol, null);
+        return INSTANCE.process(symbol, Predicates.<ReferenceInfo>alwaysFalse());
+    }
+
+    /**
+     * converts all references except those matching <code>keepReference</code>
+     */
+    public static Symbol convert(Symbol symbol, Predicate<ReferenceInfo> keepReference) {
+        return INSTANCE.process(symbol, keepReference);
+    }
+
+    /**
+     * @return true if the values of the column can be read from field data instead of the source,
+     *         which is the case for single valued, not analyzed, indexed columns of primitive types.
+     *         String values are read as {@link org.apache.lucene.util.BytesRef}.
+     */
+    public static boolean readableFromFieldData(ReferenceInfo info) {
+        return info.granularity() == RowGranularity.DOC
+                && info.indexType() == ReferenceInfo.IndexType.NOT_ANALYZED
+                && FIELD_DATA_TYPES.contains(info.type().id())
+                && !info.ident().columnIdent().name().startsWith("_");
     }
 
     @Override
-    public Symbol visitFunction(Function symbol, Void context) {
+    public Symbol visitFunction(Function symbol, Predicate<ReferenceInfo> context) {
         int idx = 0;
         for (Symbol argument : symbol.arguments()) {
-            symbol.setArgument(idx, process(argument, null));
+            symbol.setArgument(idx, process(argument, context));
             idx++;
         }
         return symbol;
     }
 
     @Override
-    public Symbol visitReference(Reference symbol, Void context) {
+    public Symbol visitReference(Reference symbol, Predicate<ReferenceInfo> context) {
+        if (context.apply(symbol.info())) {
+            return symbol;
+        }
         List<String> path = new ArrayList<>(symbol.info().ident().columnIdent().path());
         path.add(0, symbol.info().ident().columnIdent().name());
         return new Reference(
@@ -64,12 +110,13 @@ public class DocReferenceBuildingVisitor extends SymbolVisitor<Void, Symbol> {
     }
 
     @Override
-    public Symbol visitDynamicReference(DynamicReference symbol, Void context) {
-        return visitReference(symbol, context);
+    public Symbol visitDynamicReference(DynamicReference symbol, Predicate<ReferenceInfo> context) {
+        // dynamic columns might not be mapped
+        return visitReference(symbol, Predicates.<ReferenceInfo>alwaysFalse());
     }
 
     @Override
-    protected Symbol visitSymbol(Symbol symbol, Void context) {
+    protected Symbol visitSymbol(Symbol symbol, Predicate<ReferenceInfo> context) {
         return symbol;
     }
 
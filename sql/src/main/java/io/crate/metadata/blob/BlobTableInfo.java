@@ -104,6 +104,11 @@ public class BlobTableInfo implements TableInfo {
         return null;
     }
 
+    @Override
+    public boolean hasDocValues(ColumnIdent ident) {
+        return false;
+    }
+
     @Override
     public RowGranularity rowGranularity() {
         return RowGranularity.DOC;
@@ -70,6 +70,7 @@ public class DocIndexMetaData {
     // columns should be ordered
     private final ImmutableMap.Builder<ColumnIdent, ReferenceInfo> referencesBuilder = ImmutableSortedMap.naturalOrder();
     private final ImmutableList.Builder<ReferenceInfo> partitionedByColumnsBuilder = ImmutableList.builder();
+    private final ImmutableSet.Builder<ColumnIdent> docValuesColumnsBuilder = ImmutableSet.builder();
 
     private final TableIdent ident;
     private final int numberOfShards;
@@ -82,6 +83,7 @@ public class DocIndexMetaData {
     private ImmutableMap<ColumnIdent, IndexReferenceInfo> indices;
     private ImmutableList<ReferenceInfo> partitionedByColumns;
     private ImmutableMap<ColumnIdent, ReferenceInfo> references;
+    private ImmutableSet<ColumnIdent> docValuesColumns;
     private ImmutableList<ColumnIdent> primaryKey;
     private ColumnIdent routingCol;
     private ImmutableList<ColumnIdent> partitionedBy;
@@ -369,11 +371,19 @@ public class DocIndexMetaData {
                            .ident(new ReferenceIdent(ident, newIdent));
                 } else {
                     add(newIdent, columnDataType, columnIndexType);
+                    if (hasDocValues(columnProperties)) {
+                        docValuesColumnsBuilder.add(newIdent);
+                    }
                 }
             }
         }
     }
 
+    private static boolean hasDocValues(Map<String, Object> columnProperties) {
+        Object docValues = columnProperties.get("doc_values");
+        return docValues != null && Booleans.parseBoolean(docValues.toString(), false);
+    }
+
     private IndexReferenceInfo.Builder getOrCreateIndexBuilder(ColumnIdent ident) {
         IndexReferenceInfo.Builder builder = indicesBuilder.get(ident);
         if (builder == null) {
@@ -467,6 +477,7 @@ public class DocIndexMetaData {
         indices = createIndexDefinitions();
         columns = ImmutableList.copyOf(columnsBuilder.build());
         partitionedByColumns = partitionedByColumnsBuilder.build();
+        docValuesColumns = docValuesColumnsBuilder.build();
 
         for (Tuple<ColumnIdent, ReferenceInfo> sysColumn : DocSysColumns.forTable(ident)) {
             referencesBuilder.put(sysColumn.v1(), sysColumn.v2());
@@ -485,6 +496,13 @@ public class DocIndexMetaData {
         return columns;
     }
 
+    /**
+     * the columns whose values are stored as doc values
+     */
+    public ImmutableSet<ColumnIdent> docValuesColumns() {
+        return docValuesColumns;
+    }
+
     public ImmutableMap<ColumnIdent, IndexReferenceInfo> indices() {
         return indices;
     }
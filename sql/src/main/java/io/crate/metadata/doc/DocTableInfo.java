@@ -50,6 +50,7 @@ public class DocTableInfo implements TableInfo {
     private final Map<ColumnIdent, IndexReferenceInfo> indexColumns;
     private final ImmutableMap<ColumnIdent, ReferenceInfo> references;
     private final TableIdent ident;
+    private final Set<ColumnIdent> docValuesColumns;
     private final List<ColumnIdent> primaryKeys;
     private final ColumnIdent clusteredBy;
     private final String[] concreteIndices;
@@ -70,6 +71,7 @@ public class DocTableInfo implements TableInfo {
                         List<ReferenceInfo> partitionedByColumns,
                         ImmutableMap<ColumnIdent, IndexReferenceInfo> indexColumns,
                         ImmutableMap<ColumnIdent, ReferenceInfo> references,
+                        Set<ColumnIdent> docValuesColumns,
                         List<ColumnIdent> primaryKeys,
                         ColumnIdent clusteredBy,
                         boolean isAlias,
@@ -85,6 +87,7 @@ public class DocTableInfo implements TableInfo {
         this.partitionedByColumns = partitionedByColumns;
         this.indexColumns = indexColumns;
         this.references = references;
+        this.docValuesColumns = docValuesColumns;
         this.ident = ident;
         this.primaryKeys = primaryKeys;
         this.clusteredBy = clusteredBy;
@@ -300,6 +303,11 @@ public class DocTableInfo implements TableInfo {
         return indexColumns.get(ident);
     }
 
+    @Override
+    public boolean hasDocValues(ColumnIdent ident) {
+        return docValuesColumns.contains(ident);
+    }
+
     @Override
     public Iterator<ReferenceInfo> iterator() {
         return references.values().iterator();
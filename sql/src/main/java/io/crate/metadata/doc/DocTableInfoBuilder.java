@@ -154,7 +154,7 @@ public class DocTableInfoBuilder {
 
         return new DocTableInfo(ident, md.columns(), md.partitionedByColumns(),
                 md.indices(),
-                md.references(), md.primaryKey(), md.routingCol(),
+                md.references(), md.docValuesColumns(), md.primaryKey(), md.routingCol(),
                 md.isAlias(), md.hasAutoGeneratedPrimaryKey(),
                 concreteIndices, clusterService,
                 md.numberOfShards(), md.numberOfReplicas(),
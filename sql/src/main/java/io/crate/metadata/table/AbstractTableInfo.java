@@ -58,6 +58,11 @@ public abstract class AbstractTableInfo implements TableInfo {
         return null;
     }
 
+    @Override
+    public boolean hasDocValues(ColumnIdent ident) {
+        return false;
+    }
+
     @Nullable
     @Override
     public ColumnIdent clusteredBy() {
@@ -53,6 +53,12 @@ public interface TableInfo extends Iterable<ReferenceInfo> {
     @Nullable
     public IndexReferenceInfo indexColumn(ColumnIdent ident);
 
+    /**
+     * returns <code>true</code> if the values of the column are stored as doc values,
+     * so they can be read column-wise without loading the source of the documents
+     */
+    public boolean hasDocValues(ColumnIdent ident);
+
     public RowGranularity rowGranularity();
 
     public TableIdent ident();
@@ -21,6 +21,7 @@
 
 package io.crate.operation;
 
+import io.crate.metadata.CompilableScalar;
 import io.crate.metadata.FunctionImplementation;
 import io.crate.metadata.Functions;
 import io.crate.metadata.Scalar;
@@ -97,7 +98,11 @@ public abstract class AbstractImplementationSymbolVisitor<C extends AbstractImpl
             for (Symbol argument : function.arguments()) {
                 argumentInputs[i++] = process(argument, context);
             }
-            return new FunctionExpression<>((Scalar<?, ?>) functionImplementation, argumentInputs);
+            Scalar<?, ?> scalar = (Scalar<?, ?>) functionImplementation;
+            if (scalar instanceof CompilableScalar) {
+                scalar = ((CompilableScalar<?, ?>) scalar).compile(arguments);
+            }
+            return new FunctionExpression<>(scalar, argumentInputs);
         } else {
             throw new IllegalArgumentException(
                     SymbolFormatter.format("Cannot find implementation for function %s", function));
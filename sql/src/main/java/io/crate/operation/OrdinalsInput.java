@@ -0,0 +1,44 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation;
+
+/**
+ * Input which can provide an ordinal for its current value.
+ *
+ * Equal values have the same ordinal, so the ordinal can be used instead of the value,
+ * e.g. as group key. The ordinals are only comparable between values of the same Input instance.
+ */
+public interface OrdinalsInput<T> extends Input<T> {
+
+    public static final long MISSING_ORDINAL = -1L;
+
+    /**
+     * @return the ordinal of the current value or {@link #MISSING_ORDINAL} if the value is null
+     */
+    public long ordinal();
+
+    /**
+     * @return the value for an ordinal previously returned by {@link #ordinal()}
+     */
+    public T lookupOrdinal(long ordinal);
+}
@@ -35,6 +35,8 @@ public class AggregationCollector implements RowCollector {
     private final ToImpl toImpl;
 
     private AggregationState aggregationState;
+    private boolean estimateSizes = false;
+    private long estimatedBytesDelta = 0;
 
     public AggregationCollector(Aggregation a, AggregationFunction aggregationFunction, Input... inputs) {
         if (a.fromStep() == Aggregation.Step.PARTIAL && inputs.length > 1) {
@@ -72,13 +74,39 @@ public class AggregationCollector implements RowCollector {
     }
 
 
+    /**
+     * let the collector sum up the estimated size of the states it creates
+     * and their growth by the processed rows, see {@link #takeEstimatedBytesDelta()}
+     */
+    public void estimateSizes(boolean estimateSizes) {
+        this.estimateSizes = estimateSizes;
+    }
+
+    /**
+     * @return the estimated bytes the states grew by since the last call
+     */
+    public long takeEstimatedBytesDelta() {
+        long delta = estimatedBytesDelta;
+        estimatedBytesDelta = 0;
+        return delta;
+    }
+
     public boolean startCollect() {
         aggregationState = fromImpl.startCollect();
+        if (estimateSizes) {
+            estimatedBytesDelta += aggregationState.estimateSizeInBytes();
+        }
         return true;
     }
 
     public boolean processRow() {
-        return fromImpl.processRow();
+        if (!estimateSizes) {
+            return fromImpl.processRow();
+        }
+        long sizeBefore = aggregationState.estimateSizeInBytes();
+        boolean result = fromImpl.processRow();
+        estimatedBytesDelta += aggregationState.estimateSizeInBytes() - sizeBefore;
+        return result;
     }
 
 
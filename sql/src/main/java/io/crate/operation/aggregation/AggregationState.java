@@ -21,8 +21,11 @@
 
 package io.crate.operation.aggregation;
 
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.elasticsearch.common.io.stream.Streamable;
 
+import javax.annotation.Nullable;
 import java.util.Set;
 
 /**
@@ -35,6 +38,15 @@ import java.util.Set;
  */
 public abstract class AggregationState<T extends AggregationState> implements Comparable<T>, Streamable {
 
+    /**
+     * rough estimate of the heap used by a state of a fixed size
+     */
+    protected static final long STATE_BYTES = 48;
+
+    private static final long VALUE_BYTES = 16;
+    private static final long BYTES_REF_BYTES =
+            RamUsageEstimator.shallowSizeOfInstance(BytesRef.class) + RamUsageEstimator.NUM_BYTES_ARRAY_HEADER;
+
     public abstract Object value();
     public abstract void reduce(T other);
 
@@ -53,4 +65,22 @@ public abstract class AggregationState<T extends AggregationState> implements Co
      */
     public void setSeenValuesRef(Set<Object> seenValues) {
     }
+
+    /**
+     * estimated heap used by this state, used to decide when groups are spilled to disk.
+     * States which grow with the rows they aggregate have to override it.
+     */
+    public long estimateSizeInBytes() {
+        return STATE_BYTES;
+    }
+
+    /**
+     * estimated heap used by a value of a state or a group key
+     */
+    public static long estimateValueSizeInBytes(@Nullable Object value) {
+        if (value instanceof BytesRef) {
+            return BYTES_REF_BYTES + ((BytesRef) value).length;
+        }
+        return VALUE_BYTES;
+    }
 }
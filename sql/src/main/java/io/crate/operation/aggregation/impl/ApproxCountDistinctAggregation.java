@@ -0,0 +1,294 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.aggregation.impl;
+
+import com.carrotsearch.hppc.IntByteOpenHashMap;
+import com.carrotsearch.hppc.cursors.IntByteCursor;
+import com.google.common.collect.ImmutableList;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionInfo;
+import io.crate.operation.Input;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.aggregation.AggregationState;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.StringHelper;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+
+/**
+ * approximate count of the distinct non-null values using a HyperLogLog sketch.
+ *
+ * Unlike collect_set the state never exceeds {@link HllState#NUM_REGISTERS} bytes
+ * regardless of the number of distinct values, the standard error of the estimate is about 0.8%.
+ * States with few values keep only their non-zero registers.
+ */
+public class ApproxCountDistinctAggregation extends AggregationFunction<ApproxCountDistinctAggregation.HllState> {
+
+    public static final String NAME = "approx_count_distinct";
+
+    private final FunctionInfo info;
+
+    public static void register(AggregationImplModule mod) {
+        for (DataType dataType : DataTypes.PRIMITIVE_TYPES) {
+            mod.register(new ApproxCountDistinctAggregation(
+                    new FunctionInfo(new FunctionIdent(NAME, ImmutableList.of(dataType)),
+                            DataTypes.LONG, FunctionInfo.Type.AGGREGATE)));
+        }
+    }
+
+    ApproxCountDistinctAggregation(FunctionInfo info) {
+        this.info = info;
+    }
+
+    @Override
+    public FunctionInfo info() {
+        return info;
+    }
+
+    @Override
+    public boolean iterate(HllState state, Input... args) {
+        Object value = args[0].value();
+        if (value != null) {
+            state.add(hash(value));
+        }
+        return true;
+    }
+
+    @Override
+    public HllState newState() {
+        return new HllState();
+    }
+
+    /**
+     * 64 bit hash of a value, the hash must be the same on all nodes so that the sketches can be merged.
+     */
+    static long hash(Object value) {
+        if (value instanceof BytesRef || value instanceof String) {
+            BytesRef bytes = value instanceof BytesRef ? (BytesRef) value : new BytesRef((String) value);
+            // BytesRef.hashCode() uses a random seed per jvm, so use murmur with fixed seeds
+            return ((long) StringHelper.murmurhash3_x86_32(bytes, 1) << 32)
+                    | (StringHelper.murmurhash3_x86_32(bytes, 2) & 0xFFFFFFFFL);
+        }
+        long bits;
+        if (value instanceof Double || value instanceof Float) {
+            bits = Double.doubleToLongBits(((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            bits = ((Number) value).longValue();
+        } else if (value instanceof Boolean) {
+            bits = (Boolean) value ? 1L : 0L;
+        } else {
+            bits = value.hashCode();
+        }
+        return mix(bits);
+    }
+
+    /**
+     * finalization step of MurmurHash3 to spread the bits of a long over the whole range
+     */
+    private static long mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    public static class HllState extends AggregationState<HllState> {
+
+        static final int PRECISION = 14;
+        static final int NUM_REGISTERS = 1 << PRECISION;
+        private static final double ALPHA = 0.7213 / (1 + 1.079 / NUM_REGISTERS);
+
+        /**
+         * the number of non-zero registers up to which they're kept in a hash map instead of the register array
+         */
+        static final int SPARSE_MAX_REGISTERS = NUM_REGISTERS / 64;
+
+        private static final byte EMPTY = 0;
+        private static final byte DENSE = 1;
+        private static final byte SPARSE = 2;
+
+        /**
+         * the non-zero registers while there are only a few of them,
+         * so that groups with few values don't allocate all registers
+         */
+        private IntByteOpenHashMap sparseRegisters = null;
+
+        /**
+         * allocated once there are more than {@link #SPARSE_MAX_REGISTERS} non-zero registers
+         */
+        private byte[] registers = null;
+
+        void add(long hash) {
+            int idx = (int) (hash >>> (64 - PRECISION));
+            // the remaining bits, with a stop bit in case they're all zero
+            long w = (hash << PRECISION) | (1L << (PRECISION - 1));
+            byte rank = (byte) (Long.numberOfLeadingZeros(w) + 1);
+            setRegister(idx, rank);
+        }
+
+        private void setRegister(int idx, byte rank) {
+            if (registers != null) {
+                if (rank > registers[idx]) {
+                    registers[idx] = rank;
+                }
+                return;
+            }
+            if (sparseRegisters == null) {
+                sparseRegisters = new IntByteOpenHashMap();
+            }
+            if (rank > sparseRegisters.get(idx)) {
+                sparseRegisters.put(idx, rank);
+                if (sparseRegisters.size() > SPARSE_MAX_REGISTERS) {
+                    toDense();
+                }
+            }
+        }
+
+        private void toDense() {
+            registers = new byte[NUM_REGISTERS];
+            for (IntByteCursor cursor : sparseRegisters) {
+                registers[cursor.key] = cursor.value;
+            }
+            sparseRegisters = null;
+        }
+
+        boolean isSparse() {
+            return registers == null;
+        }
+
+        @Override
+        public Long value() {
+            double sum = 0;
+            int zeros = 0;
+            if (registers != null) {
+                for (byte register : registers) {
+                    sum += 1.0 / (1L << register);
+                    if (register == 0) {
+                        zeros++;
+                    }
+                }
+            } else if (sparseRegisters != null) {
+                zeros = NUM_REGISTERS - sparseRegisters.size();
+                sum = zeros;
+                for (IntByteCursor cursor : sparseRegisters) {
+                    sum += 1.0 / (1L << cursor.value);
+                }
+            } else {
+                return 0L;
+            }
+            double estimate = ALPHA * NUM_REGISTERS * NUM_REGISTERS / sum;
+            if (estimate <= 2.5 * NUM_REGISTERS && zeros > 0) {
+                // linear counting is more accurate for small cardinalities
+                estimate = NUM_REGISTERS * Math.log((double) NUM_REGISTERS / zeros);
+            }
+            return Math.round(estimate);
+        }
+
+        @Override
+        public void reduce(HllState other) {
+            if (other.registers != null) {
+                if (registers == null) {
+                    IntByteOpenHashMap sparse = sparseRegisters;
+                    registers = other.registers.clone();
+                    sparseRegisters = null;
+                    if (sparse != null) {
+                        for (IntByteCursor cursor : sparse) {
+                            setRegister(cursor.key, cursor.value);
+                        }
+                    }
+                    return;
+                }
+                for (int i = 0; i < NUM_REGISTERS; i++) {
+                    if (other.registers[i] > registers[i]) {
+                        registers[i] = other.registers[i];
+                    }
+                }
+            } else if (other.sparseRegisters != null) {
+                for (IntByteCursor cursor : other.sparseRegisters) {
+                    setRegister(cursor.key, cursor.value);
+                }
+            }
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            registers = null;
+            sparseRegisters = null;
+            byte format = in.readByte();
+            if (format == DENSE) {
+                registers = new byte[NUM_REGISTERS];
+                in.readBytes(registers, 0, NUM_REGISTERS);
+            } else if (format == SPARSE) {
+                int size = in.readVInt();
+                sparseRegisters = new IntByteOpenHashMap(size);
+                for (int i = 0; i < size; i++) {
+                    sparseRegisters.put(in.readVInt(), in.readByte());
+                }
+            }
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            if (registers != null) {
+                out.writeByte(DENSE);
+                out.writeBytes(registers);
+            } else if (sparseRegisters != null) {
+                out.writeByte(SPARSE);
+                out.writeVInt(sparseRegisters.size());
+                for (IntByteCursor cursor : sparseRegisters) {
+                    out.writeVInt(cursor.key);
+                    out.writeByte(cursor.value);
+                }
+            } else {
+                out.writeByte(EMPTY);
+            }
+        }
+
+        @Override
+        public long estimateSizeInBytes() {
+            if (registers != null) {
+                return STATE_BYTES + RamUsageEstimator.sizeOf(registers);
+            } else if (sparseRegisters != null) {
+                // keys, values and allocated flags
+                return STATE_BYTES + sparseRegisters.keys.length * (RamUsageEstimator.NUM_BYTES_INT + 2);
+            }
+            return STATE_BYTES;
+        }
+
+        @Override
+        public int compareTo(HllState o) {
+            return value().compareTo(o.value());
+        }
+
+        @Override
+        public String toString() {
+            return "HllState {" + value() + "}";
+        }
+    }
+}
@@ -85,6 +85,11 @@ public class ArbitraryAggregation<T extends Comparable<T>> extends AggregationFu
             return value;
         }
 
+        @Override
+        public long estimateSizeInBytes() {
+            return STATE_BYTES + estimateValueSizeInBytes(value);
+        }
+
         @Override
         public void reduce(ArbitraryAggState<T> other) {
             if (this.value == null){
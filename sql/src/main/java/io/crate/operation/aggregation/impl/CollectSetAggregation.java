@@ -93,7 +93,13 @@ public abstract class CollectSetAggregation<T extends Comparable<T>>
 
     public static abstract class CollectSetAggState extends AggregationState<CollectSetAggState> {
 
+        /**
+         * estimated heap used by an entry of the HashSet, without the value
+         */
+        private static final long ENTRY_BYTES = 40;
+
         private Set<Object> value = new HashSet<>();
+        private long valuesBytes = 0;
 
         @Override
         public Set value() {
@@ -102,18 +108,29 @@ public abstract class CollectSetAggregation<T extends Comparable<T>>
 
         @Override
         public void reduce(CollectSetAggState other) {
-            value.addAll(other.value());
+            for (Object otherValue : other.value()) {
+                add(otherValue);
+            }
         }
 
         void add(Object otherValue) {
             // ignore null values? yes
-            if (otherValue != null) {
-                value.add(otherValue);
+            if (otherValue != null && value.add(otherValue)) {
+                valuesBytes += ENTRY_BYTES + estimateValueSizeInBytes(otherValue);
             }
         }
 
         public void setValue(Object value) {
             this.value = (Set)value;
+            valuesBytes = 0;
+            for (Object v : this.value) {
+                valuesBytes += ENTRY_BYTES + estimateValueSizeInBytes(v);
+            }
+        }
+
+        @Override
+        public long estimateSizeInBytes() {
+            return STATE_BYTES + valuesBytes;
         }
 
         @Override
@@ -100,6 +100,11 @@ public abstract class MaximumAggregation extends AggregationFunction<MaximumAggr
             return value;
         }
 
+        @Override
+        public long estimateSizeInBytes() {
+            return STATE_BYTES + estimateValueSizeInBytes(value);
+        }
+
         @Override
         public void reduce(MaximumAggState other) {
             if (other.value() == null) {
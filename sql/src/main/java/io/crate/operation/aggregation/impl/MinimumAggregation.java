@@ -98,6 +98,11 @@ public abstract class MinimumAggregation extends AggregationFunction<MinimumAggr
             return value;
         }
 
+        @Override
+        public long estimateSizeInBytes() {
+            return STATE_BYTES + estimateValueSizeInBytes(value);
+        }
+
         @Override
         public void reduce(MinimumAggState other) {
             if (other.value() == null) {
@@ -21,6 +21,7 @@
 
 package io.crate.operation.collect;
 
+import io.crate.operation.projectors.GroupingMemoryAccounting;
 import org.elasticsearch.common.inject.AbstractModule;
 
 public class CollectOperationModule extends AbstractModule {
@@ -32,6 +33,8 @@ public class CollectOperationModule extends AbstractModule {
         bind(UnassignedShardsCollectService.class).asEagerSingleton();
 
         bind(StatsTables.class).asEagerSingleton();
+        bind(CollectScheduler.class).asEagerSingleton();
+        bind(GroupingMemoryAccounting.class).asEagerSingleton();
         bind(SystemCollectService.class).asEagerSingleton();
     }
 }
@@ -0,0 +1,244 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.collect;
+
+import com.google.common.collect.ImmutableList;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.component.AbstractLifecycleComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * runs the shard collects of all jobs on a node on a dedicated set of threads.
+ *
+ * The tasks of a job (usually one per shard) are kept in a queue per job and the jobs
+ * are served round robin: an idle thread takes the next task of the job at the head of the job queue
+ * and puts the job back at its tail if it has more tasks. So the threads pull the shards as they
+ * become idle instead of getting a fixed partition of them, and concurrent jobs get an equal share
+ * of the threads instead of waiting until the tasks of an earlier job are all done.
+ *
+ * The threads are started with the first job after the scheduler has been started. At most {@link #QUEUE_SIZE_SETTING} jobs wait for
+ * a thread, further jobs are rejected. Tasks which implement {@link RejectableTask} are informed
+ * if they are dropped because the scheduler is stopped.
+ */
+public class CollectScheduler extends AbstractLifecycleComponent<CollectScheduler> implements Executor {
+
+    /**
+     * node setting for the number of threads which run shard collects, defaults to the number of processors
+     */
+    public static final String THREADS_SETTING = "collect.threads";
+
+    /**
+     * node setting for the maximum number of jobs which have tasks that haven't been started yet
+     */
+    public static final String QUEUE_SIZE_SETTING = "collect.queue_size";
+    public static final int QUEUE_SIZE_DEFAULT = 1000;
+
+    private final int numThreads;
+    private final int queueSize;
+    private final ThreadFactory threadFactory;
+    private final BlockingQueue<Job> jobs = new LinkedBlockingQueue<>();
+    private final List<Thread> threads;
+    private volatile boolean closed = false;
+
+    /**
+     * a task which is informed if it is never run
+     */
+    public interface RejectableTask extends Runnable {
+
+        void onRejected(RejectedExecutionException e);
+    }
+
+    private static class Job {
+
+        private final Queue<Runnable> tasks;
+
+        private Job(List<? extends Runnable> tasks) {
+            this.tasks = new ArrayDeque<>(tasks);
+        }
+    }
+
+    @Inject
+    public CollectScheduler(Settings settings) {
+        super(settings);
+        this.numThreads = Math.max(1, settings.getAsInt(THREADS_SETTING, EsExecutors.boundedNumberOfProcessors(settings)));
+        this.queueSize = Math.max(1, settings.getAsInt(QUEUE_SIZE_SETTING, QUEUE_SIZE_DEFAULT));
+        this.threadFactory = EsExecutors.daemonThreadFactory(settings, "collect");
+        this.threads = new ArrayList<>(numThreads);
+    }
+
+    /**
+     * schedule the tasks of a job, they're started in the given order
+     *
+     * @throws RejectedExecutionException if the scheduler isn't started or too many jobs are queued
+     */
+    public synchronized void schedule(List<? extends Runnable> tasks) throws RejectedExecutionException {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        ensureThreads();
+        if (jobs.size() >= queueSize) {
+            throw new RejectedExecutionException(
+                    "collect scheduler queue is full, " + jobs.size() + " jobs are queued");
+        }
+        jobs.add(new Job(tasks));
+    }
+
+    /**
+     * schedule a job consisting of a single task
+     */
+    @Override
+    public void execute(Runnable task) throws RejectedExecutionException {
+        schedule(ImmutableList.of(task));
+    }
+
+    private void ensureThreads() {
+        if (closed) {
+            throw new RejectedExecutionException("collect scheduler is closed");
+        }
+        // threads which are started before the scheduler would never be stopped
+        if (!lifecycle.started()) {
+            throw new RejectedExecutionException("collect scheduler is not started");
+        }
+        while (threads.size() < numThreads) {
+            Thread thread = threadFactory.newThread(new Worker());
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    public int numThreads() {
+        return numThreads;
+    }
+
+    /**
+     * @return the number of threads which have been started and not stopped yet
+     */
+    synchronized int numStartedThreads() {
+        return threads.size();
+    }
+
+    /**
+     * @return the number of jobs with tasks which haven't been started yet
+     */
+    public int numQueuedJobs() {
+        return jobs.size();
+    }
+
+    @Override
+    protected void doStart() throws ElasticsearchException {
+    }
+
+    public int queueSize() {
+        return queueSize;
+    }
+
+    @Override
+    protected void doStop() throws ElasticsearchException {
+        List<Job> pending = new ArrayList<>(jobs.size());
+        synchronized (this) {
+            closed = true;
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            threads.clear();
+            jobs.drainTo(pending);
+        }
+        for (Job job : pending) {
+            reject(job);
+        }
+    }
+
+    /**
+     * informs the tasks of a job which will never run
+     */
+    private void reject(Job job) {
+        RejectedExecutionException e = new RejectedExecutionException("collect scheduler is closed");
+        for (Runnable task : job.tasks) {
+            if (task instanceof RejectableTask) {
+                try {
+                    ((RejectableTask) task).onRejected(e);
+                } catch (Throwable t) {
+                    logger.error("failed to reject collect task", t);
+                }
+            }
+        }
+    }
+
+    /**
+     * puts a job with remaining tasks back to the queue, or rejects them if the scheduler
+     * has been stopped in the meantime
+     */
+    private void requeue(Job job) {
+        synchronized (this) {
+            if (!closed) {
+                jobs.add(job);
+                return;
+            }
+        }
+        reject(job);
+    }
+
+    @Override
+    protected void doClose() throws ElasticsearchException {
+    }
+
+    private class Worker implements Runnable {
+
+        @Override
+        public void run() {
+            while (!closed) {
+                Job job;
+                try {
+                    job = jobs.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                // only the thread which took the job from the queue accesses its tasks
+                Runnable task = job.tasks.poll();
+                if (!job.tasks.isEmpty()) {
+                    requeue(job);
+                }
+                if (task == null) {
+                    continue;
+                }
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    logger.error("collect task failed", t);
+                }
+            }
+        }
+    }
+}
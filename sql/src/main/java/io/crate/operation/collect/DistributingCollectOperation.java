@@ -36,6 +36,9 @@ import io.crate.executor.transport.distributed.DistributedResultResponse;
 import io.crate.executor.transport.merge.TransportMergeNodeAction;
 import io.crate.metadata.Functions;
 import io.crate.metadata.ReferenceResolver;
+import io.crate.operation.projectors.DistributingProjector;
+import io.crate.operation.projectors.GroupingMemoryAccounting;
+import io.crate.operation.projectors.Projector;
 import io.crate.operation.projectors.ResultProvider;
 import io.crate.planner.node.PlanNodeStreamerVisitor;
 import io.crate.planner.node.dql.CollectNode;
@@ -46,6 +49,7 @@ import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.threadpool.ThreadPool;
@@ -66,6 +70,26 @@ import java.util.UUID;
  */
 public class DistributingCollectOperation extends MapSideDataCollectOperation {
 
+    /**
+     * number of rows per downstream after which the rows of a shard collect are sent
+     * while still collecting, 0 sends all rows after all shards finished
+     */
+    public static final String PAGE_SIZE_SETTING = "distributed_collect.page_size";
+    public static final int PAGE_SIZE_DEFAULT = 10000;
+
+    /**
+     * number of pages which are sent to a downstream before the collect waits for a response
+     */
+    public static final String MAX_PAGES_IN_FLIGHT_SETTING = "distributed_collect.max_pages_in_flight";
+    public static final int MAX_PAGES_IN_FLIGHT_DEFAULT = 4;
+
+    /**
+     * time the collect waits for a response if <code>max_pages_in_flight</code> pages are sent,
+     * the collect fails if it passes
+     */
+    public static final String CREDIT_TIMEOUT_SETTING = "distributed_collect.credit_timeout";
+    public static final TimeValue CREDIT_TIMEOUT_DEFAULT = TimeValue.timeValueSeconds(30);
+
     private ESLogger logger = Loggers.getLogger(getClass());
 
     public static class DistributingShardCollectFuture extends ShardCollectFuture {
@@ -77,6 +101,7 @@ public class DistributingCollectOperation extends MapSideDataCollectOperation {
         private final List<DiscoveryNode> downStreams;
         private final int numDownStreams;
         private final UUID jobId;
+        private final DistributingProjector distributingProjector;
 
 
         public DistributingShardCollectFuture(UUID jobId,
@@ -85,7 +110,22 @@ public class DistributingCollectOperation extends MapSideDataCollectOperation {
                                               List<DiscoveryNode> downStreams,
                                               TransportService transportService,
                                               Streamer<?>[] streamers) {
+            this(jobId, numShards, resultProvider, downStreams, transportService, streamers, null);
+        }
+
+        /**
+         * @param distributingProjector if not null the rows have already been sent
+         *                              by this projector while collecting
+         */
+        public DistributingShardCollectFuture(UUID jobId,
+                                              int numShards,
+                                              ResultProvider resultProvider,
+                                              List<DiscoveryNode> downStreams,
+                                              TransportService transportService,
+                                              Streamer<?>[] streamers,
+                                              @Nullable DistributingProjector distributingProjector) {
             super(numShards, resultProvider);
+            this.distributingProjector = distributingProjector;
             Preconditions.checkNotNull(downStreams);
             Preconditions.checkNotNull(jobId);
             this.jobId = jobId;
@@ -101,6 +141,10 @@ public class DistributingCollectOperation extends MapSideDataCollectOperation {
 
         @Override
         protected void onAllShardsFinished() {
+            if (distributingProjector != null) {
+                onAllShardsFinishedPipelined();
+                return;
+            }
             Throwable throwable = lastException.get();
             if (throwable != null) {
                 setException(throwable);
@@ -130,6 +174,26 @@ public class DistributingCollectOperation extends MapSideDataCollectOperation {
             }
         }
 
+        private void onAllShardsFinishedPipelined() {
+            Throwable throwable = lastException.get();
+            if (throwable != null) {
+                setException(throwable);
+                distributingProjector.fail(throwable);
+                return;
+            }
+            Futures.addCallback(distributingProjector.result(), new FutureCallback<Object[][]>() {
+                @Override
+                public void onSuccess(@Nullable Object[][] result) {
+                    set(result);
+                }
+
+                @Override
+                public void onFailure(@Nonnull Throwable t) {
+                    setException(t);
+                }
+            });
+        }
+
         private void forwardFailures() {
             int idx = 0;
             for (DistributedResultRequest request : requests) {
@@ -220,23 +284,33 @@ public class DistributingCollectOperation extends MapSideDataCollectOperation {
 
     private final TransportService transportService;
     private final PlanNodeStreamerVisitor streamerVisitor;
+    private final ThreadPool threadPool;
+    private final int pageSize;
+    private final int maxPagesInFlight;
+    private final long creditTimeoutMs;
 
     @Inject
     public DistributingCollectOperation(ClusterService clusterService,
                                         Settings settings,
+                                        GroupingMemoryAccounting groupingMemoryAccounting,
                                         TransportActionProvider transportActionProvider,
                                         Functions functions,
                                         ReferenceResolver referenceResolver,
                                         IndicesService indicesService,
                                         ThreadPool threadPool,
+                                        CollectScheduler collectScheduler,
                                         TransportService transportService,
                                         PlanNodeStreamerVisitor streamerVisitor,
                                         CollectServiceResolver collectServiceResolver) {
-        super(clusterService, settings, transportActionProvider,
+        super(clusterService, settings, groupingMemoryAccounting, transportActionProvider,
                 functions, referenceResolver, indicesService,
-                threadPool, collectServiceResolver);
+                collectScheduler, collectServiceResolver);
         this.transportService = transportService;
         this.streamerVisitor = streamerVisitor;
+        this.threadPool = threadPool;
+        this.pageSize = settings.getAsInt(PAGE_SIZE_SETTING, PAGE_SIZE_DEFAULT);
+        this.maxPagesInFlight = settings.getAsInt(MAX_PAGES_IN_FLIGHT_SETTING, MAX_PAGES_IN_FLIGHT_DEFAULT);
+        this.creditTimeoutMs = settings.getAsTime(CREDIT_TIMEOUT_SETTING, CREDIT_TIMEOUT_DEFAULT).millis();
     }
 
     @Override
@@ -332,6 +406,30 @@ public class DistributingCollectOperation extends MapSideDataCollectOperation {
         return super.handleShardCollect(collectNode);
     }
 
+    /**
+     * if pipelining is enabled the rows are sent by a {@link DistributingProjector} at the end of the
+     * shard projector chain while the shards are collecting
+     */
+    @Nullable
+    @Override
+    protected Projector resultProjector(CollectNode collectNode) {
+        if (pageSize <= 0) {
+            return null;
+        }
+        assert collectNode.jobId().isPresent();
+        return new DistributingProjector(
+                collectNode.jobId().get(),
+                clusterService.localNode().id(),
+                toDiscoveryNodes(collectNode.downStreamNodes()),
+                streamerVisitor.process(collectNode).outputStreamers(),
+                transportService,
+                threadPool,
+                pageSize,
+                maxPagesInFlight,
+                creditTimeoutMs
+        );
+    }
+
     @Override
     protected ShardCollectFuture getShardCollectFuture(
             int numShards, ShardProjectorChain projectorChain, CollectNode collectNode) {
@@ -343,7 +441,8 @@ public class DistributingCollectOperation extends MapSideDataCollectOperation {
                 projectorChain,
                 toDiscoveryNodes(collectNode.downStreamNodes()),
                 transportService,
-                streamers
+                streamers,
+                (DistributingProjector) projectorChain.resultProjector()
         );
     }
 }
@@ -31,6 +31,7 @@ import io.crate.metadata.ReferenceResolver;
 import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.Input;
 import io.crate.operation.projectors.FlatProjectorChain;
+import io.crate.operation.projectors.GroupingMemoryAccounting;
 import io.crate.operation.projectors.ProjectionToProjectorVisitor;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.node.dql.CollectNode;
@@ -57,6 +58,7 @@ public class HandlerSideDataCollectOperation implements CollectOperation<Object[
     @Inject
     public HandlerSideDataCollectOperation(ClusterService clusterService,
                                            Settings settings,
+                                           GroupingMemoryAccounting groupingMemoryAccounting,
                                            TransportActionProvider transportActionProvider,
                                            Functions functions,
                                            ReferenceResolver referenceResolver,
@@ -67,7 +69,7 @@ public class HandlerSideDataCollectOperation implements CollectOperation<Object[
         this.clusterNormalizer = new EvaluatingNormalizer(functions, RowGranularity.CLUSTER, referenceResolver);
         this.implementationVisitor = new ImplementationSymbolVisitor(referenceResolver, functions, RowGranularity.CLUSTER);
         this.projectorVisitor = new ProjectionToProjectorVisitor(
-                clusterService, settings,
+                clusterService, settings, groupingMemoryAccounting,
                 transportActionProvider,
                 implementationVisitor, clusterNormalizer);
     }
@@ -22,12 +22,14 @@
 package io.crate.operation.collect;
 
 import io.crate.operation.Input;
+import io.crate.operation.projectors.BorrowingProjector;
 import io.crate.operation.projectors.Projector;
 import io.crate.operation.reference.doc.lucene.CollectorContext;
 import io.crate.operation.reference.doc.lucene.LuceneCollectorExpression;
 import org.apache.lucene.index.AtomicReader;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.search.*;
 import io.crate.Constants;
 import io.crate.action.SQLXContentQueryParser;
@@ -36,18 +38,24 @@ import org.elasticsearch.cache.recycler.PageCacheRecycler;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.index.fielddata.IndexFieldData;
 import org.elasticsearch.index.fieldvisitor.FieldsVisitor;
+import org.elasticsearch.index.mapper.FieldMapper;
 import org.elasticsearch.index.mapper.internal.SourceFieldMapper;
 import org.elasticsearch.index.service.IndexService;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.shard.service.IndexShard;
 import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.search.MultiValueMode;
 import org.elasticsearch.search.SearchShardTarget;
 import org.elasticsearch.search.internal.DefaultSearchContext;
 import org.elasticsearch.search.internal.SearchContext;
 import org.elasticsearch.search.internal.ShardSearchRequest;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 
@@ -56,6 +64,15 @@ import java.util.List;
  */
 public class LuceneDocCollector extends Collector implements CrateCollector {
 
+    private final static String[] DEFAULT_MAPPING_TYPES = new String[]{Constants.DEFAULT_MAPPING_TYPE};
+
+    private static final Comparator<ScoreDoc> DOC_ID_COMPARATOR = new Comparator<ScoreDoc>() {
+        @Override
+        public int compare(ScoreDoc o1, ScoreDoc o2) {
+            return Integer.compare(o1.doc, o2.doc);
+        }
+    };
+
     private final CollectorFieldsVisitor fieldsVisitor;
     private boolean visitorEnabled = false;
     private AtomicReader currentReader;
@@ -91,7 +108,28 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
         }
     }
 
+    /**
+     * columns to sort by using their field data and the number of documents to collect.
+     * The order has to be the same the downstream sorts by.
+     */
+    public static class OrderBy {
+
+        final String[] columnNames;
+        final boolean[] reverseFlags;
+        final Boolean[] nullsFirst;
+        final int numHits;
+
+        public OrderBy(String[] columnNames, boolean[] reverseFlags, Boolean[] nullsFirst, int numHits) {
+            assert columnNames.length == reverseFlags.length && columnNames.length == nullsFirst.length;
+            this.columnNames = columnNames;
+            this.reverseFlags = reverseFlags;
+            this.nullsFirst = nullsFirst;
+            this.numHits = numHits;
+        }
+    }
+
     private final SearchContext searchContext;
+    private OrderBy orderBy;
     private Projector downstream;
     private final List<Input<?>> topLevelInputs;
     private final List<LuceneCollectorExpression<?>> collectorExpressions;
@@ -132,6 +170,21 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
         sqlxContentQueryParser.parse(searchContext, querySource);
     }
 
+    /**
+     * a collector which uses the search context of the given collector, see {@link ParallelLuceneDocCollector}.
+     * The search context is closed by the collector which created it.
+     */
+    LuceneDocCollector(LuceneDocCollector shardCollector,
+                       List<Input<?>> inputs,
+                       List<LuceneCollectorExpression<?>> collectorExpressions,
+                       Projector downStreamProjector) {
+        downstream(downStreamProjector);
+        this.topLevelInputs = inputs;
+        this.collectorExpressions = collectorExpressions;
+        this.fieldsVisitor = new CollectorFieldsVisitor(collectorExpressions.size());
+        this.searchContext = shardCollector.searchContext;
+    }
+
     @Override
     public void downstream(Projector downstream) {
         downstream.registerUpstream(this);
@@ -143,6 +196,14 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
         return downstream;
     }
 
+    /**
+     * only collect the top <code>orderBy.numHits</code> documents sorted by lucene
+     * instead of every matching document.
+     */
+    public void orderBy(@Nullable OrderBy orderBy) {
+        this.orderBy = orderBy;
+    }
+
     @Override
     public void setScorer(Scorer scorer) throws IOException {}
 
@@ -181,27 +242,130 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
 
     @Override
     public void doCollect() throws Exception {
-        // start collect
+        startCollect();
+        SearchContext.setCurrent(searchContext);
+        Query query = query();
+
+        // do the lucene search
+        try {
+            Sort sort = orderBy == null ? null : buildSort();
+            if (sort == null) {
+                searchContext.searcher().search(query, this);
+            } else {
+                collectSorted(query, sort);
+            }
+        } finally {
+            // the downstream may still read from the searcher on finish, e.g. to resolve ordinals
+            try {
+                downstream.upstreamFinished();
+            } finally {
+                searchContext.close();
+                SearchContext.removeCurrent();
+            }
+        }
+    }
+
+    void startCollect() {
         CollectorContext collectorContext = new CollectorContext()
                 .searchContext(searchContext)
-                .visitor(fieldsVisitor);
+                .visitor(fieldsVisitor)
+                .borrowValues(downstream instanceof BorrowingProjector
+                        && ((BorrowingProjector) downstream).acceptsBorrowedValues());
         for (LuceneCollectorExpression<?> collectorExpression : collectorExpressions) {
             collectorExpression.startCollect(collectorContext);
         }
         visitorEnabled = fieldsVisitor.required();
-        SearchContext.setCurrent(searchContext);
+    }
+
+    SearchContext searchContext() {
+        return searchContext;
+    }
+
+    Query query() {
         Query query = searchContext.query();
         if (query == null) {
             query = new MatchAllDocsQuery();
         }
+        return query;
+    }
 
-        // do the lucene search
+    /**
+     * @return the number of segments of the shard
+     */
+    int numLeaves() {
+        return searchContext.searcher().getIndexReader().leaves().size();
+    }
+
+    /**
+     * collect the matching documents of a single segment, {@link #startCollect()} must have been called before.
+     *
+     * @return false if the downstream doesn't need any more rows
+     */
+    boolean collectLeaf(Weight weight, AtomicReaderContext leaf) throws IOException {
+        BulkScorer scorer = weight.bulkScorer(leaf, !acceptsDocsOutOfOrder(), leaf.reader().getLiveDocs());
+        if (scorer == null) {
+            return true;
+        }
+        setNextReader(leaf);
         try {
-            searchContext.searcher().search(query, this);
-        } finally {
-            searchContext.close();
-            SearchContext.removeCurrent();
-            downstream.upstreamFinished();
+            scorer.score(this);
+        } catch (CollectionTerminatedException e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the lucene sort on the field data of the orderBy columns or null if a column isn't mapped
+     */
+    @Nullable
+    private Sort buildSort() {
+        SortField[] sortFields = new SortField[orderBy.columnNames.length];
+        for (int i = 0; i < sortFields.length; i++) {
+            FieldMapper mapper = searchContext.mapperService().smartNameFieldMapper(
+                    orderBy.columnNames[i], DEFAULT_MAPPING_TYPES);
+            if (mapper == null) {
+                return null;
+            }
+            boolean reverse = orderBy.reverseFlags[i];
+            Boolean nullFirst = orderBy.nullsFirst[i];
+            // nulls are last in ascending and first in descending order if not specified otherwise
+            boolean nullLast = nullFirst == null ? !reverse : !nullFirst;
+            IndexFieldData.XFieldComparatorSource comparatorSource = searchContext.fieldData().getForField(mapper)
+                    .comparatorSource(nullLast ? "_last" : "_first", reverse ? MultiValueMode.MAX : MultiValueMode.MIN);
+            sortFields[i] = new SortField(mapper.names().indexName(), comparatorSource, reverse);
+        }
+        return new Sort(sortFields);
+    }
+
+    /**
+     * let lucene pick the top documents using the field data of the orderBy columns
+     * and only evaluate the inputs for those.
+     */
+    private void collectSorted(Query query, Sort sort) throws IOException {
+        IndexSearcher searcher = searchContext.searcher();
+        int numHits = Math.min(orderBy.numHits, searcher.getIndexReader().maxDoc());
+        if (numHits <= 0) {
+            return;
+        }
+        TopFieldCollector topFieldCollector = TopFieldCollector.create(sort, numHits, false, false, false, false);
+        searcher.search(query, topFieldCollector);
+        ScoreDoc[] scoreDocs = topFieldCollector.topDocs().scoreDocs;
+
+        // load the documents in index order, the downstream sorts the rows anyway
+        Arrays.sort(scoreDocs, DOC_ID_COMPARATOR);
+        List<AtomicReaderContext> leaves = searcher.getIndexReader().leaves();
+        AtomicReaderContext leaf = null;
+        try {
+            for (ScoreDoc scoreDoc : scoreDocs) {
+                if (leaf == null || scoreDoc.doc >= leaf.docBase + leaf.reader().maxDoc()) {
+                    leaf = leaves.get(ReaderUtil.subIndex(scoreDoc.doc, leaves));
+                    setNextReader(leaf);
+                }
+                collect(scoreDoc.doc - leaf.docBase);
+            }
+        } catch (CollectionTerminatedException e) {
+            // the downstream doesn't need any more rows
         }
     }
 }
@@ -21,8 +21,8 @@
 
 package io.crate.operation.collect;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Iterables;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -38,12 +38,17 @@ import io.crate.operation.collect.files.FileCollectInputSymbolVisitor;
 import io.crate.operation.collect.files.FileInputFactory;
 import io.crate.operation.collect.files.FileReadingCollector;
 import io.crate.operation.projectors.FlatProjectorChain;
+import io.crate.operation.projectors.GroupingMemoryAccounting;
 import io.crate.operation.projectors.ProjectionToProjectorVisitor;
+import io.crate.operation.projectors.Projector;
 import io.crate.operation.reference.file.FileLineReferenceResolver;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.node.dql.CollectNode;
 import io.crate.planner.node.dql.FileUriCollectNode;
-import io.crate.planner.symbol.StringValueSymbolVisitor;
+import io.crate.planner.projection.GroupProjection;
+import io.crate.planner.projection.Projection;
+import io.crate.planner.symbol.*;
+import io.crate.types.DataTypes;
 import org.apache.lucene.search.CollectionTerminatedException;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.common.inject.Inject;
@@ -55,13 +60,11 @@ import org.elasticsearch.index.IndexShardMissingException;
 import org.elasticsearch.index.service.IndexService;
 import org.elasticsearch.indices.IndexMissingException;
 import org.elasticsearch.indices.IndicesService;
-import org.elasticsearch.threadpool.ThreadPool;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.*;
 import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * collect local data from node/shards/docs on nodes where the data resides (aka Mapper nodes)
@@ -71,8 +74,7 @@ public class MapSideDataCollectOperation implements CollectOperation<Object[][]>
     private final FileCollectInputSymbolVisitor fileInputSymbolVisitor;
     private final CollectServiceResolver collectServiceResolver;
     private final ProjectionToProjectorVisitor projectorVisitor;
-    private final ThreadPoolExecutor executor;
-    private final int poolSize;
+    private final CollectScheduler collectScheduler;
     private ESLogger logger = Loggers.getLogger(getClass());
 
     private static class SimpleShardCollectFuture extends ShardCollectFuture {
@@ -105,14 +107,14 @@ public class MapSideDataCollectOperation implements CollectOperation<Object[][]>
     @Inject
     public MapSideDataCollectOperation(ClusterService clusterService,
                                        Settings settings,
+                                       GroupingMemoryAccounting groupingMemoryAccounting,
                                        TransportActionProvider transportActionProvider,
                                        Functions functions,
                                        ReferenceResolver referenceResolver,
                                        IndicesService indicesService,
-                                       ThreadPool threadPool,
+                                       CollectScheduler collectScheduler,
                                        CollectServiceResolver collectServiceResolver) {
-        executor = (ThreadPoolExecutor) threadPool.executor(ThreadPool.Names.SEARCH);
-        poolSize = executor.getPoolSize();
+        this.collectScheduler = collectScheduler;
         this.clusterService = clusterService;
         this.indicesService = indicesService;
         this.nodeNormalizer = new EvaluatingNormalizer(functions, RowGranularity.NODE, referenceResolver);
@@ -127,6 +129,7 @@ public class MapSideDataCollectOperation implements CollectOperation<Object[][]>
         this.projectorVisitor = new ProjectionToProjectorVisitor(
                 clusterService,
                 settings,
+                groupingMemoryAccounting,
                 transportActionProvider,
                 nodeImplementationSymbolVisitor
         );
@@ -240,7 +243,8 @@ public class MapSideDataCollectOperation implements CollectOperation<Object[][]>
         final int numShards = collectNode.routing().numShards(localNodeId);
 
         collectNode = collectNode.normalize(nodeNormalizer);
-        ShardProjectorChain projectorChain = new ShardProjectorChain(numShards, collectNode.projections(), projectorVisitor);
+        ShardProjectorChain projectorChain = new ShardProjectorChain(
+                numShards, shardLevelGrouping(collectNode), projectorVisitor, resultProjector(collectNode));
 
         final ShardCollectFuture result = getShardCollectFuture(numShards, projectorChain, collectNode);
 
@@ -301,49 +305,107 @@ public class MapSideDataCollectOperation implements CollectOperation<Object[][]>
         return result;
     }
 
+    /**
+     * if the rows are grouped by a single string column the grouping is split into a
+     * shard level GroupProjection and a node level GroupProjection which merges the partial results.
+     * This enables the shard collectors to group on the field data ordinals (see {@link ShardCollectService}).
+     *
+     * @return the projections to use for the shard collect
+     */
+    private static List<Projection> shardLevelGrouping(CollectNode collectNode) {
+        List<Projection> projections = collectNode.projections();
+        if (projections.isEmpty()
+                || collectNode.maxRowGranularity() != RowGranularity.DOC
+                || !(projections.get(0) instanceof GroupProjection)) {
+            return projections;
+        }
+        GroupProjection groupProjection = (GroupProjection) projections.get(0);
+        if (groupProjection.requiredGranularity() != RowGranularity.CLUSTER
+                || groupProjection.keys().size() != 1
+                || groupProjection.keyTypes() == null
+                || !DataTypes.STRING.equals(groupProjection.keyTypes().get(0))
+                || groupProjection.keys().get(0).symbolType() != SymbolType.INPUT_COLUMN) {
+            return projections;
+        }
+        Symbol key = collectNode.toCollect().get(((InputColumn) groupProjection.keys().get(0)).index());
+        if (key.symbolType() != SymbolType.REFERENCE) {
+            return projections;
+        }
+
+        List<Aggregation> shardAggregations = new ArrayList<>(groupProjection.values().size());
+        List<Aggregation> mergeAggregations = new ArrayList<>(groupProjection.values().size());
+        int idx = 1;
+        for (Aggregation aggregation : groupProjection.values()) {
+            if (aggregation.fromStep() != Aggregation.Step.ITER) {
+                return projections;
+            }
+            shardAggregations.add(new Aggregation(
+                    aggregation.functionInfo(),
+                    aggregation.inputs(),
+                    Aggregation.Step.ITER,
+                    Aggregation.Step.PARTIAL));
+            mergeAggregations.add(new Aggregation(
+                    aggregation.functionInfo(),
+                    ImmutableList.<Symbol>of(new InputColumn(idx)),
+                    Aggregation.Step.PARTIAL,
+                    aggregation.toStep()));
+            idx++;
+        }
+        GroupProjection shardGroupProjection = new GroupProjection(
+                groupProjection.keys(), groupProjection.keyTypes(), shardAggregations);
+        shardGroupProjection.requiredGranularity(RowGranularity.SHARD);
+        GroupProjection mergeGroupProjection = new GroupProjection(
+                ImmutableList.<Symbol>of(new InputColumn(0)), groupProjection.keyTypes(), mergeAggregations);
+
+        return ImmutableList.<Projection>builder()
+                .add(shardGroupProjection)
+                .add(mergeGroupProjection)
+                .addAll(projections.subList(1, projections.size()))
+                .build();
+    }
+
+    /**
+     * schedules the shard collectors as a job of the {@link CollectScheduler},
+     * its threads pull the shards one by one and share their time with the collects of other jobs.
+     * The result fails if the scheduler is stopped before all shards are collected.
+     */
     private void runCollectThreaded(CollectNode collectNode,
                                     final ShardCollectFuture result,
                                     final List<CrateCollector> shardCollectors) throws RejectedExecutionException {
         if (collectNode.maxRowGranularity() == RowGranularity.SHARD) {
             // run sequential to prevent sys.shards queries from using too many threads
-            // and overflowing the threadpool queues
-            executor.execute(new Runnable() {
+            collectScheduler.execute(new CollectScheduler.RejectableTask() {
                 @Override
                 public void run() {
                     for (CrateCollector shardCollector : shardCollectors) {
                         doCollect(result, shardCollector);
                     }
                 }
+
+                @Override
+                public void onRejected(RejectedExecutionException e) {
+                    result.shardFailure(e);
+                }
             });
         } else {
-            int availableThreads = Math.max(poolSize - executor.getActiveCount(), 2);
-            if (availableThreads < shardCollectors.size()) {
-                Iterable<List<CrateCollector>> partition = Iterables.partition(
-                        shardCollectors, shardCollectors.size() / availableThreads);
-                for (final List<CrateCollector> collectors : partition) {
-                    executor.execute(new Runnable() {
-                        @Override
-                        public void run() {
-                            for (CrateCollector collector : collectors) {
-                                doCollect(result, collector);
-                            }
-                        }
-                    });
-                }
-            } else {
-                for (final CrateCollector shardCollector : shardCollectors) {
-                    executor.execute(new Runnable() {
-                        @Override
-                        public void run() {
-                            doCollect(result, shardCollector);
-                        }
-                    });
-                }
+            List<Runnable> tasks = new ArrayList<>(shardCollectors.size());
+            for (final CrateCollector shardCollector : shardCollectors) {
+                tasks.add(new CollectScheduler.RejectableTask() {
+                    @Override
+                    public void run() {
+                        doCollect(result, shardCollector);
+                    }
+
+                    @Override
+                    public void onRejected(RejectedExecutionException e) {
+                        result.shardFailure(e);
+                    }
+                });
             }
+            collectScheduler.schedule(tasks);
         }
     }
 
-
     private void doCollect(ShardCollectFuture result, CrateCollector shardCollector) {
         try {
             shardCollector.doCollect();
@@ -356,6 +418,15 @@ public class MapSideDataCollectOperation implements CollectOperation<Object[][]>
         }
     }
 
+    /**
+     * @return a projector (which must be a ResultProvider) that receives the rows of the node projectors
+     *         instead of collecting them, or null to collect them
+     */
+    @Nullable
+    protected Projector resultProjector(CollectNode collectNode) {
+        return null;
+    }
+
     /**
      * chose the right ShardCollectFuture for this class
      *
@@ -37,6 +37,13 @@ public class ModuloBucketingIterator extends BucketingIterator {
      */
     @Override
     protected int getBucket(@Nullable Object[] row) {
+        return bucket(row, numBuckets);
+    }
+
+    /**
+     * the bucket a row is put into, usable to bucket rows one by one
+     */
+    public static int bucket(@Nullable Object[] row, int numBuckets) {
         if (row == null || row.length == 0 || row[0] == null) {
             return 0;
         } else {
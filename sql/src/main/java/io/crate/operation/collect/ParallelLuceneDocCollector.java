@@ -0,0 +1,219 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.collect;
+
+import io.crate.operation.projectors.Projector;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.search.Weight;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * collects the segments of a single shard with multiple {@link LuceneDocCollector}s in parallel.
+ *
+ * Every collector has its own expressions and downstream, they all use the search context
+ * of the first collector. The calling thread collects with the first collector and the other ones
+ * are submitted to the executor. The segments are claimed one by one, so a collector which
+ * is only started once all segments are claimed doesn't do anything and the calling thread
+ * never has to wait for a collector which is still queued.
+ */
+public class ParallelLuceneDocCollector implements CrateCollector {
+
+    /**
+     * node setting for the maximum number of threads which collect the segments of a single shard,
+     * 1 collects every shard in a single thread.
+     */
+    public static final String SEGMENT_THREADS_SETTING = "collect.segment_threads";
+    public static final int SEGMENT_THREADS_DEFAULT = 1;
+
+    private final List<LuceneDocCollector> collectors;
+    private final Executor executor;
+
+    /**
+     * @param collectors the collectors to use, all except the first one must have been created
+     *                   with the search context of the first one
+     * @param executor   the executor the additional collectors run on
+     */
+    public ParallelLuceneDocCollector(List<LuceneDocCollector> collectors, Executor executor) {
+        assert collectors.size() > 1 : "at least two collectors required";
+        this.collectors = collectors;
+        this.executor = executor;
+    }
+
+    /**
+     * every collector has its own downstream which is set when it is created,
+     * so there is nothing to change here.
+     */
+    @Override
+    public void downstream(Projector downstream) {
+        assert downstream == collectors.get(0).downstream() : "each collector has its own downstream";
+    }
+
+    @Override
+    public Projector downstream() {
+        return collectors.get(0).downstream();
+    }
+
+    @Override
+    public void doCollect() throws Exception {
+        LuceneDocCollector first = collectors.get(0);
+        SearchContext searchContext = first.searchContext();
+        List<SegmentCollect> started = new ArrayList<>(collectors.size() - 1);
+        try {
+            for (LuceneDocCollector collector : collectors) {
+                collector.startCollect();
+            }
+            SearchContext.setCurrent(searchContext);
+            Weight weight = searchContext.searcher().createNormalizedWeight(first.query());
+            List<AtomicReaderContext> leaves = searchContext.searcher().getIndexReader().leaves();
+            AtomicInteger nextLeaf = new AtomicInteger(0);
+            AtomicReference<Throwable> failure = new AtomicReference<>(null);
+
+            int numCollectors = Math.min(collectors.size(), leaves.size());
+            for (int i = 1; i < numCollectors; i++) {
+                SegmentCollect segmentCollect = new SegmentCollect(
+                        collectors.get(i), searchContext, weight, leaves, nextLeaf, failure);
+                try {
+                    executor.execute(segmentCollect);
+                } catch (RejectedExecutionException e) {
+                    // the remaining segments are collected by the other collectors
+                    break;
+                }
+                started.add(segmentCollect);
+            }
+            new SegmentCollect(first, searchContext, weight, leaves, nextLeaf, failure).run();
+            for (SegmentCollect segmentCollect : started) {
+                segmentCollect.awaitOrCancel();
+            }
+            started.clear();
+            Throwable throwable = failure.get();
+            if (throwable != null) {
+                if (throwable instanceof Exception) {
+                    throw (Exception) throwable;
+                }
+                throw (Error) throwable;
+            }
+        } finally {
+            try {
+                for (SegmentCollect segmentCollect : started) {
+                    segmentCollect.awaitOrCancel();
+                }
+                // the downstreams may still read from the searcher on finish, e.g. to resolve ordinals
+                finishDownstreams();
+            } finally {
+                searchContext.close();
+                SearchContext.removeCurrent();
+            }
+        }
+    }
+
+    /**
+     * finishes the downstreams of all collectors, even if one of them fails
+     */
+    private void finishDownstreams() throws Exception {
+        Throwable failure = null;
+        for (LuceneDocCollector collector : collectors) {
+            try {
+                collector.downstream().upstreamFinished();
+            } catch (Throwable t) {
+                if (failure == null) {
+                    failure = t;
+                }
+            }
+        }
+        if (failure != null) {
+            if (failure instanceof Exception) {
+                throw (Exception) failure;
+            }
+            throw (Error) failure;
+        }
+    }
+
+    /**
+     * collects segments with a single collector until all segments are claimed
+     */
+    private static class SegmentCollect implements Runnable {
+
+        private final LuceneDocCollector collector;
+        private final SearchContext searchContext;
+        private final Weight weight;
+        private final List<AtomicReaderContext> leaves;
+        private final AtomicInteger nextLeaf;
+        private final AtomicReference<Throwable> failure;
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private SegmentCollect(LuceneDocCollector collector,
+                               SearchContext searchContext,
+                               Weight weight,
+                               List<AtomicReaderContext> leaves,
+                               AtomicInteger nextLeaf,
+                               AtomicReference<Throwable> failure) {
+            this.collector = collector;
+            this.searchContext = searchContext;
+            this.weight = weight;
+            this.leaves = leaves;
+            this.nextLeaf = nextLeaf;
+            this.failure = failure;
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            SearchContext.setCurrent(searchContext);
+            try {
+                int leaf;
+                while (failure.get() == null && (leaf = nextLeaf.getAndIncrement()) < leaves.size()) {
+                    if (!collector.collectLeaf(weight, leaves.get(leaf))) {
+                        // this collectors downstream doesn't need any more rows
+                        break;
+                    }
+                }
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            } finally {
+                SearchContext.removeCurrent();
+                done.countDown();
+            }
+        }
+
+        /**
+         * wait until the collect finished or prevent it from running if it hasn't been started yet
+         */
+        void awaitOrCancel() throws InterruptedException {
+            if (claimed.compareAndSet(false, true)) {
+                return;
+            }
+            done.await();
+        }
+    }
+}
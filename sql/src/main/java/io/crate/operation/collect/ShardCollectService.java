@@ -21,6 +21,7 @@
 
 package io.crate.operation.collect;
 
+import com.google.common.collect.ImmutableSet;
 import io.crate.action.SQLXContentQueryParser;
 import io.crate.analyze.EvaluatingNormalizer;
 import io.crate.blob.v2.BlobIndices;
@@ -33,13 +34,21 @@ import io.crate.metadata.shard.blob.BlobShardReferenceResolver;
 import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.Input;
 import io.crate.operation.collect.blobs.BlobDocCollector;
+import io.crate.operation.projectors.GroupingMemoryAccounting;
+import io.crate.operation.projectors.GroupingProjector;
 import io.crate.operation.projectors.ProjectionToProjectorVisitor;
 import io.crate.operation.projectors.Projector;
 import io.crate.operation.reference.doc.blob.BlobReferenceResolver;
-import io.crate.operation.reference.doc.lucene.LuceneDocLevelReferenceResolver;
+import io.crate.operation.reference.doc.lucene.*;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.node.dql.CollectNode;
+import io.crate.planner.projection.GroupProjection;
+import io.crate.planner.projection.Projection;
+import io.crate.planner.projection.TopNProjection;
+import io.crate.planner.symbol.InputColumn;
 import io.crate.planner.symbol.Literal;
+import io.crate.planner.symbol.Symbol;
+import io.crate.planner.symbol.SymbolType;
 import org.elasticsearch.cache.recycler.CacheRecycler;
 import org.elasticsearch.cache.recycler.PageCacheRecycler;
 import org.elasticsearch.cluster.ClusterService;
@@ -51,8 +60,26 @@ import org.elasticsearch.index.service.IndexService;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.script.ScriptService;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
 public class ShardCollectService {
 
+    /**
+     * column references which are read from field data, lucene can sort on these
+     */
+    private static final Set<Class<?>> SORTABLE_COLUMN_REFERENCES = ImmutableSet.<Class<?>>of(
+            ByteColumnReference.class,
+            ShortColumnReference.class,
+            IntegerColumnReference.class,
+            LongColumnReference.class,
+            FloatColumnReference.class,
+            DoubleColumnReference.class,
+            BytesRefColumnReference.class
+    );
+
     private final CollectInputSymbolVisitor<?> docInputSymbolVisitor;
     private final ClusterService clusterService;
     private final ShardId shardId;
@@ -68,10 +95,13 @@ public class ShardCollectService {
     private final ProjectionToProjectorVisitor projectorVisitor;
     private final boolean isBlobShard;
     private final BlobIndices blobIndices;
+    private final CollectScheduler collectScheduler;
+    private final int segmentThreads;
 
     @Inject
     public ShardCollectService(ClusterService clusterService,
                                Settings settings,
+                               GroupingMemoryAccounting groupingMemoryAccounting,
                                TransportActionProvider transportActionProvider,
                                ShardId shardId,
                                IndexService indexService,
@@ -83,7 +113,8 @@ public class ShardCollectService {
                                Functions functions,
                                ShardReferenceResolver referenceResolver,
                                BlobIndices blobIndices,
-                               BlobShardReferenceResolver blobShardReferenceResolver) {
+                               BlobShardReferenceResolver blobShardReferenceResolver,
+                               CollectScheduler collectScheduler) {
         this.clusterService = clusterService;
         this.shardId = shardId;
 
@@ -95,6 +126,9 @@ public class ShardCollectService {
         this.sqlxContentQueryParser = sqlxContentQueryParser;
 
         this.queryBuilder = new ESQueryBuilder();
+        this.collectScheduler = collectScheduler;
+        this.segmentThreads = settings.getAsInt(ParallelLuceneDocCollector.SEGMENT_THREADS_SETTING,
+                ParallelLuceneDocCollector.SEGMENT_THREADS_DEFAULT);
 
         this.blobIndices = blobIndices;
         isBlobShard = BlobIndices.isBlobShard(this.shardId);
@@ -115,6 +149,7 @@ public class ShardCollectService {
         this.projectorVisitor = new ProjectionToProjectorVisitor(
                 clusterService,
                 settings,
+                groupingMemoryAccounting,
                 transportActionProvider,
                 shardImplementationSymbolVisitor,
                 shardNormalizer);
@@ -141,7 +176,7 @@ public class ShardCollectService {
                 if (isBlobShard) {
                     return getBlobIndexCollector(normalizedCollectNode, downstream);
                 } else {
-                    return getLuceneIndexCollector(normalizedCollectNode, downstream);
+                    return getLuceneIndexCollector(normalizedCollectNode, projectorChain, downstream);
                 }
             } else if (granularity == RowGranularity.SHARD) {
                 ImplementationSymbolVisitor.Context shardCtx = shardImplementationSymbolVisitor.process(normalizedCollectNode);
@@ -168,10 +203,16 @@ public class ShardCollectService {
         );
     }
 
-    private CrateCollector getLuceneIndexCollector(CollectNode collectNode, Projector downstream) throws Exception {
+    private CrateCollector getLuceneIndexCollector(CollectNode collectNode,
+                                                   ShardProjectorChain projectorChain,
+                                                   Projector downstream) throws Exception {
         CollectInputSymbolVisitor.Context docCtx = docInputSymbolVisitor.process(collectNode);
+        List<Projection> shardProjections = projectorChain.shardProjections();
+        if (!shardProjections.isEmpty() && shardProjections.get(0) instanceof GroupProjection) {
+            groupOnOrdinals((GroupProjection) shardProjections.get(0), docCtx, downstream);
+        }
         BytesReference querySource = queryBuilder.convert(collectNode.whereClause());
-        return new LuceneDocCollector(
+        LuceneDocCollector collector = new LuceneDocCollector(
                 clusterService,
                 shardId,
                 indexService,
@@ -184,5 +225,92 @@ public class ShardCollectService {
                 docCtx.docLevelExpressions(),
                 querySource,
                 downstream);
+        LuceneDocCollector.OrderBy orderBy = luceneOrderBy(collectNode, docCtx);
+        collector.orderBy(orderBy);
+        if (orderBy != null || segmentThreads <= 1) {
+            return collector;
+        }
+        int numCollectors = Math.min(segmentThreads, collector.numLeaves());
+        if (numCollectors <= 1) {
+            return collector;
+        }
+        // every collector needs its own expressions and shard projectors, the node projectors are shared
+        List<LuceneDocCollector> collectors = new ArrayList<>(numCollectors);
+        collectors.add(collector);
+        for (int i = 1; i < numCollectors; i++) {
+            CollectInputSymbolVisitor.Context segmentCtx = docInputSymbolVisitor.process(collectNode);
+            Projector segmentDownstream = projectorChain.newShardDownstreamProjector(projectorVisitor);
+            if (!shardProjections.isEmpty() && shardProjections.get(0) instanceof GroupProjection) {
+                groupOnOrdinals((GroupProjection) shardProjections.get(0), segmentCtx, segmentDownstream);
+            }
+            collectors.add(new LuceneDocCollector(
+                    collector, segmentCtx.topLevelInputs(), segmentCtx.docLevelExpressions(), segmentDownstream));
+        }
+        return new ParallelLuceneDocCollector(collectors, collectScheduler);
+    }
+
+    /**
+     * if the rows are sorted and limited right after collecting and all order by columns
+     * are plain columns with field data, the collector can let lucene pick the top documents
+     * of this shard instead of building a row for every matching document.
+     */
+    @Nullable
+    private LuceneDocCollector.OrderBy luceneOrderBy(CollectNode collectNode,
+                                                     CollectInputSymbolVisitor.Context docCtx) {
+        if (collectNode.projections().isEmpty()
+                || !(collectNode.projections().get(0) instanceof TopNProjection)) {
+            return null;
+        }
+        TopNProjection topN = (TopNProjection) collectNode.projections().get(0);
+        if (!topN.isOrdered() || topN.limit() < 0) {
+            return null;
+        }
+        List<Symbol> orderBy = topN.orderBy();
+        String[] columnNames = new String[orderBy.size()];
+        for (int i = 0; i < columnNames.length; i++) {
+            Symbol symbol = orderBy.get(i);
+            if (symbol.symbolType() != SymbolType.INPUT_COLUMN) {
+                return null;
+            }
+            Input<?> input = (Input<?>) docCtx.topLevelInputs().get(((InputColumn) symbol).index());
+            if (!SORTABLE_COLUMN_REFERENCES.contains(input.getClass())) {
+                return null;
+            }
+            columnNames[i] = ((ColumnReferenceCollectorExpression<?>) input).columnName();
+        }
+        return new LuceneDocCollector.OrderBy(
+                columnNames, topN.reverseFlags(), topN.nullsFirst(), topN.limit() + topN.offset());
+    }
+
+    /**
+     * if the shard level grouping is done on a single string column
+     * let the grouping projector group on the field data ordinals of that column
+     * instead of the values.
+     */
+    @SuppressWarnings("unchecked")
+    private void groupOnOrdinals(GroupProjection groupProjection,
+                                 CollectInputSymbolVisitor.Context docCtx,
+                                 Projector downstream) {
+        if (!(downstream instanceof GroupingProjector)
+                || groupProjection.keys().size() != 1
+                || groupProjection.keys().get(0).symbolType() != SymbolType.INPUT_COLUMN) {
+            return;
+        }
+        int keyIdx = ((InputColumn) groupProjection.keys().get(0)).index();
+        Input<?> keyInput = (Input<?>) docCtx.topLevelInputs().get(keyIdx);
+        if (!(keyInput instanceof BytesRefColumnReference)) {
+            return;
+        }
+        BytesRefOrdinalsColumnReference ordinalsInput =
+                new BytesRefOrdinalsColumnReference(((BytesRefColumnReference) keyInput).columnName());
+        docCtx.topLevelInputs().set(keyIdx, ordinalsInput);
+        List<LuceneCollectorExpression<?>> docLevelExpressions = docCtx.docLevelExpressions();
+        for (int i = 0; i < docLevelExpressions.size(); i++) {
+            if (docLevelExpressions.get(i) == keyInput) {
+                docLevelExpressions.set(i, ordinalsInput);
+                break;
+            }
+        }
+        ((GroupingProjector) downstream).groupOnOrdinals(ordinalsInput);
     }
 }
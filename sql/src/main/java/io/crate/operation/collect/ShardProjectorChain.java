@@ -21,6 +21,8 @@
 
 package io.crate.operation.collect;
 
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.crate.operation.projectors.CollectingProjector;
@@ -30,6 +32,7 @@ import io.crate.operation.projectors.Projector;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.projection.Projection;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -42,14 +45,31 @@ public class ShardProjectorChain implements ResultProvider {
     private Projector firstNodeProjector;
     private ResultProvider lastProjector;
     private int shardProjectionsIndex = -1;
+    private Projector resultProjector = null;
 
 
     public ShardProjectorChain(int numShards, List<Projection> projections, ProjectionToProjectorVisitor nodeProjectorVisitor) {
+        this(numShards, projections, nodeProjectorVisitor, null);
+    }
+
+    /**
+     * @param resultProjector optional projector which is used as the last projector of the chain
+     *                        instead of a {@link CollectingProjector}, it must be a ResultProvider.
+     *                        It is not used if the chain already ends with a ResultProvider,
+     *                        see {@link #resultProjector()}
+     */
+    public ShardProjectorChain(int numShards,
+                               List<Projection> projections,
+                               ProjectionToProjectorVisitor nodeProjectorVisitor,
+                               @Nullable Projector resultProjector) {
+        Preconditions.checkArgument(resultProjector == null || resultProjector instanceof ResultProvider,
+                "resultProjector must be a ResultProvider");
         this.projections = projections;
         nodeProjectors = new ArrayList<>();
 
         if (projections.size() == 0) {
-            firstNodeProjector = new CollectingProjector();
+            firstNodeProjector = resultProjector == null ? new CollectingProjector() : resultProjector;
+            this.resultProjector = resultProjector;
             lastProjector = (ResultProvider) firstNodeProjector;
             nodeProjectors.add(firstNodeProjector);
             shardProjectors = null;
@@ -62,6 +82,7 @@ public class ShardProjectorChain implements ResultProvider {
                 shardProjectionsIndex = idx;
                 break;
             }
+            idx++;
         }
 
         Projector previousProjector = null;
@@ -78,9 +99,16 @@ public class ShardProjectorChain implements ResultProvider {
         }
         if (shardProjectionsIndex >= 0) {
             shardProjectors = new ArrayList<>((shardProjectionsIndex + 1) * numShards);
-            if (shardProjectionsIndex == 0) {
+            if (nodeProjectors.isEmpty()) {
                 // no node projectors
-                previousProjector = firstNodeProjector = new CollectingProjector();
+                if (resultProjector == null) {
+                    previousProjector = firstNodeProjector = new CollectingProjector();
+                } else {
+                    previousProjector = firstNodeProjector = resultProjector;
+                    this.resultProjector = resultProjector;
+                    // started with the node projectors
+                    nodeProjectors.add(resultProjector);
+                }
             }
         } else {
             shardProjectors = null;
@@ -88,12 +116,25 @@ public class ShardProjectorChain implements ResultProvider {
         assert previousProjector != null;
         if (previousProjector instanceof ResultProvider) {
             lastProjector = (ResultProvider) previousProjector;
+        } else if (resultProjector != null) {
+            lastProjector = (ResultProvider) resultProjector;
+            this.resultProjector = resultProjector;
+            previousProjector.downstream(resultProjector);
+            nodeProjectors.add(resultProjector);
         } else {
             lastProjector = new CollectingProjector();
             previousProjector.downstream((Projector) lastProjector);
         }
     }
 
+    /**
+     * @return the resultProjector given on construction if it is part of this chain, otherwise null
+     */
+    @Nullable
+    public Projector resultProjector() {
+        return resultProjector;
+    }
+
 
     /**
      * Creates a new shard downstream chain if needed and returns a projector to be used as downstream
@@ -117,6 +158,16 @@ public class ShardProjectorChain implements ResultProvider {
         return projector;
     }
 
+    /**
+     * @return the projections which are executed once per shard, in order
+     */
+    public List<Projection> shardProjections() {
+        if (shardProjectionsIndex < 0) {
+            return ImmutableList.of();
+        }
+        return projections.subList(0, shardProjectionsIndex + 1);
+    }
+
     public ListenableFuture<Object[][]> result() {
         return lastProjector.result();
     }
@@ -21,21 +21,40 @@
 
 package io.crate.operation.merge;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.crate.executor.transport.TransportActionProvider;
 import io.crate.operation.DownstreamOperation;
 import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.projectors.FlatProjectorChain;
+import io.crate.operation.projectors.GroupingMemoryAccounting;
 import io.crate.operation.projectors.ProjectionToProjectorVisitor;
 import io.crate.operation.projectors.Projector;
+import io.crate.operation.projectors.SortingTopNProjector;
 import io.crate.planner.node.dql.MergeNode;
+import io.crate.planner.projection.Projection;
+import io.crate.planner.projection.TopNProjection;
+import io.crate.planner.symbol.InputColumn;
+import io.crate.planner.symbol.Symbol;
+import io.crate.planner.symbol.SymbolType;
+import io.crate.types.DataType;
+import org.apache.lucene.util.PriorityQueue;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.common.settings.Settings;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * merge rows - that's it
+ *
+ * If the upstreams return sorted rows (see {@link MergeNode#sortedInputs()}) the rows of every
+ * {@link #addRows(Object[][])} call are kept as a sorted run and merged once all upstreams finished.
+ * The merge stops as soon as the projectors don't need any more rows,
+ * so only <code>offset + limit</code> rows are passed on instead of sorting the rows of every upstream again.
  */
 public class MergeOperation implements DownstreamOperation {
 
@@ -45,14 +64,37 @@ public class MergeOperation implements DownstreamOperation {
 
     private AtomicBoolean wantMore = new AtomicBoolean(true);
 
+    /**
+     * ordering of the upstream rows, null if the rows aren't sorted
+     */
+    private final Comparator<Object[]> sortedRunsOrdering;
+    private final List<Object[][]> sortedRuns;
+
     public MergeOperation(ClusterService clusterService,
                           Settings settings,
+                          GroupingMemoryAccounting groupingMemoryAccounting,
                           TransportActionProvider transportActionProvider,
                           ImplementationSymbolVisitor symbolVisitor, MergeNode mergeNode) {
-        projectorChain = new FlatProjectorChain(mergeNode.projections(),
+        List<Projection> projections = mergeNode.projections();
+        sortedRunsOrdering = mergeNode.sortedInputs() ? sortedRunsOrdering(mergeNode) : null;
+        if (sortedRunsOrdering != null) {
+            sortedRuns = new ArrayList<>(mergeNode.numUpstreams());
+            // the rows are merged in order, they only need to be limited
+            TopNProjection topN = (TopNProjection) projections.get(0);
+            TopNProjection limitProjection = new TopNProjection(topN.limit(), topN.offset());
+            limitProjection.outputs(topN.outputs());
+            projections = ImmutableList.<Projection>builder()
+                    .add(limitProjection)
+                    .addAll(projections.subList(1, projections.size()))
+                    .build();
+        } else {
+            sortedRuns = null;
+        }
+        projectorChain = new FlatProjectorChain(projections,
                 new ProjectionToProjectorVisitor(
                         clusterService,
                         settings,
+                        groupingMemoryAccounting,
                         transportActionProvider,
                         symbolVisitor)
         );
@@ -62,6 +104,14 @@ public class MergeOperation implements DownstreamOperation {
     }
 
     public boolean addRows(Object[][] rows) throws Exception {
+        if (sortedRuns != null) {
+            if (rows.length > 0) {
+                synchronized (sortedRuns) {
+                    sortedRuns.add(rows);
+                }
+            }
+            return true;
+        }
         for (int i = 0, length = rows.length; i < length && wantMore.get(); i++) {
             // assume that all projectors .setNextRow(...) methods are threadsafe
             if (!downstream.setNextRow(rows[i])) {
@@ -78,9 +128,88 @@ public class MergeOperation implements DownstreamOperation {
 
     @Override
     public void finished() {
+        if (sortedRuns != null) {
+            synchronized (sortedRuns) {
+                mergeSortedRuns();
+            }
+        }
         downstream.upstreamFinished();
     }
 
+    /**
+     * @return the ordering of the upstream rows if the first projection sorts by
+     * input columns only, otherwise null
+     */
+    @Nullable
+    private static Comparator<Object[]> sortedRunsOrdering(MergeNode mergeNode) {
+        if (mergeNode.projections().isEmpty()
+                || !(mergeNode.projections().get(0) instanceof TopNProjection)) {
+            return null;
+        }
+        TopNProjection topN = (TopNProjection) mergeNode.projections().get(0);
+        if (!topN.isOrdered() || topN.limit() <= 0) {
+            return null;
+        }
+        List<Symbol> orderBySymbols = topN.orderBy();
+        int[] orderBy = new int[orderBySymbols.size()];
+        List<DataType> inputTypes = mergeNode.inputTypes();
+        DataType[] orderByTypes = inputTypes == null ? null : new DataType[orderBy.length];
+        for (int i = 0; i < orderBy.length; i++) {
+            Symbol symbol = orderBySymbols.get(i);
+            if (symbol.symbolType() != SymbolType.INPUT_COLUMN) {
+                return null;
+            }
+            orderBy[i] = ((InputColumn) symbol).index();
+            if (orderByTypes != null && orderBy[i] < inputTypes.size()) {
+                orderByTypes[i] = inputTypes.get(orderBy[i]);
+            }
+        }
+        return SortingTopNProjector.rowOrdering(orderBy, topN.reverseFlags(), topN.nullsFirst(), orderByTypes);
+    }
+
+    /**
+     * k-way merge of the sorted runs, stops as soon as the downstream doesn't want any more rows
+     */
+    private void mergeSortedRuns() {
+        if (sortedRuns.isEmpty()) {
+            return;
+        }
+        PriorityQueue<Run> runs = new PriorityQueue<Run>(sortedRuns.size()) {
+            @Override
+            protected boolean lessThan(Run a, Run b) {
+                return sortedRunsOrdering.compare(a.current(), b.current()) < 0;
+            }
+        };
+        for (Object[][] rows : sortedRuns) {
+            runs.add(new Run(rows));
+        }
+        sortedRuns.clear();
+        while (runs.size() > 0 && wantMore.get()) {
+            Run run = runs.top();
+            if (!downstream.setNextRow(run.current())) {
+                wantMore.set(false);
+            }
+            if (++run.pos < run.rows.length) {
+                runs.updateTop();
+            } else {
+                runs.pop();
+            }
+        }
+    }
+
+    private static class Run {
+        private final Object[][] rows;
+        private int pos = 0;
+
+        Run(Object[][] rows) {
+            this.rows = rows;
+        }
+
+        Object[] current() {
+            return rows[pos];
+        }
+    }
+
     public ListenableFuture<Object[][]> result() {
         return projectorChain.result();
     }
@@ -20,20 +20,28 @@
  */
 package io.crate.operation.operator;
 
+import com.carrotsearch.hppc.IntOpenHashSet;
+import com.carrotsearch.hppc.LongOpenHashSet;
+import com.carrotsearch.hppc.ObjectOpenHashSet;
 import com.google.common.collect.ImmutableList;
+import io.crate.metadata.CompilableScalar;
 import io.crate.metadata.FunctionIdent;
 import io.crate.metadata.FunctionInfo;
+import io.crate.metadata.Scalar;
 import io.crate.operation.Input;
 import io.crate.planner.symbol.Function;
 import io.crate.planner.symbol.Literal;
 import io.crate.planner.symbol.Symbol;
+import io.crate.planner.symbol.SymbolType;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 import io.crate.types.SetType;
+import org.apache.lucene.util.BytesRef;
 
+import java.util.List;
 import java.util.Set;
 
-public class InOperator extends Operator<Object> {
+public class InOperator extends Operator<Object> implements CompilableScalar<Boolean, Object> {
 
     public static final String NAME = "op_in";
 
@@ -93,4 +101,127 @@ public class InOperator extends Operator<Object> {
         return inList.contains(inValue);
     }
 
+    /**
+     * builds the lookup set for a literal IN list once,
+     * using a primitive set for integral and string values.
+     */
+    @Override
+    public Scalar<Boolean, Object> compile(List<Symbol> arguments) {
+        assert (arguments.size() == 2);
+        Symbol right = arguments.get(1);
+        if (right.symbolType() != SymbolType.LITERAL) {
+            return this;
+        }
+        Literal inList = (Literal) right;
+        if (inList.value() == null || inList.valueType().id() != SetType.ID) {
+            return this;
+        }
+        Set<?> values = (Set<?>) inList.value();
+        if (values.contains(null)) {
+            // evaluates to null for every value
+            return this;
+        }
+        DataType innerType = ((SetType) inList.valueType()).innerType();
+        InValues inValues;
+        if (innerType.equals(DataTypes.LONG) || innerType.equals(DataTypes.TIMESTAMP)) {
+            inValues = new LongInValues(values);
+        } else if (innerType.equals(DataTypes.INTEGER)
+                || innerType.equals(DataTypes.SHORT)
+                || innerType.equals(DataTypes.BYTE)) {
+            inValues = new IntInValues(values);
+        } else if (innerType.equals(DataTypes.STRING) || innerType.equals(DataTypes.IP)) {
+            inValues = new BytesRefInValues(values);
+        } else {
+            return this;
+        }
+        return new CompiledInOperator(info, inValues);
+    }
+
+    private static class CompiledInOperator extends InOperator {
+
+        private final InValues inValues;
+
+        private CompiledInOperator(FunctionInfo info, InValues inValues) {
+            super(info);
+            this.inValues = inValues;
+        }
+
+        @Override
+        public Boolean evaluate(Input<Object>... args) {
+            assert (args != null);
+            assert (args.length == 2);
+
+            Object inValue = args[0].value();
+            if (inValue == null) {
+                return null;
+            }
+            return inValues.contains(inValue);
+        }
+
+        @Override
+        public Scalar<Boolean, Object> compile(List<Symbol> arguments) {
+            return this;
+        }
+    }
+
+    private interface InValues {
+        boolean contains(Object value);
+    }
+
+    private static class LongInValues implements InValues {
+
+        private final LongOpenHashSet set;
+
+        private LongInValues(Set<?> values) {
+            set = new LongOpenHashSet(values.size());
+            for (Object value : values) {
+                set.add(((Number) value).longValue());
+            }
+        }
+
+        @Override
+        public boolean contains(Object value) {
+            return (value instanceof Long || value instanceof Integer
+                    || value instanceof Short || value instanceof Byte)
+                    && set.contains(((Number) value).longValue());
+        }
+    }
+
+    private static class IntInValues implements InValues {
+
+        private final IntOpenHashSet set;
+
+        private IntInValues(Set<?> values) {
+            set = new IntOpenHashSet(values.size());
+            for (Object value : values) {
+                set.add(((Number) value).intValue());
+            }
+        }
+
+        @Override
+        public boolean contains(Object value) {
+            return (value instanceof Integer || value instanceof Short || value instanceof Byte)
+                    && set.contains(((Number) value).intValue());
+        }
+    }
+
+    private static class BytesRefInValues implements InValues {
+
+        private final ObjectOpenHashSet<BytesRef> set;
+
+        private BytesRefInValues(Set<?> values) {
+            set = new ObjectOpenHashSet<>(values.size());
+            for (Object value : values) {
+                set.add(value instanceof BytesRef ? (BytesRef) value : new BytesRef(value.toString()));
+            }
+        }
+
+        @Override
+        public boolean contains(Object value) {
+            if (value instanceof String) {
+                return set.contains(new BytesRef((String) value));
+            }
+            return value instanceof BytesRef && set.contains((BytesRef) value);
+        }
+    }
 }
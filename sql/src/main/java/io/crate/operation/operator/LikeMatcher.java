@@ -0,0 +1,298 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.operator;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * a compiled LIKE pattern.
+ *
+ * Patterns which only consist of a literal with a leading and/or trailing <code>%</code>
+ * are matched directly on the UTF-8 bytes of a {@link BytesRef}, all other patterns are
+ * compiled to a {@link Pattern} once.
+ */
+public abstract class LikeMatcher {
+
+    public enum Kind {
+        EXACT,
+        PREFIX,
+        SUFFIX,
+        CONTAINS,
+        REGEX
+    }
+
+    private static final Object ANY_STRING = new Object();
+    private static final Object ANY_CHAR = new Object();
+
+    public static LikeMatcher compile(String pattern) {
+        return compile(pattern, LikeOperator.DEFAULT_ESCAPE);
+    }
+
+    public static LikeMatcher compile(String pattern, char escapeChar) {
+        List<Object> tokens = tokenize(pattern, escapeChar);
+        int start = 0;
+        int end = tokens.size();
+        while (start < end && tokens.get(start) == ANY_STRING) {
+            start++;
+        }
+        while (end > start && tokens.get(end - 1) == ANY_STRING) {
+            end--;
+        }
+        if (start == end) {
+            return start == 0
+                    ? new ExactMatcher(pattern, "")
+                    : new PrefixMatcher(pattern, "");
+        }
+        if (end - start > 1 || tokens.get(start) == ANY_CHAR) {
+            return new RegexMatcher(pattern, tokens);
+        }
+        String literal = (String) tokens.get(start);
+        boolean leading = start > 0;
+        boolean trailing = end < tokens.size();
+        if (leading && trailing) {
+            return new ContainsMatcher(pattern, literal);
+        } else if (leading) {
+            return new SuffixMatcher(pattern, literal);
+        } else if (trailing) {
+            return new PrefixMatcher(pattern, literal);
+        }
+        return new ExactMatcher(pattern, literal);
+    }
+
+    /**
+     * splits the pattern into literals and wildcards using the escaping rules of
+     * {@link LikeOperator#patternToRegex(String, char, boolean)}
+     */
+    private static List<Object> tokenize(String pattern, char escapeChar) {
+        List<Object> tokens = new ArrayList<>();
+        StringBuilder literal = new StringBuilder(pattern.length());
+        boolean escaped = false;
+        for (char currentChar : pattern.toCharArray()) {
+            if (!escaped && currentChar == escapeChar) {
+                escaped = true;
+                continue;
+            }
+            if (!escaped && (currentChar == '%' || currentChar == '_')) {
+                if (literal.length() > 0) {
+                    tokens.add(literal.toString());
+                    literal.setLength(0);
+                }
+                tokens.add(currentChar == '%' ? ANY_STRING : ANY_CHAR);
+            } else {
+                literal.append(currentChar);
+            }
+            escaped = false;
+        }
+        if (literal.length() > 0) {
+            tokens.add(literal.toString());
+        }
+        return tokens;
+    }
+
+    private final String pattern;
+
+    private LikeMatcher(String pattern) {
+        this.pattern = pattern;
+    }
+
+    public String pattern() {
+        return pattern;
+    }
+
+    public abstract Kind kind();
+
+    /**
+     * @return the unescaped literal of the pattern or null if it is of kind {@link Kind#REGEX}
+     */
+    @Nullable
+    public abstract String literal();
+
+    public abstract boolean matches(BytesRef value);
+
+    public abstract boolean matches(String value);
+
+    private abstract static class LiteralMatcher extends LikeMatcher {
+
+        protected final String literal;
+        protected final BytesRef bytes;
+
+        private LiteralMatcher(String pattern, String literal) {
+            super(pattern);
+            this.literal = literal;
+            this.bytes = new BytesRef(literal);
+        }
+
+        @Override
+        public String literal() {
+            return literal;
+        }
+    }
+
+    private static class ExactMatcher extends LiteralMatcher {
+
+        private ExactMatcher(String pattern, String literal) {
+            super(pattern, literal);
+        }
+
+        @Override
+        public Kind kind() {
+            return Kind.EXACT;
+        }
+
+        @Override
+        public boolean matches(BytesRef value) {
+            return bytes.bytesEquals(value);
+        }
+
+        @Override
+        public boolean matches(String value) {
+            return literal.equals(value);
+        }
+    }
+
+    private static class PrefixMatcher extends LiteralMatcher {
+
+        private PrefixMatcher(String pattern, String literal) {
+            super(pattern, literal);
+        }
+
+        @Override
+        public Kind kind() {
+            return Kind.PREFIX;
+        }
+
+        @Override
+        public boolean matches(BytesRef value) {
+            return StringHelper.startsWith(value, bytes);
+        }
+
+        @Override
+        public boolean matches(String value) {
+            return value.startsWith(literal);
+        }
+    }
+
+    private static class SuffixMatcher extends LiteralMatcher {
+
+        private SuffixMatcher(String pattern, String literal) {
+            super(pattern, literal);
+        }
+
+        @Override
+        public Kind kind() {
+            return Kind.SUFFIX;
+        }
+
+        @Override
+        public boolean matches(BytesRef value) {
+            return StringHelper.endsWith(value, bytes);
+        }
+
+        @Override
+        public boolean matches(String value) {
+            return value.endsWith(literal);
+        }
+    }
+
+    private static class ContainsMatcher extends LiteralMatcher {
+
+        private ContainsMatcher(String pattern, String literal) {
+            super(pattern, literal);
+        }
+
+        @Override
+        public Kind kind() {
+            return Kind.CONTAINS;
+        }
+
+        /**
+         * UTF-8 is self-synchronizing, so a byte sequence match is always a character sequence match
+         */
+        @Override
+        public boolean matches(BytesRef value) {
+            byte[] needle = bytes.bytes;
+            int needleLength = bytes.length;
+            int last = value.offset + value.length - needleLength;
+            outer:
+            for (int i = value.offset; i <= last; i++) {
+                for (int j = 0; j < needleLength; j++) {
+                    if (value.bytes[i + j] != needle[j]) {
+                        continue outer;
+                    }
+                }
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean matches(String value) {
+            return value.contains(literal);
+        }
+    }
+
+    private static class RegexMatcher extends LikeMatcher {
+
+        private final Pattern regex;
+
+        private RegexMatcher(String pattern, List<Object> tokens) {
+            super(pattern);
+            StringBuilder sb = new StringBuilder(pattern.length() * 2);
+            for (Object token : tokens) {
+                if (token == ANY_STRING) {
+                    sb.append(".*");
+                } else if (token == ANY_CHAR) {
+                    sb.append('.');
+                } else {
+                    sb.append(Pattern.quote((String) token));
+                }
+            }
+            this.regex = Pattern.compile(sb.toString(), Pattern.DOTALL);
+        }
+
+        @Override
+        public Kind kind() {
+            return Kind.REGEX;
+        }
+
+        @Override
+        public String literal() {
+            return null;
+        }
+
+        @Override
+        public boolean matches(BytesRef value) {
+            return matches(value.utf8ToString());
+        }
+
+        @Override
+        public boolean matches(String value) {
+            return regex.matcher(value).matches();
+        }
+    }
+}
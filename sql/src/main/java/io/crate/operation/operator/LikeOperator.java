@@ -21,17 +21,20 @@
 
 package io.crate.operation.operator;
 
+import io.crate.metadata.CompilableScalar;
 import io.crate.metadata.FunctionInfo;
+import io.crate.metadata.Scalar;
 import io.crate.operation.Input;
 import io.crate.planner.symbol.Function;
 import io.crate.planner.symbol.Literal;
 import io.crate.planner.symbol.Symbol;
+import io.crate.planner.symbol.SymbolType;
 import io.crate.types.DataTypes;
 import org.apache.lucene.util.BytesRef;
 
-import java.util.regex.Pattern;
+import java.util.List;
 
-public class LikeOperator extends Operator<BytesRef> {
+public class LikeOperator extends Operator<BytesRef> implements CompilableScalar<Boolean, BytesRef> {
 
     public static final String NAME = "op_like";
 
@@ -77,14 +80,23 @@ public class LikeOperator extends Operator<BytesRef> {
             return null;
         }
 
-        return matches(expression.utf8ToString(), pattern.utf8ToString());
+        return LikeMatcher.compile(pattern.utf8ToString()).matches(expression);
     }
 
-    private boolean matches(String expression, String pattern) {
-        return Pattern.matches(
-                patternToRegex(pattern, DEFAULT_ESCAPE, true),
-                expression
-        );
+    /**
+     * compiles the pattern once if it is a literal
+     */
+    @Override
+    public Scalar<Boolean, BytesRef> compile(List<Symbol> arguments) {
+        assert (arguments.size() == 2);
+        Symbol pattern = arguments.get(1);
+        if (pattern.symbolType() == SymbolType.LITERAL) {
+            Object value = ((Literal) pattern).value();
+            if (value instanceof BytesRef) {
+                return new CompiledLikeOperator(info, LikeMatcher.compile(((BytesRef) value).utf8ToString()));
+            }
+        }
+        return this;
     }
 
     public static String patternToRegex(String patternString, char escapeChar, boolean shouldEscape) {
@@ -137,4 +149,30 @@ public class LikeOperator extends Operator<BytesRef> {
         return regex.toString();
     }
 
+    private static class CompiledLikeOperator extends LikeOperator {
+
+        private final LikeMatcher matcher;
+
+        private CompiledLikeOperator(FunctionInfo info, LikeMatcher matcher) {
+            super(info);
+            this.matcher = matcher;
+        }
+
+        @Override
+        public Boolean evaluate(Input<BytesRef>... args) {
+            assert (args != null);
+            assert (args.length == 2);
+
+            BytesRef expression = args[0].value();
+            if (expression == null) {
+                return null;
+            }
+            return matcher.matches(expression);
+        }
+
+        @Override
+        public Scalar<Boolean, BytesRef> compile(List<Symbol> arguments) {
+            return this;
+        }
+    }
 }
@@ -5,8 +5,9 @@ import io.crate.metadata.FunctionIdent;
 import io.crate.metadata.FunctionImplementation;
 import io.crate.metadata.FunctionInfo;
 import io.crate.metadata.Scalar;
-import io.crate.operation.Input;
 import io.crate.planner.symbol.Function;
+import io.crate.planner.symbol.Literal;
+import io.crate.planner.symbol.Parameter;
 import io.crate.planner.symbol.Symbol;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
@@ -20,12 +21,17 @@ public abstract class Operator<I> implements FunctionImplementation<Function>, S
     }
 
     protected boolean containsNull(Symbol left, Symbol right) {
-        if (left.symbolType().isValueSymbol() && ((Input<?>)left).value() == null) {
-            return true;
-        }
-        if (right.symbolType().isValueSymbol() && ((Input<?>)right).value() == null) {
-            return true;
+        return isNull(left) || isNull(right);
+    }
+
+    private static boolean isNull(Symbol symbol) {
+        switch (symbol.symbolType()) {
+            case LITERAL:
+                return ((Literal) symbol).isNull();
+            case PARAMETER:
+                return ((Parameter) symbol).value() == null;
+            default:
+                return false;
         }
-        return false;
     }
 }
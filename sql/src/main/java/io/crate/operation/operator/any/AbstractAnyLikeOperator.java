@@ -22,6 +22,7 @@
 package io.crate.operation.operator.any;
 
 import io.crate.metadata.FunctionInfo;
+import io.crate.operation.operator.LikeMatcher;
 import org.apache.lucene.util.BytesRef;
 
 public abstract class AbstractAnyLikeOperator<T extends AbstractAnyLikeOperator<?>> extends AnyOperator<T> {
@@ -38,7 +39,7 @@ public abstract class AbstractAnyLikeOperator<T extends AbstractAnyLikeOperator<
     @Override
     protected Boolean doEvaluate(Object right, Iterable<?> leftIterable) {
         BytesRef rightBytesRef = (BytesRef)right;
-        String pattern = rightBytesRef.utf8ToString();
+        LikeMatcher matcher = LikeMatcher.compile(rightBytesRef.utf8ToString());
 
         boolean hasNull = false;
         for (Object elem : leftIterable) {
@@ -48,18 +49,18 @@ public abstract class AbstractAnyLikeOperator<T extends AbstractAnyLikeOperator<
             }
             assert (elem instanceof BytesRef || elem instanceof String);
 
-            String elemValue;
+            BytesRef elemValue;
             if (elem instanceof BytesRef) {
-                elemValue = ((BytesRef) elem).utf8ToString();
+                elemValue = (BytesRef) elem;
             } else {
-                elemValue = (String)elem;
+                elemValue = new BytesRef((String) elem);
             }
-            if (matches(elemValue, pattern)) {
+            if (matches(matcher, elemValue)) {
                 return true;
             }
         }
         return hasNull ? null : false;
     }
 
-    protected abstract boolean matches(String expression, String pattern);
+    protected abstract boolean matches(LikeMatcher matcher, BytesRef expression);
 }
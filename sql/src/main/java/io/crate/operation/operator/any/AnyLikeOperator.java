@@ -23,11 +23,10 @@ package io.crate.operation.operator.any;
 
 import io.crate.metadata.FunctionImplementation;
 import io.crate.metadata.FunctionInfo;
-import io.crate.operation.operator.LikeOperator;
+import io.crate.operation.operator.LikeMatcher;
 import io.crate.operation.operator.OperatorModule;
 import io.crate.planner.symbol.Function;
-
-import java.util.regex.Pattern;
+import org.apache.lucene.util.BytesRef;
 
 
 public class AnyLikeOperator extends AbstractAnyLikeOperator<AnyLikeOperator> {
@@ -55,10 +54,8 @@ public class AnyLikeOperator extends AbstractAnyLikeOperator<AnyLikeOperator> {
         super(info);
     }
 
-    protected boolean matches(String expression, String pattern) {
-        return Pattern.matches(
-                LikeOperator.patternToRegex(pattern, LikeOperator.DEFAULT_ESCAPE, true),
-                expression
-        );
+    @Override
+    protected boolean matches(LikeMatcher matcher, BytesRef expression) {
+        return matcher.matches(expression);
     }
 }
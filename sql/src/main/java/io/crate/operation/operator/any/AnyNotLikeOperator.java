@@ -23,11 +23,10 @@ package io.crate.operation.operator.any;
 
 import io.crate.metadata.FunctionImplementation;
 import io.crate.metadata.FunctionInfo;
-import io.crate.operation.operator.LikeOperator;
+import io.crate.operation.operator.LikeMatcher;
 import io.crate.operation.operator.OperatorModule;
 import io.crate.planner.symbol.Function;
-
-import java.util.regex.Pattern;
+import org.apache.lucene.util.BytesRef;
 
 public class AnyNotLikeOperator extends AbstractAnyLikeOperator<AnyNotLikeOperator> {
 
@@ -55,10 +54,7 @@ public class AnyNotLikeOperator extends AbstractAnyLikeOperator<AnyNotLikeOperat
     }
 
     @Override
-    protected boolean matches(String expression, String pattern) {
-        return !Pattern.matches(
-                LikeOperator.patternToRegex(pattern, LikeOperator.DEFAULT_ESCAPE, true),
-                expression
-        );
+    protected boolean matches(LikeMatcher matcher, BytesRef expression) {
+        return !matcher.matches(expression);
     }
 }
@@ -30,11 +30,12 @@ import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
-public class AggregationProjector implements Projector {
+public class AggregationProjector implements BorrowingProjector {
 
     private final AggregationCollector[] aggregationCollectors;
     private final Set<CollectExpression<?>> collectExpressions;
     private final Object[] row;
+    private final boolean acceptsBorrowedValues;
     private Projector downstream;
     private final AtomicInteger remainingUpstreams = new AtomicInteger(0);
     private final AtomicReference<Throwable> upstreamFailure = new AtomicReference<>(null);
@@ -43,6 +44,7 @@ public class AggregationProjector implements Projector {
                                 AggregationContext[] aggregations) {
 
         row = new Object[aggregations.length];
+        acceptsBorrowedValues = BorrowedValues.retainedByNone(aggregations);
         this.collectExpressions = collectExpressions;
         aggregationCollectors = new AggregationCollector[aggregations.length];
         for (int i = 0; i < aggregationCollectors.length; i++) {
@@ -68,6 +70,11 @@ public class AggregationProjector implements Projector {
         }
     }
 
+    @Override
+    public boolean acceptsBorrowedValues() {
+        return acceptsBorrowedValues;
+    }
+
     @Override
     public void downstream(Projector downstream) {
         this.downstream = downstream;
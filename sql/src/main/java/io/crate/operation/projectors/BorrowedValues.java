@@ -0,0 +1,83 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors;
+
+import io.crate.operation.AggregationContext;
+import io.crate.operation.aggregation.impl.ApproxCountDistinctAggregation;
+import io.crate.operation.aggregation.impl.CountAggregation;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+
+import java.util.List;
+
+/**
+ * helpers for projectors which receive borrowed values, see {@link BorrowingProjector}
+ */
+public class BorrowedValues {
+
+    private BorrowedValues() {
+    }
+
+    /**
+     * @return the value itself or a copy of it if it might be borrowed
+     */
+    public static Object own(Object value) {
+        if (value instanceof BytesRef) {
+            return BytesRef.deepCopyOf((BytesRef) value);
+        }
+        return value;
+    }
+
+    /**
+     * copies the values of the given list which might be borrowed in place
+     */
+    public static List<Object> own(List<Object> values) {
+        for (int i = 0; i < values.size(); i++) {
+            Object value = values.get(i);
+            if (value instanceof BytesRef) {
+                values.set(i, BytesRef.deepCopyOf((BytesRef) value));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return true if none of the aggregations keeps references to its input values in its state.
+     *         Only string values are borrowed, so only aggregations on strings which store their inputs
+     *         (e.g. min, max, arbitrary and collect_set) prevent borrowing.
+     */
+    public static boolean retainedByNone(AggregationContext[] aggregations) {
+        for (AggregationContext aggregation : aggregations) {
+            String name = aggregation.function().info().ident().name();
+            if (name.equals(CountAggregation.NAME) || name.equals(ApproxCountDistinctAggregation.NAME)) {
+                continue;
+            }
+            for (DataType argumentType : aggregation.function().info().ident().argumentTypes()) {
+                if (argumentType.equals(DataTypes.STRING) || argumentType.equals(DataTypes.IP)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
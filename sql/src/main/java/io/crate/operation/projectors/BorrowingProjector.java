@@ -0,0 +1,42 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors;
+
+/**
+ * A projector which can receive rows with borrowed values.
+ *
+ * A value is borrowed if the upstream reuses it for its next row, e.g. a
+ * {@link org.apache.lucene.util.BytesRef} which points into a buffer of a collector.
+ * Borrowed values are only valid until {@link #setNextRow(Object...)} returns, so
+ * values the projector retains have to be copied, see {@link BorrowedValues#own(Object)}.
+ *
+ * Upstreams only pass borrowed values to projectors which implement this interface
+ * and return true from {@link #acceptsBorrowedValues()}, all other projectors receive owned values.
+ */
+public interface BorrowingProjector extends Projector {
+
+    /**
+     * @return true if borrowed values may be passed to {@link #setNextRow(Object...)},
+     *         must not change once the projection started.
+     */
+    public boolean acceptsBorrowedValues();
+}
@@ -24,6 +24,7 @@ package io.crate.operation.projectors;
 import io.crate.metadata.ColumnIdent;
 import io.crate.operation.Input;
 import io.crate.operation.collect.CollectExpression;
+import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.action.admin.indices.create.TransportCreateIndexAction;
 import org.elasticsearch.action.bulk.TransportShardBulkAction;
 import org.elasticsearch.client.Requests;
@@ -77,7 +78,12 @@ public class ColumnIndexWriterProjector extends AbstractIndexWriterProjector {
         Iterator<ColumnIdent> identIterator = columnIdents.iterator();
         Iterator<Input<?>> inputIterator = columnInputs.iterator();
         while (identIterator.hasNext()) {
-            sourceMap.put(identIterator.next().fqn(), inputIterator.next().value());
+            Object value = inputIterator.next().value();
+            if (value instanceof BytesRef) {
+                // string columns collected from field data, would be indexed base64 encoded
+                value = ((BytesRef) value).utf8ToString();
+            }
+            sourceMap.put(identIterator.next().fqn(), value);
         }
 
         try {
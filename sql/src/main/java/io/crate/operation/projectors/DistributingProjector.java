@@ -0,0 +1,372 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.crate.Streamer;
+import io.crate.executor.TaskResult;
+import io.crate.executor.transport.distributed.DistributedFailureRequest;
+import io.crate.executor.transport.distributed.DistributedResultRequest;
+import io.crate.executor.transport.distributed.DistributedResultResponse;
+import io.crate.executor.transport.merge.TransportMergeNodeAction;
+import io.crate.operation.ProjectorUpstream;
+import io.crate.operation.collect.ModuloBucketingIterator;
+import org.elasticsearch.ElasticsearchTimeoutException;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.BaseTransportResponseHandler;
+import org.elasticsearch.transport.TransportException;
+import org.elasticsearch.transport.TransportService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Projector which buckets the rows it receives by the downstream nodes
+ * (using the same hash as {@link ModuloBucketingIterator}) and sends a bucket
+ * as soon as it contains <code>pageSize</code> rows instead of waiting for all shards to finish.
+ *
+ * The pages are numbered per downstream, the last page (which may be empty) is sent once all
+ * upstreams finished, so the merge nodes can tell when this node is done.
+ *
+ * At most <code>maxPagesInFlight</code> pages per downstream are sent without a response,
+ * further rows block the upstream until a response arrives. If none arrives within
+ * <code>creditTimeoutMs</code> the job fails instead of sending more pages.
+ * Pages which are rejected by the downstream are retried after an increasing delay.
+ *
+ * The result of this projector is always empty, the rows are only sent to the downstream nodes.
+ * It is set once all downstreams acknowledged all pages.
+ */
+public class DistributingProjector implements Projector, ResultProvider {
+
+    static final int MAX_RETRIES = 5;
+    static final long RETRY_DELAY_MS = 50;
+
+    private final ESLogger logger = Loggers.getLogger(getClass());
+
+    private final UUID jobId;
+    private final String upstreamId;
+    private final List<DiscoveryNode> downstreams;
+    private final Streamer<?>[] streamers;
+    private final TransportService transportService;
+    private final ThreadPool threadPool;
+    private final int pageSize;
+    private final long creditTimeoutMs;
+
+    private final Bucket[] buckets;
+    private final Semaphore[] credits;
+    private final AtomicInteger remainingUpstreams = new AtomicInteger(0);
+    private final AtomicInteger pendingRequests = new AtomicInteger(0);
+    private final AtomicBoolean lastPagesSent = new AtomicBoolean(false);
+    private final AtomicBoolean failed = new AtomicBoolean(false);
+    private final SettableFuture<Object[][]> result = SettableFuture.create();
+
+    private static class Bucket {
+        private List<Object[]> rows = new ArrayList<>();
+        private int nextPage = 0;
+    }
+
+    /**
+     * @param jobId the id of the context on the downstream nodes
+     * @param upstreamId id of this upstream, unique within the job (the local node id)
+     * @param downstreams the nodes the rows are distributed to
+     * @param streamers streamers of the rows
+     * @param pageSize number of rows after which a bucket is sent to its downstream
+     * @param maxPagesInFlight number of pages per downstream which are sent before waiting for a response
+     * @param creditTimeoutMs time to wait for a response if <code>maxPagesInFlight</code> pages are sent
+     */
+    public DistributingProjector(UUID jobId,
+                                 String upstreamId,
+                                 List<DiscoveryNode> downstreams,
+                                 Streamer<?>[] streamers,
+                                 TransportService transportService,
+                                 ThreadPool threadPool,
+                                 int pageSize,
+                                 int maxPagesInFlight,
+                                 long creditTimeoutMs) {
+        Preconditions.checkArgument(pageSize > 0, "pageSize must be greater than 0");
+        Preconditions.checkArgument(maxPagesInFlight > 0, "maxPagesInFlight must be greater than 0");
+        this.jobId = jobId;
+        this.upstreamId = upstreamId;
+        this.downstreams = downstreams;
+        this.streamers = streamers;
+        this.transportService = transportService;
+        this.threadPool = threadPool;
+        this.pageSize = pageSize;
+        this.creditTimeoutMs = creditTimeoutMs;
+        this.buckets = new Bucket[downstreams.size()];
+        this.credits = new Semaphore[downstreams.size()];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+            credits[i] = new Semaphore(maxPagesInFlight);
+        }
+    }
+
+    @Override
+    public void startProjection() {
+        if (remainingUpstreams.get() <= 0) {
+            upstreamFinished();
+        }
+    }
+
+    @Override
+    public boolean setNextRow(Object... row) {
+        if (failed.get()) {
+            return false;
+        }
+        int bucketIdx = ModuloBucketingIterator.bucket(row, buckets.length);
+        Bucket bucket = buckets[bucketIdx];
+        List<Object[]> page = null;
+        int pageNum = 0;
+        synchronized (bucket) {
+            bucket.rows.add(row);
+            if (bucket.rows.size() >= pageSize) {
+                page = bucket.rows;
+                pageNum = bucket.nextPage++;
+                bucket.rows = new ArrayList<>(pageSize);
+            }
+        }
+        if (page != null) {
+            sendPage(bucketIdx, pageNum, false, page);
+        }
+        return !failed.get();
+    }
+
+    @Override
+    public void registerUpstream(ProjectorUpstream upstream) {
+        remainingUpstreams.incrementAndGet();
+    }
+
+    @Override
+    public void upstreamFinished() {
+        if (remainingUpstreams.decrementAndGet() > 0 || failed.get()) {
+            return;
+        }
+        for (int i = 0; i < buckets.length; i++) {
+            Bucket bucket = buckets[i];
+            List<Object[]> page;
+            int pageNum;
+            synchronized (bucket) {
+                page = bucket.rows;
+                pageNum = bucket.nextPage++;
+                bucket.rows = new ArrayList<>(0);
+            }
+            sendPage(i, pageNum, true, page);
+        }
+        lastPagesSent.set(true);
+        setResultIfDone();
+    }
+
+    /**
+     * the result is set once the last pages are sent and all requests are acknowledged,
+     * the merge nodes might still fail a page which has been sent before
+     */
+    private void setResultIfDone() {
+        if (lastPagesSent.get() && pendingRequests.get() == 0 && !failed.get()) {
+            result.set(TaskResult.EMPTY_RESULT.rows());
+        }
+    }
+
+    @Override
+    public void upstreamFailed(Throwable throwable) {
+        fail(throwable);
+    }
+
+    /**
+     * send a failure to all downstreams instead of the remaining pages.
+     * Only the first call has an effect.
+     */
+    public void fail(Throwable throwable) {
+        if (!failed.compareAndSet(false, true)) {
+            return;
+        }
+        // the failAction isn't executed on the search thread pool, so it isn't rejected if the downstream is busy
+        for (DiscoveryNode node : downstreams) {
+            sendFailure(node);
+        }
+        // wake up upstreams waiting for credits, they won't send anything anymore
+        for (Semaphore credit : credits) {
+            credit.release(Integer.MAX_VALUE / 2);
+        }
+        result.setException(throwable);
+    }
+
+    private void sendPage(int bucketIdx, int page, boolean isLast, List<Object[]> rows) {
+        Semaphore credit = credits[bucketIdx];
+        try {
+            if (!credit.tryAcquire(creditTimeoutMs, TimeUnit.MILLISECONDS)) {
+                // don't block forever, e.g. if the responses are waiting for the thread of the upstream
+                fail(new ElasticsearchTimeoutException(String.format(Locale.ENGLISH,
+                        "no response from node %s within %dms, failing distributed collect %s",
+                        downstreams.get(bucketIdx).id(), creditTimeoutMs, jobId)));
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+            return;
+        }
+        if (failed.get()) {
+            credit.release();
+            return;
+        }
+        DistributedResultRequest request = new DistributedResultRequest(jobId, streamers, upstreamId, page, isLast);
+        request.rows(rows.toArray(new Object[rows.size()][]));
+        pendingRequests.incrementAndGet();
+        sendRequest(request, downstreams.get(bucketIdx), credit, 0);
+    }
+
+    /**
+     * @param credit the credit acquired for this request which is released once the request is done
+     * @param attempt number of previous attempts which have been rejected
+     */
+    private void sendRequest(final DistributedResultRequest request,
+                             final DiscoveryNode node,
+                             final Semaphore credit,
+                             final int attempt) {
+        if (logger.isTraceEnabled()) {
+            logger.trace("[{}] sending page {} (last: {}) to {}", jobId, request.page(), request.isLast(), node.id());
+        }
+        transportService.submitRequest(
+                node,
+                TransportMergeNodeAction.mergeRowsAction,
+                request,
+                new BaseTransportResponseHandler<DistributedResultResponse>() {
+                    @Override
+                    public DistributedResultResponse newInstance() {
+                        return new DistributedResultResponse();
+                    }
+
+                    @Override
+                    public void handleResponse(DistributedResultResponse response) {
+                        releaseCredit();
+                        pendingRequests.decrementAndGet();
+                        setResultIfDone();
+                    }
+
+                    @Override
+                    public void handleException(TransportException exp) {
+                        Throwable cause = exp.getCause();
+                        if (cause instanceof EsRejectedExecutionException
+                                && attempt < MAX_RETRIES && !failed.get()) {
+                            retry();
+                            return;
+                        }
+                        releaseCredit();
+                        if (!(cause instanceof EsRejectedExecutionException)) {
+                            logger.error("[{}] Exception sending distributing collect page to {}",
+                                    exp, jobId, node.id());
+                        }
+                        fail(cause);
+                    }
+
+                    @Override
+                    public String executor() {
+                        return ThreadPool.Names.SAME;
+                    }
+
+                    private void releaseCredit() {
+                        credit.release();
+                    }
+
+                    private void retry() {
+                        long delay = RETRY_DELAY_MS << attempt;
+                        logger.debug("[{}] page {} rejected by {}, retrying in {}ms",
+                                jobId, request.page(), node.id(), delay);
+                        threadPool.schedule(TimeValue.timeValueMillis(delay), ThreadPool.Names.GENERIC, new Runnable() {
+                            @Override
+                            public void run() {
+                                sendRequest(request, node, credit, attempt + 1);
+                            }
+                        });
+                    }
+                }
+        );
+    }
+
+    private void sendFailure(final DiscoveryNode node) {
+        transportService.submitRequest(
+                node,
+                TransportMergeNodeAction.failAction,
+                new DistributedFailureRequest(jobId, upstreamId),
+                new BaseTransportResponseHandler<DistributedResultResponse>() {
+                    @Override
+                    public DistributedResultResponse newInstance() {
+                        return new DistributedResultResponse();
+                    }
+
+                    @Override
+                    public void handleResponse(DistributedResultResponse response) {
+                    }
+
+                    @Override
+                    public void handleException(TransportException exp) {
+                        logger.error("[{}] Exception sending distributing collect failure to {}",
+                                exp, jobId, node.id());
+                        result.setException(exp.getCause());
+                    }
+
+                    @Override
+                    public String executor() {
+                        return ThreadPool.Names.SAME;
+                    }
+                }
+        );
+    }
+
+    @Override
+    public void downstream(Projector downstream) {
+        throw new UnsupportedOperationException("DistributingProjector doesn't support downstreams");
+    }
+
+    @Override
+    public Projector downstream() {
+        return null;
+    }
+
+    @Override
+    public ListenableFuture<Object[][]> result() {
+        return result;
+    }
+
+    @Override
+    public Iterator<Object[]> iterator() throws IllegalStateException {
+        if (!result.isDone()) {
+            throw new IllegalStateException("result not ready yet");
+        }
+        return Collections.emptyIterator();
+    }
+}
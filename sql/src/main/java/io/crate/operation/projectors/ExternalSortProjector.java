@@ -0,0 +1,379 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors;
+
+import com.google.common.base.Preconditions;
+import io.crate.exceptions.UnhandledServerException;
+import io.crate.operation.Input;
+import io.crate.operation.collect.CollectExpression;
+import io.crate.types.DataType;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sorts all rows it receives and passes them on to its downstream in order,
+ * applying offset and limit.
+ *
+ * In contrast to the {@link SortingTopNProjector} the number of rows isn't bound by memory:
+ * once the estimated size of the buffered rows exceeds the memory limit they are sorted and
+ * written as a run to a temporary file. When all upstreams finished the runs and the remaining
+ * buffered rows are merged and streamed to the downstream, keeping only one row per run in memory.
+ */
+public class ExternalSortProjector extends AbstractProjector {
+
+    /**
+     * node setting for the estimated heap size the rows of a single sort may use
+     * before they're spilled to disk, either as absolute value or as percentage of the heap.
+     */
+    public static final String MEMORY_LIMIT_SETTING = "sort.memory_limit";
+    public static final String MEMORY_LIMIT_DEFAULT = "10%";
+
+    /**
+     * node setting for the directory the sorted runs are written to, defaults to java.io.tmpdir
+     */
+    public static final String SPILL_PATH_SETTING = "sort.spill_path";
+
+    /**
+     * rough estimates of the heap used by a row array and by a value in it.
+     * Used to decide when the rows are spilled to disk.
+     */
+    private static final long ROW_BYTES = 32;
+    private static final long VALUE_BYTES = 24;
+
+    private static final byte VALUE_BYTES_REF = 0;
+    private static final byte VALUE_GENERIC = 1;
+
+    private final int numOutputs;
+    private final Comparator<Object[]> ordering;
+    private final int offset;
+    private final long limit;
+    private final long memoryLimitBytes;
+    private final File spillDirectory;
+
+    private List<Object[]> rows = new ArrayList<>();
+    private long rowsBytes = 0;
+    private final List<File> runs = new ArrayList<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>(null);
+
+    /**
+     * @param inputs             contains output {@link io.crate.operation.Input}s and orderBy {@link io.crate.operation.Input}s
+     * @param collectExpressions gathered from outputs and orderBy inputs
+     * @param numOutputs         <code>inputs</code> contains this much output {@link io.crate.operation.Input}s starting form index 0
+     * @param orderBy            indices of {@link io.crate.operation.Input}s in parameter <code>inputs</code> we sort by
+     * @param reverseFlags       for every index orderBy a boolean indicates ascending (<code>false</code>) or descending (<code>true</code>) order
+     * @param orderByTypes       the types of the orderBy inputs, may be null
+     * @param limit              the number of rows to pass on, {@link TopN#NO_LIMIT} passes on all rows
+     * @param offset             the initial offset, this number of rows are skipped
+     * @param memoryLimitBytes   the estimated size of the buffered rows after which they're written to disk
+     * @param spillDirectory     the directory the sorted runs are written to
+     */
+    public ExternalSortProjector(Input<?>[] inputs,
+                                 CollectExpression<?>[] collectExpressions,
+                                 int numOutputs,
+                                 int[] orderBy,
+                                 boolean[] reverseFlags,
+                                 Boolean[] nullsFirst,
+                                 @Nullable DataType[] orderByTypes,
+                                 int limit,
+                                 int offset,
+                                 long memoryLimitBytes,
+                                 File spillDirectory) {
+        super(inputs, collectExpressions);
+        Preconditions.checkArgument(limit >= TopN.NO_LIMIT, "invalid limit");
+        Preconditions.checkArgument(offset >= 0, "invalid offset");
+        this.numOutputs = numOutputs;
+        this.ordering = SortingTopNProjector.rowOrdering(orderBy, reverseFlags, nullsFirst, orderByTypes);
+        this.offset = offset;
+        this.limit = limit == TopN.NO_LIMIT ? Long.MAX_VALUE : limit;
+        this.memoryLimitBytes = memoryLimitBytes;
+        this.spillDirectory = spillDirectory;
+    }
+
+    @Override
+    public void startProjection() {
+        if (remainingUpstreams.get() <= 0) {
+            upstreamFinished();
+        }
+    }
+
+    @Override
+    public synchronized boolean setNextRow(Object... row) {
+        if (failure.get() != null) {
+            return false;
+        }
+        for (CollectExpression<?> collectExpression : collectExpressions) {
+            collectExpression.setNextRow(row);
+        }
+        Object[] evaluatedRow = new Object[inputs.length];
+        long rowBytes = ROW_BYTES;
+        for (int i = 0; i < inputs.length; i++) {
+            Object value = inputs[i].value();
+            evaluatedRow[i] = value;
+            rowBytes += VALUE_BYTES;
+            if (value instanceof BytesRef) {
+                rowBytes += ((BytesRef) value).length;
+            } else if (value instanceof String) {
+                rowBytes += 2 * ((String) value).length();
+            }
+        }
+        rows.add(evaluatedRow);
+        rowsBytes += rowBytes;
+        if (memoryLimitBytes > 0 && rowsBytes > memoryLimitBytes) {
+            try {
+                spill();
+            } catch (IOException e) {
+                failure.set(new UnhandledServerException("Failed to spill sorted rows to disk", e));
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void spill() throws IOException {
+        Collections.sort(rows, ordering);
+        File file = File.createTempFile("crate-sort-", ".run", spillDirectory);
+        runs.add(file);
+        try (StreamOutput out = new OutputStreamStreamOutput(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeVInt(rows.size());
+            for (Object[] row : rows) {
+                for (Object value : row) {
+                    writeValue(out, value);
+                }
+            }
+        }
+        rows = new ArrayList<>();
+        rowsBytes = 0;
+    }
+
+    private static void writeValue(StreamOutput out, Object value) throws IOException {
+        if (value instanceof BytesRef) {
+            out.writeByte(VALUE_BYTES_REF);
+            out.writeBytesRef((BytesRef) value);
+        } else {
+            out.writeByte(VALUE_GENERIC);
+            out.writeGenericValue(value);
+        }
+    }
+
+    private static Object readValue(StreamInput in) throws IOException {
+        if (in.readByte() == VALUE_BYTES_REF) {
+            return in.readBytesRef();
+        }
+        return in.readGenericValue();
+    }
+
+    @Override
+    public void upstreamFinished() {
+        if (remainingUpstreams.decrementAndGet() > 0) {
+            return;
+        }
+        if (failure.get() == null) {
+            try {
+                emitSorted();
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+        }
+        synchronized (this) {
+            deleteRuns();
+        }
+        if (downstream != null) {
+            Throwable throwable = failure.get();
+            if (throwable == null) {
+                downstream.upstreamFinished();
+            } else {
+                downstream.upstreamFailed(throwable);
+            }
+        }
+    }
+
+    @Override
+    public void upstreamFailed(Throwable throwable) {
+        failure.compareAndSet(null, throwable);
+        if (remainingUpstreams.decrementAndGet() > 0) {
+            return;
+        }
+        synchronized (this) {
+            deleteRuns();
+        }
+        if (downstream != null) {
+            downstream.upstreamFailed(failure.get());
+        }
+    }
+
+    private synchronized void emitSorted() throws IOException {
+        Collections.sort(rows, ordering);
+        Iterator<Object[]> sorted;
+        List<RunReader> readers = new ArrayList<>(runs.size());
+        if (runs.isEmpty()) {
+            sorted = rows.iterator();
+        } else {
+            for (File run : runs) {
+                readers.add(new RunReader(run));
+            }
+            sorted = new MergeIterator(rows, readers);
+        }
+        try {
+            long skip = offset;
+            long remaining = limit;
+            while (remaining > 0 && sorted.hasNext()) {
+                Object[] row = sorted.next();
+                if (skip > 0) {
+                    skip--;
+                    continue;
+                }
+                remaining--;
+                if (downstream != null && !downstream.setNextRow(Arrays.copyOf(row, numOutputs))) {
+                    break;
+                }
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+            rows = new ArrayList<>(0);
+        }
+    }
+
+    private void deleteRuns() {
+        for (File run : runs) {
+            if (!run.delete()) {
+                run.deleteOnExit();
+            }
+        }
+        runs.clear();
+    }
+
+    int numRuns() {
+        return runs.size();
+    }
+
+    private class RunReader implements Closeable {
+
+        private final StreamInput in;
+        private int remaining;
+
+        RunReader(File run) throws IOException {
+            in = new InputStreamStreamInput(new BufferedInputStream(new FileInputStream(run)));
+            remaining = in.readVInt();
+        }
+
+        /**
+         * @return the next row of this run or null if the run is exhausted
+         */
+        @Nullable
+        Object[] next() throws IOException {
+            if (remaining == 0) {
+                return null;
+            }
+            remaining--;
+            Object[] row = new Object[inputs.length];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = readValue(in);
+            }
+            return row;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * merges the sorted rows in memory and the sorted runs on disk
+     */
+    private class MergeIterator implements Iterator<Object[]> {
+
+        private final Iterator<Object[]> bufferedRows;
+        private final java.util.PriorityQueue<Head> queue;
+
+        private class Head {
+            private Object[] row;
+            @Nullable
+            private final RunReader reader;
+
+            private Head(Object[] row, @Nullable RunReader reader) {
+                this.row = row;
+                this.reader = reader;
+            }
+        }
+
+        private MergeIterator(List<Object[]> bufferedRows, List<RunReader> readers) throws IOException {
+            this.bufferedRows = bufferedRows.iterator();
+            this.queue = new java.util.PriorityQueue<>(readers.size() + 1, new Comparator<Head>() {
+                @Override
+                public int compare(Head o1, Head o2) {
+                    return ordering.compare(o1.row, o2.row);
+                }
+            });
+            if (this.bufferedRows.hasNext()) {
+                queue.add(new Head(this.bufferedRows.next(), null));
+            }
+            for (RunReader reader : readers) {
+                Object[] row = reader.next();
+                if (row != null) {
+                    queue.add(new Head(row, reader));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public Object[] next() {
+            if (queue.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Head head = queue.poll();
+            Object[] row = head.row;
+            try {
+                head.row = head.reader == null
+                        ? (bufferedRows.hasNext() ? bufferedRows.next() : null)
+                        : head.reader.next();
+            } catch (IOException e) {
+                throw new UnhandledServerException("Failed to read sorted run", e);
+            }
+            if (head.row != null) {
+                queue.add(head);
+            }
+            return row;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove not supported");
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors;
+
+import io.crate.Streamer;
+import io.crate.operation.Input;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Encodes the values of multiple group keys into one reusable {@link BytesRef}
+ * using the streamers of the key types.
+ *
+ * The streamers of the primitive types write equal values as equal bytes,
+ * so the encoded key can be used for hashing and equality checks instead of a List of the values.
+ */
+class GroupKeyEncoder {
+
+    private final Streamer<?>[] streamers;
+    private final BytesRefStreamOutput out = new BytesRefStreamOutput();
+
+    GroupKeyEncoder(List<DataType> keyTypes) {
+        streamers = new Streamer[keyTypes.size()];
+        for (int i = 0; i < streamers.length; i++) {
+            streamers[i] = keyTypes.get(i).streamer();
+        }
+    }
+
+    /**
+     * @return true if all keyTypes are known and have a canonical binary representation
+     */
+    static boolean supports(List<DataType> keyTypes) {
+        for (DataType keyType : keyTypes) {
+            if (keyType == null || !DataTypes.PRIMITIVE_TYPES.contains(keyType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * encode the current values of the keyInputs.
+     *
+     * @return a BytesRef which is only valid until the next call to encode
+     */
+    BytesRef encode(List<Input<?>> keyInputs) {
+        try {
+            out.reset();
+            for (int i = 0; i < streamers.length; i++) {
+                streamers[i].writeValueTo(out, keyInputs.get(i).value());
+            }
+        } catch (IOException e) {
+            // BytesRefStreamOutput doesn't do any IO
+            throw new IllegalStateException(e);
+        }
+        return out.bytesRef();
+    }
+
+    /**
+     * encode the key values in the first slots of row.
+     *
+     * @return a BytesRef which is only valid until the next call to encode
+     */
+    BytesRef encode(Object[] row) {
+        try {
+            out.reset();
+            for (int i = 0; i < streamers.length; i++) {
+                streamers[i].writeValueTo(out, row[i]);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.bytesRef();
+    }
+
+    /**
+     * decode the key values of an encoded key into the first slots of row
+     */
+    void decode(BytesRef encoded, Object[] row) {
+        StreamInput in = new BytesArray(encoded).streamInput();
+        try {
+            for (int i = 0; i < streamers.length; i++) {
+                row[i] = streamers[i].readValueFrom(in);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * StreamOutput writing into a growing byte array which is re-used after {@link #reset()}
+     */
+    private static class BytesRefStreamOutput extends StreamOutput {
+
+        private final BytesRef bytesRef = new BytesRef(32);
+
+        @Override
+        public void writeByte(byte b) throws IOException {
+            bytesRef.bytes = ArrayUtil.grow(bytesRef.bytes, bytesRef.length + 1);
+            bytesRef.bytes[bytesRef.length++] = b;
+        }
+
+        @Override
+        public void writeBytes(byte[] b, int offset, int length) throws IOException {
+            bytesRef.bytes = ArrayUtil.grow(bytesRef.bytes, bytesRef.length + length);
+            System.arraycopy(b, offset, bytesRef.bytes, bytesRef.length, length);
+            bytesRef.length += length;
+        }
+
+        @Override
+        public void flush() throws IOException {
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+
+        @Override
+        public void reset() throws IOException {
+            bytesRef.length = 0;
+        }
+
+        BytesRef bytesRef() {
+            return bytesRef;
+        }
+    }
+}
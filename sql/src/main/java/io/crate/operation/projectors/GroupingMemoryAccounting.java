@@ -0,0 +1,94 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors;
+
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * node wide accounting of the estimated heap used by the groups of all {@link GroupingProjector}s.
+ *
+ * The projectors reserve memory in chunks as their groups grow and spill their groups to disk
+ * once no more memory can be reserved, which releases their reservation.
+ * So {@link GroupingProjector#MEMORY_LIMIT_SETTING} limits the sum of all GROUP BY operations on a node.
+ */
+public class GroupingMemoryAccounting {
+
+    private static final long MAX_CHUNK_BYTES = 1024 * 1024;
+
+    private final long limitBytes;
+    private final long chunkBytes;
+    private final AtomicLong reservedBytes = new AtomicLong(0);
+
+    @Inject
+    public GroupingMemoryAccounting(Settings settings) {
+        this(settings.getAsMemory(GroupingProjector.MEMORY_LIMIT_SETTING,
+                GroupingProjector.MEMORY_LIMIT_DEFAULT).bytes());
+    }
+
+    /**
+     * @param limitBytes the estimated heap all groups on this node may use, spilling is disabled if it's 0
+     */
+    public GroupingMemoryAccounting(long limitBytes) {
+        this.limitBytes = limitBytes;
+        // small chunks for small limits, so a single projector can't take all of it with its first group
+        this.chunkBytes = Math.max(1, Math.min(MAX_CHUNK_BYTES, limitBytes / 64));
+    }
+
+    /**
+     * reserve the next chunk of memory
+     *
+     * @return the number of bytes reserved, 0 if the limit is reached
+     */
+    public long reserveChunk() {
+        while (true) {
+            long current = reservedBytes.get();
+            if (current + chunkBytes > limitBytes) {
+                return 0;
+            }
+            if (reservedBytes.compareAndSet(current, current + chunkBytes)) {
+                return chunkBytes;
+            }
+        }
+    }
+
+    /**
+     * give back memory reserved with {@link #reserveChunk()}
+     */
+    public void release(long bytes) {
+        reservedBytes.addAndGet(-bytes);
+    }
+
+    public long chunkBytes() {
+        return chunkBytes;
+    }
+
+    public long limitBytes() {
+        return limitBytes;
+    }
+
+    public long reservedBytes() {
+        return reservedBytes.get();
+    }
+}
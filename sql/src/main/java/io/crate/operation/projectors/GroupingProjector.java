@@ -21,22 +21,85 @@
 
 package io.crate.operation.projectors;
 
+import com.carrotsearch.hppc.IntObjectOpenHashMap;
+import com.carrotsearch.hppc.LongObjectOpenHashMap;
+import com.carrotsearch.hppc.cursors.IntObjectCursor;
+import com.carrotsearch.hppc.cursors.LongObjectCursor;
+import com.google.common.base.Supplier;
+import io.crate.exceptions.UnhandledServerException;
 import io.crate.operation.AggregationContext;
+import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.Input;
+import io.crate.operation.OrdinalsInput;
 import io.crate.operation.ProjectorUpstream;
 import io.crate.operation.aggregation.AggregationCollector;
+import io.crate.operation.aggregation.AggregationFunction;
 import io.crate.operation.aggregation.AggregationState;
 import io.crate.operation.collect.CollectExpression;
+import io.crate.types.*;
+import org.apache.lucene.util.ByteBlockPool;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefHash;
+import org.apache.lucene.util.RamUsageEstimator;
 
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
-public class GroupingProjector implements Projector {
+public class GroupingProjector implements BorrowingProjector {
 
-    private final CollectExpression[] collectExpressions;
+    /**
+     * node setting for the estimated heap size the groups of all GROUP BY operations on a node may use
+     * before they're spilled to disk, either as absolute value or as percentage of the heap.
+     * See {@link GroupingMemoryAccounting}.
+     */
+    public static final String MEMORY_LIMIT_SETTING = "group_by.memory_limit";
+    public static final String MEMORY_LIMIT_DEFAULT = "20%";
+
+    /**
+     * node setting for the directory the spilled groups are written to, defaults to java.io.tmpdir
+     */
+    public static final String SPILL_PATH_SETTING = "group_by.spill_path";
+
+    /**
+     * rough estimate of the heap used by a group without its keys and states (hash table entry and state array).
+     * Used to decide when the groups are spilled to disk.
+     */
+    private static final long GROUP_BYTES = 64;
+
+    /**
+     * the maximum length of the keys a {@link BytesRefHash} can store
+     */
+    private static final int MAX_HASHED_KEY_LENGTH = ByteBlockPool.BYTE_BLOCK_SIZE - 2;
+
+    private final int numKeys;
+    private final List<DataType> keyTypes;
+    private final AggregationFunction[] aggregationFunctions;
+    private final boolean acceptsBorrowedValues;
+
+    /**
+     * the partitions the rows are grouped into, the first one uses the inputs given to the constructor
+     */
+    private final List<Partition> partitions = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean firstPartitionAssigned = new AtomicBoolean(false);
 
-    private final Grouper grouper;
+    /**
+     * the partition of each thread which sent rows. Kept by the projector instead of a ThreadLocal,
+     * so the long-lived collect threads don't reference the partitions once the projector is finished.
+     */
+    private final ConcurrentMap<Thread, Partition> threadPartitions = new ConcurrentHashMap<>();
+    private Supplier<ImplementationSymbolVisitor.Context> partitionInputs = null;
+
+    private GroupingMemoryAccounting memoryAccounting = null;
+    private File spillDirectory;
+    private SpilledGroupRuns spilledRuns = null;
 
     private Projector downstream;
     private AtomicInteger remainingUpstreams = new AtomicInteger(0);
@@ -45,20 +108,96 @@ public class GroupingProjector implements Projector {
     public GroupingProjector(List<Input<?>> keyInputs,
                              CollectExpression[] collectExpressions,
                              AggregationContext[] aggregations) {
-        this.collectExpressions = collectExpressions;
+        this(keyInputs, null, collectExpressions, aggregations);
+    }
 
-        AggregationCollector[] aggregationCollectors = new AggregationCollector[aggregations.length];
+    /**
+     * @param keyTypes the types of the values returned by the keyInputs.
+     *                 Used to choose a grouper specialized on the key type.
+     *                 May be null or contain null entries if the type is unknown.
+     */
+    public GroupingProjector(List<Input<?>> keyInputs,
+                             @Nullable List<DataType> keyTypes,
+                             CollectExpression[] collectExpressions,
+                             AggregationContext[] aggregations) {
+        this.numKeys = keyInputs.size();
+        this.keyTypes = keyTypes;
+
+        aggregationFunctions = new AggregationFunction[aggregations.length];
         for (int i = 0; i < aggregations.length; i++) {
-            aggregationCollectors[i] = new AggregationCollector(
-                    aggregations[i].symbol(),
-                    aggregations[i].function(),
-                    aggregations[i].inputs()
-            );
-        }
-        if (keyInputs.size() == 1) {
-            grouper = new SingleKeyGrouper(keyInputs.get(0), collectExpressions, aggregationCollectors);
-        } else {
-            grouper = new ManyKeyGrouper(keyInputs, collectExpressions, aggregationCollectors);
+            aggregationFunctions[i] = aggregations[i].function();
+        }
+        acceptsBorrowedValues = BorrowedValues.retainedByNone(aggregations);
+        partitions.add(new Partition(keyInputs, collectExpressions, aggregations));
+    }
+
+    private Grouper newSingleKeyGrouper(Input keyInput,
+                                        @Nullable DataType keyType,
+                                        CollectExpression[] collectExpressions,
+                                        AggregationCollector[] aggregationCollectors) {
+        if (keyType != null) {
+            switch (keyType.id()) {
+                case LongType.ID:
+                case TimestampType.ID:
+                    return new LongKeyGrouper(keyInput, collectExpressions, aggregationCollectors);
+                case IntegerType.ID:
+                    return new IntKeyGrouper(keyInput, collectExpressions, aggregationCollectors);
+                case DoubleType.ID:
+                    return new DoubleKeyGrouper(keyInput, collectExpressions, aggregationCollectors);
+                case StringType.ID:
+                case IpType.ID:
+                    return new BytesRefKeyGrouper(keyInput, collectExpressions, aggregationCollectors);
+            }
+        }
+        return new SingleKeyGrouper(keyInput, collectExpressions, aggregationCollectors);
+    }
+
+    /**
+     * group on the ordinals of the given input instead of the values of the key input.
+     *
+     * Only possible with a single key and if the ordinalsInput provides the key values,
+     * must be called before {@link #startProjection()}.
+     * The ordinals are only valid for the rows of one upstream, so all rows are grouped into one partition.
+     */
+    public void groupOnOrdinals(OrdinalsInput<?> ordinalsInput) {
+        Partition partition = partitions.get(0);
+        assert partition.grouper instanceof TypedSingleKeyGrouper || partition.grouper instanceof SingleKeyGrouper :
+                "grouping on ordinals requires a single key";
+        partition.ordinalsInput = ordinalsInput;
+        partition.grouper = partition.newGrouper();
+        partitionInputs = null;
+    }
+
+    /**
+     * let every thread which calls {@link #setNextRow(Object...)} group into its own partition
+     * instead of synchronizing on a single grouper. The partitions are merged on finish.
+     *
+     * The collect expressions hold the current row and can't be shared between threads,
+     * so the given supplier has to create new key inputs (as top level inputs), collect expressions and aggregations
+     * for every additional partition. Must be called before {@link #startProjection()}.
+     */
+    public void partitionPerThread(Supplier<ImplementationSymbolVisitor.Context> partitionInputs) {
+        if (partitions.get(0).ordinalsInput == null) {
+            this.partitionInputs = partitionInputs;
+        }
+    }
+
+    /**
+     * write the groups as sorted runs into the given directory once no more memory
+     * for their estimated size can be reserved from the memoryAccounting.
+     * The runs are merged on finish.
+     *
+     * Only possible if the key types are known primitive types, otherwise the groups are always kept in memory.
+     * Must be called before {@link #startProjection()}.
+     */
+    public void spillToDisk(GroupingMemoryAccounting memoryAccounting, File spillDirectory) {
+        if (memoryAccounting.limitBytes() <= 0 || keyTypes == null || !GroupKeyEncoder.supports(keyTypes)) {
+            return;
+        }
+        this.memoryAccounting = memoryAccounting;
+        this.spillDirectory = spillDirectory;
+        for (Partition partition : partitions) {
+            partition.estimateSizes();
         }
     }
 
@@ -73,11 +212,14 @@ public class GroupingProjector implements Projector {
         return null;
     }
 
+    @Override
+    public boolean acceptsBorrowedValues() {
+        return acceptsBorrowedValues;
+    }
+
     @Override
     public void startProjection() {
-        for (CollectExpression collectExpression : collectExpressions) {
-            collectExpression.startCollect();
-        }
+        partitions.get(0).startCollect();
 
         if (remainingUpstreams.get() <= 0) {
             upstreamFinished();
@@ -85,8 +227,56 @@ public class GroupingProjector implements Projector {
     }
 
     @Override
-    public synchronized boolean setNextRow(final Object... row) {
-        return grouper.setNextRow(row);
+    public boolean setNextRow(final Object... row) {
+        if (partitionInputs == null) {
+            synchronized (this) {
+                return partitions.get(0).setNextRow(row);
+            }
+        }
+        Thread thread = Thread.currentThread();
+        Partition partition = threadPartitions.get(thread);
+        if (partition == null) {
+            // only the current thread adds a partition for itself
+            partition = newThreadPartition();
+            threadPartitions.put(thread, partition);
+        }
+        return partition.setNextRow(row);
+    }
+
+    /**
+     * @return the number of threads which have a partition assigned, 0 once all upstreams finished
+     */
+    int numThreadPartitions() {
+        return threadPartitions.size();
+    }
+
+    private Partition newThreadPartition() {
+        if (firstPartitionAssigned.compareAndSet(false, true)) {
+            return partitions.get(0);
+        }
+        ImplementationSymbolVisitor.Context context = partitionInputs.get();
+        Partition partition = new Partition(
+                context.topLevelInputs(),
+                context.collectExpressions().toArray(new CollectExpression[context.collectExpressions().size()]),
+                context.aggregations());
+        partition.startCollect();
+        partitions.add(partition);
+        return partition;
+    }
+
+    /**
+     * write the given groups as a new run
+     */
+    private synchronized void spill(Object[][] stateRows) {
+        if (spilledRuns == null) {
+            spilledRuns = new SpilledGroupRuns(
+                    spillDirectory, new GroupKeyEncoder(keyTypes), aggregationFunctions, numKeys);
+        }
+        try {
+            spilledRuns.write(stateRows);
+        } catch (IOException e) {
+            throw new UnhandledServerException("Failed to spill GROUP BY groups to disk", e);
+        }
     }
 
     @Override
@@ -97,13 +287,25 @@ public class GroupingProjector implements Projector {
     @Override
     public void upstreamFinished() {
         if (remainingUpstreams.decrementAndGet() <= 0) {
-            grouper.finish();
+            threadPartitions.clear();
+            try {
+                if (spilledRuns == null) {
+                    mergePartitions().finish();
+                } else {
+                    finishSpilled();
+                }
+            } finally {
+                releaseMemory();
+            }
         }
     }
 
     @Override
     public void upstreamFailed(Throwable throwable) {
         if (remainingUpstreams.decrementAndGet() <= 0) {
+            threadPartitions.clear();
+            releaseMemory();
+            closeSpilledRuns();
             if (downstream != null) {
                 downstream.upstreamFailed(throwable);
             }
@@ -112,6 +314,205 @@ public class GroupingProjector implements Projector {
         failure.set(throwable);
     }
 
+    private synchronized void closeSpilledRuns() {
+        if (spilledRuns != null) {
+            spilledRuns.close();
+        }
+    }
+
+    private void releaseMemory() {
+        for (Partition partition : partitions) {
+            partition.releaseMemory();
+        }
+    }
+
+    /**
+     * reduce the groups of all partitions into the grouper of the first partition
+     */
+    private Grouper mergePartitions() {
+        Grouper grouper = partitions.get(0).grouper;
+        if (partitions.size() > 1 && grouper instanceof OrdinalKeyGrouper) {
+            grouper = partitions.get(0).groupOnValues();
+        }
+        for (int i = 1; i < partitions.size(); i++) {
+            for (Object[] stateRow : partitions.get(i).grouper.stateRows()) {
+                grouper.merge(stateRow);
+            }
+        }
+        return grouper;
+    }
+
+    /**
+     * write the remaining groups of all partitions as runs and send the merged runs to the downstream
+     */
+    private void finishSpilled() {
+        Throwable throwable = failure.get();
+        if (throwable == null) {
+            try {
+                for (Partition partition : partitions) {
+                    spilledRuns.write(partition.grouper.stateRows());
+                    partition.grouper = partition.newGrouper();
+                }
+
+                AggregationCollector[] aggregationCollectors = partitions.get(0).aggregationCollectors;
+                Iterator<Object[]> rows = spilledRuns.merge();
+                boolean sendToDownStream = downstream != null;
+                while (sendToDownStream && rows.hasNext()) {
+                    Object[] row = rows.next();
+                    for (int i = 0; i < aggregationCollectors.length; i++) {
+                        aggregationCollectors[i].state((AggregationState) row[numKeys + i]);
+                        row[numKeys + i] = aggregationCollectors[i].finishCollect();
+                    }
+                    sendToDownStream = downstream.setNextRow(row);
+                }
+            } catch (IOException | UnhandledServerException e) {
+                throwable = e;
+            } finally {
+                spilledRuns.close();
+            }
+        } else {
+            spilledRuns.close();
+        }
+
+        if (downstream != null) {
+            if (throwable == null) {
+                downstream.upstreamFinished();
+            } else {
+                downstream.upstreamFailed(throwable);
+            }
+        }
+    }
+
+    /**
+     * the inputs and grouper used by one thread
+     */
+    private class Partition {
+
+        private final List<Input<?>> keyInputs;
+        private final CollectExpression[] collectExpressions;
+        private final AggregationCollector[] aggregationCollectors;
+        private OrdinalsInput<?> ordinalsInput = null;
+        private Grouper grouper;
+
+        /**
+         * the estimated heap used by the groups of the grouper and the memory reserved for them
+         */
+        private long usedBytes = 0;
+        private long reservedBytes = 0;
+
+        private Partition(List<Input<?>> keyInputs,
+                          CollectExpression[] collectExpressions,
+                          AggregationContext[] aggregations) {
+            this.keyInputs = keyInputs;
+            this.collectExpressions = collectExpressions;
+            aggregationCollectors = new AggregationCollector[aggregations.length];
+            for (int i = 0; i < aggregations.length; i++) {
+                aggregationCollectors[i] = new AggregationCollector(
+                        aggregations[i].symbol(),
+                        aggregations[i].function(),
+                        aggregations[i].inputs()
+                );
+            }
+            grouper = newGrouper();
+            if (memoryAccounting != null) {
+                estimateSizes();
+            }
+        }
+
+        private void estimateSizes() {
+            for (AggregationCollector aggregationCollector : aggregationCollectors) {
+                aggregationCollector.estimateSizes(true);
+            }
+        }
+
+        private Grouper newGrouper() {
+            if (ordinalsInput != null) {
+                return new OrdinalKeyGrouper(ordinalsInput, collectExpressions, aggregationCollectors);
+            }
+            if (keyInputs.size() == 1) {
+                return newSingleKeyGrouper(
+                        keyInputs.get(0),
+                        keyTypes == null ? null : keyTypes.get(0),
+                        collectExpressions,
+                        aggregationCollectors);
+            } else if (keyTypes != null && GroupKeyEncoder.supports(keyTypes)) {
+                return new PackedKeyGrouper(
+                        keyInputs, new GroupKeyEncoder(keyTypes), collectExpressions, aggregationCollectors);
+            }
+            return new ManyKeyGrouper(keyInputs, collectExpressions, aggregationCollectors);
+        }
+
+        /**
+         * move the groups of a grouper on ordinals into a grouper on the key values,
+         * which can merge the groups of other partitions
+         */
+        private Grouper groupOnValues() {
+            Object[][] stateRows = grouper.stateRows();
+            ordinalsInput = null;
+            grouper = newGrouper();
+            for (Object[] stateRow : stateRows) {
+                grouper.merge(stateRow);
+            }
+            return grouper;
+        }
+
+        private void startCollect() {
+            for (CollectExpression collectExpression : collectExpressions) {
+                collectExpression.startCollect();
+            }
+        }
+
+        private boolean setNextRow(Object... row) {
+            if (memoryAccounting == null) {
+                return grouper.setNextRow(row);
+            }
+            int groupsBefore = grouper.numGroups();
+            long keyBytesBefore = grouper.keyBytes();
+            boolean result = grouper.setNextRow(row);
+            long bytes = grouper.keyBytes() - keyBytesBefore;
+            if (grouper.numGroups() > groupsBefore) {
+                bytes += GROUP_BYTES;
+            }
+            for (AggregationCollector aggregationCollector : aggregationCollectors) {
+                bytes += aggregationCollector.takeEstimatedBytesDelta();
+            }
+            usedBytes += bytes;
+            if (usedBytes > reservedBytes && !reserveMemory()) {
+                Object[][] stateRows = grouper.stateRows();
+                grouper = newGrouper();
+                releaseMemory();
+                spill(stateRows);
+            }
+            return result;
+        }
+
+        /**
+         * reserve memory until the estimated size of the groups is covered.
+         * Without more memory the groups may use up to one unreserved chunk,
+         * so a projector which doesn't get any memory doesn't write a run per group.
+         *
+         * @return false if the groups have to be spilled
+         */
+        private boolean reserveMemory() {
+            while (usedBytes > reservedBytes) {
+                long chunk = memoryAccounting.reserveChunk();
+                if (chunk == 0) {
+                    return usedBytes <= reservedBytes + memoryAccounting.chunkBytes();
+                }
+                reservedBytes += chunk;
+            }
+            return true;
+        }
+
+        private void releaseMemory() {
+            if (memoryAccounting != null) {
+                memoryAccounting.release(reservedBytes);
+            }
+            reservedBytes = 0;
+            usedBytes = 0;
+        }
+    }
+
     /**
      * transform map entry into pre-allocated object array.
      * @param entry
@@ -136,6 +537,67 @@ public class GroupingProjector implements Projector {
         }
     }
 
+    /**
+     * send the rows of a grouper to the downstream
+     */
+    private Object[][] emit(Object[][] rows) {
+        Throwable throwable = failure.get();
+        if (throwable != null && downstream != null) {
+            downstream.upstreamFailed(throwable);
+        }
+
+        boolean sendToDownStream = downstream != null;
+        for (int r = 0; r < rows.length && sendToDownStream; r++) {
+            sendToDownStream = downstream.setNextRow(rows[r]);
+        }
+        if (downstream != null) {
+            downstream.upstreamFinished();
+        }
+        return rows;
+    }
+
+    /**
+     * create new states for a new group and process the current row into them
+     */
+    private static AggregationState[] newStates(AggregationCollector[] aggregationCollectors) {
+        AggregationState[] states = new AggregationState[aggregationCollectors.length];
+        for (int i = 0; i < aggregationCollectors.length; i++) {
+            aggregationCollectors[i].startCollect();
+            aggregationCollectors[i].processRow();
+            states[i] = aggregationCollectors[i].state();
+        }
+        return states;
+    }
+
+    /**
+     * process the current row into the existing states of a group
+     */
+    private static void processStates(AggregationState[] states, AggregationCollector[] aggregationCollectors) {
+        for (int i = 0; i < aggregationCollectors.length; i++) {
+            aggregationCollectors[i].state(states[i]);
+            aggregationCollectors[i].processRow();
+        }
+    }
+
+    /**
+     * copy the states of a state row into a new array
+     */
+    private static AggregationState[] statesOf(Object[] stateRow, int offset, int numStates) {
+        AggregationState[] states = new AggregationState[numStates];
+        System.arraycopy(stateRow, offset, states, 0, numStates);
+        return states;
+    }
+
+    /**
+     * reduce the states of a state row into the states of a group
+     */
+    @SuppressWarnings("unchecked")
+    private static void reduceStates(AggregationState[] states, Object[] stateRow, int offset) {
+        for (int i = 0; i < states.length; i++) {
+            states[i].reduce((AggregationState) stateRow[offset + i]);
+        }
+    }
+
     private static void singleTransformToRow(Map.Entry<Object, AggregationState[]> entry,
                                        Object[] row,
                                        AggregationCollector[] aggregationCollectors) {
@@ -154,6 +616,24 @@ public class GroupingProjector implements Projector {
         boolean setNextRow(final Object... row);
         Object[][] finish();
         Iterator<Object[]> iterator();
+
+        int numGroups();
+
+        /**
+         * @return the estimated heap used by the keys of the groups
+         */
+        long keyBytes();
+
+        /**
+         * @return rows of the key values followed by the aggregation states, without finishing the states
+         */
+        Object[][] stateRows();
+
+        /**
+         * add a row of key values and aggregation states, as returned by {@link #stateRows()},
+         * the states are reduced into the states of an existing group with equal keys.
+         */
+        void merge(Object[] stateRow);
     }
 
     private class SingleKeyGrouper implements Grouper {
@@ -162,6 +642,7 @@ public class GroupingProjector implements Projector {
         private final AggregationCollector[] aggregationCollectors;
         private final Input keyInput;
         private final CollectExpression[] collectExpressions;
+        private long keyBytes = 0;
 
         public SingleKeyGrouper(Input keyInput,
                                 CollectExpression[] collectExpressions,
@@ -181,18 +662,10 @@ public class GroupingProjector implements Projector {
             Object key = keyInput.value();
             AggregationState[] states = result.get(key);
             if (states == null) {
-                states = new AggregationState[aggregationCollectors.length];
-                for (int i = 0; i < aggregationCollectors.length; i++) {
-                    aggregationCollectors[i].startCollect();
-                    aggregationCollectors[i].processRow();
-                    states[i] = aggregationCollectors[i].state();
-                }
-                result.put(key, states);
+                result.put(BorrowedValues.own(key), newStates(aggregationCollectors));
+                keyBytes += AggregationState.estimateValueSizeInBytes(key);
             } else {
-                for (int i = 0; i < aggregationCollectors.length; i++) {
-                    aggregationCollectors[i].state(states[i]);
-                    aggregationCollectors[i].processRow();
-                }
+                processStates(states, aggregationCollectors);
             }
 
             return true;
@@ -227,6 +700,539 @@ public class GroupingProjector implements Projector {
             return new SingleEntryToRowIterator(
                     result.entrySet().iterator(), aggregationCollectors.length + 1, aggregationCollectors);
         }
+
+        @Override
+        public int numGroups() {
+            return result.size();
+        }
+
+        @Override
+        public long keyBytes() {
+            return keyBytes;
+        }
+
+        @Override
+        public Object[][] stateRows() {
+            Object[][] rows = new Object[result.size()][1 + aggregationCollectors.length];
+            int r = 0;
+            for (Map.Entry<Object, AggregationState[]> entry : result.entrySet()) {
+                rows[r][0] = entry.getKey();
+                System.arraycopy(entry.getValue(), 0, rows[r], 1, aggregationCollectors.length);
+                r++;
+            }
+            return rows;
+        }
+
+        @Override
+        public void merge(Object[] stateRow) {
+            AggregationState[] states = result.get(stateRow[0]);
+            if (states == null) {
+                result.put(stateRow[0], statesOf(stateRow, 1, aggregationCollectors.length));
+            } else {
+                reduceStates(states, stateRow, 1);
+            }
+        }
+    }
+
+    /**
+     * base class for single key groupers which keep the aggregation states in an open addressing
+     * hash table specialized on the key type instead of a {@link java.util.HashMap}.
+     * This avoids the per-entry allocations and the hashCode/equals calls on boxed keys.
+     *
+     * null keys can't be stored in these tables and are therefore handled separately.
+     */
+    private abstract class TypedSingleKeyGrouper implements Grouper {
+
+        protected final AggregationCollector[] aggregationCollectors;
+        protected final CollectExpression[] collectExpressions;
+        protected AggregationState[] nullKeyStates = null;
+        protected long keyBytes = 0;
+        private final Input keyInput;
+
+        protected TypedSingleKeyGrouper(Input keyInput,
+                                        CollectExpression[] collectExpressions,
+                                        AggregationCollector[] aggregationCollectors) {
+            this.keyInput = keyInput;
+            this.collectExpressions = collectExpressions;
+            this.aggregationCollectors = aggregationCollectors;
+        }
+
+        /**
+         * @return the states for the given (non-null) key or null if the key is new
+         */
+        protected abstract AggregationState[] get(Object key);
+
+        protected abstract void put(Object key, AggregationState[] states);
+
+        /**
+         * @return the number of non-null keys
+         */
+        protected abstract int size();
+
+        /**
+         * fill the keys and their states into the given arrays, which have at least {@link #size()} slots
+         */
+        protected abstract void fill(Object[] keys, AggregationState[][] states);
+
+        @Override
+        public boolean setNextRow(Object... row) {
+            for (CollectExpression collectExpression : collectExpressions) {
+                collectExpression.setNextRow(row);
+            }
+
+            Object key = keyInput.value();
+            AggregationState[] states = key == null ? nullKeyStates : get(key);
+            if (states == null) {
+                states = newStates(aggregationCollectors);
+                if (key == null) {
+                    nullKeyStates = states;
+                } else {
+                    put(key, states);
+                    keyBytes += AggregationState.estimateValueSizeInBytes(key);
+                }
+            } else {
+                processStates(states, aggregationCollectors);
+            }
+            return true;
+        }
+
+        @Override
+        public Object[][] finish() {
+            return emit(rows());
+        }
+
+        @Override
+        public Iterator<Object[]> iterator() {
+            return Arrays.asList(rows()).iterator();
+        }
+
+        @Override
+        public int numGroups() {
+            return nullKeyStates == null ? size() : size() + 1;
+        }
+
+        @Override
+        public long keyBytes() {
+            return keyBytes;
+        }
+
+        @Override
+        public Object[][] stateRows() {
+            int numKeys = size();
+            int numRows = numGroups();
+            Object[] keys = new Object[numRows];
+            AggregationState[][] states = new AggregationState[numRows][];
+            fill(keys, states);
+            if (nullKeyStates != null) {
+                states[numKeys] = nullKeyStates;
+            }
+
+            Object[][] rows = new Object[numRows][1 + aggregationCollectors.length];
+            for (int r = 0; r < numRows; r++) {
+                rows[r][0] = keys[r];
+                System.arraycopy(states[r], 0, rows[r], 1, aggregationCollectors.length);
+            }
+            return rows;
+        }
+
+        @Override
+        public void merge(Object[] stateRow) {
+            Object key = stateRow[0];
+            AggregationState[] states = key == null ? nullKeyStates : get(key);
+            if (states == null) {
+                states = statesOf(stateRow, 1, aggregationCollectors.length);
+                if (key == null) {
+                    nullKeyStates = states;
+                } else {
+                    put(key, states);
+                }
+            } else {
+                reduceStates(states, stateRow, 1);
+            }
+        }
+
+        private Object[][] rows() {
+            Object[][] rows = stateRows();
+            for (Object[] row : rows) {
+                for (int i = 0; i < aggregationCollectors.length; i++) {
+                    aggregationCollectors[i].state((AggregationState) row[i + 1]);
+                    row[i + 1] = aggregationCollectors[i].finishCollect();
+                }
+            }
+            return rows;
+        }
+    }
+
+    private class LongKeyGrouper extends TypedSingleKeyGrouper {
+
+        private final LongObjectOpenHashMap<AggregationState[]> result = new LongObjectOpenHashMap<>();
+
+        public LongKeyGrouper(Input keyInput,
+                              CollectExpression[] collectExpressions,
+                              AggregationCollector[] aggregationCollectors) {
+            super(keyInput, collectExpressions, aggregationCollectors);
+        }
+
+        @Override
+        protected AggregationState[] get(Object key) {
+            return result.get(((Number) key).longValue());
+        }
+
+        @Override
+        protected void put(Object key, AggregationState[] states) {
+            result.put(((Number) key).longValue(), states);
+        }
+
+        @Override
+        protected int size() {
+            return result.size();
+        }
+
+        @Override
+        protected void fill(Object[] keys, AggregationState[][] states) {
+            int i = 0;
+            for (LongObjectCursor<AggregationState[]> cursor : result) {
+                keys[i] = cursor.key;
+                states[i] = cursor.value;
+                i++;
+            }
+        }
+    }
+
+    private class IntKeyGrouper extends TypedSingleKeyGrouper {
+
+        private final IntObjectOpenHashMap<AggregationState[]> result = new IntObjectOpenHashMap<>();
+
+        public IntKeyGrouper(Input keyInput,
+                             CollectExpression[] collectExpressions,
+                             AggregationCollector[] aggregationCollectors) {
+            super(keyInput, collectExpressions, aggregationCollectors);
+        }
+
+        @Override
+        protected AggregationState[] get(Object key) {
+            return result.get(((Number) key).intValue());
+        }
+
+        @Override
+        protected void put(Object key, AggregationState[] states) {
+            result.put(((Number) key).intValue(), states);
+        }
+
+        @Override
+        protected int size() {
+            return result.size();
+        }
+
+        @Override
+        protected void fill(Object[] keys, AggregationState[][] states) {
+            int i = 0;
+            for (IntObjectCursor<AggregationState[]> cursor : result) {
+                keys[i] = cursor.key;
+                states[i] = cursor.value;
+                i++;
+            }
+        }
+    }
+
+    /**
+     * groups on the raw long bits of the double values,
+     * which gives the same equality semantics as {@link Double#equals(Object)} (e.g. for NaN)
+     */
+    private class DoubleKeyGrouper extends TypedSingleKeyGrouper {
+
+        private final LongObjectOpenHashMap<AggregationState[]> result = new LongObjectOpenHashMap<>();
+
+        public DoubleKeyGrouper(Input keyInput,
+                                CollectExpression[] collectExpressions,
+                                AggregationCollector[] aggregationCollectors) {
+            super(keyInput, collectExpressions, aggregationCollectors);
+        }
+
+        @Override
+        protected AggregationState[] get(Object key) {
+            return result.get(Double.doubleToLongBits(((Number) key).doubleValue()));
+        }
+
+        @Override
+        protected void put(Object key, AggregationState[] states) {
+            result.put(Double.doubleToLongBits(((Number) key).doubleValue()), states);
+        }
+
+        @Override
+        protected int size() {
+            return result.size();
+        }
+
+        @Override
+        protected void fill(Object[] keys, AggregationState[][] states) {
+            int i = 0;
+            for (LongObjectCursor<AggregationState[]> cursor : result) {
+                keys[i] = Double.longBitsToDouble(cursor.key);
+                states[i] = cursor.value;
+                i++;
+            }
+        }
+    }
+
+    /**
+     * copies the key bytes into the block pool of a {@link BytesRefHash} once per group,
+     * the states are kept in a list indexed by the ids the hash assigns.
+     *
+     * Keys which are too long for the block pool are kept in a {@link HashMap}.
+     */
+    private class BytesRefKeyGrouper extends TypedSingleKeyGrouper {
+
+        private final BytesRefHash hash = new BytesRefHash();
+        private final List<AggregationState[]> result = new ArrayList<>();
+        private final Map<BytesRef, AggregationState[]> longKeys = new HashMap<>();
+
+        public BytesRefKeyGrouper(Input keyInput,
+                                  CollectExpression[] collectExpressions,
+                                  AggregationCollector[] aggregationCollectors) {
+            super(keyInput, collectExpressions, aggregationCollectors);
+        }
+
+        @Override
+        protected AggregationState[] get(Object key) {
+            BytesRef bytesRef = (BytesRef) key;
+            if (bytesRef.length > MAX_HASHED_KEY_LENGTH) {
+                return longKeys.get(bytesRef);
+            }
+            int id = hash.find(bytesRef);
+            return id < 0 ? null : result.get(id);
+        }
+
+        @Override
+        protected void put(Object key, AggregationState[] states) {
+            BytesRef bytesRef = (BytesRef) key;
+            if (bytesRef.length > MAX_HASHED_KEY_LENGTH) {
+                longKeys.put(BytesRef.deepCopyOf(bytesRef), states);
+                return;
+            }
+            int id = hash.add(bytesRef);
+            assert id == result.size() : "BytesRefHash ids must be sequential";
+            result.add(states);
+        }
+
+        @Override
+        protected int size() {
+            return hash.size() + longKeys.size();
+        }
+
+        @Override
+        protected void fill(Object[] keys, AggregationState[][] states) {
+            BytesRef spare = new BytesRef();
+            int i = 0;
+            for (; i < hash.size(); i++) {
+                keys[i] = BytesRef.deepCopyOf(hash.get(i, spare));
+                states[i] = result.get(i);
+            }
+            for (Map.Entry<BytesRef, AggregationState[]> entry : longKeys.entrySet()) {
+                keys[i] = entry.getKey();
+                states[i] = entry.getValue();
+                i++;
+            }
+        }
+    }
+
+    /**
+     * groups on the ordinals of the key values, which are resolved to the values only once per group.
+     */
+    private class OrdinalKeyGrouper extends TypedSingleKeyGrouper {
+
+        private final LongObjectOpenHashMap<AggregationState[]> result = new LongObjectOpenHashMap<>();
+        private final OrdinalsInput<?> ordinalsInput;
+
+        public OrdinalKeyGrouper(OrdinalsInput<?> ordinalsInput,
+                                 CollectExpression[] collectExpressions,
+                                 AggregationCollector[] aggregationCollectors) {
+            super(ordinalsInput, collectExpressions, aggregationCollectors);
+            this.ordinalsInput = ordinalsInput;
+        }
+
+        @Override
+        public boolean setNextRow(Object... row) {
+            for (CollectExpression collectExpression : collectExpressions) {
+                collectExpression.setNextRow(row);
+            }
+
+            long ordinal = ordinalsInput.ordinal();
+            AggregationState[] states;
+            if (ordinal == OrdinalsInput.MISSING_ORDINAL) {
+                states = nullKeyStates;
+                if (states == null) {
+                    nullKeyStates = newStates(aggregationCollectors);
+                    return true;
+                }
+            } else {
+                states = result.get(ordinal);
+                if (states == null) {
+                    result.put(ordinal, newStates(aggregationCollectors));
+                    keyBytes += RamUsageEstimator.NUM_BYTES_LONG;
+                    return true;
+                }
+            }
+            processStates(states, aggregationCollectors);
+            return true;
+        }
+
+        @Override
+        public void merge(Object[] stateRow) {
+            // the state rows contain the resolved values and ordinals are only valid within one upstream,
+            // see Partition#groupOnValues
+            throw new UnsupportedOperationException("can't merge groups into an OrdinalKeyGrouper");
+        }
+
+        @Override
+        protected AggregationState[] get(Object key) {
+            return result.get((Long) key);
+        }
+
+        @Override
+        protected void put(Object key, AggregationState[] states) {
+            result.put((Long) key, states);
+        }
+
+        @Override
+        protected int size() {
+            return result.size();
+        }
+
+        @Override
+        protected void fill(Object[] keys, AggregationState[][] states) {
+            int i = 0;
+            for (LongObjectCursor<AggregationState[]> cursor : result) {
+                keys[i] = ordinalsInput.lookupOrdinal(cursor.key);
+                states[i] = cursor.value;
+                i++;
+            }
+        }
+    }
+
+    /**
+     * grouper for multiple keys of primitive types.
+     *
+     * The key values of each row are encoded into a reused buffer, which is only copied
+     * into the {@link BytesRefHash} if the group is new. The values are decoded once per group on finish.
+     * Encoded keys which are too long for the block pool are kept in a {@link HashMap}.
+     */
+    private class PackedKeyGrouper implements Grouper {
+
+        private final AggregationCollector[] aggregationCollectors;
+        private final BytesRefHash hash = new BytesRefHash();
+        private final List<AggregationState[]> result = new ArrayList<>();
+        private final Map<BytesRef, AggregationState[]> longKeys = new HashMap<>();
+        private final List<Input<?>> keyInputs;
+        private final GroupKeyEncoder keyEncoder;
+        private long keyBytes = 0;
+        private final CollectExpression[] collectExpressions;
+
+        public PackedKeyGrouper(List<Input<?>> keyInputs,
+                                GroupKeyEncoder keyEncoder,
+                                CollectExpression[] collectExpressions,
+                                AggregationCollector[] aggregationCollectors) {
+            this.keyInputs = keyInputs;
+            this.keyEncoder = keyEncoder;
+            this.collectExpressions = collectExpressions;
+            this.aggregationCollectors = aggregationCollectors;
+        }
+
+        @Override
+        public boolean setNextRow(Object... row) {
+            for (CollectExpression collectExpression : collectExpressions) {
+                collectExpression.setNextRow(row);
+            }
+
+            BytesRef key = keyEncoder.encode(keyInputs);
+            AggregationState[] states = get(key);
+            if (states == null) {
+                put(key, newStates(aggregationCollectors));
+            } else {
+                processStates(states, aggregationCollectors);
+            }
+            return true;
+        }
+
+        private AggregationState[] get(BytesRef key) {
+            if (key.length > MAX_HASHED_KEY_LENGTH) {
+                return longKeys.get(key);
+            }
+            int id = hash.find(key);
+            return id < 0 ? null : result.get(id);
+        }
+
+        private void put(BytesRef key, AggregationState[] states) {
+            keyBytes += key.length;
+            if (key.length > MAX_HASHED_KEY_LENGTH) {
+                longKeys.put(BytesRef.deepCopyOf(key), states);
+                return;
+            }
+            int id = hash.add(key);
+            assert id == result.size() : "BytesRefHash ids must be sequential";
+            result.add(states);
+        }
+
+        @Override
+        public Object[][] finish() {
+            return emit(rows());
+        }
+
+        @Override
+        public Iterator<Object[]> iterator() {
+            return Arrays.asList(rows()).iterator();
+        }
+
+        @Override
+        public int numGroups() {
+            return hash.size() + longKeys.size();
+        }
+
+        @Override
+        public long keyBytes() {
+            return keyBytes;
+        }
+
+        @Override
+        public Object[][] stateRows() {
+            int numKeys = keyInputs.size();
+            Object[][] rows = new Object[numGroups()][numKeys + aggregationCollectors.length];
+            BytesRef spare = new BytesRef();
+            int r = 0;
+            for (; r < hash.size(); r++) {
+                keyEncoder.decode(hash.get(r, spare), rows[r]);
+                System.arraycopy(result.get(r), 0, rows[r], numKeys, aggregationCollectors.length);
+            }
+            for (Map.Entry<BytesRef, AggregationState[]> entry : longKeys.entrySet()) {
+                keyEncoder.decode(entry.getKey(), rows[r]);
+                System.arraycopy(entry.getValue(), 0, rows[r], numKeys, aggregationCollectors.length);
+                r++;
+            }
+            return rows;
+        }
+
+        @Override
+        public void merge(Object[] stateRow) {
+            BytesRef key = keyEncoder.encode(stateRow);
+            AggregationState[] states = get(key);
+            if (states == null) {
+                put(key, statesOf(stateRow, keyInputs.size(), aggregationCollectors.length));
+            } else {
+                reduceStates(states, stateRow, keyInputs.size());
+            }
+        }
+
+        private Object[][] rows() {
+            int numKeys = keyInputs.size();
+            Object[][] rows = stateRows();
+            for (Object[] row : rows) {
+                for (int i = 0; i < aggregationCollectors.length; i++) {
+                    aggregationCollectors[i].state((AggregationState) row[numKeys + i]);
+                    row[numKeys + i] = aggregationCollectors[i].finishCollect();
+                }
+            }
+            return rows;
+        }
     }
 
     private class ManyKeyGrouper implements Grouper {
@@ -235,6 +1241,7 @@ public class GroupingProjector implements Projector {
         private final Map<List<Object>, AggregationState[]> result;
         private final List<Input<?>> keyInputs;
         private final CollectExpression[] collectExpressions;
+        private long keyBytes = 0;
 
         public ManyKeyGrouper(List<Input<?>> keyInputs,
                               CollectExpression[] collectExpressions,
@@ -251,7 +1258,7 @@ public class GroupingProjector implements Projector {
                 collectExpression.setNextRow(row);
             }
 
-            // TODO: use something with better equals() performance for the keys
+            // keys of unknown or complex types, see PackedKeyGrouper for the allocation free variant
             List<Object> key = new ArrayList<>(keyInputs.size());
             for (Input keyInput : keyInputs) {
                 key.add(keyInput.value());
@@ -259,18 +1266,12 @@ public class GroupingProjector implements Projector {
 
             AggregationState[] states = result.get(key);
             if (states == null) {
-                states = new AggregationState[aggregationCollectors.length];
-                for (int i = 0; i < aggregationCollectors.length; i++) {
-                    aggregationCollectors[i].startCollect();
-                    aggregationCollectors[i].processRow();
-                    states[i] = aggregationCollectors[i].state();
+                result.put(BorrowedValues.own(key), newStates(aggregationCollectors));
+                for (Object value : key) {
+                    keyBytes += AggregationState.estimateValueSizeInBytes(value);
                 }
-                result.put(key, states);
             } else {
-                for (int i = 0; i < aggregationCollectors.length; i++) {
-                    aggregationCollectors[i].state(states[i]);
-                    aggregationCollectors[i].processRow();
-                }
+                processStates(states, aggregationCollectors);
             }
 
             return true;
@@ -306,6 +1307,47 @@ public class GroupingProjector implements Projector {
                     keyInputs.size() + aggregationCollectors.length,
                     aggregationCollectors);
         }
+
+        @Override
+        public int numGroups() {
+            return result.size();
+        }
+
+        @Override
+        public long keyBytes() {
+            return keyBytes;
+        }
+
+        @Override
+        public Object[][] stateRows() {
+            int numKeys = keyInputs.size();
+            Object[][] rows = new Object[result.size()][numKeys + aggregationCollectors.length];
+            int r = 0;
+            for (Map.Entry<List<Object>, AggregationState[]> entry : result.entrySet()) {
+                List<Object> key = entry.getKey();
+                for (int k = 0; k < numKeys; k++) {
+                    rows[r][k] = key.get(k);
+                }
+                System.arraycopy(entry.getValue(), 0, rows[r], numKeys, aggregationCollectors.length);
+                r++;
+            }
+            return rows;
+        }
+
+        @Override
+        public void merge(Object[] stateRow) {
+            int numKeys = keyInputs.size();
+            List<Object> key = new ArrayList<>(numKeys);
+            for (int k = 0; k < numKeys; k++) {
+                key.add(stateRow[k]);
+            }
+            AggregationState[] states = result.get(key);
+            if (states == null) {
+                result.put(key, statesOf(stateRow, numKeys, aggregationCollectors.length));
+            } else {
+                reduceStates(states, stateRow, numKeys);
+            }
+        }
     }
 
 
@@ -21,21 +21,28 @@
 
 package io.crate.operation.projectors;
 
+import com.google.common.base.Supplier;
+import io.crate.Constants;
 import io.crate.analyze.EvaluatingNormalizer;
 import io.crate.executor.transport.TransportActionProvider;
 import io.crate.metadata.ColumnIdent;
 import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.Input;
 import io.crate.operation.collect.CollectExpression;
+import io.crate.planner.RowGranularity;
 import io.crate.planner.projection.*;
 import io.crate.planner.symbol.Aggregation;
 import io.crate.planner.symbol.Literal;
 import io.crate.planner.symbol.StringValueSymbolVisitor;
 import io.crate.planner.symbol.Symbol;
+import io.crate.types.DataType;
 import io.crate.types.StringType;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.common.settings.Settings;
 
+import javax.annotation.Nullable;
+
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -45,6 +52,7 @@ public class ProjectionToProjectorVisitor extends ProjectionVisitor<Void, Projec
 
     private final ClusterService clusterService;
     private final Settings settings;
+    private final GroupingMemoryAccounting groupingMemoryAccounting;
     private final TransportActionProvider transportActionProvider;
     private final ImplementationSymbolVisitor symbolVisitor;
     private final EvaluatingNormalizer normalizer;
@@ -55,11 +63,13 @@ public class ProjectionToProjectorVisitor extends ProjectionVisitor<Void, Projec
 
     public ProjectionToProjectorVisitor(ClusterService clusterService,
                                         Settings settings,
+                                        GroupingMemoryAccounting groupingMemoryAccounting,
                                         TransportActionProvider transportActionProvider,
                                         ImplementationSymbolVisitor symbolVisitor,
             EvaluatingNormalizer normalizer) {
         this.clusterService = clusterService;
         this.settings = settings;
+        this.groupingMemoryAccounting = groupingMemoryAccounting;
         this.transportActionProvider = transportActionProvider;
         this.symbolVisitor = symbolVisitor;
         this.normalizer = normalizer;
@@ -67,15 +77,25 @@ public class ProjectionToProjectorVisitor extends ProjectionVisitor<Void, Projec
 
     public ProjectionToProjectorVisitor(ClusterService clusterService,
                                         Settings settings,
+                                        GroupingMemoryAccounting groupingMemoryAccounting,
                                         TransportActionProvider transportActionProvider,
                                         ImplementationSymbolVisitor symbolVisitor) {
-        this(clusterService, settings, transportActionProvider, symbolVisitor,
+        this(clusterService, settings, groupingMemoryAccounting, transportActionProvider, symbolVisitor,
                 new EvaluatingNormalizer(
                         symbolVisitor.functions(),
                         symbolVisitor.rowGranularity(),
                         symbolVisitor.referenceResolver()));
     }
 
+    @Nullable
+    private static DataType[] orderByTypes(TopNProjection projection, int numOrderBy) {
+        List<DataType> orderByTypes = projection.orderByTypes();
+        if (orderByTypes == null || orderByTypes.size() != numOrderBy) {
+            return null;
+        }
+        return orderByTypes.toArray(new DataType[numOrderBy]);
+    }
+
     @Override
     public Projector visitTopNProjection(TopNProjection projection, Void context) {
         Projector projector;
@@ -100,6 +120,23 @@ public class ProjectionToProjectorVisitor extends ProjectionVisitor<Void, Projec
                 orderByIndices[idx++] = i;
             }
 
+            if (projection.limit() == TopN.NO_LIMIT
+                    || (long) projection.limit() + projection.offset() > Constants.DEFAULT_SELECT_LIMIT) {
+                // too many rows to keep them all in a priority queue
+                return new ExternalSortProjector(
+                        inputs.toArray(new Input<?>[inputs.size()]),
+                        collectExpressions.toArray(new CollectExpression[collectExpressions.size()]),
+                        numOutputs,
+                        orderByIndices,
+                        projection.reverseFlags(),
+                        projection.nullsFirst(),
+                        orderByTypes(projection, orderByIndices.length),
+                        projection.limit(),
+                        projection.offset(),
+                        settings.getAsMemory(ExternalSortProjector.MEMORY_LIMIT_SETTING,
+                                ExternalSortProjector.MEMORY_LIMIT_DEFAULT).bytes(),
+                        new File(settings.get(ExternalSortProjector.SPILL_PATH_SETTING, System.getProperty("java.io.tmpdir"))));
+            }
             projector = new SortingTopNProjector(
                     inputs.toArray(new Input<?>[inputs.size()]),
                     collectExpressions.toArray(new CollectExpression[collectExpressions.size()]),
@@ -107,6 +144,7 @@ public class ProjectionToProjectorVisitor extends ProjectionVisitor<Void, Projec
                     orderByIndices,
                     projection.reverseFlags(),
                     projection.nullsFirst(),
+                    orderByTypes(projection, orderByIndices.length),
                     projection.limit(),
                     projection.offset());
         } else {
@@ -120,18 +158,38 @@ public class ProjectionToProjectorVisitor extends ProjectionVisitor<Void, Projec
     }
 
     @Override
-    public Projector visitGroupProjection(GroupProjection projection, Void context) {
-        ImplementationSymbolVisitor.Context symbolContext = symbolVisitor.process(projection.keys());
+    public Projector visitGroupProjection(final GroupProjection projection, Void context) {
+        ImplementationSymbolVisitor.Context symbolContext = groupingContext(projection);
         List<Input<?>> keyInputs = symbolContext.topLevelInputs();
 
-        for (Aggregation aggregation : projection.values()) {
-            symbolVisitor.process(aggregation, symbolContext);
-        }
-        return new GroupingProjector(
+        GroupingProjector groupingProjector = new GroupingProjector(
                 keyInputs,
+                projection.keyTypes(),
                 symbolContext.collectExpressions().toArray(new CollectExpression[symbolContext.collectExpressions().size()]),
                 symbolContext.aggregations()
         );
+        groupingProjector.spillToDisk(
+                groupingMemoryAccounting,
+                new File(settings.get(GroupingProjector.SPILL_PATH_SETTING, System.getProperty("java.io.tmpdir")))
+        );
+        if (projection.requiredGranularity() != RowGranularity.SHARD) {
+            // shard projectors are fed by a single collector, node and handler projectors by many
+            groupingProjector.partitionPerThread(new Supplier<ImplementationSymbolVisitor.Context>() {
+                @Override
+                public ImplementationSymbolVisitor.Context get() {
+                    return groupingContext(projection);
+                }
+            });
+        }
+        return groupingProjector;
+    }
+
+    private ImplementationSymbolVisitor.Context groupingContext(GroupProjection projection) {
+        ImplementationSymbolVisitor.Context symbolContext = symbolVisitor.process(projection.keys());
+        for (Aggregation aggregation : projection.values()) {
+            symbolVisitor.process(aggregation, symbolContext);
+        }
+        return symbolContext;
     }
 
     @Override
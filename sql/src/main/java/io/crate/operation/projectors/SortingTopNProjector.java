@@ -22,7 +22,6 @@
 package io.crate.operation.projectors;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Ordering;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import io.crate.Constants;
@@ -30,6 +29,9 @@ import io.crate.core.collections.ArrayIterator;
 import io.crate.operation.Input;
 import io.crate.operation.ProjectorUpstream;
 import io.crate.operation.collect.CollectExpression;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.PriorityQueue;
 
 import javax.annotation.Nullable;
@@ -64,40 +66,122 @@ public class SortingTopNProjector implements Projector, ResultProvider {
         }
     }
 
-    static class ColOrdering extends Ordering<Object[]> {
+    /**
+     * compares the values of one column of two rows.
+     * Note that the queue is reversed, the row which should be returned last is the smallest.
+     */
+    abstract static class ColOrdering implements Comparator<Object[]> {
 
         private final int col;
-        private final Ordering<Comparable> ordering;
+        private final int direction;
+        private final boolean nullsSmallest;
 
-        ColOrdering(int col, boolean reverse, Boolean nullFirst) {
+        ColOrdering(int col, boolean reverse, @Nullable Boolean nullFirst) {
             this.col = col;
-
             // note, that we are reverse for the queue so this conditional is by intent
-            Ordering<Comparable> ordering;
-            nullFirst = nullFirst != null ? !nullFirst : null; // swap because queue is reverse
             if (reverse) {
-                ordering = Ordering.natural();
-                if (nullFirst == null || !nullFirst) {
-                    ordering = ordering.nullsLast();
-                } else {
-                    ordering = ordering.nullsFirst();
-                }
+                direction = 1;
+                nullsSmallest = nullFirst != null && !nullFirst;
             } else {
-                ordering = Ordering.natural().reverse();
-                if (nullFirst == null || nullFirst) {
-                    ordering = ordering.nullsFirst();
-                } else {
-                    ordering = ordering.nullsLast();
-                }
+                direction = -1;
+                nullsSmallest = nullFirst == null || !nullFirst;
             }
-            this.ordering = ordering;
+        }
+
+        /**
+         * @return a ColOrdering which compares the values of <code>type</code> without
+         * going through {@link Comparable} if possible.
+         */
+        static ColOrdering forType(int col, boolean reverse, @Nullable Boolean nullFirst, @Nullable DataType type) {
+            if (type == null) {
+                return new ComparableColOrdering(col, reverse, nullFirst);
+            }
+            if (type.equals(DataTypes.LONG) || type.equals(DataTypes.INTEGER)
+                    || type.equals(DataTypes.SHORT) || type.equals(DataTypes.BYTE)
+                    || type.equals(DataTypes.TIMESTAMP)) {
+                return new LongColOrdering(col, reverse, nullFirst);
+            }
+            if (type.equals(DataTypes.DOUBLE) || type.equals(DataTypes.FLOAT)) {
+                return new DoubleColOrdering(col, reverse, nullFirst);
+            }
+            if (type.equals(DataTypes.STRING)) {
+                return new BytesRefColOrdering(col, reverse, nullFirst);
+            }
+            return new ComparableColOrdering(col, reverse, nullFirst);
         }
 
         @Override
         public int compare(@Nullable Object[] left, @Nullable Object[] right) {
-            Comparable l = left != null ? (Comparable) left[col] : null;
-            Comparable r = right != null ? (Comparable) right[col] : null;
-            return ordering.compare(l, r);
+            Object l = left != null ? left[col] : null;
+            Object r = right != null ? right[col] : null;
+            if (l == null) {
+                if (r == null) {
+                    return 0;
+                }
+                return nullsSmallest ? -1 : 1;
+            }
+            if (r == null) {
+                return nullsSmallest ? 1 : -1;
+            }
+            return direction * Integer.signum(compareValues(l, r));
+        }
+
+        /**
+         * compare two non-null values in natural order
+         */
+        protected abstract int compareValues(Object l, Object r);
+    }
+
+    static class LongColOrdering extends ColOrdering {
+
+        LongColOrdering(int col, boolean reverse, @Nullable Boolean nullFirst) {
+            super(col, reverse, nullFirst);
+        }
+
+        @Override
+        protected int compareValues(Object l, Object r) {
+            return Long.compare(((Number) l).longValue(), ((Number) r).longValue());
+        }
+    }
+
+    static class DoubleColOrdering extends ColOrdering {
+
+        DoubleColOrdering(int col, boolean reverse, @Nullable Boolean nullFirst) {
+            super(col, reverse, nullFirst);
+        }
+
+        @Override
+        protected int compareValues(Object l, Object r) {
+            return Double.compare(((Number) l).doubleValue(), ((Number) r).doubleValue());
+        }
+    }
+
+    static class BytesRefColOrdering extends ColOrdering {
+
+        BytesRefColOrdering(int col, boolean reverse, @Nullable Boolean nullFirst) {
+            super(col, reverse, nullFirst);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected int compareValues(Object l, Object r) {
+            if (l instanceof BytesRef && r instanceof BytesRef) {
+                return ((BytesRef) l).compareTo((BytesRef) r);
+            }
+            return ((Comparable) l).compareTo(r);
+        }
+    }
+
+    static class ComparableColOrdering extends ColOrdering {
+
+        ComparableColOrdering(int col, boolean reverse, @Nullable Boolean nullFirst) {
+            super(col, reverse, nullFirst);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected int compareValues(Object l, Object r) {
+            return ((Comparable) l).compareTo(r);
         }
     }
 
@@ -107,7 +191,13 @@ public class SortingTopNProjector implements Projector, ResultProvider {
     private final int numOutputs;
 
     private RowPriorityQueue pq;
+    private final int[] orderBy;
     private final Comparator[] comparators;
+    /**
+     * row which only contains the orderBy values, used to check if a row makes it into the queue
+     * before evaluating all of its inputs
+     */
+    private final Object[] orderByRow;
     private final Input<?>[] inputs;
     private final CollectExpression<?>[] collectExpressions;
     private final AtomicInteger remainingUpstreams = new AtomicInteger(0);
@@ -130,9 +220,26 @@ public class SortingTopNProjector implements Projector, ResultProvider {
                                 Boolean[] nullsFirst,
                                 int limit,
                                 int offset) {
+        this(inputs, collectExpressions, numOutputs, orderBy, reverseFlags, nullsFirst, null, limit, offset);
+    }
+
+    /**
+     * @param orderByTypes the types of the orderBy inputs, used to compare the values without going
+     *                     through {@link Comparable}. If null the values are compared as {@link Comparable}s.
+     */
+    public SortingTopNProjector(Input<?>[] inputs,
+                                CollectExpression<?>[] collectExpressions,
+                                int numOutputs,
+                                int[] orderBy,
+                                boolean[] reverseFlags,
+                                Boolean[] nullsFirst,
+                                @Nullable DataType[] orderByTypes,
+                                int limit,
+                                int offset) {
         Preconditions.checkArgument(limit >= TopN.NO_LIMIT, "invalid limit");
         Preconditions.checkArgument(offset >= 0, "invalid offset");
         assert nullsFirst.length == reverseFlags.length;
+        assert orderByTypes == null || orderByTypes.length == orderBy.length;
 
         this.inputs = inputs;
         this.numOutputs = numOutputs;
@@ -143,14 +250,44 @@ public class SortingTopNProjector implements Projector, ResultProvider {
             limit = Constants.DEFAULT_SELECT_LIMIT;
         }
         this.maxSize = this.offset + limit;
+        this.orderBy = orderBy;
+        this.orderByRow = new Object[inputs.length];
         comparators = new Comparator[orderBy.length];
         for (int i = 0; i < orderBy.length; i++) {
             int col = orderBy[i];
             boolean reverse = reverseFlags[i];
-            comparators[i] = new ColOrdering(col, reverse, nullsFirst[i]);
+            comparators[i] = ColOrdering.forType(col, reverse, nullsFirst[i],
+                    orderByTypes == null ? null : orderByTypes[i]);
         }
     }
 
+    /**
+     * @return a comparator which sorts rows in the order this projector returns them
+     */
+    public static Comparator<Object[]> rowOrdering(int[] orderBy,
+                                                   boolean[] reverseFlags,
+                                                   Boolean[] nullsFirst,
+                                                   @Nullable DataType[] orderByTypes) {
+        final ColOrdering[] orderings = new ColOrdering[orderBy.length];
+        for (int i = 0; i < orderBy.length; i++) {
+            orderings[i] = ColOrdering.forType(orderBy[i], reverseFlags[i], nullsFirst[i],
+                    orderByTypes == null ? null : orderByTypes[i]);
+        }
+        return new Comparator<Object[]>() {
+            @Override
+            public int compare(Object[] o1, Object[] o2) {
+                for (ColOrdering ordering : orderings) {
+                    // the ColOrderings are reversed for the queue
+                    int compared = ordering.compare(o2, o1);
+                    if (compared != 0) {
+                        return compared;
+                    }
+                }
+                return 0;
+            }
+        };
+    }
+
     @Override
     public void startProjection() {
         pq = new RowPriorityQueue(maxSize);
@@ -162,8 +299,19 @@ public class SortingTopNProjector implements Projector, ResultProvider {
 
     @Override
     public synchronized boolean setNextRow(Object... row) {
-        Object[] evaluatedRow = evaluateRow(row);
-        pq.insertWithOverflow(evaluatedRow);
+        for (CollectExpression<?> collectExpression : collectExpressions) {
+            collectExpression.setNextRow(row);
+        }
+        if (maxSize > 0 && pq.size() == maxSize) {
+            // the queue is full, only evaluate the whole row if it would replace the current top
+            for (int col : orderBy) {
+                orderByRow[col] = inputs[col].value();
+            }
+            if (pq.lessThan(orderByRow, pq.top())) {
+                return true;
+            }
+        }
+        pq.insertWithOverflow(evaluateRow());
         return true;
     }
 
@@ -172,10 +320,7 @@ public class SortingTopNProjector implements Projector, ResultProvider {
         remainingUpstreams.incrementAndGet();
     }
 
-    private Object[] evaluateRow(Object[] row) {
-        for (CollectExpression<?> collectExpression : collectExpressions) {
-            collectExpression.setNextRow(row);
-        }
+    private Object[] evaluateRow() {
         Object[] evaluatedRow = new Object[inputs.length];
         int i = 0;
         for (Input<?> input : inputs) {
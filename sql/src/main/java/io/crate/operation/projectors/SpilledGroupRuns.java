@@ -0,0 +1,231 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors;
+
+import io.crate.exceptions.UnhandledServerException;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.aggregation.AggregationState;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Sorted runs of partial groups which have been written to disk by the {@link GroupingProjector}
+ * because the groups exceeded its memory limit.
+ *
+ * Each run contains the encoded keys and the aggregation states of the groups, sorted by the encoded keys.
+ * On {@link #merge()} the runs are read concurrently and the states of equal keys are reduced,
+ * so only one group per run has to be kept in memory.
+ */
+class SpilledGroupRuns implements Closeable {
+
+    private final File directory;
+    private final GroupKeyEncoder keyEncoder;
+    private final AggregationFunction[] functions;
+    private final int numKeys;
+    private final List<File> runs = new ArrayList<>();
+
+    /**
+     * @param directory the directory the runs are written to
+     * @param keyEncoder encoder for the (primitive) group keys
+     * @param functions the functions of the aggregations, used to create states the runs are read into
+     * @param numKeys number of keys of the groups
+     */
+    SpilledGroupRuns(File directory, GroupKeyEncoder keyEncoder, AggregationFunction[] functions, int numKeys) {
+        this.directory = directory;
+        this.keyEncoder = keyEncoder;
+        this.functions = functions;
+        this.numKeys = numKeys;
+    }
+
+    int numRuns() {
+        return runs.size();
+    }
+
+    /**
+     * write the given groups as a new sorted run.
+     *
+     * @param stateRows rows consisting of the key values followed by the (not yet finished) aggregation states
+     */
+    void write(Object[][] stateRows) throws IOException {
+        final BytesRef[] keys = new BytesRef[stateRows.length];
+        Integer[] order = new Integer[stateRows.length];
+        for (int i = 0; i < stateRows.length; i++) {
+            keys[i] = BytesRef.deepCopyOf(keyEncoder.encode(stateRows[i]));
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return keys[o1].compareTo(keys[o2]);
+            }
+        });
+
+        File file = File.createTempFile("crate-group-by-", ".run", directory);
+        runs.add(file);
+        try (StreamOutput out = new OutputStreamStreamOutput(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeVInt(stateRows.length);
+            for (Integer i : order) {
+                out.writeBytesRef(keys[i]);
+                Object[] row = stateRows[i];
+                for (int s = 0; s < functions.length; s++) {
+                    ((AggregationState) row[numKeys + s]).writeTo(out);
+                }
+            }
+        }
+    }
+
+    /**
+     * merge all runs, the states of groups with equal keys are reduced.
+     *
+     * @return an iterator over rows consisting of the key values followed by the aggregation states.
+     *         The runs are read lazily while iterating.
+     */
+    Iterator<Object[]> merge() throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(Math.max(1, runs.size()));
+        for (File run : runs) {
+            RunReader reader = new RunReader(run);
+            if (reader.next()) {
+                queue.add(reader);
+            } else {
+                reader.close();
+            }
+        }
+        return new MergeIterator(queue);
+    }
+
+    /**
+     * delete all runs
+     */
+    @Override
+    public void close() {
+        for (File run : runs) {
+            if (!run.delete()) {
+                run.deleteOnExit();
+            }
+        }
+        runs.clear();
+    }
+
+    private class RunReader implements Comparable<RunReader>, Closeable {
+
+        private final StreamInput in;
+        private int remaining;
+        private BytesRef key;
+        private AggregationState[] states;
+
+        RunReader(File run) throws IOException {
+            in = new InputStreamStreamInput(new BufferedInputStream(new FileInputStream(run)));
+            remaining = in.readVInt();
+        }
+
+        /**
+         * read the next group of this run
+         * @return false if the run is exhausted
+         */
+        boolean next() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            key = in.readBytesRef();
+            states = new AggregationState[functions.length];
+            for (int i = 0; i < functions.length; i++) {
+                states[i] = functions[i].newState();
+                states[i].readFrom(in);
+            }
+            return true;
+        }
+
+        @Override
+        public int compareTo(RunReader o) {
+            return key.compareTo(o.key);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private class MergeIterator implements Iterator<Object[]> {
+
+        private final PriorityQueue<RunReader> queue;
+
+        private MergeIterator(PriorityQueue<RunReader> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object[] next() {
+            if (queue.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                RunReader reader = queue.poll();
+                BytesRef key = reader.key;
+                AggregationState[] states = reader.states;
+                advance(reader);
+
+                while (!queue.isEmpty() && queue.peek().key.bytesEquals(key)) {
+                    reader = queue.poll();
+                    for (int i = 0; i < states.length; i++) {
+                        states[i].reduce(reader.states[i]);
+                    }
+                    advance(reader);
+                }
+
+                Object[] row = new Object[numKeys + states.length];
+                keyEncoder.decode(key, row);
+                System.arraycopy(states, 0, row, numKeys, states.length);
+                return row;
+            } catch (IOException e) {
+                throw new UnhandledServerException("Failed to read spilled GROUP BY run", e);
+            }
+        }
+
+        private void advance(RunReader reader) throws IOException {
+            if (reader.next()) {
+                queue.add(reader);
+            } else {
+                reader.close();
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove not supported");
+        }
+    }
+}
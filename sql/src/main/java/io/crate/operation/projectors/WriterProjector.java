@@ -307,7 +307,12 @@ public class WriterProjector implements Projector {
             try {
                 builder.startArray();
                 for (Input<?> input : inputs) {
-                    builder.value(input.value());
+                    Object value = input.value();
+                    if (value instanceof BytesRef) {
+                        // string columns collected from field data, would be written base64 encoded
+                        value = ((BytesRef) value).utf8ToString();
+                    }
+                    builder.value(value);
                 }
                 builder.endArray();
                 builder.flush();
@@ -33,6 +33,7 @@ import org.elasticsearch.index.fielddata.IndexFieldData;
 public class BytesRefColumnReference extends FieldCacheExpression<IndexFieldData, BytesRef> {
 
     private BytesValues values;
+    private boolean borrowValues = false;
 
     public BytesRefColumnReference(String columnName) {
         super(columnName);
@@ -44,12 +45,19 @@ public class BytesRefColumnReference extends FieldCacheExpression<IndexFieldData
             case 0:
                 return null;
             case 1:
-                return BytesRef.deepCopyOf(values.nextValue());
+                // the BytesRef returned by the field data is reused for the next document
+                return borrowValues ? values.nextValue() : BytesRef.deepCopyOf(values.nextValue());
             default:
                 throw new GroupByOnArrayUnsupportedException(columnName());
         }
     }
 
+    @Override
+    public void startCollect(CollectorContext context) {
+        super.startCollect(context);
+        borrowValues = context.borrowValues();
+    }
+
     @Override
     public void setNextReader(AtomicReaderContext context) {
         super.setNextReader(context);
@@ -0,0 +1,164 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.reference.doc.lucene;
+
+import com.carrotsearch.hppc.LongObjectOpenHashMap;
+import io.crate.exceptions.GroupByOnArrayUnsupportedException;
+import io.crate.exceptions.ValidationException;
+import io.crate.operation.OrdinalsInput;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefHash;
+import org.elasticsearch.index.fielddata.AtomicFieldData;
+import org.elasticsearch.index.fielddata.BytesValues;
+import org.elasticsearch.index.fielddata.IndexFieldData;
+
+/**
+ * string column expression which exposes the global ordinals of the field data,
+ * so that e.g. a shard level group by can group on the ordinals instead of the bytes.
+ *
+ * Every ordinal is resolved to a BytesRef only once, the value returned for the same ordinal
+ * is always the same instance and must not be modified.
+ *
+ * If the field data doesn't support ordinals the values are assigned shard local ordinals
+ * with a {@link BytesRefHash}.
+ */
+public class BytesRefOrdinalsColumnReference extends FieldCacheExpression<IndexFieldData, BytesRef>
+        implements OrdinalsInput<BytesRef> {
+
+    private final LongObjectOpenHashMap<BytesRef> resolved = new LongObjectOpenHashMap<>();
+
+    private IndexFieldData.WithOrdinals globalFieldData;
+    private BytesValues.WithOrdinals ordinalValues;
+
+    private BytesRefHash localOrdinals;
+    private BytesValues values;
+
+    private int ordinalDocId = -1;
+    private long ordinal = MISSING_ORDINAL;
+
+    public BytesRefOrdinalsColumnReference(String columnName) {
+        super(columnName);
+    }
+
+    @Override
+    public void startCollect(CollectorContext context) {
+        super.startCollect(context);
+        if (indexFieldData instanceof IndexFieldData.WithOrdinals) {
+            globalFieldData = ((IndexFieldData.WithOrdinals) indexFieldData).loadGlobal(
+                    context.searchContext().searcher().getIndexReader());
+        } else {
+            localOrdinals = new BytesRefHash();
+        }
+    }
+
+    @Override
+    public void setNextReader(AtomicReaderContext context) {
+        super.setNextReader(context);
+        ordinalDocId = -1;
+        if (globalFieldData != null) {
+            ordinalValues = ((AtomicFieldData.WithOrdinals) globalFieldData.load(context)).getBytesValues();
+        } else {
+            values = indexFieldData.load(context).getBytesValues();
+        }
+    }
+
+    @Override
+    public long ordinal() throws ValidationException {
+        if (ordinalDocId == docId) {
+            return ordinal;
+        }
+        ordinalDocId = docId;
+        if (ordinalValues != null) {
+            switch (ordinalValues.setDocument(docId)) {
+                case 0:
+                    ordinal = MISSING_ORDINAL;
+                    break;
+                case 1:
+                    ordinal = ordinalValues.nextOrd();
+                    break;
+                default:
+                    throw new GroupByOnArrayUnsupportedException(columnName());
+            }
+        } else {
+            switch (values.setDocument(docId)) {
+                case 0:
+                    ordinal = MISSING_ORDINAL;
+                    break;
+                case 1:
+                    int id = localOrdinals.add(values.nextValue());
+                    ordinal = id < 0 ? -id - 1 : id;
+                    break;
+                default:
+                    throw new GroupByOnArrayUnsupportedException(columnName());
+            }
+        }
+        return ordinal;
+    }
+
+    @Override
+    public BytesRef lookupOrdinal(long ordinal) {
+        BytesRef value = resolved.get(ordinal);
+        if (value == null) {
+            if (ordinalValues != null) {
+                value = BytesRef.deepCopyOf(ordinalValues.getValueByOrd(ordinal));
+            } else {
+                value = BytesRef.deepCopyOf(localOrdinals.get((int) ordinal, new BytesRef()));
+            }
+            resolved.put(ordinal, value);
+        }
+        return value;
+    }
+
+    @Override
+    public BytesRef value() throws ValidationException {
+        long ordinal = ordinal();
+        if (ordinal == MISSING_ORDINAL) {
+            return null;
+        }
+        return lookupOrdinal(ordinal);
+    }
+
+    @Override
+    public DataType returnType() {
+        return DataTypes.STRING;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null)
+            return false;
+        if (obj == this)
+            return true;
+        if (!(obj instanceof BytesRefOrdinalsColumnReference))
+            return false;
+        return columnName.equals(((BytesRefOrdinalsColumnReference) obj).columnName);
+    }
+
+    @Override
+    public int hashCode() {
+        return columnName.hashCode();
+    }
+}
@@ -30,6 +30,8 @@ public class CollectorContext {
     private SearchContext searchContext;
     private CacheRecycler cacheRecycler;
     private LuceneDocCollector.CollectorFieldsVisitor fieldsVisitor;
+    private SourceExtractor sourceExtractor;
+    private boolean borrowValues = false;
 
     public CollectorContext() {
     }
@@ -64,4 +66,26 @@ public class CollectorContext {
         return fieldsVisitor;
     }
 
+    /**
+     * the source extractor shared by all source backed expressions of the collect
+     */
+    public SourceExtractor sourceExtractor() {
+        if (sourceExtractor == null) {
+            sourceExtractor = new SourceExtractor();
+        }
+        return sourceExtractor;
+    }
+
+    /**
+     * if true expressions may return values which are only valid until the next document,
+     * see {@link io.crate.operation.projectors.BorrowingProjector}
+     */
+    public CollectorContext borrowValues(boolean borrowValues) {
+        this.borrowValues = borrowValues;
+        return this;
+    }
+
+    public boolean borrowValues() {
+        return borrowValues;
+    }
 }
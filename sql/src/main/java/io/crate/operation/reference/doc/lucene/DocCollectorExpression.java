@@ -30,7 +30,6 @@ import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.elasticsearch.common.xcontent.XContentHelper;
-import org.elasticsearch.search.lookup.SourceLookup;
 
 import java.util.Map;
 
@@ -75,6 +74,7 @@ public class DocCollectorExpression extends
             @Override
             public void startCollect(CollectorContext context) {
                 super.startCollect(context);
+                sourceExtractor.register(fqn);
             }
 
             @Override
@@ -84,7 +84,7 @@ public class DocCollectorExpression extends
 
             @Override
             public Object value() {
-                return sourceLookup.extractValue(fqn);
+                return sourceExtractor.extractValue(fqn);
             }
 
             @Override
@@ -97,21 +97,21 @@ public class DocCollectorExpression extends
     abstract static class ChildDocCollectorExpression<ReturnType> extends
             LuceneCollectorExpression<ReturnType> implements ColumnReferenceExpression {
 
-        protected SourceLookup sourceLookup;
+        protected SourceExtractor sourceExtractor;
 
         @Override
         public void setNextDocId(int doc) {
-            sourceLookup.setNextDocId(doc);
+            sourceExtractor.setNextDocId(doc);
         }
 
         @Override
         public void setNextReader(AtomicReaderContext context) {
-            sourceLookup.setNextReader(context);
+            sourceExtractor.setNextReader(context);
         }
 
         @Override
         public void startCollect(CollectorContext context) {
-            sourceLookup = context.searchContext().lookup().source();
+            sourceExtractor = context.sourceExtractor();
         }
     }
 }
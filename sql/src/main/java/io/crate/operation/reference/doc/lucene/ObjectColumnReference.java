@@ -25,13 +25,12 @@ package io.crate.operation.reference.doc.lucene;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 import org.apache.lucene.index.AtomicReaderContext;
-import org.elasticsearch.search.lookup.SourceLookup;
 
 import java.util.Map;
 
 public class ObjectColumnReference extends ColumnReferenceCollectorExpression<Map<String, Object>> {
 
-    protected SourceLookup sourceLookup;
+    protected SourceExtractor sourceExtractor;
 
     public ObjectColumnReference(String columnName) {
         super(columnName);
@@ -39,17 +38,18 @@ public class ObjectColumnReference extends ColumnReferenceCollectorExpression<Ma
 
     @Override
     public void setNextDocId(int doc) {
-        sourceLookup.setNextDocId(doc);
+        sourceExtractor.setNextDocId(doc);
     }
 
     @Override
     public void setNextReader(AtomicReaderContext context) {
-        sourceLookup.setNextReader(context);
+        sourceExtractor.setNextReader(context);
     }
 
     @Override
     public void startCollect(CollectorContext context) {
-        sourceLookup = context.searchContext().lookup().source();
+        sourceExtractor = context.sourceExtractor();
+        sourceExtractor.register(columnName);
     }
 
     @Override
@@ -59,6 +59,6 @@ public class ObjectColumnReference extends ColumnReferenceCollectorExpression<Ma
 
     @Override
     public Map<String, Object> value() {
-        return (Map<String, Object>)sourceLookup.extractValue(columnName);
+        return (Map<String, Object>)sourceExtractor.extractValue(columnName);
     }
 }
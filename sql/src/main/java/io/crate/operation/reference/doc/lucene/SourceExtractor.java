@@ -0,0 +1,196 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.reference.doc.lucene;
+
+import io.crate.exceptions.UnhandledServerException;
+import io.crate.operation.collect.LuceneDocCollector;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.support.XContentMapValues;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Extracts column values from the source of the current document.
+ *
+ * All source backed expressions of a collect share one extractor, so the source of
+ * a document is loaded and parsed at most once. Only the registered columns are
+ * materialized: other values are skipped by the parser, and parsing stops as soon
+ * as every registered column has been read.
+ */
+public class SourceExtractor {
+
+    private final Set<String> paths = new HashSet<>();
+    /**
+     * all parents of the registered paths, e.g. <code>a</code> and <code>a.b</code> for <code>a.b.c</code>
+     */
+    private final Set<String> parents = new HashSet<>();
+    private final LuceneDocCollector.CollectorFieldsVisitor fieldsVisitor =
+            new LuceneDocCollector.CollectorFieldsVisitor(0);
+
+    private AtomicReader reader;
+    private int docId = -1;
+    private Map<String, Object> partialSource;
+
+    /**
+     * @param path the dotted path of a column, which is extracted for every document
+     */
+    public void register(String path) {
+        if (paths.add(path)) {
+            int idx = path.indexOf('.');
+            while (idx > 0) {
+                parents.add(path.substring(0, idx));
+                idx = path.indexOf('.', idx + 1);
+            }
+        }
+    }
+
+    public void setNextReader(AtomicReaderContext context) {
+        if (context.reader() != reader) {
+            reader = context.reader();
+            docId = -1;
+            partialSource = null;
+        }
+    }
+
+    public void setNextDocId(int doc) {
+        if (doc != docId) {
+            docId = doc;
+            partialSource = null;
+        }
+    }
+
+    /**
+     * @return the value of the registered path in the source of the current document,
+     *         the same as {@link org.elasticsearch.search.lookup.SourceLookup#extractValue(String)} returns.
+     */
+    @Nullable
+    public Object extractValue(String path) {
+        assert paths.contains(path) : "path must be registered before the collect starts";
+        if (partialSource == null) {
+            fieldsVisitor.reset();
+            try {
+                reader.document(docId, fieldsVisitor);
+                partialSource = extract(fieldsVisitor.source());
+            } catch (IOException e) {
+                throw new UnhandledServerException("Failed to extract values from the source", e);
+            }
+        }
+        return XContentMapValues.extractValue(path, partialSource);
+    }
+
+    /**
+     * @return a map which contains the registered paths of the given source
+     */
+    Map<String, Object> extract(@Nullable BytesReference source) throws IOException {
+        Map<String, Object> result = new HashMap<>();
+        if (source == null || source.length() == 0) {
+            return result;
+        }
+        XContentParser parser = XContentHelper.createParser(source);
+        try {
+            if (parser.nextToken() == XContentParser.Token.START_OBJECT) {
+                readObject(parser, null, result, paths.size());
+            }
+        } finally {
+            parser.close();
+        }
+        return result;
+    }
+
+    /**
+     * reads the fields of the current object which are registered or parents of registered paths.
+     *
+     * @return the number of registered paths which haven't been read yet
+     */
+    private int readObject(XContentParser parser,
+                           @Nullable String parent,
+                           Map<String, Object> target,
+                           int remaining) throws IOException {
+        while (remaining > 0 && parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+            String name = parser.currentName();
+            String path = parent == null ? name : parent + "." + name;
+            XContentParser.Token token = parser.nextToken();
+            if (paths.contains(path)) {
+                target.put(name, readValue(parser, token));
+                remaining -= numPathsWithin(path);
+            } else if (parents.contains(path)) {
+                if (token == XContentParser.Token.START_OBJECT) {
+                    Map<String, Object> child = new HashMap<>();
+                    target.put(name, child);
+                    remaining = readObject(parser, path, child, remaining);
+                } else {
+                    // arrays of objects are read completely, the values are collected while extracting
+                    target.put(name, readValue(parser, token));
+                    remaining -= numPathsWithin(path);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return remaining;
+    }
+
+    private int numPathsWithin(String path) {
+        int num = 0;
+        String prefix = path + ".";
+        for (String registered : paths) {
+            if (registered.equals(path) || registered.startsWith(prefix)) {
+                num++;
+            }
+        }
+        return num;
+    }
+
+    private static Object readValue(XContentParser parser, XContentParser.Token token) throws IOException {
+        switch (token) {
+            case START_OBJECT:
+                Map<String, Object> map = new HashMap<>();
+                while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+                    String name = parser.currentName();
+                    map.put(name, readValue(parser, parser.nextToken()));
+                }
+                return map;
+            case START_ARRAY:
+                List<Object> list = new ArrayList<>();
+                while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
+                    list.add(readValue(parser, token));
+                }
+                return list;
+            case VALUE_STRING:
+                return parser.text();
+            case VALUE_NUMBER:
+                return parser.numberValue();
+            case VALUE_BOOLEAN:
+                return parser.booleanValue();
+            case VALUE_EMBEDDED_OBJECT:
+                return parser.binaryValue();
+            default:
+                return null;
+        }
+    }
+}
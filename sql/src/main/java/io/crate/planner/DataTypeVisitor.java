@@ -23,7 +23,6 @@ package io.crate.planner;
 
 import io.crate.planner.symbol.*;
 import io.crate.types.DataType;
-import io.crate.types.DataTypes;
 import io.crate.types.NullType;
 
 public class DataTypeVisitor extends SymbolVisitor<Void, DataType> {
@@ -65,7 +64,7 @@ public class DataTypeVisitor extends SymbolVisitor<Void, DataType> {
 
     @Override
     public DataType visitParameter(Parameter symbol, Void context) {
-        return DataTypes.guessType(symbol.value(), false);
+        return symbol.guessType();
     }
 
     @Override
@@ -34,6 +34,7 @@ import io.crate.exceptions.UnhandledServerException;
 import io.crate.metadata.*;
 import io.crate.metadata.doc.DocSchemaInfo;
 import io.crate.metadata.doc.DocSysColumns;
+import io.crate.metadata.table.TableInfo;
 import io.crate.operation.aggregation.impl.CountAggregation;
 import io.crate.operation.aggregation.impl.SumAggregation;
 import io.crate.operation.projectors.TopN;
@@ -76,16 +77,28 @@ public class Planner extends AnalysisVisitor<Planner.Context, Plan> {
     protected static class Context {
         public final Optional<ColumnIndexWriterProjection> indexWriterProjection;
 
+        /**
+         * if true sorted selects without a limit return all rows instead of
+         * {@link Constants#DEFAULT_SELECT_LIMIT}, the rows are sorted externally
+         */
+        public final boolean unlimited;
+
         Context() {
             this(null);
         }
 
         Context(@Nullable ColumnIndexWriterProjection indexWriterProjection) {
+            this(indexWriterProjection, false);
+        }
+
+        Context(@Nullable ColumnIndexWriterProjection indexWriterProjection, boolean unlimited) {
             this.indexWriterProjection = Optional.fromNullable(indexWriterProjection);
+            this.unlimited = unlimited;
         }
     }
 
     private static final Context EMPTY_CONTEXT = new Context();
+    private static final Context UNLIMITED_CONTEXT = new Context(null, true);
 
     @Inject
     public Planner(ClusterService clusterService) {
@@ -99,7 +112,15 @@ public class Planner extends AnalysisVisitor<Planner.Context, Plan> {
      * @return plan
      */
     public Plan plan(Analysis analysis) {
-        return process(analysis, EMPTY_CONTEXT);
+        return plan(analysis, false);
+    }
+
+    /**
+     * @param unlimited if true sorted selects without a limit return all rows instead of
+     *                  {@link Constants#DEFAULT_SELECT_LIMIT}, used if the rows are read with a cursor
+     */
+    public Plan plan(Analysis analysis, boolean unlimited) {
+        return process(analysis, unlimited ? UNLIMITED_CONTEXT : EMPTY_CONTEXT);
     }
 
     @Override
@@ -219,10 +240,11 @@ public class Planner extends AnalysisVisitor<Planner.Context, Plan> {
         projection.settings(analysis.settings());
 
         PlannerContextBuilder contextBuilder = new PlannerContextBuilder();
+        Predicate<ReferenceInfo> fieldDataColumns = fieldDataColumns(analysis.table());
         if (analysis.outputSymbols() != null && !analysis.outputSymbols().isEmpty()) {
             List<Symbol> columns = new ArrayList<>(analysis.outputSymbols().size());
             for (Symbol symbol : analysis.outputSymbols()) {
-                columns.add(DocReferenceBuildingVisitor.convert(symbol));
+                columns.add(DocReferenceBuildingVisitor.convert(symbol, fieldDataColumns));
             }
             contextBuilder = contextBuilder.output(columns);
             projection.inputs(contextBuilder.outputs());
@@ -241,10 +263,32 @@ public class Planner extends AnalysisVisitor<Planner.Context, Plan> {
             }
             contextBuilder = contextBuilder.output(ImmutableList.<Symbol>of(sourceRef));
         }
+        ImmutableList.Builder<Projection> projections = ImmutableList.builder();
+        if (analysis.isSorted()) {
+            List<Symbol> sortSymbols = new ArrayList<>(analysis.sortSymbols().size());
+            for (Symbol symbol : analysis.sortSymbols()) {
+                sortSymbols.add(DocReferenceBuildingVisitor.convert(symbol, fieldDataColumns));
+            }
+            contextBuilder.orderBy(sortSymbols);
+
+            // every shard sorts its rows before they're written, as the outputs are collected first
+            // the inputs of the writer projection stay the same
+            TopNProjection topN = new TopNProjection(
+                    TopN.NO_LIMIT,
+                    TopN.NO_OFFSET,
+                    contextBuilder.orderBy(),
+                    analysis.reverseFlags(),
+                    analysis.nullsFirst()
+            );
+            topN.outputs(contextBuilder.outputs());
+            topN.orderByTypes(contextBuilder.orderByTypes());
+            projections.add(topN);
+        }
+        projections.add(projection);
         CollectNode collectNode = PlanNodeBuilder.collect(
                 analysis,
                 contextBuilder.toCollect(),
-                ImmutableList.<Projection>of(projection),
+                projections.build(),
                 analysis.partitionIdent()
         );
         plan.add(collectNode);
@@ -492,6 +536,7 @@ public class Planner extends AnalysisVisitor<Planner.Context, Plan> {
                     analysis.nullsFirst()
             );
             tnp.outputs(contextBuilder.outputs());
+            tnp.orderByTypes(contextBuilder.orderByTypes());
             ImmutableList.Builder<Projection> projectionBuilder = ImmutableList.<Projection>builder().add(tnp);
             if (context.indexWriterProjection.isPresent()) {
                 projectionBuilder.add(context.indexWriterProjection.get());
@@ -500,6 +545,28 @@ public class Planner extends AnalysisVisitor<Planner.Context, Plan> {
         }
     }
 
+    /**
+     * columns of doc tables which are collected from field data so that the collector
+     * doesn't have to load the source of the documents. Only columns with doc values are collected
+     * that way, the field data of other columns would have to be loaded into memory.
+     * All other columns are read from the source using the _doc column.
+     */
+    private static Predicate<ReferenceInfo> fieldDataColumns(final TableInfo tableInfo) {
+        String schema = tableInfo.ident().schema();
+        if (schema != null && !schema.equals(DocSchemaInfo.NAME)) {
+            return Predicates.alwaysFalse();
+        }
+        return new Predicate<ReferenceInfo>() {
+            @Override
+            public boolean apply(ReferenceInfo input) {
+                // partitioned columns aren't indexed
+                return !tableInfo.partitionedBy().contains(input.ident().columnIdent())
+                        && tableInfo.hasDocValues(input.ident().columnIdent())
+                        && DocReferenceBuildingVisitor.readableFromFieldData(input);
+            }
+        };
+    }
+
     private void normalSelect(SelectAnalysis analysis, Plan plan, Context context) {
         // node or shard level normal select
 
@@ -522,6 +589,7 @@ public class Planner extends AnalysisVisitor<Planner.Context, Plan> {
                     analysis.nullsFirst()
             );
             tnp.outputs(contextBuilder.outputs());
+            tnp.orderByTypes(contextBuilder.orderByTypes());
             projections = ImmutableList.<Projection>of(tnp);
         } else if(context.indexWriterProjection.isPresent()) {
             // no limit, projection (index writer) will run on shard/CollectNode
@@ -535,9 +603,9 @@ public class Planner extends AnalysisVisitor<Planner.Context, Plan> {
             toCollect = contextBuilder.toCollect();
         } else {
             toCollect = new ArrayList<>();
+            Predicate<ReferenceInfo> fieldDataColumns = fieldDataColumns(analysis.table());
             for (Symbol symbol : contextBuilder.toCollect()) {
-                toCollect.add(DocReferenceBuildingVisitor.convert(symbol));
-
+                toCollect.add(DocReferenceBuildingVisitor.convert(symbol, fieldDataColumns));
             }
         }
 
@@ -548,13 +616,14 @@ public class Planner extends AnalysisVisitor<Planner.Context, Plan> {
         if (!context.indexWriterProjection.isPresent() || analysis.isLimited()) {
             // limit set, apply topN projection
             TopNProjection tnp = new TopNProjection(
-                    Objects.firstNonNull(analysis.limit(), Constants.DEFAULT_SELECT_LIMIT),
+                    limit(analysis, context),
                     analysis.offset(),
                     contextBuilder.orderBy(),
                     analysis.reverseFlags(),
                     analysis.nullsFirst()
             );
             tnp.outputs(contextBuilder.outputs());
+            tnp.orderByTypes(contextBuilder.orderByTypes());
             projectionBuilder.add(tnp);
         }
         if (context.indexWriterProjection.isPresent() && analysis.isLimited()) {
@@ -693,7 +762,7 @@ public class Planner extends AnalysisVisitor<Planner.Context, Plan> {
         } else if (context.indexWriterProjection.isPresent()) {
             distributedWriterGroupBy(analysis, plan, context.indexWriterProjection.get());
         } else {
-            distributedGroupBy(analysis, plan);
+            distributedGroupBy(analysis, plan, context);
         }
     }
 
@@ -759,13 +828,13 @@ public class Planner extends AnalysisVisitor<Planner.Context, Plan> {
 
         ImmutableList.Builder<Projection> projectionBuilder = ImmutableList.builder();
         GroupProjection groupProjection =
-                new GroupProjection(contextBuilder.groupBy(), contextBuilder.aggregations());
+                new GroupProjection(contextBuilder.groupBy(), contextBuilder.groupByTypes(), contextBuilder.aggregations());
 
         List<Symbol> toCollect = contextBuilder.toCollect();
         contextBuilder.nextStep();
 
         projectionBuilder.add(groupProjection);
-        boolean topNDone = addTopNIfApplicableOnReducer(analysis, contextBuilder, projectionBuilder);
+        boolean topNDone = addTopNIfApplicableOnReducer(analysis, context, contextBuilder, projectionBuilder);
 
         CollectNode collectNode = PlanNodeBuilder.collect(
                 analysis,
@@ -779,7 +848,7 @@ public class Planner extends AnalysisVisitor<Planner.Context, Plan> {
         // handler
         ImmutableList.Builder<Projection> builder = ImmutableList.<Projection>builder();
         if (numAggregationSteps == 2) {
-            builder.add(new GroupProjection(contextBuilder.groupBy(), contextBuilder.aggregations()));
+            builder.add(new GroupProjection(contextBuilder.groupBy(), contextBuilder.groupByTypes(), contextBuilder.aggregations()));
         }
         if (!ignoreSorting) {
             List<Symbol> outputs;
@@ -792,19 +861,23 @@ public class Planner extends AnalysisVisitor<Planner.Context, Plan> {
                 outputs = contextBuilder.outputs();
             }
             TopNProjection topN = new TopNProjection(
-                    Objects.firstNonNull(analysis.limit(), Constants.DEFAULT_SELECT_LIMIT),
+                    limit(analysis, context),
                     analysis.offset(),
                     orderBy,
                     analysis.reverseFlags(),
                     analysis.nullsFirst()
             );
             topN.outputs(outputs);
+            topN.orderByTypes(contextBuilder.orderByTypes());
             builder.add(topN);
         }
         if (context.indexWriterProjection.isPresent()) {
             builder.add(context.indexWriterProjection.get());
         }
-        plan.add(PlanNodeBuilder.localMerge(builder.build(), collectNode));
+        MergeNode localMergeNode = PlanNodeBuilder.localMerge(builder.build(), collectNode);
+        // without a second aggregation step the collect nodes already return their rows sorted
+        localMergeNode.sortedInputs(topNDone && numAggregationSteps == 1 && !ignoreSorting);
+        plan.add(localMergeNode);
     }
 
     /**
@@ -815,23 +888,37 @@ public class Planner extends AnalysisVisitor<Planner.Context, Plan> {
      * topN projection on the handler node which will do the final sort + limiting (if applicable)
      */
     private boolean addTopNIfApplicableOnReducer(SelectAnalysis analysis,
+                                                 Context context,
                                                  PlannerContextBuilder contextBuilder,
                                                  ImmutableList.Builder<Projection> projectionBuilder) {
         if (requireLimitOnReducer(analysis, contextBuilder.aggregationsWrappedInScalar)) {
+            int limit = limit(analysis, context);
             TopNProjection topN = new TopNProjection(
-                    Objects.firstNonNull(analysis.limit(), Constants.DEFAULT_SELECT_LIMIT) + analysis.offset(),
+                    limit == TopN.NO_LIMIT ? TopN.NO_LIMIT : limit + analysis.offset(),
                     0,
                     contextBuilder.orderBy(),
                     analysis.reverseFlags(),
                     analysis.nullsFirst()
             );
             topN.outputs(contextBuilder.outputs());
+            topN.orderByTypes(contextBuilder.orderByTypes());
             projectionBuilder.add(topN);
             return true;
         }
         return false;
     }
 
+    /**
+     * the limit of the final topN projection, {@link TopN#NO_LIMIT} if all rows of a sorted
+     * select without a limit are requested.
+     */
+    private static int limit(SelectAnalysis analysis, Context context) {
+        if (analysis.limit() != null) {
+            return analysis.limit();
+        }
+        return context.unlimited && analysis.isSorted() ? TopN.NO_LIMIT : Constants.DEFAULT_SELECT_LIMIT;
+    }
+
     private boolean requireLimitOnReducer(SelectAnalysis analysis, boolean aggregationsWrappedInScalar) {
         return (analysis.limit() != null
                 || analysis.offset() > 0
@@ -844,14 +931,14 @@ public class Planner extends AnalysisVisitor<Planner.Context, Plan> {
      * <p/>
      * final merge on handler
      */
-    private void distributedGroupBy(SelectAnalysis analysis, Plan plan) {
+    private void distributedGroupBy(SelectAnalysis analysis, Plan plan, Context context) {
         PlannerContextBuilder contextBuilder = new PlannerContextBuilder(2, analysis.groupBy())
                 .output(analysis.outputSymbols())
                 .orderBy(analysis.sortSymbols());
 
         // collector
         GroupProjection groupProjection = new GroupProjection(
-                contextBuilder.groupBy(), contextBuilder.aggregations());
+                contextBuilder.groupBy(), contextBuilder.groupByTypes(), contextBuilder.aggregations());
         CollectNode collectNode = PlanNodeBuilder.distributingCollect(
                 analysis,
                 contextBuilder.toCollect(),
@@ -866,9 +953,10 @@ public class Planner extends AnalysisVisitor<Planner.Context, Plan> {
         ImmutableList.Builder<Projection> projectionsBuilder = ImmutableList.<Projection>builder();
         projectionsBuilder.add(new GroupProjection(
                 contextBuilder.groupBy(),
+                contextBuilder.groupByTypes(),
                 contextBuilder.aggregations()));
 
-        boolean topNDone = addTopNIfApplicableOnReducer(analysis, contextBuilder, projectionsBuilder);
+        boolean topNDone = addTopNIfApplicableOnReducer(analysis, context, contextBuilder, projectionsBuilder);
         MergeNode mergeNode = PlanNodeBuilder.distributedMerge(collectNode, projectionsBuilder.build());
         plan.add(mergeNode);
 
@@ -884,14 +972,17 @@ public class Planner extends AnalysisVisitor<Planner.Context, Plan> {
         }
         // mergeNode handler
         TopNProjection topN = new TopNProjection(
-                Objects.firstNonNull(analysis.limit(), Constants.DEFAULT_SELECT_LIMIT),
+                limit(analysis, context),
                 analysis.offset(),
                 orderBy,
                 analysis.reverseFlags(),
                 analysis.nullsFirst()
         );
         topN.outputs(outputs);
+        topN.orderByTypes(contextBuilder.orderByTypes());
         MergeNode localMergeNode = PlanNodeBuilder.localMerge(ImmutableList.<Projection>of(topN), mergeNode);
+        // the reducers already return their rows sorted
+        localMergeNode.sortedInputs(topNDone);
         plan.add(localMergeNode);
     }
 
@@ -910,7 +1001,7 @@ public class Planner extends AnalysisVisitor<Planner.Context, Plan> {
 
         // collector
         GroupProjection groupProjection = new GroupProjection(
-                contextBuilder.groupBy(), contextBuilder.aggregations());
+                contextBuilder.groupBy(), contextBuilder.groupByTypes(), contextBuilder.aggregations());
         CollectNode collectNode = PlanNodeBuilder.distributingCollect(
                 analysis,
                 contextBuilder.toCollect(),
@@ -925,6 +1016,7 @@ public class Planner extends AnalysisVisitor<Planner.Context, Plan> {
         ImmutableList.Builder<Projection> projectionsBuilder = ImmutableList.builder();
         projectionsBuilder.add(new GroupProjection(
                 contextBuilder.groupBy(),
+                contextBuilder.groupByTypes(),
                 contextBuilder.aggregations()));
 
         boolean topNDone = false;
@@ -938,6 +1030,7 @@ public class Planner extends AnalysisVisitor<Planner.Context, Plan> {
                     analysis.nullsFirst()
             );
             topN.outputs(contextBuilder.outputs());
+            topN.orderByTypes(contextBuilder.orderByTypes());
             projectionsBuilder.add(topN);
         } else {
             projectionsBuilder.add(writerProjection);
@@ -968,6 +1061,7 @@ public class Planner extends AnalysisVisitor<Planner.Context, Plan> {
                     analysis.nullsFirst()
             );
             topN.outputs(outputs);
+            topN.orderByTypes(contextBuilder.orderByTypes());
             builder.add(topN);
             builder.add(writerProjection);
         } else {
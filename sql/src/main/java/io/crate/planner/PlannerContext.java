@@ -38,6 +38,7 @@ public class PlannerContext {
     Map<Symbol, InputColumn> toCollectAllocation = new LinkedHashMap<>();
     Map<Symbol, Symbol> resolvedSymbols = new HashMap<>();
     List<Symbol> orderBy = new ArrayList<>();
+    List<Symbol> originalOrderBy = new ArrayList<>();
     List<Symbol> outputs = new ArrayList<>();
     List<Symbol> originalGroupBy;
 
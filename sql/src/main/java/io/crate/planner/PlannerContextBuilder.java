@@ -28,7 +28,9 @@ import io.crate.planner.symbol.Aggregation;
 import io.crate.planner.symbol.InputColumn;
 import io.crate.planner.symbol.Symbol;
 import io.crate.planner.symbol.SymbolType;
+import io.crate.types.DataType;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -64,6 +66,17 @@ public class PlannerContextBuilder {
         return context.groupBy;
     }
 
+    /**
+     * the types of the group by symbols, these stay the same in every aggregation step
+     */
+    public List<DataType> groupByTypes() {
+        List<DataType> types = new ArrayList<>(context.originalGroupBy.size());
+        for (Symbol symbol : context.originalGroupBy) {
+            types.add(DataTypeVisitor.fromSymbol(symbol));
+        }
+        return types;
+    }
+
     public List<Symbol> toCollect() {
         return Lists.newArrayList(context.toCollectAllocation.keySet());
     }
@@ -153,10 +166,36 @@ public class PlannerContextBuilder {
         return ignoreOrderBy ? ImmutableList.<Symbol>of() : Lists.newArrayList(context.orderBy);
     }
 
+    /**
+     * the types of the order by symbols, used to pick type specialized comparators for sorting.
+     * returns null if the type of an order by symbol can't be resolved.
+     */
+    @Nullable
+    public List<DataType> orderByTypes() {
+        if (ignoreOrderBy) {
+            return ImmutableList.of();
+        }
+        List<DataType> types = new ArrayList<>(context.originalOrderBy.size());
+        for (Symbol symbol : context.originalOrderBy) {
+            DataType type;
+            try {
+                type = DataTypeVisitor.fromSymbol(symbol);
+            } catch (UnsupportedOperationException e) {
+                return null;
+            }
+            if (type == null) {
+                return null;
+            }
+            types.add(type);
+        }
+        return types;
+    }
+
     public PlannerContextBuilder orderBy(List<Symbol> symbols) {
         if (symbols == null || ignoreOrderBy) {
             return this;
         }
+        context.originalOrderBy.addAll(symbols);
         if (context.steps == null || context.numGroupKeys == 0) {
             for (Symbol symbol : symbols) {
                 context.orderBy.add(context.allocateToCollect(symbol));
@@ -40,6 +40,7 @@ public class ESSearchNode extends ESDQLPlanNode {
 
     private final List<Symbol> orderBy;
     private final int limit;
+    private final boolean limited;
     private final int offset;
     private final boolean[] reverseFlags;
     private final WhereClause whereClause;
@@ -78,6 +79,7 @@ public class ESSearchNode extends ESDQLPlanNode {
 
         // TODO: move constant to some other location?
         this.limit = Objects.firstNonNull(limit, Constants.DEFAULT_SELECT_LIMIT);
+        this.limited = limit != null;
         this.offset = Objects.firstNonNull(offset, 0);
 
         this.partitionBy = Objects.firstNonNull(partitionBy, ImmutableList.<ReferenceInfo>of());
@@ -96,6 +98,13 @@ public class ESSearchNode extends ESDQLPlanNode {
         return limit;
     }
 
+    /**
+     * @return true if the statement has a limit, otherwise {@link #limit()} is the default limit
+     */
+    public boolean isLimited() {
+        return limited;
+    }
+
     public int offset() {
         return offset;
     }
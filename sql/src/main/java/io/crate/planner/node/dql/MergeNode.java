@@ -41,6 +41,7 @@ public class MergeNode extends AbstractDQLPlanNode {
     private int numUpstreams;
     private Set<String> executionNodes;
     private UUID contextId;
+    private boolean sortedInputs = false;
 
     public MergeNode() {
         numUpstreams = 0;
@@ -72,6 +73,18 @@ public class MergeNode extends AbstractDQLPlanNode {
         return contextId;
     }
 
+    /**
+     * true if every upstream returns its rows sorted by the orderBy of the first projection,
+     * which has to be a {@link io.crate.planner.projection.TopNProjection}.
+     */
+    public boolean sortedInputs() {
+        return sortedInputs;
+    }
+
+    public void sortedInputs(boolean sortedInputs) {
+        this.sortedInputs = sortedInputs;
+    }
+
     public void contextId(UUID contextId) {
         this.contextId = contextId;
     }
@@ -115,6 +128,7 @@ public class MergeNode extends AbstractDQLPlanNode {
                 executionNodes.add(in.readString());
             }
         }
+        sortedInputs = in.readBoolean();
     }
 
     @Override
@@ -139,6 +153,7 @@ public class MergeNode extends AbstractDQLPlanNode {
                 out.writeString(node);
             }
         }
+        out.writeBoolean(sortedInputs);
     }
 
     @Override
@@ -151,6 +166,7 @@ public class MergeNode extends AbstractDQLPlanNode {
                 .add("numUpstreams", numUpstreams)
                 .add("executionNodes", executionNodes)
                 .add("inputTypes", inputTypes)
+                .add("sortedInputs", sortedInputs)
                 .toString();
     }
 }
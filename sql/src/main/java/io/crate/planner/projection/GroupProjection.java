@@ -21,11 +21,15 @@
 
 package io.crate.planner.projection;
 
+import io.crate.planner.RowGranularity;
 import io.crate.planner.symbol.Aggregation;
 import io.crate.planner.symbol.Symbol;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -33,8 +37,10 @@ import java.util.List;
 public class GroupProjection extends Projection {
 
     List<Symbol> keys;
+    List<DataType> keyTypes;
     List<Aggregation> values;
     List<Symbol> outputs;
+    RowGranularity requiredGranularity = RowGranularity.CLUSTER;
 
     public static final ProjectionFactory<GroupProjection> FACTORY = new ProjectionFactory<GroupProjection>() {
         @Override
@@ -51,6 +57,12 @@ public class GroupProjection extends Projection {
         this.values = values;
     }
 
+    public GroupProjection(List<Symbol> keys, List<DataType> keyTypes, List<Aggregation> values) {
+        this.keys = keys;
+        this.keyTypes = keyTypes;
+        this.values = values;
+    }
+
     public List<Symbol> keys() {
         return keys;
     }
@@ -59,6 +71,21 @@ public class GroupProjection extends Projection {
         this.keys = keys;
     }
 
+    /**
+     * the types of the values the keys resolve to.
+     * The keys are usually InputColumns which don't have a type on their own.
+     *
+     * @return the key types or null if they are unknown
+     */
+    @Nullable
+    public List<DataType> keyTypes() {
+        return keyTypes;
+    }
+
+    public void keyTypes(List<DataType> keyTypes) {
+        this.keyTypes = keyTypes;
+    }
+
     public List<Aggregation> values() {
         return values;
     }
@@ -67,6 +94,18 @@ public class GroupProjection extends Projection {
         this.values = values;
     }
 
+    @Override
+    public RowGranularity requiredGranularity() {
+        return requiredGranularity;
+    }
+
+    /**
+     * set to {@link RowGranularity#SHARD} to run a separate projector for every shard
+     */
+    public void requiredGranularity(RowGranularity requiredGranularity) {
+        this.requiredGranularity = requiredGranularity;
+    }
+
     @Override
     public ProjectionType projectionType() {
         return ProjectionType.GROUP;
@@ -94,10 +133,18 @@ public class GroupProjection extends Projection {
             keys.add(Symbol.fromStream(in));
         }
         size = in.readVInt();
+        if (size > 0) {
+            keyTypes = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                keyTypes.add(DataTypes.fromStream(in));
+            }
+        }
+        size = in.readVInt();
         values = new ArrayList<>(size);
         for (int i = 0; i < size; i++) {
             values.add((Aggregation) Symbol.fromStream(in));
         }
+        requiredGranularity = RowGranularity.fromStream(in);
     }
 
     @Override
@@ -107,10 +154,20 @@ public class GroupProjection extends Projection {
             Symbol.toStream(symbol, out);
         }
 
+        if (keyTypes == null) {
+            out.writeVInt(0);
+        } else {
+            out.writeVInt(keyTypes.size());
+            for (DataType keyType : keyTypes) {
+                DataTypes.toStream(keyType, out);
+            }
+        }
+
         out.writeVInt(values.size());
         for (Symbol symbol : values) {
             Symbol.toStream(symbol, out);
         }
+        RowGranularity.toStream(requiredGranularity, out);
     }
 
     @Override
@@ -121,9 +178,20 @@ public class GroupProjection extends Projection {
         GroupProjection that = (GroupProjection) o;
 
         if (!keys.equals(that.keys)) return false;
+        if (keyTypes != null ? !keyTypes.equals(that.keyTypes) : that.keyTypes != null) return false;
         if (values != null ? !values.equals(that.values) : that.values != null) return false;
+        if (requiredGranularity != that.requiredGranularity) return false;
 
         return true;
     }
 
+    @Override
+    public int hashCode() {
+        int result = keys != null ? keys.hashCode() : 0;
+        result = 31 * result + (keyTypes != null ? keyTypes.hashCode() : 0);
+        result = 31 * result + (values != null ? values.hashCode() : 0);
+        result = 31 * result + (requiredGranularity != null ? requiredGranularity.hashCode() : 0);
+        return result;
+    }
+
 }
@@ -24,6 +24,8 @@ package io.crate.planner.projection;
 import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableList;
 import io.crate.planner.symbol.Symbol;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 
@@ -51,6 +53,7 @@ public class TopNProjection extends Projection {
     List<Symbol> orderBy;
     boolean[] reverseFlags;
     private Boolean[] nullsFirst;
+    private List<DataType> orderByTypes;
 
     public TopNProjection() {
         super();
@@ -99,6 +102,18 @@ public class TopNProjection extends Projection {
         return nullsFirst;
     }
 
+    /**
+     * the types of the orderBy symbols or null if they are unknown
+     */
+    @Nullable
+    public List<DataType> orderByTypes() {
+        return orderByTypes;
+    }
+
+    public void orderByTypes(@Nullable List<DataType> orderByTypes) {
+        this.orderByTypes = orderByTypes;
+    }
+
     public boolean isOrdered() {
         return reverseFlags != null && reverseFlags.length > 0;
     }
@@ -143,6 +158,14 @@ public class TopNProjection extends Projection {
             for (int i = 0; i < numOrderBy; i++) {
                 nullsFirst[i] = in.readOptionalBoolean();
             }
+
+            int numOrderByTypes = in.readVInt();
+            if (numOrderByTypes > 0) {
+                orderByTypes = new ArrayList<>(numOrderByTypes);
+                for (int i = 0; i < numOrderByTypes; i++) {
+                    orderByTypes.add(DataTypes.fromStream(in));
+                }
+            }
         }
     }
 
@@ -165,6 +188,14 @@ public class TopNProjection extends Projection {
             for (Boolean nullFirst : nullsFirst) {
                 out.writeOptionalBoolean(nullFirst);
             }
+            if (orderByTypes == null) {
+                out.writeVInt(0);
+            } else {
+                out.writeVInt(orderByTypes.size());
+                for (DataType orderByType : orderByTypes) {
+                    DataTypes.toStream(orderByType, out);
+                }
+            }
         } else {
             out.writeVInt(0);
         }
@@ -183,6 +214,7 @@ public class TopNProjection extends Projection {
         if (!outputs.equals(that.outputs)) return false;
         if (!Arrays.equals(reverseFlags, that.reverseFlags)) return false;
         if (!Arrays.equals(nullsFirst, that.nullsFirst)) return false;
+        if (orderByTypes != null ? !orderByTypes.equals(that.orderByTypes) : that.orderByTypes != null) return false;
 
         return true;
     }
@@ -37,13 +37,7 @@ public class Literal<ReturnType>
      * guesses the type from the parameters value and creates a new Literal
      */
     public static Literal<?> fromParameter(Parameter parameter) {
-        DataType<?> dataType = DataTypes.guessType(parameter.value(), true);
-        if (dataType.equals(DataTypes.STRING)) {
-            // force conversion to bytesRef
-            return new Literal<>(dataType, dataType.value(parameter.value()));
-        }
-        // all other types are okay as is.
-        return new Literal<>(dataType, parameter.value());
+        return parameter.toLiteral();
     }
 
     public static Literal implodeCollection(DataType itemType, Set<Literal> literals) {
@@ -120,7 +114,7 @@ public class Literal<ReturnType>
     @Override
     @SuppressWarnings("unchecked")
     public int compareTo(Literal o) {
-        return type.compareValueTo(value, o.value);
+        return type.compareValueTo(value(), o.value());
     }
 
     @Override
@@ -129,6 +123,14 @@ public class Literal<ReturnType>
         return (ReturnType)value;
     }
 
+    /**
+     * unlike reading the {@link #value()} this doesn't count as a read of a parameter value,
+     * parameters are only bound to other values of the same type and null has its own type.
+     */
+    public boolean isNull() {
+        return value == null;
+    }
+
     @Override
     public DataType valueType() {
         return type;
@@ -152,7 +154,7 @@ public class Literal<ReturnType>
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
-        if (obj == null || getClass() != obj.getClass()) return false;
+        if (!(obj instanceof Literal)) return false;
         Literal literal = (Literal) obj;
         if (valueType().equals(literal.valueType())) {
             return Objects.equals(value(), literal.value());
@@ -227,7 +229,7 @@ public class Literal<ReturnType>
     public static Literal toLiteral(Symbol symbol, DataType type) throws IllegalArgumentException {
         switch (symbol.symbolType()) {
             case PARAMETER:
-                return Literal.newLiteral(type, type.value(((Parameter) symbol).value()));
+                return ((Parameter) symbol).toLiteral(type);
             case LITERAL:
                 Literal literal = (Literal)symbol;
                 if (literal.valueType().equals(type)) {
@@ -22,10 +22,14 @@
 package io.crate.planner.symbol;
 
 import io.crate.operation.Input;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Parameter extends Symbol implements Input<Object> {
 
@@ -37,6 +41,8 @@ public class Parameter extends Symbol implements Input<Object> {
     };
 
     private Object value;
+    private boolean valueRead = false;
+    private final List<ParameterLiteral> literals = new ArrayList<>();
 
     public Parameter() {}
 
@@ -45,9 +51,67 @@ public class Parameter extends Symbol implements Input<Object> {
     }
 
     public Object value() {
+        valueRead = true;
         return value;
     }
 
+    /**
+     * the type guessed from the value, doesn't count as a read of the value as the statement
+     * is only executed with other values of the same type, see {@link #bind(Object)}
+     */
+    public DataType guessType() {
+        return DataTypes.guessType(value, false);
+    }
+
+    /**
+     * guesses the type from the value and creates a new literal which is bound to this parameter
+     */
+    public Literal<?> toLiteral() {
+        DataType<?> dataType = DataTypes.guessType(value, true);
+        // force conversion of strings to bytesRef, all other types are okay as is.
+        return bound(new ParameterLiteral(dataType, value, dataType.equals(DataTypes.STRING)));
+    }
+
+    /**
+     * creates a new literal of the given type which is bound to this parameter
+     */
+    public Literal<?> toLiteral(DataType type) {
+        return bound(new ParameterLiteral(type, value, true));
+    }
+
+    private Literal<?> bound(ParameterLiteral literal) {
+        literals.add(literal);
+        return literal;
+    }
+
+    /**
+     * @return true if neither the value nor the value of a literal created from this parameter
+     * has been read, so nothing depends on the value and it can be changed using {@link #bind(Object)}
+     */
+    public boolean isBindable() {
+        if (valueRead) {
+            return false;
+        }
+        for (ParameterLiteral literal : literals) {
+            if (literal.isRead()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * changes the value of this parameter and of all literals created from it,
+     * the new value has to be of the same type, see {@link #guessType()}
+     */
+    public void bind(Object value) {
+        assert DataTypes.guessType(value, false).equals(guessType()) : "value must be of the same type";
+        this.value = value;
+        for (ParameterLiteral literal : literals) {
+            literal.bind(value);
+        }
+    }
+
     @Override
     public SymbolType symbolType() {
         return SymbolType.PARAMETER;
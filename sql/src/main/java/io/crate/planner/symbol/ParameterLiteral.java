@@ -0,0 +1,57 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.planner.symbol;
+
+import io.crate.types.DataType;
+
+/**
+ * a literal created from a {@link io.crate.planner.symbol.Parameter} whose value can be changed
+ * as long as it hasn't been read.
+ */
+class ParameterLiteral extends Literal<Object> {
+
+    private final boolean convert;
+    private boolean read = false;
+
+    /**
+     * @param convert if true the value is converted to the given type
+     */
+    ParameterLiteral(DataType type, Object value, boolean convert) {
+        super(type, convert ? type.value(value) : value);
+        this.convert = convert;
+    }
+
+    @Override
+    public Object value() {
+        read = true;
+        return super.value();
+    }
+
+    boolean isRead() {
+        return read;
+    }
+
+    void bind(Object value) {
+        this.value = convert ? type.value(value) : value;
+    }
+}
@@ -23,6 +23,9 @@ package io.crate.plugin;
 
 import org.elasticsearch.common.inject.AbstractModule;
 import io.crate.action.sql.DDLAnalysisDispatcher;
+import io.crate.action.sql.SQLCursors;
+import io.crate.action.sql.SQLPlanCache;
+import io.crate.action.sql.SQLPreparedStatements;
 import io.crate.metadata.FulltextAnalyzerResolver;
 
 
@@ -32,5 +35,8 @@ public class SQLModule extends AbstractModule {
     protected void configure() {
         bind(DDLAnalysisDispatcher.class).asEagerSingleton();
         bind(FulltextAnalyzerResolver.class).asEagerSingleton();
+        bind(SQLCursors.class).asEagerSingleton();
+        bind(SQLPlanCache.class).asEagerSingleton();
+        bind(SQLPreparedStatements.class).asEagerSingleton();
     }
 }
\ No newline at end of file
@@ -24,8 +24,12 @@ package io.crate.plugin;
 import io.crate.Constants;
 import io.crate.action.sql.SQLAction;
 import io.crate.action.sql.SQLBulkAction;
+import io.crate.action.sql.SQLFetchAction;
+import io.crate.action.sql.SQLPrepareAction;
 import io.crate.action.sql.TransportSQLAction;
 import io.crate.action.sql.TransportSQLBulkAction;
+import io.crate.action.sql.TransportSQLFetchAction;
+import io.crate.action.sql.TransportSQLPrepareAction;
 import io.crate.executor.transport.TransportExecutorModule;
 import io.crate.executor.transport.task.elasticsearch.facet.UpdateFacetParser;
 import io.crate.metadata.MetaDataModule;
@@ -37,6 +41,7 @@ import io.crate.metadata.shard.MetaDataShardModule;
 import io.crate.metadata.sys.MetaDataSysModule;
 import io.crate.operation.aggregation.impl.AggregationImplModule;
 import io.crate.operation.collect.CollectOperationModule;
+import io.crate.operation.collect.CollectScheduler;
 import io.crate.operation.collect.CollectShardModule;
 import io.crate.operation.operator.OperatorModule;
 import io.crate.operation.predicate.PredicateModule;
@@ -49,6 +54,7 @@ import io.crate.operation.scalar.elasticsearch.script.NumericScalarSearchScript;
 import io.crate.operation.scalar.elasticsearch.script.NumericScalarSortScript;
 import io.crate.planner.PlanModule;
 import io.crate.rest.action.RestSQLAction;
+import io.crate.rest.action.RestSQLFetchAction;
 import org.elasticsearch.action.ActionModule;
 import org.elasticsearch.cluster.settings.ClusterDynamicSettingsModule;
 import org.elasticsearch.cluster.settings.Validator;
@@ -93,7 +99,11 @@ public class SQLPlugin extends AbstractPlugin {
 
     @Override
     public Collection<Class<? extends LifecycleComponent>> services() {
-        return super.services();
+        Collection<Class<? extends LifecycleComponent>> services = newArrayList();
+        if (!settings.getAsBoolean("node.client", false)) {
+            services.add(CollectScheduler.class);
+        }
+        return services;
     }
 
     @Override
@@ -134,6 +144,7 @@ public class SQLPlugin extends AbstractPlugin {
 
     public void onModule(RestModule restModule) {
         restModule.addRestAction(RestSQLAction.class);
+        restModule.addRestAction(RestSQLFetchAction.class);
     }
 
     public void onModule(FacetModule facetModule) {
@@ -160,5 +171,7 @@ public class SQLPlugin extends AbstractPlugin {
     public void onModule(ActionModule actionModule) {
         actionModule.registerAction(SQLAction.INSTANCE, TransportSQLAction.class);
         actionModule.registerAction(SQLBulkAction.INSTANCE, TransportSQLBulkAction.class);
+        actionModule.registerAction(SQLFetchAction.INSTANCE, TransportSQLFetchAction.class);
+        actionModule.registerAction(SQLPrepareAction.INSTANCE, TransportSQLPrepareAction.class);
     }
 }
@@ -25,23 +25,38 @@ import io.crate.action.sql.*;
 import io.crate.action.sql.parser.SQLXContentSourceContext;
 import io.crate.action.sql.parser.SQLXContentSourceParser;
 import io.crate.exceptions.SQLParseException;
+import io.crate.http.netty.NettyHttpChannel;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
 import org.elasticsearch.rest.*;
 
+import javax.annotation.Nullable;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 
 public class RestSQLAction extends BaseRestHandler {
 
+    /**
+     * node setting for the number of rows after which a response is sent with chunked transfer-encoding,
+     * one chunk contains this many rows. 0 disables chunked responses.
+     */
+    public static final String CHUNK_ROWS_SETTING = "sql.http.chunk_rows";
+    public static final int CHUNK_ROWS_DEFAULT = 1000;
+
+    private final int chunkRows;
+
     @Inject
     public RestSQLAction(Settings settings, Client client, RestController controller) {
         super(settings, client);
+        chunkRows = settings.getAsInt(CHUNK_ROWS_SETTING, CHUNK_ROWS_DEFAULT);
 
         controller.registerHandler(RestRequest.Method.POST, "/_sql", this);
     }
@@ -85,8 +100,13 @@ public class RestSQLAction extends BaseRestHandler {
         final SQLRequestBuilder requestBuilder = new SQLRequestBuilder(client);
         requestBuilder.stmt(context.stmt());
         requestBuilder.args(context.args());
-        requestBuilder.includeTypesOnResponse(request.paramAsBoolean("types", false));
-        requestBuilder.execute(RestSQLAction.<SQLResponse>newListener(request, channel));
+        // the binary format always contains the column types
+        requestBuilder.includeTypesOnResponse(
+                request.paramAsBoolean("types", false) || binaryFormatRequested(request));
+        // without a fetch_size the whole result is materialized and only sent in chunks if it's large,
+        // so the default limit, the cursor limit and the plan cache apply as for any other request
+        requestBuilder.fetchSize(request.paramAsInt("fetch_size", 0));
+        requestBuilder.execute(RestSQLAction.<SQLResponse>newListener(request, channel, chunkRows));
     }
 
     private void executeBulkRequest(SQLXContentSourceContext context, RestRequest request, RestChannel channel, Client client) {
@@ -94,12 +114,34 @@ public class RestSQLAction extends BaseRestHandler {
         requestBuilder.stmt(context.stmt());
         requestBuilder.bulkArgs(context.bulkArgs());
         requestBuilder.includeTypesOnResponse(request.paramAsBoolean("types", false));
-        requestBuilder.execute(RestSQLAction.<SQLBulkResponse>newListener(request, channel));
+        requestBuilder.execute(RestSQLAction.<SQLBulkResponse>newListener(request, channel, chunkRows));
     }
 
-    private static <TResponse extends SQLBaseResponse> ActionListener<TResponse> newListener(
-            RestRequest request, RestChannel channel) {
-        return new SQLResponseListener<>(request, channel);
+    /**
+     * @return true if the response should use the {@link SQLResponseBinaryFormat} instead of JSON,
+     * either requested by the <code>format</code> parameter or the <code>Accept</code> header.
+     */
+    static boolean binaryFormatRequested(RestRequest request) {
+        if (SQLResponseBinaryFormat.FORMAT_NAME.equals(request.param("format"))) {
+            return true;
+        }
+        String accept = request.header("Accept");
+        return accept != null && accept.contains(SQLResponseBinaryFormat.CONTENT_TYPE);
+    }
+
+    static <TResponse extends SQLBaseResponse> ActionListener<TResponse> newListener(
+            RestRequest request, RestChannel channel, int chunkRows) {
+        return new SQLResponseListener<>(request, channel, chunkRows);
+    }
+
+    /**
+     * @return true if the rows of the response can be written in chunks to the channel
+     */
+    static boolean supportsChunks(RestRequest request, RestChannel channel, int chunkRows) {
+        return chunkRows > 0
+                && !binaryFormatRequested(request)
+                && channel instanceof NettyHttpChannel
+                && ((NettyHttpChannel) channel).supportsChunkedResponse();
     }
 
     private static class SQLResponseListener<TResponse extends SQLBaseResponse> implements ActionListener<TResponse> {
@@ -107,14 +149,25 @@ public class RestSQLAction extends BaseRestHandler {
         private static final ESLogger logger = Loggers.getLogger(SQLResponseListener.class);
         private final RestRequest request;
         private final RestChannel channel;
+        private final int chunkRows;
 
-        public SQLResponseListener(RestRequest request, RestChannel channel) {
+        public SQLResponseListener(RestRequest request, RestChannel channel, int chunkRows) {
             this.request = request;
             this.channel = channel;
+            this.chunkRows = chunkRows;
         }
 
         @Override
         public void onResponse(TResponse tResponse) {
+            if (tResponse instanceof SQLResponse) {
+                if (binaryFormatRequested(request)) {
+                    sendBinary((SQLResponse) tResponse);
+                    return;
+                }
+                if (sendChunked((SQLResponse) tResponse)) {
+                    return;
+                }
+            }
             try {
                 XContentBuilder builder = channel.newBuilder();
                 tResponse.toXContent(builder, request);
@@ -124,6 +177,69 @@ public class RestSQLAction extends BaseRestHandler {
             }
         }
 
+        private void sendBinary(SQLResponse response) {
+            try {
+                BytesStreamOutput out = new BytesStreamOutput();
+                SQLResponseBinaryFormat.writeTo(response, out);
+                channel.sendResponse(new BytesRestResponse(RestStatus.OK, SQLResponseBinaryFormat.CONTENT_TYPE, out.bytes()));
+            } catch (Throwable e) {
+                onFailure(e);
+            }
+        }
+
+        /**
+         * writes the rows of large responses in chunks, so the serialized rows don't have to be
+         * held in memory all at once and the client receives the first rows before all are serialized.
+         *
+         * @return false if the response isn't sent in chunks because it is too small or
+         *         the channel doesn't support it
+         */
+        private boolean sendChunked(final SQLResponse response) {
+            if (response.rows() == null
+                    || response.rows().length <= chunkRows
+                    || !supportsChunks(request, channel, chunkRows)) {
+                return false;
+            }
+            final ChunkWriter writer = startChunks(response);
+            if (writer == null) {
+                return true;
+            }
+            writer.writeRows(response, new ActionListener<Void>() {
+                @Override
+                public void onResponse(Void aVoid) {
+                    writer.finish(response);
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    logger.error("failed to send chunked response", e);
+                    writer.abort();
+                }
+            });
+            return true;
+        }
+
+        /**
+         * sends the headers and the attributes preceding the rows
+         *
+         * @return the writer for the rows or null if the response couldn't be started
+         */
+        @Nullable
+        private ChunkWriter startChunks(SQLResponse response) {
+            NettyHttpChannel.ChunkedResponse chunkedResponse = ((NettyHttpChannel) channel).startChunkedResponse(
+                    RestStatus.OK, JsonXContent.jsonXContent.type().restContentType());
+            try {
+                ChunkWriter writer = new ChunkWriter(chunkedResponse, request.paramAsBoolean("pretty", false), chunkRows);
+                writer.start(response);
+                return writer;
+            } catch (Throwable e) {
+                // the status has already been sent, the client recognizes the failure by the closed connection
+                logger.error("failed to send chunked response", e);
+                chunkedResponse.abort();
+                return null;
+            }
+        }
+
         @Override
         public void onFailure(Throwable e) {
             try {
@@ -133,4 +249,111 @@ public class RestSQLAction extends BaseRestHandler {
             }
         }
     }
+
+    /**
+     * writes a response as JSON in chunks of up to <code>chunkRows</code> rows.
+     * The rows are released from the response once they're written.
+     *
+     * Another chunk is only written if the channel is writable, otherwise writing continues
+     * once the previous chunks have been flushed to the client.
+     */
+    static class ChunkWriter {
+
+        private final NettyHttpChannel.ChunkedResponse chunkedResponse;
+        private final int chunkRows;
+        private final BytesStreamOutput out = new BytesStreamOutput();
+        private final XContentBuilder builder;
+
+        ChunkWriter(NettyHttpChannel.ChunkedResponse chunkedResponse, boolean pretty, int chunkRows) throws IOException {
+            this.chunkedResponse = chunkedResponse;
+            this.chunkRows = chunkRows;
+            builder = new XContentBuilder(JsonXContent.jsonXContent, out);
+            if (pretty) {
+                builder.prettyPrint();
+            }
+        }
+
+        /**
+         * writes the attributes preceding the rows, the columns are sent right away
+         */
+        void start(SQLResponse response) throws IOException {
+            response.startXContent(builder);
+            writeChunk();
+        }
+
+        /**
+         * writes the rows of the response and calls the listener once the client can take more content
+         */
+        void writeRows(SQLResponse response, ActionListener<Void> listener) {
+            writeRows(response, 0, listener);
+        }
+
+        private void writeRows(final SQLResponse response, int from, final ActionListener<Void> listener) {
+            Object[][] rows = response.rows();
+            int i = from;
+            try {
+                while (i < rows.length) {
+                    int to = Math.min(rows.length, i + chunkRows);
+                    for (; i < to; i++) {
+                        response.rowToXContent(builder, rows[i]);
+                        rows[i] = null;
+                    }
+                    writeChunk();
+                    if (!chunkedResponse.isWritable()) {
+                        break;
+                    }
+                }
+            } catch (Throwable e) {
+                listener.onFailure(e);
+                return;
+            }
+            if (i >= rows.length) {
+                if (chunkedResponse.isWritable()) {
+                    listener.onResponse(null);
+                } else {
+                    chunkedResponse.onFlushed(listener);
+                }
+                return;
+            }
+            final int next = i;
+            chunkedResponse.onFlushed(new ActionListener<Void>() {
+                @Override
+                public void onResponse(Void aVoid) {
+                    writeRows(response, next, listener);
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    listener.onFailure(e);
+                }
+            });
+        }
+
+        /**
+         * writes the attributes following the rows of the response and completes it
+         */
+        void finish(SQLResponse response) {
+            try {
+                response.endXContent(builder);
+                builder.close();
+                chunkedResponse.write(out.bytes().copyBytesArray());
+                chunkedResponse.finish();
+            } catch (Throwable e) {
+                abort();
+            }
+        }
+
+        /**
+         * closes the connection, the client recognizes the failure as the response isn't complete
+         */
+        void abort() {
+            chunkedResponse.abort();
+        }
+
+        private void writeChunk() throws IOException {
+            builder.flush();
+            chunkedResponse.write(out.bytes().copyBytesArray());
+            out.reset();
+        }
+    }
 }
@@ -0,0 +1,59 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.rest.action;
+
+import io.crate.action.sql.SQLFetchRequestBuilder;
+import io.crate.action.sql.SQLResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestChannel;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+
+/**
+ * fetches the next rows of a cursor opened by a sql request with a <code>fetch_size</code>
+ * (POST) or closes it (DELETE).
+ */
+public class RestSQLFetchAction extends BaseRestHandler {
+
+    private final int chunkRows;
+
+    @Inject
+    public RestSQLFetchAction(Settings settings, Client client, RestController controller) {
+        super(settings, client);
+        chunkRows = settings.getAsInt(RestSQLAction.CHUNK_ROWS_SETTING, RestSQLAction.CHUNK_ROWS_DEFAULT);
+
+        controller.registerHandler(RestRequest.Method.POST, "/_sql/cursor/{cursor}", this);
+        controller.registerHandler(RestRequest.Method.DELETE, "/_sql/cursor/{cursor}", this);
+    }
+
+    @Override
+    public void handleRequest(final RestRequest request, final RestChannel channel, Client client) throws Exception {
+        SQLFetchRequestBuilder requestBuilder = new SQLFetchRequestBuilder(client);
+        requestBuilder.cursorId(request.param("cursor"));
+        requestBuilder.fetchSize(request.paramAsInt("fetch_size", 0));
+        requestBuilder.close(request.method() == RestRequest.Method.DELETE);
+        requestBuilder.execute(RestSQLAction.<SQLResponse>newListener(request, channel, chunkRows));
+    }
+}
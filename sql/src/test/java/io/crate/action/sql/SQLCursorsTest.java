@@ -0,0 +1,158 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.action.sql;
+
+import com.google.common.base.Throwables;
+import io.crate.exceptions.CursorUnknownException;
+import io.crate.exceptions.UnhandledServerException;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.unit.TimeValue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SQLCursorsTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private ClusterService clusterService;
+
+    @Before
+    public void prepare() {
+        DiscoveryNode node = mock(DiscoveryNode.class);
+        when(node.id()).thenReturn("n1");
+        clusterService = mock(ClusterService.class);
+        when(clusterService.localNode()).thenReturn(node);
+    }
+
+    private static SQLResponse response(int numRows) {
+        Object[][] rows = new Object[numRows][];
+        for (int i = 0; i < numRows; i++) {
+            rows[i] = new Object[]{i};
+        }
+        return new SQLResponse(new String[]{"x"}, rows, numRows, 0L);
+    }
+
+    private static SQLResponse open(SQLCursors cursors, SQLResponse response, int fetchSize) throws Exception {
+        PlainActionFuture<SQLResponse> future = PlainActionFuture.newFuture();
+        cursors.open(response, fetchSize, future);
+        return get(future);
+    }
+
+    private static SQLResponse fetch(SQLCursors cursors, String cursorId, int fetchSize) throws Exception {
+        PlainActionFuture<SQLResponse> future = PlainActionFuture.newFuture();
+        cursors.fetch(cursorId, fetchSize, 0L, future);
+        return get(future);
+    }
+
+    private static SQLResponse get(PlainActionFuture<SQLResponse> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    @Test
+    public void testNoCursorIfAllRowsFit() throws Exception {
+        SQLCursors cursors = new SQLCursors(clusterService, TimeValue.timeValueMinutes(1), 10);
+        SQLResponse response = response(3);
+
+        assertThat(open(cursors, response, 3), sameInstance(response));
+        assertThat(response.hasCursor(), is(false));
+        assertThat(cursors.numOpenCursors(), is(0L));
+    }
+
+    @Test
+    public void testFetchPages() throws Exception {
+        SQLCursors cursors = new SQLCursors(clusterService, TimeValue.timeValueMinutes(1), 10);
+
+        SQLResponse page = open(cursors, response(5), 2);
+        assertThat(page.rows().length, is(2));
+        assertThat(page.rowCount(), is(2L));
+        assertThat(page.cols(), is(new String[]{"x"}));
+        assertThat((Integer) page.rows()[0][0], is(0));
+        String cursorId = page.cursorId();
+        assertThat(cursorId, startsWith("n1:"));
+        assertThat(SQLCursors.nodeId(cursorId), is("n1"));
+
+        // the fetch size the cursor was opened with is used by default
+        page = fetch(cursors, cursorId, 0);
+        assertThat(page.rows().length, is(2));
+        assertThat((Integer) page.rows()[0][0], is(2));
+        assertThat(page.cursorId(), is(cursorId));
+
+        page = fetch(cursors, cursorId, 10);
+        assertThat(page.rows().length, is(1));
+        assertThat((Integer) page.rows()[0][0], is(4));
+        assertThat(page.hasCursor(), is(false));
+        assertThat(cursors.numOpenCursors(), is(0L));
+
+        expectedException.expect(CursorUnknownException.class);
+        fetch(cursors, cursorId, 1);
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        SQLCursors cursors = new SQLCursors(clusterService, TimeValue.timeValueMinutes(1), 10);
+        String cursorId = open(cursors, response(5), 2).cursorId();
+        cursors.close(cursorId);
+        assertThat(cursors.numOpenCursors(), is(0L));
+
+        expectedException.expect(CursorUnknownException.class);
+        fetch(cursors, cursorId, 1);
+    }
+
+    @Test
+    public void testMaxOpenCursors() throws Exception {
+        SQLCursors cursors = new SQLCursors(clusterService, TimeValue.timeValueMinutes(1), 2);
+        open(cursors, response(5), 2);
+        String cursorId = open(cursors, response(5), 2).cursorId();
+
+        try {
+            open(cursors, response(5), 2);
+            throw new AssertionError("expected a failure because of too many open cursors");
+        } catch (UnhandledServerException e) {
+            assertThat(e.getMessage(), containsString(SQLCursors.MAX_OPEN_SETTING));
+        }
+
+        // fetching all rows closes the cursor
+        fetch(cursors, cursorId, 3);
+        assertThat(open(cursors, response(5), 2).hasCursor(), is(true));
+    }
+
+    @Test
+    public void testInvalidCursorId() throws Exception {
+        assertThat(SQLCursors.nodeId("foo"), is(nullValue()));
+    }
+}
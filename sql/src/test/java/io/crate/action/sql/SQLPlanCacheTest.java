@@ -0,0 +1,183 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.action.sql;
+
+import io.crate.analyze.ParameterBindings;
+import io.crate.planner.Plan;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.ClusterState;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+public class SQLPlanCacheTest {
+
+    private static final String STMT = "select * from t where x = ?";
+
+    private ClusterService clusterService;
+    private ClusterState clusterState;
+    private SQLPlanCache planCache;
+
+    @Before
+    public void prepare() {
+        clusterState = mock(ClusterState.class);
+        when(clusterState.version()).thenReturn(1L);
+        clusterService = mock(ClusterService.class);
+        when(clusterService.state()).thenReturn(clusterState);
+        planCache = new SQLPlanCache(clusterService, 10);
+    }
+
+    private static Object[] args(Object... args) {
+        return args;
+    }
+
+    /**
+     * bindings which match the given arguments only
+     */
+    private static ParameterBindings bindings(Object[]... matchingArgs) {
+        ParameterBindings bindings = mock(ParameterBindings.class);
+        for (Object[] args : matchingArgs) {
+            when(bindings.matches(args)).thenReturn(true);
+        }
+        return bindings;
+    }
+
+    private SQLPlanCache.CachedPlan newCachedPlan(SQLPlanCache cache, String stmt) {
+        return cache.newCachedPlan(stmt, 1L, new Plan(), new String[0], bindings(args(1)));
+    }
+
+    @Test
+    public void testReleasedPlanIsReused() throws Exception {
+        assertThat(planCache.acquire(STMT, args(1)), nullValue());
+        assertThat(planCache.misses(), is(1L));
+
+        Plan plan = new Plan();
+        String[] outputNames = new String[]{"x"};
+        ParameterBindings bindings = bindings(args(1), args(2));
+        planCache.release(planCache.newCachedPlan(STMT, 1L, plan, outputNames, bindings));
+        assertThat(planCache.size(), is(1L));
+
+        SQLPlanCache.CachedPlan cachedPlan = planCache.acquire(STMT, args(2));
+        assertThat(cachedPlan, notNullValue());
+        assertThat(cachedPlan.plan(), sameInstance(plan));
+        assertThat(cachedPlan.outputNames(), is(outputNames));
+        assertThat(planCache.hits(), is(1L));
+        verify(bindings).bind(args(2));
+
+        // the plan is in use, so a concurrent execution has to plan again
+        assertThat(planCache.acquire(STMT, args(1)), nullValue());
+        assertThat(planCache.misses(), is(2L));
+
+        planCache.release(cachedPlan);
+        assertThat(planCache.acquire(STMT, args(1)).plan(), sameInstance(plan));
+        verify(bindings).bind(args(1));
+    }
+
+    @Test
+    public void testArgumentsOfOtherTypesAreNotBound() throws Exception {
+        ParameterBindings bindings = bindings(args(1));
+        planCache.release(planCache.newCachedPlan(STMT, 1L, new Plan(), new String[0], bindings));
+
+        assertThat(planCache.acquire(STMT, args("foo")), nullValue());
+        assertThat(planCache.acquire(STMT, args(1, 2)), nullValue());
+        verify(bindings, never()).bind(any(Object[].class));
+        assertThat(planCache.acquire(STMT, args(1)), notNullValue());
+    }
+
+    @Test
+    public void testPlanIsDroppedIfArgumentsCannotBeBound() throws Exception {
+        ParameterBindings bindings = bindings(args("foo"));
+        doThrow(new NumberFormatException()).when(bindings).bind(args("foo"));
+        planCache.release(planCache.newCachedPlan(STMT, 1L, new Plan(), new String[0], bindings));
+
+        assertThat(planCache.acquire(STMT, args("foo")), nullValue());
+        assertThat(planCache.misses(), is(1L));
+        assertThat(planCache.acquire(STMT, args("foo")), nullValue());
+        verify(bindings, times(1)).bind(args("foo"));
+    }
+
+    @Test
+    public void testPlanWithoutBindingsIsNotCached() throws Exception {
+        assertThat(planCache.newCachedPlan(STMT, 1L, new Plan(), new String[0], null), nullValue());
+    }
+
+    @Test
+    public void testIdlePlansAreLimited() throws Exception {
+        for (int i = 0; i < SQLPlanCache.MAX_IDLE_PLANS + 2; i++) {
+            planCache.release(newCachedPlan(planCache, STMT));
+        }
+        for (int i = 0; i < SQLPlanCache.MAX_IDLE_PLANS; i++) {
+            assertThat(planCache.acquire(STMT, args(1)), notNullValue());
+        }
+        assertThat(planCache.acquire(STMT, args(1)), nullValue());
+    }
+
+    @Test
+    public void testPlanOfOutdatedClusterStateIsNotCached() throws Exception {
+        when(clusterState.version()).thenReturn(2L);
+        planCache.release(newCachedPlan(planCache, STMT));
+        assertThat(planCache.size(), is(0L));
+
+        planCache.release(planCache.newCachedPlan(STMT, 2L, new Plan(), new String[0], bindings(args(1))));
+        assertThat(planCache.size(), is(1L));
+
+        // the cluster state changed without a cluster changed event
+        when(clusterState.version()).thenReturn(3L);
+        assertThat(planCache.acquire(STMT, args(1)), nullValue());
+    }
+
+    @Test
+    public void testInvalidateOnClusterChange() throws Exception {
+        planCache.release(newCachedPlan(planCache, STMT));
+
+        ClusterChangedEvent event = mock(ClusterChangedEvent.class);
+        planCache.clusterChanged(event);
+        assertThat(planCache.size(), is(1L));
+
+        when(event.routingTableChanged()).thenReturn(true);
+        planCache.clusterChanged(event);
+        assertThat(planCache.size(), is(0L));
+        assertThat(planCache.acquire(STMT, args(1)), nullValue());
+    }
+
+    @Test
+    public void testEvictions() throws Exception {
+        SQLPlanCache smallCache = new SQLPlanCache(clusterService, 1);
+        smallCache.release(newCachedPlan(smallCache, STMT));
+        smallCache.release(newCachedPlan(smallCache, "select * from t"));
+        assertThat(smallCache.size(), is(1L));
+        assertThat(smallCache.evictions(), is(1L));
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        SQLPlanCache disabled = new SQLPlanCache(clusterService, 0);
+        assertThat(disabled.enabled(), is(false));
+        disabled.release(newCachedPlan(disabled, STMT));
+        assertThat(disabled.acquire(STMT, args(1)), nullValue());
+        assertThat(disabled.size(), is(0L));
+    }
+}
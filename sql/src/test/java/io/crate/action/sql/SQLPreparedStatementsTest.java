@@ -0,0 +1,143 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+package io.crate.action.sql;
+
+import io.crate.analyze.Analysis;
+import io.crate.analyze.Analyzer;
+import io.crate.analyze.ParameterBindings;
+import io.crate.exceptions.PreparedStatementUnknownException;
+import io.crate.sql.parser.SqlParser;
+import io.crate.types.DataType;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+public class SQLPreparedStatementsTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private ClusterService clusterService;
+
+    @Before
+    public void prepare() {
+        DiscoveryNode node = mock(DiscoveryNode.class);
+        when(node.id()).thenReturn("n1");
+        clusterService = mock(ClusterService.class);
+        when(clusterService.localNode()).thenReturn(node);
+    }
+
+    private static SQLPreparedStatements.PreparedStatement preparedStatement(String stmt) {
+        return new SQLPreparedStatements.PreparedStatement(stmt, SqlParser.createStatement(stmt), 1L, null, null, null);
+    }
+
+    private static SQLPreparedStatements.PreparedStatement preparedStatement(Analysis analysis,
+                                                                             ParameterBindings bindings) {
+        Analyzer.ParameterContext parameterContext = mock(Analyzer.ParameterContext.class);
+        when(parameterContext.bindings()).thenReturn(bindings);
+        when(analysis.parameterContext()).thenReturn(parameterContext);
+        String stmt = "select * from t where x = ?";
+        return new SQLPreparedStatements.PreparedStatement(
+                stmt, SqlParser.createStatement(stmt), 1L, analysis, new String[0], new DataType[0]);
+    }
+
+    @Test
+    public void testAddAndGet() throws Exception {
+        SQLPreparedStatements preparedStatements = new SQLPreparedStatements(clusterService, 10);
+        SQLPreparedStatements.PreparedStatement preparedStatement = preparedStatement("select * from t");
+
+        String handle = preparedStatements.add(preparedStatement);
+        assertThat(SQLPreparedStatements.nodeId(handle), is("n1"));
+        assertThat(preparedStatements.get(handle), sameInstance(preparedStatement));
+        assertThat(preparedStatements.size(), is(1L));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() throws Exception {
+        SQLPreparedStatements preparedStatements = new SQLPreparedStatements(clusterService, 2);
+        String first = preparedStatements.add(preparedStatement("select 1 from t"));
+        String second = preparedStatements.add(preparedStatement("select 2 from t"));
+        preparedStatements.get(first);
+
+        String third = preparedStatements.add(preparedStatement("select 3 from t"));
+        assertThat(preparedStatements.size(), is(2L));
+        assertThat(preparedStatements.get(first).stmt(), is("select 1 from t"));
+        assertThat(preparedStatements.get(third).stmt(), is("select 3 from t"));
+
+        expectedException.expect(PreparedStatementUnknownException.class);
+        preparedStatements.get(second);
+    }
+
+    @Test
+    public void testInvalidHandle() throws Exception {
+        assertThat(SQLPreparedStatements.nodeId("invalid"), is(nullValue()));
+
+        expectedException.expect(PreparedStatementUnknownException.class);
+        expectedException.expectMessage("Prepared statement 'invalid' unknown");
+        new SQLPreparedStatements(clusterService, 2).get("invalid");
+    }
+
+    @Test
+    public void testAnalysisIsBoundAndPolledOnce() throws Exception {
+        Analysis analysis = mock(Analysis.class);
+        ParameterBindings bindings = mock(ParameterBindings.class);
+        Object[] args = new Object[]{1};
+        when(bindings.matches(args)).thenReturn(true);
+        SQLPreparedStatements.PreparedStatement preparedStatement = preparedStatement(analysis, bindings);
+
+        assertThat(preparedStatement.pollAnalysis(args, 1L), sameInstance(analysis));
+        verify(bindings).bind(args);
+        // the analysis has been used by an execution
+        assertThat(preparedStatement.pollAnalysis(args, 1L), nullValue());
+    }
+
+    @Test
+    public void testAnalysisOfOtherArgumentsIsNotPolled() throws Exception {
+        ParameterBindings bindings = mock(ParameterBindings.class);
+        SQLPreparedStatements.PreparedStatement preparedStatement = preparedStatement(mock(Analysis.class), bindings);
+
+        assertThat(preparedStatement.pollAnalysis(new Object[]{"foo"}, 1L), nullValue());
+        verify(bindings, never()).bind(any(Object[].class));
+    }
+
+    @Test
+    public void testAnalysisOfOutdatedClusterStateIsNotPolled() throws Exception {
+        ParameterBindings bindings = mock(ParameterBindings.class);
+        when(bindings.matches(any(Object[].class))).thenReturn(true);
+        SQLPreparedStatements.PreparedStatement preparedStatement = preparedStatement(mock(Analysis.class), bindings);
+
+        assertThat(preparedStatement.pollAnalysis(new Object[]{1}, 2L), nullValue());
+        verify(bindings, never()).bind(any(Object[].class));
+    }
+
+    @Test
+    public void testAnalysisWithoutBindingsIsNotPolled() throws Exception {
+        SQLPreparedStatements.PreparedStatement preparedStatement = preparedStatement(mock(Analysis.class), null);
+        assertThat(preparedStatement.pollAnalysis(new Object[]{1}, 1L), nullValue());
+    }
+}
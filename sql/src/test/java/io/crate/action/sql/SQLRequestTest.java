@@ -21,10 +21,12 @@
 
 package io.crate.action.sql;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.BytesStreamInput;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.junit.Test;
 
+import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 
@@ -46,6 +48,7 @@ public class SQLRequestTest {
 
 
         BytesStreamOutput out = new BytesStreamOutput();
+        out.setVersion(Version.V_1_2_0);
         request.writeTo(out);
 
         byte[] expectedBytes = new byte[]
@@ -59,6 +62,7 @@ public class SQLRequestTest {
         byte[] buf = new byte[]
                 {0,19,115,101,108,101,99,116,32,42,32,102,114,111,109,32,117,115,101,114,115,2,0,4,97,114,103,49,0,4,97,114,103, 50, 0, 1};
         BytesStreamInput in = new BytesStreamInput(buf, false);
+        in.setVersion(Version.V_1_2_0);
         SQLRequest request = new SQLRequest();
         request.readFrom(in);
 
@@ -66,4 +70,72 @@ public class SQLRequestTest {
         assertThat(request.includeTypesOnResponse(), is(true));
         assertThat(request.stmt(), is("select * from users"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSerializationFetchSize() throws Exception {
+        SQLRequest request = new SQLRequest("select * from users");
+        request.fetchSize(100);
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        request.writeTo(out);
+        SQLRequest streamed = new SQLRequest();
+        streamed.readFrom(new BytesStreamInput(out.bytes()));
+
+        assertThat(streamed.stmt(), is("select * from users"));
+        assertThat(streamed.fetchSize(), is(100));
+    }
+
+    @Test
+    public void testSerializationHandle() throws Exception {
+        SQLRequest request = new SQLRequest(null, new Object[]{1, "foo"});
+        request.handle("n1:abc");
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        request.writeTo(out);
+        SQLRequest streamed = new SQLRequest();
+        streamed.readFrom(new BytesStreamInput(out.bytes()));
+
+        assertThat(streamed.handle(), is("n1:abc"));
+        assertThat(streamed.stmt(), is(nullValue()));
+        assertThat(streamed.fetchSize(), is(0));
+        assertThat(streamed.args(), is(new Object[]{1, "foo"}));
+        assertThat(streamed.validate(), is(nullValue()));
+    }
+
+    @Test
+    public void testSerializationWithoutFetchSizeOrHandle() throws Exception {
+        SQLRequest request = new SQLRequest(
+                "select * from users",
+                new Object[] { "arg1", "arg2" }
+        );
+        request.creationTime = 0;
+        request.includeTypesOnResponse(true);
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        request.writeTo(out);
+
+        // same bytes as older versions, the optional trailing fields aren't written
+        byte[] expectedBytes = new byte[]
+                {0,19,115,101,108,101,99,116,32,42,32,102,114,111,109,32,117,115,101,114,115,2,0,4,97,114,103,49,0,4,97,114,103, 50, 0, 1};
+        assertThat(out.bytes().toBytes(), is(expectedBytes));
+    }
+
+    @Test
+    public void testSerializationWithFetchSize() throws Exception {
+        SQLRequest request = new SQLRequest(
+                "select * from users",
+                new Object[] { "arg1", "arg2" }
+        );
+        request.creationTime = 0;
+        request.includeTypesOnResponse(true);
+        request.fetchSize(100);
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        request.writeTo(out);
+
+        // fetchSize 100 and no handle
+        byte[] expectedBytes = new byte[]
+                {0,19,115,101,108,101,99,116,32,42,32,102,114,111,109,32,117,115,101,114,115,2,0,4,97,114,103,49,0,4,97,114,103, 50, 0, 1, 100, 0};
+        assertThat(out.bytes().toBytes(), is(expectedBytes));
+    }
+}
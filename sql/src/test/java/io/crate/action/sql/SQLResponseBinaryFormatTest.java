@@ -0,0 +1,88 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.action.sql;
+
+import com.google.common.collect.ImmutableMap;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class SQLResponseBinaryFormatTest {
+
+    private static SQLResponse roundTrip(SQLResponse response) throws Exception {
+        BytesStreamOutput out = new BytesStreamOutput();
+        SQLResponseBinaryFormat.writeTo(response, out);
+        return SQLResponseBinaryFormat.readFrom(new BytesStreamInput(out.bytes()));
+    }
+
+    @Test
+    public void testTypedColumns() throws Exception {
+        Map<String, Object> obj = ImmutableMap.<String, Object>of("a", 1);
+        SQLResponse response = new SQLResponse(
+                new String[]{"id", "name", "price", "active", "obj"},
+                new Object[][]{
+                        new Object[]{1L, "foo", 1.5d, true, obj},
+                        new Object[]{null, null, null, null, null},
+                },
+                new DataType[]{DataTypes.LONG, DataTypes.STRING, DataTypes.DOUBLE, DataTypes.BOOLEAN, DataTypes.OBJECT},
+                2L, 0L, true);
+        response.cursorId("n1:cursor");
+
+        SQLResponse streamed = roundTrip(response);
+        assertThat(streamed.cols(), is(response.cols()));
+        assertThat(streamed.columnTypes(), is(response.columnTypes()));
+        assertThat(streamed.rowCount(), is(2L));
+        assertThat(streamed.cursorId(), is("n1:cursor"));
+        assertThat(streamed.rows(), is(response.rows()));
+    }
+
+    @Test
+    public void testValuesNotMatchingTheTypeAreWrittenGeneric() throws Exception {
+        SQLResponse response = new SQLResponse(
+                new String[]{"x"},
+                new Object[][]{new Object[]{1}, new Object[]{"not a number"}},
+                new DataType[]{DataTypes.INTEGER},
+                2L, 0L, true);
+
+        SQLResponse streamed = roundTrip(response);
+        assertThat(streamed.rows(), is(response.rows()));
+    }
+
+    @Test
+    public void testWithoutTypes() throws Exception {
+        SQLResponse response = new SQLResponse(
+                new String[]{"x"}, new Object[][]{new Object[]{"foo"}}, 1L, 0L);
+
+        SQLResponse streamed = roundTrip(response);
+        assertThat(streamed.columnTypes().length, is(0));
+        assertThat(streamed.rows(), is(response.rows()));
+        assertThat(streamed.cursorId(), is(nullValue()));
+    }
+}
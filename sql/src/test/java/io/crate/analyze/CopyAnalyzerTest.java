@@ -148,6 +148,20 @@ public class CopyAnalyzerTest extends BaseAnalyzerTest {
         assertThat(((Reference)analysis.outputSymbols().get(1)).info().ident().columnIdent().name(), is("name"));
     }
 
+    @Test
+    public void testCopyToWithOrderBy() throws Exception {
+        CopyAnalysis analysis = (CopyAnalysis)analyze("copy users (name) order by id desc nulls first to DIRECTORY '/tmp'");
+        assertThat(analysis.isSorted(), is(true));
+        assertThat(((Reference)analysis.sortSymbols().get(0)).info().ident().columnIdent().name(), is("id"));
+        assertThat(analysis.reverseFlags()[0], is(true));
+        assertThat(analysis.nullsFirst()[0], is(true));
+    }
+
+    @Test (expected = UnsupportedOperationException.class)
+    public void testCopyToWithOrderByAnalyzedColumn() throws Exception {
+        analyze("copy users order by text to DIRECTORY '/tmp'");
+    }
+
     @Test
     public void testCopyToFileWithParams() throws Exception {
         CopyAnalysis analysis = (CopyAnalysis)analyze("copy users to '/blah.txt' with (compression='gzip')");
@@ -48,8 +48,10 @@ import io.crate.operation.scalar.CollectionCountFunction;
 import io.crate.operation.scalar.ScalarFunctionModule;
 import io.crate.operation.scalar.arithmetic.AddFunction;
 import io.crate.operation.scalar.geo.DistanceFunction;
+import io.crate.planner.DataTypeVisitor;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.symbol.*;
+import io.crate.sql.parser.SqlParser;
 import io.crate.types.ArrayType;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
@@ -68,6 +70,7 @@ import java.util.*;
 import static io.crate.testing.TestingHelpers.assertLiteralSymbol;
 import static org.hamcrest.CoreMatchers.hasItem;
 import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.core.Is.is;
@@ -1591,4 +1594,49 @@ public class SelectAnalyzerTest extends BaseAnalyzerTest {
          SelectAnalysis analysis = (SelectAnalysis) analyze("select * from users where no_such_column is not null");
          assertTrue(analysis.hasNoResult());
     }
+
+    @Test
+    public void testParameterBindings() throws Exception {
+        SelectAnalysis analysis = (SelectAnalysis) analyze("select id from users where name = ?",
+                new Object[]{"foo"});
+        ParameterBindings bindings = analysis.parameterContext().bindings();
+        assertNotNull(bindings);
+        assertTrue(bindings.matches(new Object[]{"bar"}));
+        assertFalse(bindings.matches(new Object[]{1}));
+        assertFalse(bindings.matches(new Object[]{"bar", "baz"}));
+
+        bindings.bind(new Object[]{"bar"});
+        Function query = (Function) analysis.whereClause().query();
+        assertLiteralSymbol(query.arguments().get(1), "bar");
+    }
+
+    @Test
+    public void testNoParameterBindingsIfValueIsRead() throws Exception {
+        // primary key lookup
+        Analysis analysis = analyze("select name from users where id = ?", new Object[]{1L});
+        assertNull(analysis.parameterContext().bindings());
+
+        analysis = analyze("select name from users limit ?", new Object[]{1});
+        assertNull(analysis.parameterContext().bindings());
+    }
+
+    @Test
+    public void testNullParameterIsOnlyBoundToNull() throws Exception {
+        Analysis analysis = analyze("select name from users where name = ?", new Object[]{null});
+        ParameterBindings bindings = analysis.parameterContext().bindings();
+        assertNotNull(bindings);
+        assertTrue(bindings.matches(new Object[]{null}));
+        assertFalse(bindings.matches(new Object[]{"foo"}));
+    }
+
+    @Test
+    public void testAnalyzeUnbound() throws Exception {
+        SelectAnalysis analysis = (SelectAnalysis) analyzer.analyzeUnbound(
+                SqlParser.createStatement("select id, name from users where name = ? and id > ?"),
+                new Object[]{"foo"});
+        assertThat(analysis.outputNames(), contains("id", "name"));
+        assertThat(DataTypeVisitor.fromSymbol(analysis.outputSymbols().get(0)), is((DataType) DataTypes.LONG));
+        // the second parameter has no argument
+        assertNull(analysis.parameterContext().bindings());
+    }
 }
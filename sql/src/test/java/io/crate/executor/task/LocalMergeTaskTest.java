@@ -32,6 +32,7 @@ import io.crate.operation.aggregation.AggregationFunction;
 import io.crate.operation.aggregation.impl.AggregationImplModule;
 import io.crate.operation.aggregation.impl.MinimumAggregation;
 import io.crate.operation.collect.StatsTables;
+import io.crate.operation.projectors.GroupingMemoryAccounting;
 import io.crate.operation.projectors.TopN;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.node.dql.MergeNode;
@@ -136,6 +137,7 @@ public class LocalMergeTaskTest {
                     threadPool,
                     mock(ClusterService.class),
                     ImmutableSettings.EMPTY,
+                    new GroupingMemoryAccounting(ImmutableSettings.EMPTY),
                     mock(TransportActionProvider.class, Answers.RETURNS_DEEP_STUBS.get()),
                     symbolVisitor, mergeNode,
                     mock(StatsTables.class));
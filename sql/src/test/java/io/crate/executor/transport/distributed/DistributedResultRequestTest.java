@@ -33,7 +33,7 @@ import java.util.UUID;
 
 import static junit.framework.TestCase.assertEquals;
 import static org.hamcrest.core.Is.is;
-import static org.junit.Assert.assertThat;
+import static org.junit.Assert.*;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -66,6 +66,53 @@ public class DistributedResultRequestTest {
         assertEquals(r1.rows().length, r2.rows().length);
 
         assertThat(r1.rows(), is(r2.rows()));
+        assertNull(r2.upstreamId());
+        assertTrue(r2.isLast());
+    }
+
+    @Test
+    public void testStreamingPage() throws Exception {
+        DistributedRequestContextManager cm = mock(DistributedRequestContextManager.class);
+
+        Streamer<?>[] streamers = new Streamer[]{DataTypes.INTEGER.streamer()};
+        when(cm.getStreamer((UUID) anyObject())).thenReturn(Optional.of(streamers));
+
+        Object[][] rows = new Object[][]{{1}, {2}};
+        DistributedResultRequest r1 = new DistributedResultRequest(UUID.randomUUID(), streamers, "n1", 3, false);
+        r1.rows(rows);
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        r1.writeTo(out);
+        BytesStreamInput in = new BytesStreamInput(out.bytes());
+        DistributedResultRequest r2 = new DistributedResultRequest(cm);
+        r2.readFrom(in);
+
+        assertEquals("n1", r2.upstreamId());
+        assertEquals(3, r2.page());
+        assertFalse(r2.isLast());
+        assertThat(r2.rows(), is(rows));
+    }
+
+    @Test
+    public void testStreamingUnpagedRequest() throws Exception {
+        DistributedRequestContextManager cm = mock(DistributedRequestContextManager.class);
+
+        Streamer<?>[] streamers = new Streamer[]{DataTypes.INTEGER.streamer()};
+        when(cm.getStreamer((UUID) anyObject())).thenReturn(Optional.of(streamers));
+
+        Object[][] rows = new Object[][]{{1}, {2}};
+        DistributedResultRequest r1 = new DistributedResultRequest(UUID.randomUUID(), streamers);
+        r1.rows(rows);
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        r1.writeTo(out);
+        BytesStreamInput in = new BytesStreamInput(out.bytes());
+        DistributedResultRequest r2 = new DistributedResultRequest(cm);
+        r2.readFrom(in);
+
+        assertNull(r2.upstreamId());
+        assertTrue(r2.isLast());
+        assertThat(r2.rows(), is(rows));
     }
 
 }
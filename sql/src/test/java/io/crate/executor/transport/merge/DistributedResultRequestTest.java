@@ -49,15 +49,22 @@ import org.elasticsearch.common.inject.multibindings.MapBinder;
 import org.elasticsearch.common.io.stream.BytesStreamInput;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.node.settings.NodeSettingsService;
 import org.junit.Before;
 import org.junit.Test;
 
+import javax.annotation.Nullable;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
@@ -186,6 +193,149 @@ public class DistributedResultRequestTest {
         }
     }
 
+    @Test
+    public void testBufferLimitWithLateContext() throws Exception {
+        Streamer<?>[] streamers = new Streamer[]{DataTypes.INTEGER.streamer(), DataTypes.STRING.streamer()};
+        DistributedResultRequest requestSender = new DistributedResultRequest(contextId, streamers, "n1", 0, false);
+        requestSender.rows(rows);
+        BytesStreamOutput streamOutput = new BytesStreamOutput();
+        requestSender.writeTo(streamOutput);
+
+        DistributedRequestContextManager contextManager =
+                new DistributedRequestContextManager(new DummyDownstreamOperationFactory(rows), functions,
+                        new StatsTables(ImmutableSettings.EMPTY, mock(NodeSettingsService.class)), 10);
+
+        // the first request is always buffered
+        DistributedResultRequest requestReceiver = new DistributedResultRequest(contextManager);
+        requestReceiver.readFrom(new BytesStreamInput(streamOutput.bytes()));
+        contextManager.addToContext(requestReceiver);
+        long buffered = contextManager.bufferedBytes(contextId);
+        assertTrue(buffered > 0);
+
+        requestReceiver = new DistributedResultRequest(contextManager);
+        requestReceiver.readFrom(new BytesStreamInput(streamOutput.bytes()));
+        try {
+            contextManager.addToContext(requestReceiver);
+            fail("buffer limit exceeded but request was accepted");
+        } catch (EsRejectedExecutionException e) {
+            // expected
+        }
+        assertThat(contextManager.bufferedBytes(contextId), is(buffered));
+        assertThat(contextManager.bufferedBytes(), is(buffered));
+        assertThat(contextManager.rejectedRequests(), is(1L));
+
+        contextManager.createContext(dummyMergeNode, new NoopActionListener());
+        assertThat(contextManager.bufferedBytes(contextId), is(0L));
+    }
+
+    @Test
+    public void testBufferLimitWithActiveContext() throws Exception {
+        final Streamer<?>[] streamers = new Streamer[]{DataTypes.INTEGER.streamer(), DataTypes.STRING.streamer()};
+        CountDownLatch merging = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        final DistributedRequestContextManager contextManager =
+                new DistributedRequestContextManager(new DummyDownstreamOperationFactory(rows, merging, proceed),
+                        functions, new StatsTables(ImmutableSettings.EMPTY, mock(NodeSettingsService.class)), 10);
+        contextManager.createContext(dummyMergeNode, new NoopActionListener());
+
+        final AtomicReference<Throwable> mergeFailure = new AtomicReference<>();
+        Thread mergeThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    contextManager.addToContext(receivePage(contextManager, streamers, 0));
+                } catch (Throwable t) {
+                    mergeFailure.set(t);
+                }
+            }
+        });
+        mergeThread.start();
+        merging.await();
+
+        // the first page waits to be merged, the second one exceeds the buffer
+        long buffered = contextManager.bufferedBytes(contextId);
+        assertTrue(buffered > 0);
+        try {
+            contextManager.addToContext(receivePage(contextManager, streamers, 1));
+            fail("buffer limit exceeded but request was accepted");
+        } catch (EsRejectedExecutionException e) {
+            // expected
+        }
+        assertThat(contextManager.rejectedRequests(), is(1L));
+        assertThat(contextManager.bufferedBytes(contextId), is(buffered));
+
+        proceed.countDown();
+        mergeThread.join();
+        assertNull(mergeFailure.get());
+        assertThat(contextManager.bufferedBytes(contextId), is(0L));
+    }
+
+    @Test
+    public void testLatePagesOfClosedContextAreDropped() throws Exception {
+        Streamer<?>[] streamers = new Streamer[]{DataTypes.INTEGER.streamer(), DataTypes.STRING.streamer()};
+        DistributedRequestContextManager contextManager =
+                new DistributedRequestContextManager(new DummyDownstreamOperationFactory(rows), functions,
+                        new StatsTables(ImmutableSettings.EMPTY, mock(NodeSettingsService.class)), 10);
+        contextManager.createContext(dummyMergeNode, new NoopActionListener());
+
+        // both pages are read while the context is active, the second one is a retry
+        DistributedResultRequest lastPage = receivePage(contextManager, streamers, 0, true);
+        DistributedResultRequest retriedPage = receivePage(contextManager, streamers, 0, true);
+        assertTrue(retriedPage.rowsRead());
+        contextManager.addToContext(lastPage);
+        assertThat(contextManager.numContexts(), is(0));
+        contextManager.addToContext(retriedPage);
+
+        // read after the context was closed, so it would be buffered
+        DistributedResultRequest latePage = receivePage(contextManager, streamers, 0, true);
+        assertFalse(latePage.rowsRead());
+        contextManager.addToContext(latePage);
+        contextManager.setFailure(contextId, "n1");
+
+        assertThat(contextManager.numContexts(), is(0));
+        assertThat(contextManager.bufferedBytes(), is(0L));
+        assertThat(contextManager.numClosedContexts(), is(1));
+    }
+
+    @Test
+    public void testClosedContextsAreForgottenAfterKeepAlive() throws Exception {
+        Streamer<?>[] streamers = new Streamer[]{DataTypes.INTEGER.streamer(), DataTypes.STRING.streamer()};
+        DistributedRequestContextManager contextManager =
+                new DistributedRequestContextManager(new DummyDownstreamOperationFactory(rows), functions,
+                        new StatsTables(ImmutableSettings.EMPTY, mock(NodeSettingsService.class)), 10, 0L);
+        contextManager.createContext(dummyMergeNode, new NoopActionListener());
+        contextManager.addToContext(receivePage(contextManager, streamers, 0, true));
+        assertThat(contextManager.numClosedContexts(), is(1));
+
+        Thread.sleep(10);
+        contextId = UUID.randomUUID();
+        dummyMergeNode.contextId(contextId);
+        contextManager.createContext(dummyMergeNode, new NoopActionListener());
+        contextManager.addToContext(receivePage(contextManager, streamers, 0, true));
+        // only the context closed last is remembered
+        assertThat(contextManager.numClosedContexts(), is(1));
+    }
+
+    private DistributedResultRequest receivePage(DistributedRequestContextManager contextManager,
+                                                 Streamer<?>[] streamers,
+                                                 int page) throws IOException {
+        return receivePage(contextManager, streamers, page, false);
+    }
+
+    private DistributedResultRequest receivePage(DistributedRequestContextManager contextManager,
+                                                 Streamer<?>[] streamers,
+                                                 int page,
+                                                 boolean isLast) throws IOException {
+        DistributedResultRequest requestSender = new DistributedResultRequest(contextId, streamers, "n1", page, isLast);
+        requestSender.rows(rows);
+        BytesStreamOutput streamOutput = new BytesStreamOutput();
+        requestSender.writeTo(streamOutput);
+
+        DistributedResultRequest requestReceiver = new DistributedResultRequest(contextManager);
+        requestReceiver.readFrom(new BytesStreamInput(streamOutput.bytes()));
+        return requestReceiver;
+    }
+
     class NoopActionListener implements ActionListener<NodeMergeResponse> {
 
         @Override
@@ -201,16 +351,34 @@ public class DistributedResultRequestTest {
 
         private final SettableFuture<Object[][]> futureResult = SettableFuture.create();
         private final Object[][] result;
+        private final CountDownLatch merging;
+        private final CountDownLatch proceed;
 
         DummyDownstreamOperationFactory(Object[][] result) {
+            this(result, null, null);
+        }
+
+        /**
+         * @param merging counted down once rows are added
+         * @param proceed awaited before the added rows are accepted
+         */
+        DummyDownstreamOperationFactory(Object[][] result,
+                                        @Nullable CountDownLatch merging,
+                                        @Nullable CountDownLatch proceed) {
             this.result = result;
+            this.merging = merging;
+            this.proceed = proceed;
         }
 
         @Override
         public DownstreamOperation create(final MergeNode node) {
             return new DownstreamOperation() {
                 @Override
-                public boolean addRows(Object[][] rows) {
+                public boolean addRows(Object[][] rows) throws Exception {
+                    if (merging != null) {
+                        merging.countDown();
+                        proceed.await();
+                    }
                     return true;
                 }
 
@@ -218,6 +218,22 @@ public class ESQueryBuilderTest {
         xcontentAssert(whereClause, "{\"query\":{\"wildcard\":{\"name\":\"*thu*\"}}}");
     }
 
+    @Test
+    public void testWhereReferenceLikePrefix() throws Exception {
+        FunctionImplementation impl = functions.get(new FunctionIdent(LikeOperator.NAME, typeX2(name_ref.valueType())));
+        Function whereClause = new Function(impl.info(),
+                Arrays.<Symbol>asList(name_ref, Literal.newLiteral("Arthur\\_%")));
+        xcontentAssert(whereClause, "{\"query\":{\"prefix\":{\"name\":\"Arthur_\"}}}");
+    }
+
+    @Test
+    public void testWhereReferenceLikeWithoutWildcard() throws Exception {
+        FunctionImplementation impl = functions.get(new FunctionIdent(LikeOperator.NAME, typeX2(name_ref.valueType())));
+        Function whereClause = new Function(impl.info(),
+                Arrays.<Symbol>asList(name_ref, Literal.newLiteral("Arthur")));
+        xcontentAssert(whereClause, "{\"query\":{\"term\":{\"name\":\"Arthur\"}}}");
+    }
+
     @Test
     public void testWhereNotReferenceLikeString() throws Exception {
         FunctionImplementation notOp = functions.get(
@@ -265,6 +281,30 @@ public class ESQueryBuilderTest {
         assertEquals(ImmutableSet.of("alpha", "bravo", "charlie"), new HashSet<>(actualList));
     }
 
+    @Test
+    public void testWhereReferenceInLargeListUsesTermsFilter() throws Exception {
+        FunctionImplementation inListImpl = functions.get(
+                new FunctionIdent(InOperator.NAME,
+                Arrays.<DataType>asList(DataTypes.INTEGER, new SetType(DataTypes.INTEGER))
+        ));
+        Set<Integer> values = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            values.add(i);
+        }
+        Literal set = Literal.newLiteral(new SetType(DataTypes.INTEGER), values);
+        Function inList = new Function(inListImpl.info(), Arrays.<Symbol>asList(age_ref, set));
+
+        BytesReference reference = generator.convert(new WhereClause(inList));
+        Map<String, Object> terms = (Map) ((Map) ((Map) ((Map) XContentHelper.convertToMap(reference, true).v2()
+                .get("query"))
+                .get("filtered"))
+                .get("filter"))
+                .get("terms");
+
+        assertThat((Boolean) terms.get("_cache"), is(true));
+        assertThat(((List) terms.get("age")).size(), is(1000));
+    }
+
     @Test
     public void testWhereReferenceMatchString() throws Exception {
         FunctionIdent functionIdent = new FunctionIdent(
@@ -373,7 +413,7 @@ public class ESQueryBuilderTest {
         Function anyLike = new Function(anyLikeImpl.info(),
                 Arrays.<Symbol>asList(tagsField,
                         Literal.newLiteral("foo%")));
-        xcontentAssert(anyLike, "{\"query\":{\"wildcard\":{\"tags\":\"foo*\"}}}");
+        xcontentAssert(anyLike, "{\"query\":{\"prefix\":{\"tags\":\"foo\"}}}");
     }
 
     @Test
@@ -0,0 +1,167 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.executor.transport.task.elasticsearch;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.analyze.WhereClause;
+import io.crate.planner.node.dql.ESSearchNode;
+import io.crate.planner.symbol.Symbol;
+import io.crate.types.DataTypes;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.*;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import static io.crate.testing.TestingHelpers.createReference;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class ESSearchScrollTest {
+
+    private static final long TOTAL_HITS = 5L;
+
+    private TransportSearchAction searchAction;
+    private TransportSearchScrollAction searchScrollAction;
+    private TransportClearScrollAction clearScrollAction;
+
+    /**
+     * the pages of hits returned by the initial search and the following scroll requests
+     */
+    private Deque<SearchResponse> pages;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void prepare() {
+        pages = new ArrayDeque<>();
+        Answer<Void> nextPage = new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ActionListener<SearchResponse> listener = (ActionListener<SearchResponse>) invocation.getArguments()[1];
+                listener.onResponse(pages.poll());
+                return null;
+            }
+        };
+        searchAction = mock(TransportSearchAction.class);
+        doAnswer(nextPage).when(searchAction).execute(any(SearchRequest.class), any(ActionListener.class));
+        searchScrollAction = mock(TransportSearchScrollAction.class);
+        doAnswer(nextPage).when(searchScrollAction).execute(any(SearchScrollRequest.class), any(ActionListener.class));
+        clearScrollAction = mock(TransportClearScrollAction.class);
+    }
+
+    private void addPage(long... versions) {
+        SearchHit[] hits = new SearchHit[versions.length];
+        for (int i = 0; i < versions.length; i++) {
+            hits[i] = mock(SearchHit.class);
+            when(hits[i].getVersion()).thenReturn(versions[i]);
+        }
+        SearchHits searchHits = mock(SearchHits.class);
+        when(searchHits.getTotalHits()).thenReturn(TOTAL_HITS);
+        when(searchHits.getHits()).thenReturn(hits);
+        SearchResponse response = mock(SearchResponse.class);
+        when(response.getScrollId()).thenReturn("scroll");
+        when(response.getHits()).thenReturn(searchHits);
+        pages.add(response);
+    }
+
+    private ESSearchScroll scroll(Integer limit, Integer offset, int pageSize) {
+        ESSearchNode searchNode = new ESSearchNode(
+                new String[]{"characters"},
+                ImmutableList.<Symbol>of(createReference("_version", DataTypes.LONG)),
+                null, null, null,
+                limit,
+                offset,
+                WhereClause.MATCH_ALL,
+                null
+        );
+        return new ESSearchScroll(searchNode, searchAction, searchScrollAction, clearScrollAction,
+                TimeValue.timeValueMinutes(1), pageSize);
+    }
+
+    private static Object[][] fetch(ESSearchScroll scroll, int numRows) throws Exception {
+        PlainActionFuture<Object[][]> future = PlainActionFuture.newFuture();
+        scroll.fetch(numRows, future);
+        return future.get();
+    }
+
+    @Test
+    public void testFetchPagesWithOffset() throws Exception {
+        addPage(0L, 1L);
+        addPage(2L, 3L);
+        addPage(4L);
+        ESSearchScroll scroll = scroll(null, 1, 2);
+
+        Object[][] rows = fetch(scroll, 2);
+        assertThat(rows.length, is(2));
+        assertThat((Long) rows[0][0], is(1L));
+        assertThat((Long) rows[1][0], is(2L));
+        assertThat(scroll.exhausted(), is(false));
+
+        rows = fetch(scroll, 2);
+        assertThat(rows.length, is(2));
+        assertThat((Long) rows[0][0], is(3L));
+        assertThat((Long) rows[1][0], is(4L));
+        assertThat(scroll.exhausted(), is(true));
+
+        verify(searchAction, times(1)).execute(any(SearchRequest.class), any(ActionListener.class));
+        verify(searchScrollAction, times(2)).execute(any(SearchScrollRequest.class), any(ActionListener.class));
+    }
+
+    @Test
+    public void testLimit() throws Exception {
+        addPage(0L, 1L, 2L, 3L, 4L);
+        ESSearchScroll scroll = scroll(2, null, 10);
+
+        Object[][] rows = fetch(scroll, 10);
+        assertThat(rows.length, is(2));
+        assertThat(scroll.exhausted(), is(true));
+        assertThat(fetch(scroll, 10).length, is(0));
+        verifyZeroInteractions(searchScrollAction);
+    }
+
+    @Test
+    public void testCloseClearsScroll() throws Exception {
+        addPage(0L, 1L);
+        ESSearchScroll scroll = scroll(null, null, 2);
+        fetch(scroll, 1);
+        scroll.close();
+        scroll.close();
+
+        ArgumentCaptor<ClearScrollRequest> captor = ArgumentCaptor.forClass(ClearScrollRequest.class);
+        verify(clearScrollAction, times(1)).execute(captor.capture(), any(ActionListener.class));
+        assertThat(captor.getValue().getScrollIds(), is((List<String>) ImmutableList.of("scroll")));
+        assertThat(fetch(scroll, 1).length, is(0));
+    }
+}
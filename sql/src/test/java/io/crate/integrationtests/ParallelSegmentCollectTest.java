@@ -0,0 +1,138 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.integrationtests;
+
+import io.crate.operation.collect.ParallelLuceneDocCollector;
+import io.crate.test.integration.CrateIntegrationTest;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertTrue;
+
+@CrateIntegrationTest.ClusterScope(scope = CrateIntegrationTest.Scope.SUITE, numNodes = 1)
+public class ParallelSegmentCollectTest extends SQLTransportIntegrationTest {
+
+    private static final int NUM_SEGMENTS = 4;
+    private static final int ROWS_PER_SEGMENT = 25;
+    private static final Pattern ID_PATTERN = Pattern.compile("\"id\":\\s*(\\d+)");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Override
+    protected Settings nodeSettings(int nodeOrdinal) {
+        return ImmutableSettings.builder()
+                .put(ParallelLuceneDocCollector.SEGMENT_THREADS_SETTING, 3)
+                .build();
+    }
+
+    @Before
+    public void prepare() {
+        execute("create table t (id integer, name string) clustered into 1 shards with (number_of_replicas=0)");
+        ensureGreen();
+        // every refresh writes a new segment
+        for (int segment = 0; segment < NUM_SEGMENTS; segment++) {
+            Object[][] bulkArgs = new Object[ROWS_PER_SEGMENT][];
+            for (int i = 0; i < ROWS_PER_SEGMENT; i++) {
+                int id = segment * ROWS_PER_SEGMENT + i;
+                bulkArgs[i] = new Object[]{id, "name" + (id % 10)};
+            }
+            execute("insert into t (id, name) values (?, ?)", bulkArgs);
+            refresh();
+        }
+    }
+
+    @Test
+    public void testGroupBy() throws Exception {
+        execute("select name, count(*), max(id) from t group by name order by name");
+        assertThat(response.rowCount(), is(10L));
+        assertThat((String) response.rows()[0][0], is("name0"));
+        assertThat((Long) response.rows()[0][1], is(10L));
+        assertThat((Integer) response.rows()[0][2], is(90));
+    }
+
+    @Test
+    public void testGlobalAggregate() throws Exception {
+        execute("select count(*), sum(id), min(name) from t");
+        assertThat((Long) response.rows()[0][0], is(100L));
+        assertThat(((Number) response.rows()[0][1]).longValue(), is(4950L));
+        assertThat((String) response.rows()[0][2], is("name0"));
+    }
+
+    @Test
+    public void testGroupByWithWhereClause() throws Exception {
+        execute("select name, count(*), min(id) from t where id >= 50 group by name order by name");
+        assertThat(response.rowCount(), is(10L));
+        for (int i = 0; i < 10; i++) {
+            assertThat((String) response.rows()[i][0], is("name" + i));
+            assertThat((Long) response.rows()[i][1], is(5L));
+            assertThat((Integer) response.rows()[i][2], is(50 + i));
+        }
+    }
+
+    @Test
+    public void testGlobalAggregateWithWhereClause() throws Exception {
+        execute("select count(*), sum(id), max(name) from t where name = 'name3'");
+        assertThat((Long) response.rows()[0][0], is(10L));
+        // 3 + 13 + ... + 93
+        assertThat(((Number) response.rows()[0][1]).longValue(), is(480L));
+        assertThat((String) response.rows()[0][2], is("name3"));
+    }
+
+    @Test
+    public void testCopyToDirectory() throws Exception {
+        String uriTemplate = Paths.get(folder.getRoot().toURI()).toAbsolutePath().toString();
+        execute("copy t to DIRECTORY ?", new Object[]{uriTemplate});
+        assertThat(response.rowCount(), is((long) NUM_SEGMENTS * ROWS_PER_SEGMENT));
+
+        List<String> lines = new ArrayList<>(NUM_SEGMENTS * ROWS_PER_SEGMENT);
+        DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(folder.getRoot().toURI()), "*.json");
+        for (Path entry : stream) {
+            lines.addAll(Files.readAllLines(entry, StandardCharsets.UTF_8));
+        }
+        assertThat(lines.size(), is(NUM_SEGMENTS * ROWS_PER_SEGMENT));
+        // every row is written exactly once
+        Set<String> ids = new HashSet<>();
+        for (String line : lines) {
+            Matcher matcher = ID_PATTERN.matcher(line);
+            assertTrue(matcher.find());
+            assertTrue(ids.add(matcher.group(1)));
+        }
+    }
+}
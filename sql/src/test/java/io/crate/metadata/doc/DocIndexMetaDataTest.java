@@ -117,6 +117,31 @@ public class DocIndexMetaDataTest {
         assertNotNull(referenceInfo);
     }
 
+    @Test
+    public void testDocValuesColumns() throws Exception {
+        XContentBuilder builder = XContentFactory.jsonBuilder()
+                .startObject()
+                .startObject("properties")
+                    .startObject("id")
+                        .field("type", "integer")
+                        .field("index", "not_analyzed")
+                        .field("doc_values", true)
+                    .endObject()
+                    .startObject("name")
+                        .field("type", "string")
+                        .field("index", "not_analyzed")
+                        .field("doc_values", "false")
+                    .endObject()
+                    .startObject("title")
+                        .field("type", "string")
+                        .field("index", "not_analyzed")
+                    .endObject()
+                .endObject()
+                .endObject();
+        DocIndexMetaData md = newMeta(getIndexMetaData("test1", builder), "test1");
+        assertThat(md.docValuesColumns(), contains(new ColumnIdent("id")));
+    }
+
     @Test
     public void testExtractObjectColumnDefinitions() throws Exception {
         XContentBuilder builder = XContentFactory.jsonBuilder()
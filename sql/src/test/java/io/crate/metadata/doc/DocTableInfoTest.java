@@ -2,6 +2,7 @@ package io.crate.metadata.doc;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import io.crate.PartitionName;
 import io.crate.exceptions.ColumnUnknownException;
 import io.crate.metadata.*;
@@ -26,6 +27,7 @@ public class DocTableInfoTest {
                 ImmutableList.<ReferenceInfo>of(),
                 ImmutableMap.<ColumnIdent, IndexReferenceInfo>of(),
                 ImmutableMap.<ColumnIdent, ReferenceInfo>of(),
+                ImmutableSet.<ColumnIdent>of(),
                 ImmutableList.<ColumnIdent>of(),
                 null,
                 false,
@@ -67,6 +69,7 @@ public class DocTableInfoTest {
                 ImmutableList.<ReferenceInfo>of(),
                 ImmutableMap.<ColumnIdent, IndexReferenceInfo>of(),
                 references,
+                ImmutableSet.<ColumnIdent>of(),
                 ImmutableList.<ColumnIdent>of(),
                 null,
                 false,
@@ -23,6 +23,7 @@ package io.crate.metadata.table;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import io.crate.PartitionName;
 import io.crate.analyze.WhereClause;
 import io.crate.exceptions.ColumnUnknownException;
@@ -32,12 +33,10 @@ import io.crate.planner.RowGranularity;
 import io.crate.planner.symbol.DynamicReference;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
+import io.crate.types.ObjectType;
 
 import javax.annotation.Nullable;
-import java.util.Collection;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 public class TestingTableInfo extends AbstractTableInfo {
 
@@ -57,6 +56,7 @@ public class TestingTableInfo extends AbstractTableInfo {
         private final ImmutableList.Builder<ColumnIdent> partitionedBy = ImmutableList.builder();
         private final ImmutableList.Builder<PartitionName> partitions = ImmutableList.builder();
         private final ImmutableMap.Builder<ColumnIdent, IndexReferenceInfo> indexColumns = ImmutableMap.builder();
+        private final Set<ColumnIdent> docValuesColumns = new HashSet<>();
         private ColumnIdent clusteredBy;
 
 
@@ -122,10 +122,20 @@ public class TestingTableInfo extends AbstractTableInfo {
             if (partitionBy) {
                 partitionedByColumns.add(info);
                 partitionedBy.add(info.ident().columnIdent());
+            } else if (indexType == ReferenceInfo.IndexType.NOT_ANALYZED
+                    && type.id() != ObjectType.ID
+                    && !DataTypes.isCollectionType(type)) {
+                // like columns created using CREATE TABLE
+                docValuesColumns.add(info.ident().columnIdent());
             }
             return this;
         }
 
+        public Builder withoutDocValues(String column) {
+            docValuesColumns.remove(ColumnIdent.fromPath(column));
+            return this;
+        }
+
         public Builder addIndex(ColumnIdent column, ReferenceInfo.IndexType indexType) {
             addIndex(column, indexType, null, ImmutableList.<ColumnIdent>of());
             return this;
@@ -176,6 +186,7 @@ public class TestingTableInfo extends AbstractTableInfo {
                     partitionedByColumns.build(),
                     indexColumns.build(),
                     references.build(),
+                    ImmutableSet.copyOf(docValuesColumns),
                     ident,
                     granularity,
                     routing,
@@ -193,6 +204,7 @@ public class TestingTableInfo extends AbstractTableInfo {
     private final List<ReferenceInfo> partitionedByColumns;
     private final Map<ColumnIdent, IndexReferenceInfo> indexColumns;
     private final Map<ColumnIdent, ReferenceInfo> references;
+    private final Set<ColumnIdent> docValuesColumns;
     private final TableIdent ident;
     private final RowGranularity granularity;
     private final List<ColumnIdent> primaryKey;
@@ -206,6 +218,7 @@ public class TestingTableInfo extends AbstractTableInfo {
                             List<ReferenceInfo> partitionedByColumns,
                             Map<ColumnIdent, IndexReferenceInfo> indexColumns,
                             Map<ColumnIdent, ReferenceInfo> references,
+                            Set<ColumnIdent> docValuesColumns,
                             TableIdent ident, RowGranularity granularity,
                             Routing routing,
                             List<ColumnIdent> primaryKey,
@@ -217,6 +230,7 @@ public class TestingTableInfo extends AbstractTableInfo {
         this.partitionedByColumns = partitionedByColumns;
         this.indexColumns = indexColumns;
         this.references = references;
+        this.docValuesColumns = docValuesColumns;
         this.ident = ident;
         this.granularity = granularity;
         this.routing = routing;
@@ -254,6 +268,11 @@ public class TestingTableInfo extends AbstractTableInfo {
         return indexColumns.get(ident);
     }
 
+    @Override
+    public boolean hasDocValues(ColumnIdent ident) {
+        return docValuesColumns.contains(ident);
+    }
+
     @Override
     public boolean isPartitioned() {
         return !partitionedByColumns.isEmpty();
@@ -0,0 +1,239 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.module.sql.benchmark;
+
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.BenchmarkRule;
+import com.carrotsearch.junitbenchmarks.annotation.AxisRange;
+import com.carrotsearch.junitbenchmarks.annotation.BenchmarkMethodChart;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.crate.Streamer;
+import io.crate.executor.transport.distributed.DistributedRequestContextManager;
+import io.crate.executor.transport.distributed.DistributedResultRequest;
+import io.crate.executor.transport.merge.NodeMergeResponse;
+import io.crate.metadata.DynamicFunctionResolver;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionImplementation;
+import io.crate.metadata.Functions;
+import io.crate.operation.DownstreamOperation;
+import io.crate.operation.DownstreamOperationFactory;
+import io.crate.operation.collect.StatsTables;
+import io.crate.operation.projectors.Projector;
+import io.crate.planner.node.dql.MergeNode;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.inject.AbstractModule;
+import org.elasticsearch.common.inject.ModulesBuilder;
+import org.elasticsearch.common.inject.multibindings.MapBinder;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.node.settings.NodeSettingsService;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * merges the pages of hundreds of concurrent distributed merge contexts on one
+ * {@link DistributedRequestContextManager}, half of the pages arrive before their context is created.
+ */
+@AxisRange(min = 0)
+@BenchmarkMethodChart(filePrefix = "benchmark-distributed-merge-context")
+public class DistributedMergeContextBenchmark {
+
+    public static final int NUM_CONTEXTS = 500;
+    public static final int NUM_UPSTREAMS = 4;
+    public static final int NUM_PAGES = 4;
+    public static final int NUM_THREADS = 8;
+    public static final int BENCHMARK_ROUNDS = 100;
+
+    @Rule
+    public TestRule benchmarkRun = new BenchmarkRule();
+
+    private static Functions functions;
+    private static UUID[] contextIds;
+    /**
+     * the serialized pages per context and upstream, the contexts are closed after each round
+     * so the same context ids can be used in every round
+     */
+    private static BytesReference[][][] pages;
+
+    class EmptyFunctionsModule extends AbstractModule {
+
+        @Override
+        protected void configure() {
+            MapBinder.newMapBinder(binder(), FunctionIdent.class, FunctionImplementation.class);
+            MapBinder.newMapBinder(binder(), String.class, DynamicFunctionResolver.class);
+        }
+    }
+
+    @Before
+    public void prepare() throws Exception {
+        if (pages != null) {
+            return;
+        }
+        functions = new ModulesBuilder().add(new EmptyFunctionsModule()).createInjector().getInstance(Functions.class);
+        Streamer<?>[] streamers = new Streamer[]{DataTypes.INTEGER.streamer(), DataTypes.STRING.streamer()};
+        Object[][] rows = new Object[100][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[]{i, new BytesRef("value " + i)};
+        }
+        contextIds = new UUID[NUM_CONTEXTS];
+        pages = new BytesReference[NUM_CONTEXTS][NUM_UPSTREAMS][NUM_PAGES];
+        for (int c = 0; c < NUM_CONTEXTS; c++) {
+            contextIds[c] = UUID.randomUUID();
+            for (int u = 0; u < NUM_UPSTREAMS; u++) {
+                for (int p = 0; p < NUM_PAGES; p++) {
+                    DistributedResultRequest request = new DistributedResultRequest(
+                            contextIds[c], streamers, "upstream" + u, p, p == NUM_PAGES - 1);
+                    request.rows(rows);
+                    BytesStreamOutput out = new BytesStreamOutput();
+                    request.writeTo(out);
+                    pages[c][u][p] = out.bytes();
+                }
+            }
+        }
+    }
+
+    private static class CountingDownstreamOperationFactory implements DownstreamOperationFactory<MergeNode> {
+
+        private final CountDownLatch finished;
+
+        CountingDownstreamOperationFactory(CountDownLatch finished) {
+            this.finished = finished;
+        }
+
+        @Override
+        public DownstreamOperation create(final MergeNode node) {
+            return new DownstreamOperation() {
+                private final SettableFuture<Object[][]> result = SettableFuture.create();
+
+                @Override
+                public boolean addRows(Object[][] rows) {
+                    return true;
+                }
+
+                @Override
+                public int numUpstreams() {
+                    return node.numUpstreams();
+                }
+
+                @Override
+                public void finished() {
+                    result.set(new Object[0][]);
+                    finished.countDown();
+                }
+
+                @Override
+                public ListenableFuture<Object[][]> result() {
+                    return result;
+                }
+
+                @Override
+                public void downstream(Projector downstream) {
+                }
+
+                @Override
+                public Projector downstream() {
+                    return null;
+                }
+            };
+        }
+    }
+
+    @BenchmarkOptions(benchmarkRounds = BENCHMARK_ROUNDS, warmupRounds = 5)
+    @Test
+    public void testConcurrentContexts() throws Exception {
+        final CountDownLatch finished = new CountDownLatch(NUM_CONTEXTS);
+        final DistributedRequestContextManager contextManager = new DistributedRequestContextManager(
+                new CountingDownstreamOperationFactory(finished), functions,
+                new StatsTables(ImmutableSettings.EMPTY, mock(NodeSettingsService.class)));
+
+        final List<MergeNode> mergeNodes = new ArrayList<>(NUM_CONTEXTS);
+        for (int i = 0; i < NUM_CONTEXTS; i++) {
+            MergeNode mergeNode = new MergeNode("merge", NUM_UPSTREAMS);
+            mergeNode.contextId(contextIds[i]);
+            mergeNode.inputTypes(Arrays.<DataType>asList(DataTypes.INTEGER, DataTypes.STRING));
+            mergeNodes.add(mergeNode);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+        final AtomicInteger nextTask = new AtomicInteger(0);
+        final int numTasks = NUM_CONTEXTS * NUM_UPSTREAMS;
+        List<Future<?>> futures = new ArrayList<>(NUM_THREADS);
+        for (int t = 0; t < NUM_THREADS; t++) {
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    int task;
+                    while ((task = nextTask.getAndIncrement()) < numTasks) {
+                        int context = task / NUM_UPSTREAMS;
+                        int upstream = task % NUM_UPSTREAMS;
+                        if (upstream == NUM_UPSTREAMS / 2) {
+                            // the other half of the pages arrives after the context has been created
+                            contextManager.createContext(mergeNodes.get(context), new NoopActionListener());
+                        }
+                        for (BytesReference page : pages[context][upstream]) {
+                            DistributedResultRequest request = new DistributedResultRequest(contextManager);
+                            request.readFrom(new BytesStreamInput(page));
+                            contextManager.addToContext(request);
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertThat(finished.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(contextManager.numContexts(), is(0));
+    }
+
+    private static class NoopActionListener implements ActionListener<NodeMergeResponse> {
+
+        @Override
+        public void onResponse(NodeMergeResponse nodeMergeResponse) {
+        }
+
+        @Override
+        public void onFailure(Throwable e) {
+        }
+    }
+}
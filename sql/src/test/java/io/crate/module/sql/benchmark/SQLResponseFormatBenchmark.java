@@ -0,0 +1,92 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.module.sql.benchmark;
+
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.BenchmarkRule;
+import com.carrotsearch.junitbenchmarks.annotation.AxisRange;
+import com.carrotsearch.junitbenchmarks.annotation.BenchmarkMethodChart;
+import io.crate.action.sql.SQLResponse;
+import io.crate.action.sql.SQLResponseBinaryFormat;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * serializes a wide numeric result as JSON (like the REST endpoint does by default)
+ * and in the {@link SQLResponseBinaryFormat}
+ */
+@AxisRange(min = 0)
+@BenchmarkMethodChart(filePrefix = "benchmark-sql-response-format")
+public class SQLResponseFormatBenchmark {
+
+    public static final int NUM_ROWS = 100000;
+    public static final int NUM_COLUMNS = 10;
+    public static final int BENCHMARK_ROUNDS = 20;
+
+    @Rule
+    public TestRule benchmarkRun = new BenchmarkRule();
+
+    private static SQLResponse response;
+
+    @BeforeClass
+    public static void prepare() {
+        String[] cols = new String[NUM_COLUMNS];
+        DataType[] types = new DataType[NUM_COLUMNS];
+        for (int c = 0; c < NUM_COLUMNS; c++) {
+            cols[c] = "col" + c;
+            types[c] = c % 2 == 0 ? DataTypes.LONG : DataTypes.DOUBLE;
+        }
+        Object[][] rows = new Object[NUM_ROWS][NUM_COLUMNS];
+        for (int r = 0; r < NUM_ROWS; r++) {
+            for (int c = 0; c < NUM_COLUMNS; c++) {
+                rows[r][c] = c % 2 == 0 ? (Object) ((long) r * c) : (Object) (r * 0.25d + c);
+            }
+        }
+        response = new SQLResponse(cols, rows, types, NUM_ROWS, 0L, true);
+    }
+
+    @BenchmarkOptions(benchmarkRounds = BENCHMARK_ROUNDS, warmupRounds = 2)
+    @Test
+    public void testJson() throws Exception {
+        XContentBuilder builder = XContentFactory.jsonBuilder();
+        response.toXContent(builder, ToXContent.EMPTY_PARAMS);
+        assertTrue(builder.bytes().length() > 0);
+    }
+
+    @BenchmarkOptions(benchmarkRounds = BENCHMARK_ROUNDS, warmupRounds = 2)
+    @Test
+    public void testBinary() throws Exception {
+        BytesStreamOutput out = new BytesStreamOutput();
+        SQLResponseBinaryFormat.writeTo(response, out);
+        assertTrue(out.bytes().length() > 0);
+    }
+}
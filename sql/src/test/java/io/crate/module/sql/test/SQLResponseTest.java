@@ -35,6 +35,7 @@ import org.skyscreamer.jsonassert.JSONAssert;
 import java.io.IOException;
 import java.util.HashSet;
 
+import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
@@ -216,5 +217,27 @@ public class SQLResponseTest {
         assertThat(resp.columnTypes(), is(new DataType[] { DataTypes.STRING, DataTypes.STRING }));
         assertThat(resp.rowCount(), is(2L));
         assertThat(resp.duration(), is(-1L));
+        assertThat(resp.cursorId(), is(nullValue()));
+    }
+
+    @Test
+    public void testSerializationCursorId() throws Exception {
+        SQLResponse resp = new SQLResponse(
+                new String[] {"col1"},
+                new Object[][] { new Object[] {"row1_col1"} },
+                new DataType[0],
+                1L,
+                0,
+                false
+        );
+        resp.cursorId("n1:abc");
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        resp.writeTo(out);
+        SQLResponse streamed = new SQLResponse();
+        streamed.readFrom(new BytesStreamInput(out.bytes()));
+
+        assertThat(streamed.cursorId(), is("n1:abc"));
+        assertThat(streamed.rows(), is(new Object[][] { new Object[] {"row1_col1"} }));
     }
 }
@@ -0,0 +1,167 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.aggregation.impl;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.metadata.FunctionIdent;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.aggregation.AggregationTest;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ApproxCountDistinctAggregationTest extends AggregationTest {
+
+    private Object[][] executeAggregation(DataType dataType, Object[][] data) throws Exception {
+        return executeAggregation("approx_count_distinct", dataType, data);
+    }
+
+    private ApproxCountDistinctAggregation.HllState newState(DataType dataType) {
+        FunctionIdent fi = new FunctionIdent("approx_count_distinct", ImmutableList.of(dataType));
+        return ((ApproxCountDistinctAggregation) functions.get(fi)).newState();
+    }
+
+    @Test
+    public void testReturnType() throws Exception {
+        FunctionIdent fi = new FunctionIdent("approx_count_distinct", ImmutableList.<DataType>of(DataTypes.STRING));
+        assertEquals(DataTypes.LONG, functions.get(fi).info().returnType());
+    }
+
+    @Test
+    public void testString() throws Exception {
+        Object[][] result = executeAggregation(DataTypes.STRING, new Object[][]{
+                {new BytesRef("Youri")}, {new BytesRef("Ruben")}, {new BytesRef("Ruben")}, {null}});
+        assertEquals(2L, result[0][0]);
+    }
+
+    @Test
+    public void testNoValues() throws Exception {
+        Object[][] result = executeAggregation(DataTypes.LONG, new Object[][]{{null}});
+        assertEquals(0L, result[0][0]);
+    }
+
+    @Test
+    public void testHighCardinality() throws Exception {
+        int numValues = 100000;
+        Object[][] data = new Object[numValues * 2][];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = new Object[]{(long) (i % numValues)};
+        }
+        long estimate = (Long) executeAggregation(DataTypes.LONG, data)[0][0];
+        assertTrue("estimate " + estimate + " is off by more than 3%", Math.abs(estimate - numValues) < numValues * 0.03);
+    }
+
+    @Test
+    public void testReduce() throws Exception {
+        ApproxCountDistinctAggregation.HllState state1 = newState(DataTypes.INTEGER);
+        ApproxCountDistinctAggregation.HllState state2 = newState(DataTypes.INTEGER);
+        for (int i = 0; i < 100; i++) {
+            state1.add(ApproxCountDistinctAggregation.hash(i));
+            state2.add(ApproxCountDistinctAggregation.hash(i + 50));
+        }
+        state1.reduce(state2);
+        long estimate = state1.value();
+        assertTrue("estimate " + estimate + " is off by more than 2", Math.abs(estimate - 150L) <= 2);
+
+        // reducing into an empty state
+        ApproxCountDistinctAggregation.HllState empty = newState(DataTypes.INTEGER);
+        empty.reduce(state1);
+        assertEquals(estimate, (long) empty.value());
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        FunctionIdent fi = new FunctionIdent("approx_count_distinct", ImmutableList.<DataType>of(DataTypes.DOUBLE));
+        AggregationFunction impl = (AggregationFunction) functions.get(fi);
+
+        ApproxCountDistinctAggregation.HllState state = newState(DataTypes.DOUBLE);
+        for (int i = 0; i < 1000; i++) {
+            state.add(ApproxCountDistinctAggregation.hash(i * 0.5d));
+        }
+
+        BytesStreamOutput streamOutput = new BytesStreamOutput();
+        state.writeTo(streamOutput);
+        assertEquals(ApproxCountDistinctAggregation.HllState.NUM_REGISTERS + 1, streamOutput.size());
+
+        ApproxCountDistinctAggregation.HllState newState = (ApproxCountDistinctAggregation.HllState) impl.newState();
+        newState.readFrom(new BytesStreamInput(streamOutput.bytes()));
+        assertEquals(state.value(), newState.value());
+    }
+
+    @Test
+    public void testSparseRegisters() throws Exception {
+        ApproxCountDistinctAggregation.HllState state = newState(DataTypes.LONG);
+        for (long i = 0; i < 100; i++) {
+            state.add(ApproxCountDistinctAggregation.hash(i));
+        }
+        assertTrue(state.isSparse());
+        assertTrue(state.estimateSizeInBytes() < ApproxCountDistinctAggregation.HllState.NUM_REGISTERS / 4);
+        long estimate = state.value();
+        assertTrue("estimate " + estimate + " is off by more than 2", Math.abs(estimate - 100L) <= 2);
+
+        BytesStreamOutput streamOutput = new BytesStreamOutput();
+        state.writeTo(streamOutput);
+        assertTrue(streamOutput.size() < 500);
+        ApproxCountDistinctAggregation.HllState newState = newState(DataTypes.LONG);
+        newState.readFrom(new BytesStreamInput(streamOutput.bytes()));
+        assertTrue(newState.isSparse());
+        assertEquals(state.value(), newState.value());
+
+        for (long i = 100; i < 10000; i++) {
+            state.add(ApproxCountDistinctAggregation.hash(i));
+        }
+        assertFalse(state.isSparse());
+    }
+
+    @Test
+    public void testReduceSparseAndDense() throws Exception {
+        ApproxCountDistinctAggregation.HllState sparse = newState(DataTypes.LONG);
+        ApproxCountDistinctAggregation.HllState dense = newState(DataTypes.LONG);
+        for (long i = 0; i < 50; i++) {
+            sparse.add(ApproxCountDistinctAggregation.hash(i));
+        }
+        for (long i = 0; i < 5000; i++) {
+            dense.add(ApproxCountDistinctAggregation.hash(i + 10000));
+        }
+        long denseEstimate = dense.value();
+
+        ApproxCountDistinctAggregation.HllState reducedIntoSparse = newState(DataTypes.LONG);
+        reducedIntoSparse.reduce(sparse);
+        reducedIntoSparse.reduce(dense);
+        ApproxCountDistinctAggregation.HllState reducedIntoDense = newState(DataTypes.LONG);
+        reducedIntoDense.reduce(dense);
+        reducedIntoDense.reduce(sparse);
+
+        assertFalse(reducedIntoSparse.isSparse());
+        assertEquals(reducedIntoDense.value(), reducedIntoSparse.value());
+        assertTrue(reducedIntoDense.value() > denseEstimate);
+        // the reduced state must not share the registers of the reduced one
+        assertEquals(denseEstimate, (long) dense.value());
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.collect;
+
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class CollectSchedulerTest {
+
+    private CollectScheduler scheduler = new CollectScheduler(
+            ImmutableSettings.builder().put(CollectScheduler.THREADS_SETTING, 1).build());
+
+    @After
+    public void stopScheduler() {
+        scheduler.stop();
+    }
+
+    private Runnable task(final List<String> order, final String name, final CountDownLatch done) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                order.add(name);
+                done.countDown();
+            }
+        };
+    }
+
+    @Test
+    public void testJobsAreServedRoundRobin() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch running = new CountDownLatch(1);
+        scheduler.start();
+        // block the only thread until both jobs are queued
+        scheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                running.countDown();
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertThat(running.await(5, TimeUnit.SECONDS), is(true));
+
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        CountDownLatch done = new CountDownLatch(5);
+        List<Runnable> heavyJob = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            heavyJob.add(task(order, "heavy" + i, done));
+        }
+        List<Runnable> lightJob = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            lightJob.add(task(order, "light" + i, done));
+        }
+        scheduler.schedule(heavyJob);
+        scheduler.schedule(lightJob);
+        blocked.countDown();
+
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+        // the light job doesn't wait until all tasks of the heavy job are done
+        assertThat(order, contains("heavy0", "light0", "heavy1", "light1", "heavy2"));
+    }
+
+    @Test
+    public void testTasksArePulledByAllThreads() throws Exception {
+        scheduler = new CollectScheduler(
+                ImmutableSettings.builder().put(CollectScheduler.THREADS_SETTING, 4).build());
+        scheduler.start();
+        // every task waits until all of them are running, so each one needs its own thread
+        final CountDownLatch running = new CountDownLatch(4);
+        final CountDownLatch done = new CountDownLatch(4);
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            tasks.add(new Runnable() {
+                @Override
+                public void run() {
+                    running.countDown();
+                    try {
+                        if (running.await(5, TimeUnit.SECONDS)) {
+                            done.countDown();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        scheduler.schedule(tasks);
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test
+    public void testRejectBeforeStart() throws Exception {
+        try {
+            scheduler.execute(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+            fail("expected the job to be rejected");
+        } catch (RejectedExecutionException e) {
+            assertThat(e.getMessage(), is("collect scheduler is not started"));
+        }
+        // no threads are started which would never be stopped
+        assertThat(scheduler.numStartedThreads(), is(0));
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testRejectAfterStop() throws Exception {
+        scheduler.start();
+        scheduler.stop();
+        scheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+    }
+
+    /**
+     * runs a task which blocks the thread it runs on until the returned latch is released
+     */
+    private CountDownLatch blockThread() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch running = new CountDownLatch(1);
+        scheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                running.countDown();
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertThat(running.await(5, TimeUnit.SECONDS), is(true));
+        return blocked;
+    }
+
+    @Test
+    public void testRejectIfQueueIsFull() throws Exception {
+        scheduler = new CollectScheduler(ImmutableSettings.builder()
+                .put(CollectScheduler.THREADS_SETTING, 1)
+                .put(CollectScheduler.QUEUE_SIZE_SETTING, 1)
+                .build());
+        scheduler.start();
+        CountDownLatch blocked = blockThread();
+
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        CountDownLatch done = new CountDownLatch(1);
+        scheduler.execute(task(order, "queued", done));
+        assertThat(scheduler.numQueuedJobs(), is(1));
+        try {
+            scheduler.execute(task(order, "rejected", done));
+            fail("expected the job to be rejected");
+        } catch (RejectedExecutionException e) {
+            assertThat(e.getMessage(), is("collect scheduler queue is full, 1 jobs are queued"));
+        }
+
+        blocked.countDown();
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(order, contains("queued"));
+    }
+
+    @Test
+    public void testPendingTasksAreRejectedOnStop() throws Exception {
+        scheduler.start();
+        blockThread();
+
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            final String name = "task" + i;
+            tasks.add(new CollectScheduler.RejectableTask() {
+                @Override
+                public void run() {
+                    events.add("run " + name);
+                }
+
+                @Override
+                public void onRejected(RejectedExecutionException e) {
+                    events.add("rejected " + name);
+                }
+            });
+        }
+        scheduler.schedule(tasks);
+        scheduler.stop();
+
+        assertThat(events, contains("rejected task0", "rejected task1"));
+        assertThat(scheduler.numQueuedJobs(), is(0));
+    }
+}
@@ -32,7 +32,10 @@ import io.crate.metadata.sys.SysShardsTableInfo;
 import io.crate.operation.operator.EqOperator;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.node.dql.CollectNode;
+import io.crate.planner.projection.Projection;
+import io.crate.planner.projection.TopNProjection;
 import io.crate.planner.symbol.Function;
+import io.crate.planner.symbol.InputColumn;
 import io.crate.planner.symbol.Literal;
 import io.crate.planner.symbol.Reference;
 import io.crate.planner.symbol.Symbol;
@@ -148,6 +151,22 @@ public class DocLevelCollectTest extends SQLTransportIntegrationTest {
         assertThat((Integer) result[0][0], is(2));
     }
 
+    @Test
+    public void testCollectDocLevelOrderedWithLimit() throws Exception {
+        CollectNode collectNode = new CollectNode("docCollect", routing(TEST_TABLE_NAME));
+        collectNode.toCollect(Arrays.<Symbol>asList(testDocLevelReference));
+        collectNode.maxRowGranularity(RowGranularity.DOC);
+        TopNProjection topN = new TopNProjection(1, 0,
+                Arrays.<Symbol>asList(new InputColumn(0)), new boolean[]{true}, new Boolean[]{null});
+        topN.outputs(Arrays.<Symbol>asList(new InputColumn(0)));
+        collectNode.projections(Arrays.<Projection>asList(topN));
+
+        // the shards only collect their top document
+        Object[][] result = operation.collect(collectNode).get();
+        assertThat(result.length, is(1));
+        assertThat((Integer) result[0][0], is(4));
+    }
+
     @Test
     public void testCollectWithShardAndNodeExpressions() throws Exception {
         Routing routing = routing(TEST_TABLE_NAME);
@@ -39,6 +39,7 @@ import io.crate.operation.Input;
 import io.crate.operation.operator.AndOperator;
 import io.crate.operation.operator.EqOperator;
 import io.crate.operation.operator.OperatorModule;
+import io.crate.operation.projectors.GroupingMemoryAccounting;
 import io.crate.operation.reference.sys.shard.SysShardExpression;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.node.dql.CollectNode;
@@ -84,6 +85,7 @@ import org.elasticsearch.script.ScriptService;
 import org.elasticsearch.search.SearchService;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.TransportService;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -188,6 +190,7 @@ public class LocalDataCollectTest {
 
 
     private final ThreadPool testThreadPool = new ThreadPool(getClass().getSimpleName());
+    private final CollectScheduler testCollectScheduler = new CollectScheduler(ImmutableSettings.EMPTY);
     private final static String TEST_NODE_ID = "test_node";
     private final static String TEST_TABLE_NAME = "test_table";
 
@@ -203,6 +206,8 @@ public class LocalDataCollectTest {
             functionBinder.addBinding(TestFunction.ident).toInstance(new TestFunction());
             bind(Functions.class).asEagerSingleton();
             bind(ThreadPool.class).toInstance(testThreadPool);
+            bind(CollectScheduler.class).toInstance(testCollectScheduler);
+            bind(GroupingMemoryAccounting.class).toInstance(new GroupingMemoryAccounting(ImmutableSettings.EMPTY));
 
             bind(ScriptService.class).toInstance(mock(ScriptService.class));
             bind(SearchService.class).toInstance(mock(SearchService.class));
@@ -288,8 +293,14 @@ public class LocalDataCollectTest {
         }
     }
 
+    @After
+    public void stopCollectScheduler() {
+        testCollectScheduler.stop();
+    }
+
     @Before
     public void configure() {
+        testCollectScheduler.start();
         Injector injector = new ModulesBuilder().add(
                 new OperatorModule(),
                 new TestModule()
@@ -318,8 +329,9 @@ public class LocalDataCollectTest {
         operation = new MapSideDataCollectOperation(
                 injector.getInstance(ClusterService.class),
                 ImmutableSettings.EMPTY,
+                injector.getInstance(GroupingMemoryAccounting.class),
                 mock(TransportActionProvider.class, Answers.RETURNS_DEEP_STUBS.get()),
-                functions, injector.getInstance(ReferenceResolver.class), indicesService, testThreadPool,
+                functions, injector.getInstance(ReferenceResolver.class), indicesService, testCollectScheduler,
                 new CollectServiceResolver(discoveryService,
                     new SystemCollectService(
                             discoveryService,
@@ -25,6 +25,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.crate.executor.transport.TransportActionProvider;
 import io.crate.metadata.*;
+import io.crate.operation.projectors.GroupingMemoryAccounting;
 import io.crate.planner.node.dql.FileUriCollectNode;
 import io.crate.planner.projection.Projection;
 import io.crate.planner.symbol.Literal;
@@ -36,7 +37,8 @@ import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.discovery.DiscoveryService;
 import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.node.settings.NodeSettingsService;
-import org.elasticsearch.threadpool.ThreadPool;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Answers;
 
@@ -55,6 +57,17 @@ import static org.mockito.Mockito.when;
 
 public class MapSideDataCollectOperationTest {
 
+    private final CollectScheduler collectScheduler = new CollectScheduler(ImmutableSettings.EMPTY);
+
+    @Before
+    public void startCollectScheduler() {
+        collectScheduler.start();
+    }
+
+    @After
+    public void stopCollectScheduler() {
+        collectScheduler.stop();
+    }
 
     @Test
     public void testFileUriCollect() throws Exception {
@@ -79,11 +92,12 @@ public class MapSideDataCollectOperationTest {
         MapSideDataCollectOperation collectOperation = new MapSideDataCollectOperation(
                 clusterService,
                 ImmutableSettings.EMPTY,
+                new GroupingMemoryAccounting(ImmutableSettings.EMPTY),
                 mock(TransportActionProvider.class, Answers.RETURNS_DEEP_STUBS.get()),
                 functions,
                 referenceResolver,
                 indicesService,
-                new ThreadPool(ImmutableSettings.builder().put("name", getClass().getName()).build(), null),
+                collectScheduler,
                 new CollectServiceResolver(discoveryService,
                     new SystemCollectService(
                             discoveryService,
@@ -0,0 +1,195 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.collect;
+
+import io.crate.operation.projectors.Projector;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.*;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.store.RAMDirectory;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.search.internal.ContextIndexSearcher;
+import org.elasticsearch.search.internal.SearchContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class ParallelLuceneDocCollectorTest {
+
+    private static final int NUM_SEGMENTS = 4;
+    private static final int NUM_COLLECTORS = 3;
+
+    private RAMDirectory directory;
+    private DirectoryReader reader;
+    private SearchContext searchContext;
+    private ExecutorService executor;
+
+    @Before
+    public void prepare() throws Exception {
+        directory = new RAMDirectory();
+        IndexWriterConfig config = new IndexWriterConfig(Lucene.VERSION, new StandardAnalyzer(Lucene.VERSION));
+        config.setMergePolicy(NoMergePolicy.NO_COMPOUND_FILES);
+        IndexWriter writer = new IndexWriter(directory, config);
+        // every commit creates a new segment as segments are never merged
+        for (int i = 0; i < NUM_SEGMENTS; i++) {
+            Document doc = new Document();
+            doc.add(new StringField("id", String.valueOf(i), Field.Store.NO));
+            writer.addDocument(doc);
+            writer.commit();
+        }
+        writer.close();
+        reader = DirectoryReader.open(directory);
+        assertThat(reader.leaves().size(), is(NUM_SEGMENTS));
+
+        ContextIndexSearcher searcher = mock(ContextIndexSearcher.class);
+        when(searcher.getIndexReader()).thenReturn((IndexReader) reader);
+        when(searcher.createNormalizedWeight(any(Query.class))).thenReturn(mock(Weight.class));
+        searchContext = mock(SearchContext.class);
+        when(searchContext.searcher()).thenReturn(searcher);
+
+        executor = Executors.newFixedThreadPool(NUM_COLLECTORS - 1);
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        executor.shutdownNow();
+        reader.close();
+        directory.close();
+    }
+
+    private LuceneDocCollector collector(Answer<Boolean> collectLeaf) throws Exception {
+        LuceneDocCollector collector = mock(LuceneDocCollector.class);
+        when(collector.searchContext()).thenReturn(searchContext);
+        when(collector.query()).thenReturn(new MatchAllDocsQuery());
+        when(collector.downstream()).thenReturn(mock(Projector.class));
+        when(collector.collectLeaf(any(Weight.class), any(AtomicReaderContext.class))).thenAnswer(collectLeaf);
+        return collector;
+    }
+
+    private Answer<Boolean> countLeaves(final AtomicInteger collectedLeaves, final CountDownLatch otherCollected) {
+        return new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                collectedLeaves.incrementAndGet();
+                otherCollected.countDown();
+                return true;
+            }
+        };
+    }
+
+    @Test
+    public void testSegmentsAreCollectedByMultipleCollectors() throws Exception {
+        final CountDownLatch otherCollected = new CountDownLatch(1);
+        final AtomicInteger firstLeaves = new AtomicInteger(0);
+        final AtomicInteger otherLeaves = new AtomicInteger(0);
+        List<LuceneDocCollector> collectors = new ArrayList<>(NUM_COLLECTORS);
+        // the calling thread waits until one of the other collectors got a segment
+        collectors.add(collector(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                assertThat(otherCollected.await(5, TimeUnit.SECONDS), is(true));
+                firstLeaves.incrementAndGet();
+                return true;
+            }
+        }));
+        for (int i = 1; i < NUM_COLLECTORS; i++) {
+            collectors.add(collector(countLeaves(otherLeaves, otherCollected)));
+        }
+
+        new ParallelLuceneDocCollector(collectors, executor).doCollect();
+
+        // at least one segment was collected by a collector running on the executor
+        assertThat(otherLeaves.get(), greaterThan(0));
+        assertThat(firstLeaves.get() + otherLeaves.get(), is(NUM_SEGMENTS));
+        for (LuceneDocCollector collector : collectors) {
+            verify(collector).startCollect();
+        }
+    }
+
+    @Test
+    public void testDownstreamsAreFinishedBeforeSearchContextIsClosed() throws Exception {
+        CountDownLatch ignored = new CountDownLatch(0);
+        AtomicInteger collectedLeaves = new AtomicInteger(0);
+        List<LuceneDocCollector> collectors = new ArrayList<>(NUM_COLLECTORS);
+        for (int i = 0; i < NUM_COLLECTORS; i++) {
+            collectors.add(collector(countLeaves(collectedLeaves, ignored)));
+        }
+
+        new ParallelLuceneDocCollector(collectors, executor).doCollect();
+
+        assertThat(collectedLeaves.get(), is(NUM_SEGMENTS));
+        for (LuceneDocCollector collector : collectors) {
+            Projector downstream = collector.downstream();
+            InOrder inOrder = inOrder(downstream, searchContext);
+            inOrder.verify(downstream).upstreamFinished();
+            inOrder.verify(searchContext).close();
+        }
+    }
+
+    @Test
+    public void testSearchContextIsClosedIfDownstreamFails() throws Exception {
+        CountDownLatch ignored = new CountDownLatch(0);
+        AtomicInteger collectedLeaves = new AtomicInteger(0);
+        List<LuceneDocCollector> collectors = new ArrayList<>(NUM_COLLECTORS);
+        for (int i = 0; i < NUM_COLLECTORS; i++) {
+            collectors.add(collector(countLeaves(collectedLeaves, ignored)));
+        }
+        Projector failingDownstream = collectors.get(0).downstream();
+        doThrow(new IllegalStateException("finish failed")).when(failingDownstream).upstreamFinished();
+
+        try {
+            new ParallelLuceneDocCollector(collectors, executor).doCollect();
+            fail("expected the failure of the downstream");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("finish failed"));
+        }
+        // the other downstreams are finished anyway
+        for (LuceneDocCollector collector : collectors) {
+            Projector downstream = collector.downstream();
+            verify(downstream).upstreamFinished();
+        }
+        verify(searchContext).close();
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.collect;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.executor.transport.TransportActionProvider;
+import io.crate.metadata.*;
+import io.crate.operation.ImplementationSymbolVisitor;
+import io.crate.operation.aggregation.impl.AggregationImplModule;
+import io.crate.operation.projectors.GroupingMemoryAccounting;
+import io.crate.operation.projectors.ProjectionToProjectorVisitor;
+import io.crate.operation.projectors.Projector;
+import io.crate.operation.projectors.TopN;
+import io.crate.planner.RowGranularity;
+import io.crate.planner.projection.Projection;
+import io.crate.planner.projection.TopNProjection;
+import io.crate.planner.projection.WriterProjection;
+import io.crate.planner.symbol.InputColumn;
+import io.crate.planner.symbol.Literal;
+import io.crate.planner.symbol.Symbol;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.common.inject.AbstractModule;
+import org.elasticsearch.common.inject.Injector;
+import org.elasticsearch.common.inject.ModulesBuilder;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Answers;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class ShardProjectorChainTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ProjectionToProjectorVisitor visitor;
+
+    @Before
+    public void prepare() {
+        ReferenceResolver referenceResolver = new GlobalReferenceResolver(new HashMap<ReferenceIdent, ReferenceImplementation>());
+        Injector injector = new ModulesBuilder()
+                .add(new AggregationImplModule())
+                .add(new AbstractModule() {
+                    @Override
+                    protected void configure() {
+                        bind(Client.class).toInstance(mock(Client.class));
+                    }
+                })
+                .createInjector();
+        Functions functions = injector.getInstance(Functions.class);
+        ImplementationSymbolVisitor symbolVisitor =
+                new ImplementationSymbolVisitor(referenceResolver, functions, RowGranularity.SHARD);
+        visitor = new ProjectionToProjectorVisitor(
+                mock(ClusterService.class),
+                ImmutableSettings.EMPTY,
+                new GroupingMemoryAccounting(ImmutableSettings.EMPTY),
+                mock(TransportActionProvider.class, Answers.RETURNS_DEEP_STUBS.get()),
+                symbolVisitor);
+    }
+
+    @Test
+    public void testProjectionsBeforeShardProjectionRunPerShard() throws Exception {
+        // sorted copy to: rows are sorted and written by every shard
+        TopNProjection topN = new TopNProjection(TopN.NO_LIMIT, TopN.NO_OFFSET,
+                Arrays.<Symbol>asList(new InputColumn(1)),
+                new boolean[]{true},
+                new Boolean[]{null}
+        );
+        topN.outputs(Arrays.<Symbol>asList(new InputColumn(0)));
+        topN.orderByTypes(Arrays.<DataType>asList(DataTypes.INTEGER));
+
+        File file = new File(folder.getRoot(), "out.json");
+        WriterProjection writerProjection = new WriterProjection();
+        writerProjection.uri(Literal.newLiteral(file.getAbsolutePath()));
+        writerProjection.inputs(Arrays.<Symbol>asList(new InputColumn(0)));
+
+        ShardProjectorChain chain = new ShardProjectorChain(
+                1, ImmutableList.<Projection>of(topN, writerProjection), visitor);
+        assertThat(chain.shardProjections().size(), is(2));
+
+        Projector shardProjector = chain.newShardDownstreamProjector(visitor);
+        shardProjector.registerUpstream(null);
+        chain.startProjections();
+        for (int i = 0; i < 3; i++) {
+            shardProjector.setNextRow(i, i);
+        }
+        shardProjector.upstreamFinished();
+
+        Object[][] rows = chain.result().get();
+        assertThat(rows.length, is(1));
+        assertThat((Long) rows[0][0], is(3L));
+        assertThat(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8), contains("[2]", "[1]", "[0]"));
+    }
+}
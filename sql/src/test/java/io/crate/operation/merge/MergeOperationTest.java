@@ -27,6 +27,7 @@ import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.aggregation.AggregationFunction;
 import io.crate.operation.aggregation.impl.AggregationImplModule;
 import io.crate.operation.aggregation.impl.MinimumAggregation;
+import io.crate.operation.projectors.GroupingMemoryAccounting;
 import io.crate.operation.projectors.TopN;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.node.dql.MergeNode;
@@ -105,6 +106,7 @@ public class MergeOperationTest {
         MergeOperation mergeOperation = new MergeOperation(
                 mock(ClusterService.class),
                 ImmutableSettings.EMPTY,
+                new GroupingMemoryAccounting(ImmutableSettings.EMPTY),
                 mock(TransportActionProvider.class, Answers.RETURNS_DEEP_STUBS.get()),
                 symbolVisitor,
                 mergeNode
@@ -140,6 +142,7 @@ public class MergeOperationTest {
         MergeOperation mergeOperation = new MergeOperation(
                 mock(ClusterService.class),
                 ImmutableSettings.EMPTY,
+                new GroupingMemoryAccounting(ImmutableSettings.EMPTY),
                 mock(TransportActionProvider.class, Answers.RETURNS_DEEP_STUBS.get()),
                 symbolVisitor,
                 mergeNode
@@ -163,4 +166,39 @@ public class MergeOperationTest {
         assertThat((Double)mergeResult[0][1], is(2.5d));
     }
 
+    @Test
+    public void testMergeSortedInputs() throws Exception {
+        TopNProjection topNProjection = new TopNProjection(4, 1,
+                Arrays.<Symbol>asList(new InputColumn(0)), new boolean[]{true}, new Boolean[]{null});
+        topNProjection.outputs(Arrays.<Symbol>asList(new InputColumn(1)));
+
+        MergeNode mergeNode = new MergeNode("merge", 3);
+        mergeNode.inputTypes(Arrays.<DataType>asList(DataTypes.LONG, DataTypes.STRING));
+        mergeNode.projections(Arrays.<Projection>asList(topNProjection));
+        mergeNode.sortedInputs(true);
+
+        MergeOperation mergeOperation = new MergeOperation(
+                mock(ClusterService.class),
+                ImmutableSettings.EMPTY,
+                new GroupingMemoryAccounting(ImmutableSettings.EMPTY),
+                mock(TransportActionProvider.class, Answers.RETURNS_DEEP_STUBS.get()),
+                symbolVisitor,
+                mergeNode
+        );
+        // every upstream is sorted descending, nulls first
+        assertTrue(mergeOperation.addRows(new Object[][]{
+                {null, "a"}, {9L, "b"}, {3L, "c"}}));
+        assertTrue(mergeOperation.addRows(new Object[][]{
+                {8L, "d"}, {7L, "e"}, {1L, "f"}}));
+        assertTrue(mergeOperation.addRows(new Object[0][]));
+        mergeOperation.finished();
+
+        Object[][] mergeResult = mergeOperation.result().get();
+        assertThat(mergeResult.length, is(4));
+        assertThat(mergeResult[0].length, is(1));
+        assertThat((String) mergeResult[0][0], is("b"));
+        assertThat((String) mergeResult[1][0], is("d"));
+        assertThat((String) mergeResult[2][0], is("e"));
+        assertThat((String) mergeResult[3][0], is("c"));
+    }
 }
@@ -20,7 +20,9 @@
  */
 package io.crate.operation.operator;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
+import io.crate.metadata.Scalar;
 import io.crate.operation.operator.input.ObjectInput;
 import io.crate.planner.symbol.Function;
 import io.crate.planner.symbol.Literal;
@@ -42,6 +44,7 @@ import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 
@@ -194,4 +197,53 @@ public class InOperatorTest {
         assertNull(op.evaluate(new ObjectInput("something"), new ObjectInput(null)));
     }
 
+    private Scalar<Boolean, Object> compile(DataType setType, Set<?> values) {
+        InOperator op = new InOperator(Operator.generateInfo(InOperator.NAME, DataTypes.INTEGER));
+        return op.compile(ImmutableList.<Symbol>of(new Reference(), Literal.newLiteral(setType, values)));
+    }
+
+    @Test
+    public void testCompileIntegerSet() {
+        Scalar<Boolean, Object> op = compile(INTEGER_SET_TYPE, Sets.newHashSet(1, 2, 4, 8));
+        assertThat(op, instanceOf(InOperator.class));
+        assertTrue(op.evaluate(new ObjectInput(4), new ObjectInput(null)));
+        assertTrue(op.evaluate(new ObjectInput((short) 4), new ObjectInput(null)));
+        assertFalse(op.evaluate(new ObjectInput(128), new ObjectInput(null)));
+        assertFalse(op.evaluate(new ObjectInput(2.0), new ObjectInput(null)));
+        assertNull(op.evaluate(new ObjectInput(null), new ObjectInput(null)));
+    }
+
+    @Test
+    public void testCompileLongSet() {
+        Scalar<Boolean, Object> op = compile(new SetType(DataTypes.LONG), Sets.newHashSet(1L, Long.MAX_VALUE));
+        assertTrue(op.evaluate(new ObjectInput(Long.MAX_VALUE), new ObjectInput(null)));
+        assertTrue(op.evaluate(new ObjectInput(1), new ObjectInput(null)));
+        assertFalse(op.evaluate(new ObjectInput(2L), new ObjectInput(null)));
+    }
+
+    @Test
+    public void testCompileStringSet() {
+        Scalar<Boolean, Object> op = compile(STRING_SET_TYPE,
+                Sets.newHashSet(new BytesRef("alpha"), new BytesRef("bravo")));
+        assertTrue(op.evaluate(new ObjectInput(new BytesRef("bravo")), new ObjectInput(null)));
+        assertTrue(op.evaluate(new ObjectInput("alpha"), new ObjectInput(null)));
+        assertFalse(op.evaluate(new ObjectInput(new BytesRef("charlie")), new ObjectInput(null)));
+    }
+
+    @Test
+    public void testCompileSetWithNull() {
+        InOperator op = new InOperator(Operator.generateInfo(InOperator.NAME, DataTypes.INTEGER));
+        Scalar<Boolean, Object> compiled = op.compile(ImmutableList.<Symbol>of(new Reference(),
+                Literal.newLiteral(INTEGER_SET_TYPE, Sets.newHashSet(1, null))));
+        assertThat(compiled, sameInstance((Scalar<Boolean, Object>) op));
+        assertNull(compiled.evaluate(new ObjectInput(1), new ObjectInput(Sets.newHashSet(1, null))));
+    }
+
+    @Test
+    public void testCompileDoubleSetIsNotSpecialized() {
+        InOperator op = new InOperator(Operator.generateInfo(InOperator.NAME, DataTypes.DOUBLE));
+        Scalar<Boolean, Object> compiled = op.compile(ImmutableList.<Symbol>of(new Reference(),
+                Literal.newLiteral(new SetType(DataTypes.DOUBLE), Sets.newHashSet(1.0, 2.0))));
+        assertThat(compiled, sameInstance((Scalar<Boolean, Object>) op));
+    }
 }
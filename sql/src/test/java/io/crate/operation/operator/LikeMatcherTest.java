@@ -0,0 +1,111 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.operator;
+
+import org.apache.lucene.util.BytesRef;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class LikeMatcherTest {
+
+    private static boolean matches(String pattern, String value) {
+        LikeMatcher matcher = LikeMatcher.compile(pattern);
+        boolean matches = matcher.matches(value);
+        assertThat(matcher.matches(new BytesRef(value)), is(matches));
+        // the matcher must respect the offset of the BytesRef
+        BytesRef shifted = new BytesRef("xx" + value + "yy");
+        shifted.offset = 2;
+        shifted.length -= 4;
+        assertThat(matcher.matches(shifted), is(matches));
+        return matches;
+    }
+
+    @Test
+    public void testKind() throws Exception {
+        assertThat(LikeMatcher.compile("foo").kind(), is(LikeMatcher.Kind.EXACT));
+        assertThat(LikeMatcher.compile("").kind(), is(LikeMatcher.Kind.EXACT));
+        assertThat(LikeMatcher.compile("foo%").kind(), is(LikeMatcher.Kind.PREFIX));
+        assertThat(LikeMatcher.compile("foo%%").kind(), is(LikeMatcher.Kind.PREFIX));
+        assertThat(LikeMatcher.compile("%").kind(), is(LikeMatcher.Kind.PREFIX));
+        assertThat(LikeMatcher.compile("%foo").kind(), is(LikeMatcher.Kind.SUFFIX));
+        assertThat(LikeMatcher.compile("%foo%").kind(), is(LikeMatcher.Kind.CONTAINS));
+        assertThat(LikeMatcher.compile("f%o").kind(), is(LikeMatcher.Kind.REGEX));
+        assertThat(LikeMatcher.compile("fo_").kind(), is(LikeMatcher.Kind.REGEX));
+        assertThat(LikeMatcher.compile("fo\\_%").kind(), is(LikeMatcher.Kind.PREFIX));
+    }
+
+    @Test
+    public void testLiteral() throws Exception {
+        assertThat(LikeMatcher.compile("fo\\%o\\_%").literal(), is("fo%o_"));
+        assertThat(LikeMatcher.compile("%").literal(), is(""));
+        assertThat(LikeMatcher.compile("%fo\\\\o").literal(), is("fo\\o"));
+        assertThat(LikeMatcher.compile("f_o").literal(), is(nullValue()));
+    }
+
+    @Test
+    public void testExact() throws Exception {
+        assertThat(matches("foo", "foo"), is(true));
+        assertThat(matches("foo", "fooo"), is(false));
+        assertThat(matches("", ""), is(true));
+        assertThat(matches("", "a"), is(false));
+    }
+
+    @Test
+    public void testPrefix() throws Exception {
+        assertThat(matches("foo%", "foobar"), is(true));
+        assertThat(matches("foo%", "foo"), is(true));
+        assertThat(matches("foo%", "fo"), is(false));
+        assertThat(matches("%", ""), is(true));
+        assertThat(matches("%", "anything"), is(true));
+    }
+
+    @Test
+    public void testSuffix() throws Exception {
+        assertThat(matches("%bar", "foobar"), is(true));
+        assertThat(matches("%bar", "bar"), is(true));
+        assertThat(matches("%bar", "ar"), is(false));
+        assertThat(matches("%bar", "barfoo"), is(false));
+    }
+
+    @Test
+    public void testContains() throws Exception {
+        assertThat(matches("%oob%", "foobar"), is(true));
+        assertThat(matches("%oob%", "oob"), is(true));
+        assertThat(matches("%oob%", "fooxbar"), is(false));
+        assertThat(matches("%%ipsum%%", "Lorem ipsum dolor"), is(true));
+        assertThat(matches("%ö%", "Schrödinger"), is(true));
+        assertThat(matches("%ö%", "Schrodinger"), is(false));
+    }
+
+    @Test
+    public void testRegex() throws Exception {
+        assertThat(matches("%o_ar", "foobar"), is(true));
+        assertThat(matches("_ö_", "föo"), is(true));
+        assertThat(matches("f%r", "foo\nbar"), is(true));
+        assertThat(matches("f%(o)%r", "f(o)r"), is(true));
+        assertThat(matches("f%[o]%r", "foor"), is(false));
+        assertThat(matches("%i%m", "Lorem ipsum dolor"), is(false));
+    }
+}
@@ -21,6 +21,8 @@
 package io.crate.operation.operator;
 
 import com.google.common.collect.ImmutableList;
+import io.crate.metadata.Scalar;
+import io.crate.operation.Input;
 import io.crate.operation.operator.input.BytesRefInput;
 import io.crate.planner.symbol.Function;
 import io.crate.planner.symbol.Literal;
@@ -30,6 +32,9 @@ import org.apache.lucene.util.BytesRef;
 import org.junit.Test;
 
 import static io.crate.operation.operator.LikeOperator.DEFAULT_ESCAPE;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.*;
 
 public class LikeOperatorTest {
@@ -159,4 +164,29 @@ public class LikeOperatorTest {
         assertNull(op.evaluate(new BytesRefInput("foobarbaz"), brNullValue));
     }
 
+    @Test
+    public void testCompileLiteralPattern() throws Exception {
+        LikeOperator op = new LikeOperator(
+                LikeOperator.generateInfo(LikeOperator.NAME, DataTypes.STRING)
+        );
+        Scalar<Boolean, BytesRef> compiled = op.compile(ImmutableList.<Symbol>of(
+                Literal.newLiteral("foo"), Literal.newLiteral("foo%baz")));
+        assertThat(compiled, not(sameInstance((Scalar<Boolean, BytesRef>) op)));
+        assertThat(compiled, instanceOf(LikeOperator.class));
+
+        Input<BytesRef> ignoredPattern = new BytesRefInput("no match");
+        assertTrue(compiled.evaluate(new BytesRefInput("foobarbaz"), ignoredPattern));
+        assertFalse(compiled.evaluate(new BytesRefInput("foobar"), ignoredPattern));
+        assertNull(compiled.evaluate(new BytesRefInput((BytesRef) null), ignoredPattern));
+    }
+
+    @Test
+    public void testCompileNullPattern() throws Exception {
+        LikeOperator op = new LikeOperator(
+                LikeOperator.generateInfo(LikeOperator.NAME, DataTypes.STRING)
+        );
+        Scalar<Boolean, BytesRef> compiled = op.compile(ImmutableList.<Symbol>of(
+                Literal.newLiteral("foo"), Literal.NULL));
+        assertThat(compiled, sameInstance((Scalar<Boolean, BytesRef>) op));
+    }
 }
@@ -0,0 +1,289 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors;
+
+import io.crate.Streamer;
+import io.crate.executor.TaskResult;
+import io.crate.executor.transport.distributed.DistributedFailureRequest;
+import io.crate.executor.transport.distributed.DistributedResultRequest;
+import io.crate.executor.transport.distributed.DistributedResultResponse;
+import io.crate.executor.transport.merge.TransportMergeNodeAction;
+import io.crate.operation.ProjectorUpstream;
+import io.crate.types.DataTypes;
+import org.elasticsearch.ElasticsearchTimeoutException;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportException;
+import org.elasticsearch.transport.TransportRequest;
+import org.elasticsearch.transport.TransportResponseHandler;
+import org.elasticsearch.transport.TransportService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DistributingProjectorTest {
+
+    private static final long CREDIT_TIMEOUT_MS = 1000;
+
+    private final List<DistributedResultRequest> sentRequests = new ArrayList<>();
+    private final List<String> sentNodes = new ArrayList<>();
+    private final List<TransportResponseHandler> responseHandlers = new ArrayList<>();
+    private final List<DistributedFailureRequest> sentFailures = new ArrayList<>();
+    private final List<DiscoveryNode> downstreams = new ArrayList<>();
+    private TransportService transportService;
+    private ThreadPool threadPool;
+
+    @Before
+    public void prepare() {
+        for (String nodeId : Arrays.asList("n1", "n2")) {
+            DiscoveryNode node = mock(DiscoveryNode.class);
+            when(node.id()).thenReturn(nodeId);
+            downstreams.add(node);
+        }
+        transportService = mock(TransportService.class);
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                sentNodes.add(((DiscoveryNode) invocation.getArguments()[0]).id());
+                sentRequests.add((DistributedResultRequest) invocation.getArguments()[2]);
+                responseHandlers.add((TransportResponseHandler) invocation.getArguments()[3]);
+                return null;
+            }
+        }).when(transportService).submitRequest(any(DiscoveryNode.class),
+                Matchers.same(TransportMergeNodeAction.mergeRowsAction),
+                Matchers.<TransportRequest>any(),
+                any(TransportResponseHandler.class));
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                sentFailures.add((DistributedFailureRequest) invocation.getArguments()[2]);
+                return null;
+            }
+        }).when(transportService).submitRequest(any(DiscoveryNode.class),
+                Matchers.same(TransportMergeNodeAction.failAction),
+                Matchers.<TransportRequest>any(),
+                any(TransportResponseHandler.class));
+        threadPool = mock(ThreadPool.class);
+    }
+
+    private DistributingProjector newProjector(int pageSize) {
+        return new DistributingProjector(UUID.randomUUID(), "upstream", downstreams,
+                new Streamer[]{DataTypes.INTEGER.streamer()}, transportService, threadPool, pageSize, 100, CREDIT_TIMEOUT_MS);
+    }
+
+    @Test
+    public void testSendPagesWhileCollecting() throws Exception {
+        DistributingProjector projector = newProjector(2);
+        projector.registerUpstream(mock(ProjectorUpstream.class));
+        projector.startProjection();
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(projector.setNextRow(i));
+        }
+        int numRows = 0;
+        for (DistributedResultRequest request : sentRequests) {
+            assertThat(request.isLast(), is(false));
+            assertThat(request.rows().length, is(2));
+            numRows += request.rows().length;
+        }
+        int numPages = sentRequests.size();
+        assertTrue(numPages >= 4);
+
+        projector.upstreamFinished();
+        respondAll();
+        assertThat(projector.result().get(), is(TaskResult.EMPTY_RESULT.rows()));
+
+        // one last page per downstream
+        assertThat(sentRequests.size(), is(numPages + 2));
+        for (DistributedResultRequest request : sentRequests.subList(numPages, sentRequests.size())) {
+            assertThat(request.isLast(), is(true));
+            numRows += request.rows().length;
+        }
+        assertThat(numRows, is(10));
+
+        // pages are numbered per downstream
+        Map<String, Integer> pagesPerNode = new HashMap<>();
+        for (int i = 0; i < sentRequests.size(); i++) {
+            DistributedResultRequest request = sentRequests.get(i);
+            assertThat(request.upstreamId(), is("upstream"));
+            Integer expectedPage = pagesPerNode.get(sentNodes.get(i));
+            expectedPage = expectedPage == null ? 0 : expectedPage;
+            assertThat(request.page(), is(expectedPage));
+            pagesPerNode.put(sentNodes.get(i), expectedPage + 1);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void respondAll() {
+        for (TransportResponseHandler handler : responseHandlers) {
+            handler.handleResponse(new DistributedResultResponse());
+        }
+        responseHandlers.clear();
+    }
+
+    @Test
+    public void testResultIsSetAfterLastPagesAreAcknowledged() throws Exception {
+        DistributingProjector projector = newProjector(10);
+        projector.registerUpstream(mock(ProjectorUpstream.class));
+        projector.startProjection();
+        projector.setNextRow(1);
+        projector.upstreamFinished();
+
+        assertThat(sentRequests.size(), is(2));
+        assertFalse(projector.result().isDone());
+
+        responseHandlers.get(0).handleResponse(new DistributedResultResponse());
+        assertFalse(projector.result().isDone());
+
+        responseHandlers.get(1).handleResponse(new DistributedResultResponse());
+        assertTrue(projector.result().isDone());
+    }
+
+    @Test
+    public void testNoRowsSendsEmptyLastPages() throws Exception {
+        DistributingProjector projector = newProjector(10);
+        projector.startProjection();
+
+        assertThat(sentRequests.size(), is(2));
+        for (DistributedResultRequest request : sentRequests) {
+            assertThat(request.page(), is(0));
+            assertThat(request.isLast(), is(true));
+            assertThat(request.rows().length, is(0));
+        }
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        DistributingProjector projector = newProjector(10);
+        projector.registerUpstream(mock(ProjectorUpstream.class));
+        projector.startProjection();
+        projector.setNextRow(1);
+
+        projector.upstreamFailed(new IllegalStateException("dummy"));
+        projector.fail(new IllegalStateException("dummy"));
+
+        assertThat(sentRequests.size(), is(0));
+        assertThat(sentFailures.size(), is(2));
+        for (DistributedFailureRequest request : sentFailures) {
+            assertThat(request.upstreamId(), is("upstream"));
+        }
+        assertThat(projector.setNextRow(2), is(false));
+        assertTrue(projector.result().isDone());
+    }
+
+    @Test
+    public void testRejectedPageIsRetried() throws Exception {
+        TransportService rejectingTransportService = mock(TransportService.class);
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                ((TransportResponseHandler) invocation.getArguments()[3]).handleException(
+                        new TransportException("rejected", new EsRejectedExecutionException("buffer full")));
+                return null;
+            }
+        }).when(rejectingTransportService).submitRequest(any(DiscoveryNode.class),
+                Matchers.same(TransportMergeNodeAction.mergeRowsAction),
+                Matchers.<TransportRequest>any(),
+                any(TransportResponseHandler.class));
+        DistributingProjector projector = new DistributingProjector(UUID.randomUUID(), "upstream",
+                downstreams.subList(0, 1), new Streamer[]{DataTypes.INTEGER.streamer()},
+                rejectingTransportService, threadPool, 1, 1, CREDIT_TIMEOUT_MS);
+        projector.registerUpstream(mock(ProjectorUpstream.class));
+        projector.startProjection();
+
+        assertTrue(projector.setNextRow(1));
+        verify(threadPool).schedule(any(TimeValue.class), eq(ThreadPool.Names.GENERIC), any(Runnable.class));
+        assertFalse(projector.result().isDone());
+    }
+
+    @Test
+    public void testCreditsAreReturnedOnResponse() throws Exception {
+        TransportService respondingTransportService = mock(TransportService.class);
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                sentRequests.add((DistributedResultRequest) invocation.getArguments()[2]);
+                ((TransportResponseHandler) invocation.getArguments()[3]).handleResponse(
+                        new DistributedResultResponse());
+                return null;
+            }
+        }).when(respondingTransportService).submitRequest(any(DiscoveryNode.class),
+                Matchers.same(TransportMergeNodeAction.mergeRowsAction),
+                Matchers.<TransportRequest>any(),
+                any(TransportResponseHandler.class));
+        DistributingProjector projector = new DistributingProjector(UUID.randomUUID(), "upstream",
+                downstreams.subList(0, 1), new Streamer[]{DataTypes.INTEGER.streamer()},
+                respondingTransportService, threadPool, 1, 1, CREDIT_TIMEOUT_MS);
+        projector.registerUpstream(mock(ProjectorUpstream.class));
+        projector.startProjection();
+
+        long started = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(projector.setNextRow(i));
+        }
+        // one page in flight at a time, but none has to wait for the credit timeout
+        assertTrue(System.currentTimeMillis() - started < CREDIT_TIMEOUT_MS);
+        assertThat(sentRequests.size(), is(10));
+    }
+
+    @Test
+    public void testNoPageIsSentWithoutCredit() throws Exception {
+        DistributingProjector projector = new DistributingProjector(UUID.randomUUID(), "upstream",
+                downstreams.subList(0, 1), new Streamer[]{DataTypes.INTEGER.streamer()},
+                transportService, threadPool, 1, 1, 10);
+        projector.registerUpstream(mock(ProjectorUpstream.class));
+        projector.startProjection();
+
+        assertTrue(projector.setNextRow(1));
+        // no response for the first page, the second one fails the job instead of being sent
+        assertFalse(projector.setNextRow(2));
+
+        assertThat(sentRequests.size(), is(1));
+        assertThat(sentFailures.size(), is(1));
+        try {
+            projector.result().get();
+            fail("expected the distributing collect to fail");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(ElasticsearchTimeoutException.class));
+        }
+    }
+}
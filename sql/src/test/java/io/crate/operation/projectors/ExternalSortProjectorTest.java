@@ -0,0 +1,125 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors;
+
+import io.crate.operation.Input;
+import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.collect.InputCollectExpression;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+
+public class ExternalSortProjectorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ExternalSortProjector newProjector(boolean reverse, int limit, int offset, long memoryLimitBytes) {
+        InputCollectExpression<Object> id = new InputCollectExpression<>(0);
+        InputCollectExpression<Object> name = new InputCollectExpression<>(1);
+        return new ExternalSortProjector(
+                new Input<?>[]{name, id},
+                new CollectExpression[]{id, name},
+                1,
+                new int[]{1},
+                new boolean[]{reverse},
+                new Boolean[]{null},
+                new DataType[]{DataTypes.LONG},
+                limit,
+                offset,
+                memoryLimitBytes,
+                folder.getRoot());
+    }
+
+    private Object[][] sort(ExternalSortProjector projector, int numRows) throws Exception {
+        CollectingProjector collectingProjector = new CollectingProjector();
+        projector.downstream(collectingProjector);
+        projector.registerUpstream(null);
+        collectingProjector.startProjection();
+        projector.startProjection();
+        for (int i = 0; i < numRows; i++) {
+            // 0, 7, 14, ... modulo numRows are all distinct if numRows isn't a multiple of 7
+            long id = (i * 7L) % numRows;
+            projector.setNextRow(id, new BytesRef("name" + id));
+        }
+        projector.setNextRow(null, null);
+        projector.upstreamFinished();
+        return collectingProjector.result().get();
+    }
+
+    @Test
+    public void testSortInMemory() throws Exception {
+        Object[][] rows = sort(newProjector(false, TopN.NO_LIMIT, TopN.NO_OFFSET, 1024 * 1024), 100);
+        assertThat(rows.length, is(101));
+        for (int i = 0; i < 100; i++) {
+            assertThat(rows[i].length, is(1));
+            assertThat((BytesRef) rows[i][0], is(new BytesRef("name" + i)));
+        }
+        // nulls are last in ascending order
+        assertThat(rows[100][0], nullValue());
+        assertThat(folder.getRoot().list().length, is(0));
+    }
+
+    @Test
+    public void testSortWithSpilledRuns() throws Exception {
+        ExternalSortProjector projector = newProjector(true, 50000, 10, 64 * 1024);
+        CollectingProjector collectingProjector = new CollectingProjector();
+        projector.downstream(collectingProjector);
+        projector.registerUpstream(null);
+        collectingProjector.startProjection();
+        projector.startProjection();
+        int numRows = 20000;
+        for (int i = 0; i < numRows; i++) {
+            long id = (i * 7L) % numRows;
+            projector.setNextRow(id, new BytesRef("name" + id));
+        }
+        assertThat(projector.numRuns() > 1, is(true));
+        projector.setNextRow(null, null);
+        projector.upstreamFinished();
+
+        Object[][] rows = collectingProjector.result().get();
+        // nulls first in descending order, the first ten rows are skipped
+        assertThat(rows.length, is(numRows + 1 - 10));
+        for (int i = 0; i < rows.length; i++) {
+            assertThat((BytesRef) rows[i][0], is(new BytesRef("name" + (numRows - 10 - i))));
+        }
+        // the runs are deleted after they've been merged
+        assertThat(folder.getRoot().list().length, is(0));
+    }
+
+    @Test
+    public void testLimit() throws Exception {
+        Object[][] rows = sort(newProjector(false, 5, 3, 1), 99);
+        assertThat(rows.length, is(5));
+        for (int i = 0; i < 5; i++) {
+            assertThat((BytesRef) rows[i][0], is(new BytesRef("name" + (i + 3))));
+        }
+        assertThat(folder.getRoot().list().length, is(0));
+    }
+}
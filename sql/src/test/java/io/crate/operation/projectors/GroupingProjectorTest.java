@@ -1,30 +1,50 @@
 package io.crate.operation.projectors;
 
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import io.crate.metadata.FunctionIdent;
 import io.crate.metadata.FunctionInfo;
 import io.crate.metadata.Functions;
 import io.crate.operation.AggregationContext;
+import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.Input;
+import io.crate.operation.OrdinalsInput;
 import io.crate.operation.aggregation.AggregationFunction;
 import io.crate.operation.aggregation.impl.AggregationImplModule;
 import io.crate.operation.aggregation.impl.CountAggregation;
 import io.crate.operation.collect.CollectExpression;
+import io.crate.planner.RowGranularity;
 import io.crate.planner.symbol.Aggregation;
+import io.crate.planner.symbol.InputColumn;
 import io.crate.planner.symbol.Symbol;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.inject.ModulesBuilder;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.isOneOf;
 import static org.junit.Assert.assertThat;
 
 public class GroupingProjectorTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     /**
      * NOTE:
      *
@@ -35,7 +55,7 @@ public class GroupingProjectorTest {
     public void testAggregationToPartial() throws ExecutionException, InterruptedException {
 
         ImmutableList<Input<?>> keys = ImmutableList.<Input<?>>of(
-                new DummyInput("one", "one", "three"));
+                new DummyInput<>("one", "one", "three"));
 
 
         FunctionInfo countInfo = new FunctionInfo(new FunctionIdent("count", ImmutableList.<DataType>of()), DataTypes.LONG);
@@ -69,18 +89,429 @@ public class GroupingProjectorTest {
         assertThat(rows[0][1], instanceOf(CountAggregation.CountAggState.class));
     }
 
-    class DummyInput implements Input<String> {
+    private Object[][] countGroupedBy(Input<?> key, DataType keyType, int numRows)
+            throws ExecutionException, InterruptedException {
+        return countGroupedBy(ImmutableList.<Input<?>>of(key), ImmutableList.of(keyType), null, 0, numRows);
+    }
+
+    private GroupingProjector countProjector(List<Input<?>> keys, List<DataType> keyTypes) {
+        FunctionInfo countInfo = new FunctionInfo(new FunctionIdent("count", ImmutableList.<DataType>of()), DataTypes.LONG);
+        Aggregation countAggregation =
+                new Aggregation(countInfo, ImmutableList.<Symbol>of(), Aggregation.Step.ITER, Aggregation.Step.FINAL);
+
+        Functions functions = new ModulesBuilder()
+                .add(new AggregationImplModule()).createInjector().getInstance(Functions.class);
+
+        AggregationContext aggregationContext = new AggregationContext(
+                (AggregationFunction)functions.get(countInfo.ident()),
+                countAggregation);
+
+        return new GroupingProjector(
+                keys,
+                keyTypes,
+                new CollectExpression[0],
+                new AggregationContext[] { aggregationContext }
+        );
+    }
+
+    private Object[][] countGroupedBy(List<Input<?>> keys,
+                                      List<DataType> keyTypes,
+                                      @Nullable OrdinalsInput<?> ordinalsInput,
+                                      long memoryLimitBytes,
+                                      int numRows) throws ExecutionException, InterruptedException {
+        GroupingProjector projector = countProjector(keys, keyTypes);
+        if (ordinalsInput != null) {
+            projector.groupOnOrdinals(ordinalsInput);
+        }
+        projector.spillToDisk(new GroupingMemoryAccounting(memoryLimitBytes), folder.getRoot());
+        CollectingProjector collectingProjector = new CollectingProjector();
+        projector.registerUpstream(null);
+        projector.downstream(collectingProjector);
+
+        projector.startProjection();
+        for (int i = 0; i < numRows; i++) {
+            projector.setNextRow();
+        }
+        projector.upstreamFinished();
+        Object[][] rows = collectingProjector.result().get();
+        final int countIdx = keys.size();
+        Arrays.sort(rows, new Comparator<Object[]>() {
+            @Override
+            public int compare(Object[] o1, Object[] o2) {
+                return ((Long) o2[countIdx]).compareTo((Long) o1[countIdx]);
+            }
+        });
+        return rows;
+    }
+
+    @Test
+    public void testGroupByLongKey() throws ExecutionException, InterruptedException {
+        Object[][] rows = countGroupedBy(
+                new DummyInput<>(1L, 2L, null, 1L, 1L, null), DataTypes.LONG, 6);
+        assertThat(rows.length, is(3));
+        assertThat((Long) rows[0][0], is(1L));
+        assertThat((Long) rows[0][1], is(3L));
+        assertThat(rows[1][0], is(nullValue()));
+        assertThat((Long) rows[1][1], is(2L));
+        assertThat((Long) rows[2][0], is(2L));
+        assertThat((Long) rows[2][1], is(1L));
+    }
+
+    @Test
+    public void testGroupByIntegerKey() throws ExecutionException, InterruptedException {
+        Object[][] rows = countGroupedBy(
+                new DummyInput<>(7, 7, 3), DataTypes.INTEGER, 3);
+        assertThat(rows.length, is(2));
+        assertThat((Integer) rows[0][0], is(7));
+        assertThat((Long) rows[0][1], is(2L));
+        assertThat((Integer) rows[1][0], is(3));
+    }
+
+    @Test
+    public void testGroupByDoubleKey() throws ExecutionException, InterruptedException {
+        Object[][] rows = countGroupedBy(
+                new DummyInput<>(Double.NaN, 0.5, Double.NaN, Double.NaN), DataTypes.DOUBLE, 4);
+        assertThat(rows.length, is(2));
+        assertThat(((Double) rows[0][0]).isNaN(), is(true));
+        assertThat((Long) rows[0][1], is(3L));
+        assertThat((Double) rows[1][0], is(0.5));
+    }
+
+    @Test
+    public void testGroupByBytesRefKey() throws ExecutionException, InterruptedException {
+        // re-use the same BytesRef instance like the shard collectors may do
+        final BytesRef shared = new BytesRef();
+        final String[] values = new String[] { "foo", "bar", "foo" };
+        Input<BytesRef> key = new Input<BytesRef>() {
+            int idx = 0;
+
+            @Override
+            public BytesRef value() {
+                shared.copyChars(values[idx++]);
+                return shared;
+            }
+        };
+        Object[][] rows = countGroupedBy(key, DataTypes.STRING, 3);
+        assertThat(rows.length, is(2));
+        assertThat((BytesRef) rows[0][0], is(new BytesRef("foo")));
+        assertThat((Long) rows[0][1], is(2L));
+        assertThat((BytesRef) rows[1][0], is(new BytesRef("bar")));
+    }
+
+    @Test
+    public void testGroupByBytesRefKeyTooLongForBytesRefHash() throws ExecutionException, InterruptedException {
+        char[] chars = new char[40000];
+        Arrays.fill(chars, 'x');
+        BytesRef longKey = new BytesRef(new String(chars));
+        Object[][] rows = countGroupedBy(
+                new DummyInput<>(longKey, new BytesRef("foo"), longKey, null), DataTypes.STRING, 4);
+        assertThat(rows.length, is(3));
+        assertThat((BytesRef) rows[0][0], is(longKey));
+        assertThat((Long) rows[0][1], is(2L));
+    }
+
+    @Test
+    public void testGroupByBorrowedKeysOfUnknownType() throws ExecutionException, InterruptedException {
+        final BytesRef shared = new BytesRef();
+        final String[] values = new String[] { "foo", "bar", "foo", "bar", "baz" };
+        Input<BytesRef> key = new Input<BytesRef>() {
+            int idx = 0;
+
+            @Override
+            public BytesRef value() {
+                shared.copyChars(values[idx++]);
+                return shared;
+            }
+        };
+        // keys of an unknown type are grouped in a HashMap which has to copy borrowed keys
+        Object[][] rows = countGroupedBy(
+                ImmutableList.<Input<?>>of(key), Arrays.asList((DataType) null), null, 0, 5);
+        assertThat(rows.length, is(3));
+        assertThat((BytesRef) rows[0][0], isOneOf(new BytesRef("foo"), new BytesRef("bar")));
+        assertThat((Long) rows[0][1], is(2L));
+        assertThat((BytesRef) rows[2][0], is(new BytesRef("baz")));
+        assertThat((Long) rows[2][1], is(1L));
+    }
+
+    @Test
+    public void testAcceptsBorrowedValues() throws Exception {
+        Functions functions = new ModulesBuilder()
+                .add(new AggregationImplModule()).createInjector().getInstance(Functions.class);
+        FunctionInfo countInfo = new FunctionInfo(
+                new FunctionIdent("count", ImmutableList.<DataType>of(DataTypes.STRING)), DataTypes.LONG);
+        FunctionInfo maxInfo = new FunctionInfo(
+                new FunctionIdent("max", ImmutableList.<DataType>of(DataTypes.STRING)), DataTypes.STRING);
+        AggregationContext count = new AggregationContext(
+                (AggregationFunction) functions.get(countInfo.ident()),
+                new Aggregation(countInfo, ImmutableList.<Symbol>of(new InputColumn(0)),
+                        Aggregation.Step.ITER, Aggregation.Step.FINAL));
+        AggregationContext max = new AggregationContext(
+                (AggregationFunction) functions.get(maxInfo.ident()),
+                new Aggregation(maxInfo, ImmutableList.<Symbol>of(new InputColumn(0)),
+                        Aggregation.Step.ITER, Aggregation.Step.FINAL));
+        List<Input<?>> keys = ImmutableList.<Input<?>>of(new DummyInput<>(1L));
+
+        // count doesn't keep its inputs, the max state is the last seen maximum string
+        assertThat(new GroupingProjector(keys, new CollectExpression[0],
+                new AggregationContext[]{count}).acceptsBorrowedValues(), is(true));
+        assertThat(new GroupingProjector(keys, new CollectExpression[0],
+                new AggregationContext[]{count, max}).acceptsBorrowedValues(), is(false));
+    }
+
+    @Test
+    public void testGroupByPackedKeys() throws ExecutionException, InterruptedException {
+        Object[][] rows = countGroupedBy(
+                ImmutableList.<Input<?>>of(
+                        new DummyInput<>(1L, 1L, 1L, 2L, null, null, null),
+                        new DummyInput<>(new BytesRef("a"), new BytesRef("a"), new BytesRef("b"),
+                                new BytesRef("a"), null, null, null),
+                        new DummyInput<>(true, true, true, true, false, false, false)),
+                ImmutableList.<DataType>of(DataTypes.LONG, DataTypes.STRING, DataTypes.BOOLEAN),
+                null,
+                0,
+                7);
+        assertThat(rows.length, is(4));
+        assertThat(rows[0][0], is(nullValue()));
+        assertThat(rows[0][1], is(nullValue()));
+        assertThat((Boolean) rows[0][2], is(false));
+        assertThat((Long) rows[0][3], is(3L));
+        assertThat((Long) rows[1][0], is(1L));
+        assertThat((BytesRef) rows[1][1], is(new BytesRef("a")));
+        assertThat((Boolean) rows[1][2], is(true));
+        assertThat((Long) rows[1][3], is(2L));
+    }
+
+    @Test
+    public void testGroupByPackedKeysTooLongForBytesRefHash() throws ExecutionException, InterruptedException {
+        char[] chars = new char[40000];
+        Arrays.fill(chars, 'x');
+        BytesRef longKey = new BytesRef(new String(chars));
+        Object[][] rows = countGroupedBy(
+                ImmutableList.<Input<?>>of(
+                        new DummyInput<>(1L, 1L, 1L, 2L),
+                        new DummyInput<>(longKey, longKey, new BytesRef("a"), longKey)),
+                ImmutableList.<DataType>of(DataTypes.LONG, DataTypes.STRING),
+                null,
+                0,
+                4);
+        assertThat(rows.length, is(3));
+        assertThat((Long) rows[0][0], is(1L));
+        assertThat((BytesRef) rows[0][1], is(longKey));
+        assertThat((Long) rows[0][2], is(2L));
+    }
+
+    @Test
+    public void testGroupOnOrdinals() throws ExecutionException, InterruptedException {
+        final String[] values = new String[] { "foo", "bar", null, "foo", "foo" };
+        final List<BytesRef> dictionary = ImmutableList.of(new BytesRef("bar"), new BytesRef("foo"));
+        final AtomicInteger lookups = new AtomicInteger(0);
+        OrdinalsInput<BytesRef> ordinalsInput = new OrdinalsInput<BytesRef>() {
+            int idx = -1;
+
+            @Override
+            public long ordinal() {
+                String value = values[++idx];
+                return value == null ? MISSING_ORDINAL : dictionary.indexOf(new BytesRef(value));
+            }
+
+            @Override
+            public BytesRef lookupOrdinal(long ordinal) {
+                lookups.incrementAndGet();
+                return dictionary.get((int) ordinal);
+            }
+
+            @Override
+            public BytesRef value() {
+                throw new AssertionError("the key must not be resolved per row");
+            }
+        };
+        Object[][] rows = countGroupedBy(
+                ImmutableList.<Input<?>>of(ordinalsInput),
+                ImmutableList.<DataType>of(DataTypes.STRING),
+                ordinalsInput,
+                0,
+                values.length);
+        assertThat(rows.length, is(3));
+        assertThat((BytesRef) rows[0][0], is(new BytesRef("foo")));
+        assertThat((Long) rows[0][1], is(3L));
+        assertThat(lookups.get(), is(2));
+    }
+
+    @Test
+    public void testSpillToDisk() throws ExecutionException, InterruptedException {
+        // a limit of 1 byte spills the groups after every new group
+        Object[][] rows = countGroupedBy(
+                ImmutableList.<Input<?>>of(new DummyInput<>(1L, 2L, 1L, 3L, 1L, 2L, null)),
+                ImmutableList.<DataType>of(DataTypes.LONG),
+                null,
+                1,
+                7);
+        assertThat(rows.length, is(4));
+        assertThat((Long) rows[0][0], is(1L));
+        assertThat((Long) rows[0][1], is(3L));
+        assertThat((Long) rows[1][0], is(2L));
+        assertThat((Long) rows[1][1], is(2L));
+        assertThat((Long) rows[2][1], is(1L));
+        assertThat((Long) rows[3][1], is(1L));
+
+        // the runs are deleted after they've been merged
+        assertThat(folder.getRoot().list().length, is(0));
+    }
+
+    @Test
+    public void testSpilledRunsAreDeletedOnFailure() throws Exception {
+        GroupingMemoryAccounting memoryAccounting = new GroupingMemoryAccounting(1);
+        GroupingProjector projector = countProjector(
+                ImmutableList.<Input<?>>of(new DummyInput<>(1L, 2L, 3L)), ImmutableList.<DataType>of(DataTypes.LONG));
+        projector.spillToDisk(memoryAccounting, folder.getRoot());
+        CollectingProjector collectingProjector = new CollectingProjector();
+        projector.registerUpstream(null);
+        projector.downstream(collectingProjector);
+
+        projector.startProjection();
+        for (int i = 0; i < 3; i++) {
+            projector.setNextRow();
+        }
+        assertThat(folder.getRoot().list().length, greaterThan(0));
+
+        projector.upstreamFailed(new IllegalStateException("dummy"));
+        assertThat(folder.getRoot().list().length, is(0));
+        assertThat(memoryAccounting.reservedBytes(), is(0L));
+    }
+
+    @Test
+    public void testMemoryLimitIsSharedByAllProjectors() throws Exception {
+        GroupingMemoryAccounting memoryAccounting = new GroupingMemoryAccounting(32 * 1024);
+        Long[] values = new Long[200];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) i;
+        }
+        // the first projector takes most of the memory
+        GroupingProjector first = countProjector(
+                ImmutableList.<Input<?>>of(new DummyInput<>(values)), ImmutableList.<DataType>of(DataTypes.LONG));
+        first.spillToDisk(memoryAccounting, folder.newFolder());
+        first.registerUpstream(null);
+        first.downstream(new CollectingProjector());
+        first.startProjection();
+        for (int i = 0; i < values.length; i++) {
+            first.setNextRow();
+        }
+        long reservedByFirst = memoryAccounting.reservedBytes();
+        assertThat(reservedByFirst, greaterThan(0L));
+
+        // the second one gets the rest and has to spill
+        File secondSpillDirectory = folder.newFolder();
+        GroupingProjector second = countProjector(
+                ImmutableList.<Input<?>>of(new DummyInput<>(values)), ImmutableList.<DataType>of(DataTypes.LONG));
+        second.spillToDisk(memoryAccounting, secondSpillDirectory);
+        CollectingProjector collectingProjector = new CollectingProjector();
+        second.registerUpstream(null);
+        second.downstream(collectingProjector);
+        second.startProjection();
+        for (int i = 0; i < values.length; i++) {
+            second.setNextRow();
+        }
+        assertThat(secondSpillDirectory.list().length, greaterThan(0));
+        second.upstreamFinished();
+        assertThat(collectingProjector.result().get().length, is(values.length));
+        assertThat(memoryAccounting.reservedBytes(), is(reservedByFirst));
+
+        first.upstreamFinished();
+        assertThat(memoryAccounting.reservedBytes(), is(0L));
+    }
+
+    @Test
+    public void testMemoryOfStringKeysIsAccounted() throws Exception {
+        char[] chars = new char[1000];
+        Arrays.fill(chars, 'x');
+        // reserves memory in chunks of 1024 bytes
+        GroupingMemoryAccounting memoryAccounting = new GroupingMemoryAccounting(64 * 1024);
+        GroupingProjector projector = countProjector(
+                ImmutableList.<Input<?>>of(new DummyInput<>(new BytesRef(new String(chars)))),
+                ImmutableList.<DataType>of(DataTypes.STRING));
+        projector.spillToDisk(memoryAccounting, folder.getRoot());
+        projector.registerUpstream(null);
+        projector.downstream(new CollectingProjector());
+        projector.startProjection();
+        projector.setNextRow();
+
+        assertThat(memoryAccounting.reservedBytes(), greaterThan(1024L));
+        projector.upstreamFinished();
+        assertThat(memoryAccounting.reservedBytes(), is(0L));
+    }
+
+    @Test
+    public void testPartitionPerThread() throws Exception {
+        FunctionInfo countInfo = new FunctionInfo(new FunctionIdent("count", ImmutableList.<DataType>of()), DataTypes.LONG);
+        final Aggregation countAggregation =
+                new Aggregation(countInfo, ImmutableList.<Symbol>of(), Aggregation.Step.ITER, Aggregation.Step.FINAL);
+        Functions functions = new ModulesBuilder()
+                .add(new AggregationImplModule()).createInjector().getInstance(Functions.class);
+        final ImplementationSymbolVisitor symbolVisitor = new ImplementationSymbolVisitor(null, functions, RowGranularity.NODE);
+        Supplier<ImplementationSymbolVisitor.Context> contextSupplier = new Supplier<ImplementationSymbolVisitor.Context>() {
+            @Override
+            public ImplementationSymbolVisitor.Context get() {
+                ImplementationSymbolVisitor.Context context = symbolVisitor.process(new InputColumn(0));
+                symbolVisitor.process(countAggregation, context);
+                return context;
+            }
+        };
+
+        ImplementationSymbolVisitor.Context context = contextSupplier.get();
+        final GroupingProjector projector = new GroupingProjector(
+                context.topLevelInputs(),
+                ImmutableList.<DataType>of(DataTypes.LONG),
+                context.collectExpressions().toArray(new CollectExpression[context.collectExpressions().size()]),
+                context.aggregations()
+        );
+        projector.partitionPerThread(contextSupplier);
+        CollectingProjector collectingProjector = new CollectingProjector();
+        projector.downstream(collectingProjector);
+
+        int numThreads = 4;
+        for (int i = 0; i < numThreads; i++) {
+            projector.registerUpstream(null);
+        }
+        projector.startProjection();
+        Thread[] threads = new Thread[numThreads];
+        for (int t = 0; t < numThreads; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (long i = 0; i < 1000; i++) {
+                        projector.setNextRow(i % 10);
+                    }
+                    projector.upstreamFinished();
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Object[][] rows = collectingProjector.result().get();
+        assertThat(rows.length, is(10));
+        for (Object[] row : rows) {
+            assertThat((Long) row[1], is(400L));
+        }
+        // the threads don't keep the partitions of a finished projector
+        assertThat(projector.numThreadPartitions(), is(0));
+    }
+
+    class DummyInput<T> implements Input<T> {
 
-        private final String[] values;
+        private final T[] values;
         private int idx;
 
-        DummyInput(String... values)  {
+        @SafeVarargs
+        DummyInput(T... values)  {
             this.values = values;
             this.idx = 0;
         }
 
         @Override
-        public String value() {
+        public T value() {
             return values[idx++];
         }
     }
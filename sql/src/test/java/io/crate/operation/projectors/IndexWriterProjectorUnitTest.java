@@ -31,6 +31,7 @@ import org.elasticsearch.action.admin.indices.create.TransportCreateIndexAction;
 import org.elasticsearch.action.bulk.TransportShardBulkAction;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.xcontent.XContentHelper;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -40,8 +41,11 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.util.Arrays;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
 
 public class IndexWriterProjectorUnitTest {
@@ -125,4 +129,33 @@ public class IndexWriterProjectorUnitTest {
         indexWriter.setNextRow(null, new BytesRef("{\"y\": \"x\"}"));
         indexWriter.upstreamFinished();
     }
+
+    @Test
+    public void testColumnSourceOfFieldDataValues() throws Throwable {
+        InputCollectExpression<Object> idInput = new InputCollectExpression<>(0);
+        InputCollectExpression<Object> nameInput = new InputCollectExpression<>(1);
+        ColumnIndexWriterProjector indexWriter = new ColumnIndexWriterProjector(
+                clusterService,
+                ImmutableSettings.EMPTY,
+                mock(TransportShardBulkAction.class),
+                mock(TransportCreateIndexAction.class),
+                "bulk_import",
+                Arrays.asList(ID_IDENT),
+                Arrays.<Input<?>>asList(idInput),
+                ImmutableList.<Input<?>>of(),
+                null,
+                null,
+                Arrays.asList(ID_IDENT, new ColumnIdent("name")),
+                Arrays.<Input<?>>asList(idInput, nameInput),
+                new CollectExpression[]{ idInput, nameInput },
+                20
+        );
+        // string columns collected from field data are BytesRefs
+        idInput.setNextRow(1L, new BytesRef("Arthur"));
+        nameInput.setNextRow(1L, new BytesRef("Arthur"));
+
+        Map<String, Object> source = XContentHelper.convertToMap(indexWriter.generateSource(), false).v2();
+        assertThat(source.get("id"), is((Object) 1));
+        assertThat(source.get("name"), is((Object) "Arthur"));
+    }
 }
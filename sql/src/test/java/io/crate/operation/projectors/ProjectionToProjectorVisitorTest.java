@@ -21,6 +21,7 @@
 
 package io.crate.operation.projectors;
 
+import io.crate.Constants;
 import io.crate.executor.transport.TransportActionProvider;
 import io.crate.metadata.*;
 import io.crate.operation.ImplementationSymbolVisitor;
@@ -85,6 +86,7 @@ public class ProjectionToProjectorVisitorTest {
         visitor = new ProjectionToProjectorVisitor(
                 mock(ClusterService.class),
                 ImmutableSettings.EMPTY,
+                new GroupingMemoryAccounting(ImmutableSettings.EMPTY),
                 mock(TransportActionProvider.class, Answers.RETURNS_DEEP_STUBS.get()),
                 symbolvisitor);
 
@@ -118,6 +120,31 @@ public class ProjectionToProjectorVisitorTest {
         assertThat((Integer)rows[0][1], is(42));
     }
 
+    @Test
+    public void testExternalSortProjectionWithoutLimit() throws ExecutionException, InterruptedException {
+        TopNProjection projection = new TopNProjection(TopN.NO_LIMIT, 0,
+                Arrays.<Symbol>asList(new InputColumn(0)),
+                new boolean[]{true},
+                new Boolean[]{null}
+        );
+        projection.outputs(Arrays.<Symbol>asList(new InputColumn(1)));
+        Projector projector = visitor.process(projection);
+        assertThat(projector, instanceOf(ExternalSortProjector.class));
+
+        CollectingProjector collectingProjector = new CollectingProjector();
+        projector.downstream(collectingProjector);
+        projector.registerUpstream(null);
+        collectingProjector.startProjection();
+        projector.startProjection();
+        for (int i = 0; i < Constants.DEFAULT_SELECT_LIMIT + 10; i++) {
+            assertThat(projector.setNextRow(i, i), is(true));
+        }
+        projector.upstreamFinished();
+        Object[][] rows = collectingProjector.result().get();
+        assertThat(rows.length, is(Constants.DEFAULT_SELECT_LIMIT + 10));
+        assertThat((Integer) rows[0][0], is(Constants.DEFAULT_SELECT_LIMIT + 9));
+    }
+
     @Test
     public void testSortingTopNProjection() throws ExecutionException, InterruptedException {
         TopNProjection projection = new TopNProjection(10, 0,
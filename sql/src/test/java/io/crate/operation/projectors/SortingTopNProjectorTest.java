@@ -25,10 +25,16 @@ import io.crate.operation.Input;
 import io.crate.operation.collect.CollectExpression;
 import io.crate.operation.collect.InputCollectExpression;
 import io.crate.planner.symbol.Literal;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
 import org.junit.Test;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
 import static org.hamcrest.number.OrderingComparison.lessThanOrEqualTo;
 import static org.junit.Assert.assertNull;
 
@@ -353,4 +359,107 @@ public class SortingTopNProjectorTest {
         assertThat(iterateLength, is(20));
 
     }
+
+    private Object[][] sortTyped(DataType type,
+                                 boolean reverse,
+                                 Boolean nullFirst,
+                                 int limit,
+                                 Object... values) throws Exception {
+        Input<?> input = new InputCollectExpression<>(0);
+        SortingTopNProjector projector = new SortingTopNProjector(
+                new Input<?>[]{input},
+                new CollectExpression[]{(CollectExpression<?>) input},
+                1,
+                new int[]{0},
+                new boolean[]{reverse},
+                new Boolean[]{nullFirst},
+                new DataType[]{type},
+                limit,
+                TopN.NO_OFFSET);
+        projector.registerUpstream(null);
+        projector.startProjection();
+        for (Object value : values) {
+            projector.setNextRow(value);
+        }
+        projector.upstreamFinished();
+        return projector.result().get();
+    }
+
+    @Test
+    public void testTypedLongOrderByDesc() throws Exception {
+        Object[][] rows = sortTyped(DataTypes.LONG, true, null, 3, 5L, null, 3L, 10L, null, 7L);
+        assertThat(rows.length, is(3));
+        assertThat(rows[0][0], nullValue());
+        assertThat(rows[1][0], nullValue());
+        assertThat((Long) rows[2][0], is(10L));
+
+        rows = sortTyped(DataTypes.INTEGER, true, false, 3, 5, null, 3, 10, null, 7);
+        assertThat((Integer) rows[0][0], is(10));
+        assertThat((Integer) rows[1][0], is(7));
+        assertThat((Integer) rows[2][0], is(5));
+    }
+
+    @Test
+    public void testTypedDoubleOrderByAsc() throws Exception {
+        Object[][] rows = sortTyped(DataTypes.DOUBLE, false, null, 3, 0.5d, -1.5d, null, 2.0d, -0.0d);
+        assertThat(rows.length, is(3));
+        assertThat((Double) rows[0][0], is(-1.5d));
+        assertThat((Double) rows[1][0], is(-0.0d));
+        assertThat((Double) rows[2][0], is(0.5d));
+
+        rows = sortTyped(DataTypes.DOUBLE, false, true, 2, 0.5d, null, -1.5d);
+        assertThat(rows[0][0], nullValue());
+        assertThat((Double) rows[1][0], is(-1.5d));
+    }
+
+    @Test
+    public void testTypedStringOrderBy() throws Exception {
+        Object[][] rows = sortTyped(DataTypes.STRING, false, null, 10,
+                new BytesRef("b"), null, new BytesRef("a"), new BytesRef("ab"));
+        assertThat(rows.length, is(4));
+        assertThat((BytesRef) rows[0][0], is(new BytesRef("a")));
+        assertThat((BytesRef) rows[1][0], is(new BytesRef("ab")));
+        assertThat((BytesRef) rows[2][0], is(new BytesRef("b")));
+        assertThat(rows[3][0], nullValue());
+
+        rows = sortTyped(DataTypes.STRING, true, null, 2,
+                new BytesRef("b"), new BytesRef("a"), new BytesRef("c"));
+        assertThat((BytesRef) rows[0][0], is(new BytesRef("c")));
+        assertThat((BytesRef) rows[1][0], is(new BytesRef("b")));
+    }
+
+    @Test
+    public void testRowsLosingAgainstTopAreNotEvaluated() throws Exception {
+        final AtomicInteger evaluated = new AtomicInteger(0);
+        Input<Object> countingInput = new Input<Object>() {
+            @Override
+            public Object value() {
+                evaluated.incrementAndGet();
+                return true;
+            }
+        };
+        SortingTopNProjector projector = new SortingTopNProjector(
+                new Input<?>[]{countingInput, INPUT},
+                new CollectExpression[]{(CollectExpression<?>) INPUT},
+                1,
+                new int[]{1},
+                new boolean[]{false},
+                new Boolean[]{null},
+                new DataType[]{DataTypes.INTEGER},
+                2,
+                TopN.NO_OFFSET);
+        projector.registerUpstream(null);
+        projector.startProjection();
+        for (int i = 0; i < 10; i++) {
+            projector.setNextRow(i);
+        }
+        // only the rows which made it into the queue are evaluated completely
+        assertThat(evaluated.get(), is(2));
+        projector.setNextRow(-1);
+        assertThat(evaluated.get(), is(3));
+
+        projector.upstreamFinished();
+        Object[][] rows = projector.result().get();
+        assertThat(rows.length, is(2));
+    }
 }
@@ -25,6 +25,7 @@ import com.google.common.collect.ImmutableSet;
 import io.crate.metadata.ColumnIdent;
 import io.crate.operation.Input;
 import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.collect.InputCollectExpression;
 import io.crate.testing.TestingHelpers;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.settings.ImmutableSettings;
@@ -80,6 +81,34 @@ public class WriterProjectorTest {
                 "input line 04\n", TestingHelpers.readFile(uri));
     }
 
+    @Test
+    public void testWriteColumnsFromFieldData() throws Exception {
+        String uri = folder.newFile("out.json").getAbsolutePath();
+        InputCollectExpression<Object> nameInput = new InputCollectExpression<>(0);
+        InputCollectExpression<Object> idInput = new InputCollectExpression<>(1);
+        WriterProjector projector = new WriterProjector(
+                uri,
+                ImmutableSettings.EMPTY,
+                Arrays.<Input<?>>asList(nameInput, idInput),
+                ImmutableSet.<CollectExpression<?>>of(nameInput, idInput),
+                new HashMap<ColumnIdent, Object>()
+        );
+        Projector downstream = new CollectingProjector();
+        projector.downstream(downstream);
+
+        projector.startProjection();
+        projector.registerUpstream(null);
+        // string columns collected from field data are BytesRefs
+        projector.setNextRow(new BytesRef("Arthur"), 1L);
+        projector.setNextRow(new BytesRef("Trillian"), 2L);
+        projector.upstreamFinished();
+
+        Object[][] rows = ((ResultProvider) downstream).result().get();
+        assertEquals(2L, rows[0][0]);
+        assertEquals("[\"Arthur\",1]\n" +
+                "[\"Trillian\",2]\n", TestingHelpers.readFile(uri));
+    }
+
     @Test
     public void testToNestedStringObjectMap() throws Exception {
 
@@ -30,12 +30,15 @@ import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.index.fielddata.FieldDataType;
 import org.elasticsearch.index.mapper.FieldMapper;
 import org.junit.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
 
 public class BytesRefColumnReferenceTest extends DocLevelExpressionsTest {
 
@@ -77,4 +80,38 @@ public class BytesRefColumnReferenceTest extends DocLevelExpressionsTest {
             i++;
         }
     }
+
+    @Test
+    public void testBorrowedValues() throws Exception {
+        BytesRefColumnReference bytesRefColumn = new BytesRefColumnReference(fieldName().name());
+        bytesRefColumn.startCollect(ctx.borrowValues(true));
+        bytesRefColumn.setNextReader(readerContext);
+        IndexSearcher searcher = new IndexSearcher(readerContext.reader());
+        TopDocs topDocs = searcher.search(new MatchAllDocsQuery(), 20);
+
+        bytesRefColumn.setNextDocId(topDocs.scoreDocs[0].doc);
+        BytesRef first = bytesRefColumn.value();
+        assertThat(first.utf8ToString(), is("0"));
+        bytesRefColumn.setNextDocId(topDocs.scoreDocs[1].doc);
+        BytesRef second = bytesRefColumn.value();
+        assertThat(second.utf8ToString(), is("01"));
+        // the field data reuses its BytesRef instead of copying it
+        assertThat(second, sameInstance(first));
+    }
+
+    @Test
+    public void testOwnedValues() throws Exception {
+        BytesRefColumnReference bytesRefColumn = new BytesRefColumnReference(fieldName().name());
+        bytesRefColumn.startCollect(ctx.borrowValues(false));
+        bytesRefColumn.setNextReader(readerContext);
+        IndexSearcher searcher = new IndexSearcher(readerContext.reader());
+        TopDocs topDocs = searcher.search(new MatchAllDocsQuery(), 20);
+
+        bytesRefColumn.setNextDocId(topDocs.scoreDocs[0].doc);
+        BytesRef first = bytesRefColumn.value();
+        bytesRefColumn.setNextDocId(topDocs.scoreDocs[1].doc);
+        BytesRef second = bytesRefColumn.value();
+        assertThat(second, not(sameInstance(first)));
+        assertThat(first.utf8ToString(), is("0"));
+    }
 }
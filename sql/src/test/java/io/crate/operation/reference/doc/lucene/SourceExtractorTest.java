@@ -0,0 +1,124 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.reference.doc.lucene;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.RAMDirectory;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.index.mapper.internal.SourceFieldMapper;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class SourceExtractorTest {
+
+    private static final String SOURCE = "{" +
+            "\"name\": \"Arthur\"," +
+            "\"details\": {\"age\": 42, \"address\": {\"city\": \"Cottington\", \"zip\": null}}," +
+            "\"friends\": [{\"name\": \"Ford\"}, {\"name\": \"Trillian\"}]," +
+            "\"large\": {\"a\": [1, 2, 3], \"b\": {\"c\": \"d\"}}" +
+            "}";
+
+    private Map<String, Object> extract(String... paths) throws Exception {
+        SourceExtractor extractor = new SourceExtractor();
+        for (String path : paths) {
+            extractor.register(path);
+        }
+        return extractor.extract(new BytesArray(SOURCE));
+    }
+
+    @Test
+    public void testExtractOnlyRegisteredPaths() throws Exception {
+        Map<String, Object> source = extract("name", "details.address");
+        assertThat(source.keySet(), containsInAnyOrder("name", "details"));
+        assertThat((String) source.get("name"), is("Arthur"));
+
+        Map<String, Object> details = (Map<String, Object>) source.get("details");
+        assertThat(details.keySet(), contains("address"));
+        Map<String, Object> address = (Map<String, Object>) details.get("address");
+        assertThat((String) address.get("city"), is("Cottington"));
+        assertThat(address.containsKey("zip"), is(true));
+        assertThat(address.get("zip"), nullValue());
+    }
+
+    @Test
+    public void testExtractStopsWhenAllPathsAreFound() throws Exception {
+        Map<String, Object> source = extract("details.age");
+        assertThat(source.keySet(), contains("details"));
+        assertThat(((Map<String, Object>) source.get("details")).keySet(), contains("age"));
+    }
+
+    @Test
+    public void testExtractPathWithinArray() throws Exception {
+        Map<String, Object> source = extract("friends.name");
+        assertThat(source.keySet(), contains("friends"));
+        assertThat(source.get("friends"), instanceOf(java.util.List.class));
+    }
+
+    @Test
+    public void testExtractMissingPath() throws Exception {
+        Map<String, Object> source = extract("details.unknown", "unknown");
+        assertThat(((Map<String, Object>) source.get("details")).size(), is(0));
+        assertThat(source.containsKey("unknown"), is(false));
+    }
+
+    @Test
+    public void testExtractValueFromDocument() throws Exception {
+        RAMDirectory directory = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(directory,
+                new IndexWriterConfig(Lucene.VERSION, new StandardAnalyzer(Lucene.VERSION)));
+        Document doc = new Document();
+        doc.add(new StoredField(SourceFieldMapper.NAME, new BytesArray(SOURCE).toBytesRef()));
+        writer.addDocument(doc);
+        writer.addDocument(new Document());
+        DirectoryReader reader = DirectoryReader.open(writer, true);
+
+        SourceExtractor extractor = new SourceExtractor();
+        extractor.register("details.age");
+        extractor.register("large.b");
+        extractor.register("friends.name");
+        extractor.setNextReader(reader.leaves().get(0));
+
+        extractor.setNextDocId(0);
+        assertThat((Integer) extractor.extractValue("details.age"), is(42));
+        assertThat((Map<String, Object>) extractor.extractValue("large.b"), hasEntry("c", (Object) "d"));
+        assertThat(extractor.extractValue("friends.name"), is((Object) Arrays.asList("Ford", "Trillian")));
+
+        // document without source
+        extractor.setNextDocId(1);
+        assertThat(extractor.extractValue("details.age"), nullValue());
+
+        reader.close();
+        writer.close();
+        directory.close();
+    }
+}
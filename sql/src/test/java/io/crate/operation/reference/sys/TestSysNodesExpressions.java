@@ -24,6 +24,9 @@ import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import io.crate.Build;
 import io.crate.Version;
+import io.crate.action.sql.SQLPlanCache;
+import io.crate.executor.transport.distributed.DistributedRequestContextManager;
+import io.crate.executor.transport.merge.TransportMergeNodeAction;
 import io.crate.metadata.GlobalReferenceResolver;
 import io.crate.metadata.ReferenceIdent;
 import io.crate.metadata.ReferenceResolver;
@@ -257,6 +260,20 @@ public class TestSysNodesExpressions {
             when(jvmService.stats()).thenReturn(jvmStats);
             bind(JvmService.class).toInstance(jvmService);
 
+            SQLPlanCache planCache = mock(SQLPlanCache.class);
+            when(planCache.hits()).thenReturn(10L);
+            when(planCache.misses()).thenReturn(3L);
+            when(planCache.evictions()).thenReturn(1L);
+            when(planCache.size()).thenReturn(2L);
+            bind(SQLPlanCache.class).toInstance(planCache);
+
+            DistributedRequestContextManager contextManager = mock(DistributedRequestContextManager.class);
+            when(contextManager.bufferedBytes()).thenReturn(2048L);
+            when(contextManager.rejectedRequests()).thenReturn(4L);
+            TransportMergeNodeAction transportMergeNodeAction = mock(TransportMergeNodeAction.class);
+            when(transportMergeNodeAction.contextManager()).thenReturn(contextManager);
+            bind(TransportMergeNodeAction.class).toInstance(transportMergeNodeAction);
+
             bind(ReferenceResolver.class).to(GlobalReferenceResolver.class).asEagerSingleton();
 
             ThreadPool threadPool = new ThreadPool(getClass().getName());
@@ -498,6 +515,28 @@ public class TestSysNodesExpressions {
         assertEquals(1000L, (long) v.get("max_open_file_descriptors"));
     }
 
+    @Test
+    public void testPlanCache() throws Exception {
+        ReferenceIdent ident = new ReferenceIdent(SysNodesTableInfo.IDENT, "plan_cache");
+        SysObjectReference planCacheRef = (SysObjectReference) resolver.getImplementation(ident);
+
+        Map<String, Object> v = planCacheRef.value();
+        assertEquals(10L, (long) v.get("hits"));
+        assertEquals(3L, (long) v.get("misses"));
+        assertEquals(1L, (long) v.get("evictions"));
+        assertEquals(2L, (long) v.get("size"));
+    }
+
+    @Test
+    public void testDistributedMerge() throws Exception {
+        ReferenceIdent ident = new ReferenceIdent(SysNodesTableInfo.IDENT, "distributed_merge");
+        SysObjectReference distributedMergeRef = (SysObjectReference) resolver.getImplementation(ident);
+
+        Map<String, Object> v = distributedMergeRef.value();
+        assertEquals(2048L, (long) v.get("buffered_bytes"));
+        assertEquals(4L, (long) v.get("rejected_requests"));
+    }
+
     @Test
     public void testNestedBytesRefExpressionsString() throws Exception {
         ReferenceIdent ident = new ReferenceIdent(SysNodesTableInfo.IDENT, "version");
@@ -2,6 +2,7 @@ package io.crate.planner;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import io.crate.Constants;
 import io.crate.PartitionName;
 import io.crate.analyze.Analysis;
 import io.crate.analyze.Analyzer;
@@ -22,6 +23,7 @@ import io.crate.metadata.table.TableInfo;
 import io.crate.metadata.table.TestingTableInfo;
 import io.crate.operation.aggregation.impl.AggregationImplModule;
 import io.crate.operation.operator.OperatorModule;
+import io.crate.operation.projectors.TopN;
 import io.crate.operation.scalar.ScalarFunctionModule;
 import io.crate.planner.node.PlanNode;
 import io.crate.planner.node.ddl.DropTableNode;
@@ -164,6 +166,7 @@ public class PlannerTest {
             TableInfo charactersTableInfo = TestingTableInfo.builder(charactersTableIdent, RowGranularity.DOC, shardRouting)
                     .add("name", DataTypes.STRING, null)
                     .add("id", DataTypes.STRING, null)
+                    .withoutDocValues("name")
                     .addPrimaryKey("id")
                     .clusteredBy("id")
                     .build();
@@ -683,6 +686,49 @@ public class PlannerTest {
         assertThat(((InputColumn) orderBy).index(), is(1));
     }
 
+    @Test
+    public void testGroupByWithOrderIsUnlimitedIfReadWithCursor() throws Exception {
+        Plan plan = planner.plan(analyzer.analyze(SqlParser.createStatement(
+                "select count(*), name from users group by name order by count(*)")), true);
+        Iterator<PlanNode> iterator = plan.iterator();
+        iterator.next();
+        iterator.next();
+
+        MergeNode mergeNode = (MergeNode) iterator.next();
+        TopNProjection topNProjection = (TopNProjection) mergeNode.projections().get(0);
+        assertThat(topNProjection.isOrdered(), is(true));
+        assertThat(topNProjection.limit(), is(TopN.NO_LIMIT));
+    }
+
+    @Test
+    public void testGroupByWithoutOrderIsLimitedIfReadWithCursor() throws Exception {
+        Plan plan = planner.plan(analyzer.analyze(SqlParser.createStatement(
+                "select count(*), name from users group by name")), true);
+        Iterator<PlanNode> iterator = plan.iterator();
+        iterator.next();
+        iterator.next();
+
+        MergeNode mergeNode = (MergeNode) iterator.next();
+        TopNProjection topNProjection = (TopNProjection) mergeNode.projections().get(0);
+        assertThat(topNProjection.limit(), is(Constants.DEFAULT_SELECT_LIMIT));
+    }
+
+    @Test
+    public void testGroupByWithOrderAndLimitMergesSortedInputs() throws Exception {
+        Plan plan = plan("select count(*), name from users group by name order by count(*) limit 10");
+        Iterator<PlanNode> iterator = plan.iterator();
+        iterator.next();
+
+        // the reducers sort and limit
+        MergeNode mergeNode = (MergeNode) iterator.next();
+        assertThat(mergeNode.sortedInputs(), is(false));
+        assertThat(((TopNProjection) mergeNode.projections().get(1)).isOrdered(), is(true));
+
+        // handler
+        mergeNode = (MergeNode) iterator.next();
+        assertThat(mergeNode.sortedInputs(), is(true));
+    }
+
     @Test
     public void testHandlerSideRouting() throws Exception {
         Plan plan = plan("select * from sys.cluster");
@@ -836,12 +882,53 @@ public class PlannerTest {
 
     @Test
     public void testCopyToWithColumnsReferenceRewrite() throws Exception {
-        Plan plan = plan("copy users (name) to '/file.ext'");
+        Plan plan = plan("copy parted (date) to '/file.ext'");
+        CollectNode node = (CollectNode)plan.iterator().next();
+        Reference dateRef = (Reference)node.toCollect().get(0);
+
+        // partitioned columns are read from the source
+        assertThat(dateRef.info().ident().columnIdent().name(), is(DocSysColumns.DOC.name()));
+        assertThat(dateRef.info().ident().columnIdent().path().get(0), is("date"));
+    }
+
+    @Test
+    public void testCopyToWithColumnsUsesFieldData() throws Exception {
+        Plan plan = plan("copy users (name, id) to '/file.ext'");
         CollectNode node = (CollectNode)plan.iterator().next();
         Reference nameRef = (Reference)node.toCollect().get(0);
+        Reference idRef = (Reference)node.toCollect().get(1);
 
+        assertThat(nameRef.info().ident().columnIdent().name(), is("name"));
+        assertThat(idRef.info().ident().columnIdent().name(), is("id"));
+    }
+
+    @Test
+    public void testCopyToWithColumnsWithoutDocValuesReferenceRewrite() throws Exception {
+        Plan plan = plan("copy characters (name, id) to '/file.ext'");
+        CollectNode node = (CollectNode)plan.iterator().next();
+        Reference nameRef = (Reference)node.toCollect().get(0);
+        Reference idRef = (Reference)node.toCollect().get(1);
+
+        // the field data of columns without doc values would have to be loaded into memory
         assertThat(nameRef.info().ident().columnIdent().name(), is(DocSysColumns.DOC.name()));
         assertThat(nameRef.info().ident().columnIdent().path().get(0), is("name"));
+        assertThat(idRef.info().ident().columnIdent().name(), is("id"));
+    }
+
+    @Test
+    public void testCopyToWithOrderBy() throws Exception {
+        Plan plan = plan("copy users (name) order by id desc to directory '/dir'");
+        CollectNode node = (CollectNode)plan.iterator().next();
+        assertThat(node.toCollect().size(), is(2));
+
+        // every shard sorts its rows before writing them
+        assertThat(node.projections().size(), is(2));
+        TopNProjection topN = (TopNProjection) node.projections().get(0);
+        assertThat(topN.limit(), is(TopN.NO_LIMIT));
+        assertThat(topN.reverseFlags()[0], is(true));
+        assertThat(((InputColumn) topN.orderBy().get(0)).index(), is(1));
+        assertThat(topN.outputs().size(), is(1));
+        assertThat(node.projections().get(1), instanceOf(WriterProjection.class));
     }
 
     @Test
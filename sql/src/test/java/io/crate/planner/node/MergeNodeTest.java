@@ -54,6 +54,7 @@ public class MergeNodeTest {
         node.contextId(UUID.randomUUID());
         node.executionNodes(Sets.newHashSet("node1", "node2"));
         node.inputTypes(Arrays.<DataType>asList(DataTypes.NULL, DataTypes.STRING));
+        node.sortedInputs(true);
 
         Reference nameRef = TestingHelpers.createReference("name", DataTypes.STRING);
         GroupProjection groupProjection = new GroupProjection();
@@ -82,5 +83,6 @@ public class MergeNodeTest {
         assertThat(node.executionNodes(), is(node2.executionNodes()));
         assertThat(node.contextId(), is(node2.contextId()));
         assertThat(node.inputTypes(), is(node2.inputTypes()));
+        assertThat(node2.sortedInputs(), is(true));
     }
 }
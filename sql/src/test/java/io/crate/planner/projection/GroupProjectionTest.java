@@ -69,6 +69,7 @@ public class GroupProjectionTest {
         Reference nameRef = createReference("name", DataTypes.STRING);
         GroupProjection groupProjection = new GroupProjection();
         groupProjection.keys(Arrays.<Symbol>asList(nameRef));
+        groupProjection.keyTypes(Arrays.<DataType>asList(DataTypes.STRING));
         groupProjection.values(Arrays.asList(
                 new Aggregation(
                         new FunctionInfo(new FunctionIdent(CountAggregation.NAME, ImmutableList.<DataType>of()), DataTypes.LONG),
@@ -86,6 +87,23 @@ public class GroupProjectionTest {
         GroupProjection p2 = (GroupProjection) Projection.fromStream(in);
 
         assertThat(p2.keys.size(), is(1));
+        assertThat(p2.keyTypes(), is(Arrays.<DataType>asList(DataTypes.STRING)));
         assertThat(p2.values().size(), is(1));
     }
+
+    @Test
+    public void testHashCodeIncludesKeyTypes() throws Exception {
+        Reference nameRef = createReference("name", DataTypes.STRING);
+        GroupProjection p1 = new GroupProjection(Arrays.<Symbol>asList(nameRef),
+                Arrays.<DataType>asList(DataTypes.STRING), ImmutableList.<Aggregation>of());
+        GroupProjection p2 = new GroupProjection(Arrays.<Symbol>asList(nameRef),
+                Arrays.<DataType>asList(DataTypes.STRING), ImmutableList.<Aggregation>of());
+        GroupProjection p3 = new GroupProjection(Arrays.<Symbol>asList(nameRef),
+                Arrays.<DataType>asList(DataTypes.IP), ImmutableList.<Aggregation>of());
+
+        assertEquals(p1, p2);
+        assertThat(p1.hashCode(), is(p2.hashCode()));
+        assertThat(p1.equals(p3), is(false));
+        assertThat(p1.hashCode() == p3.hashCode(), is(false));
+    }
 }
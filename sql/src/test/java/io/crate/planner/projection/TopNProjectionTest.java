@@ -24,6 +24,7 @@ package io.crate.planner.projection;
 import com.google.common.collect.ImmutableList;
 import io.crate.planner.symbol.Symbol;
 import io.crate.planner.symbol.Value;
+import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 import org.elasticsearch.common.io.stream.BytesStreamInput;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
@@ -52,4 +53,21 @@ public class TopNProjectionTest {
         assertEquals(p, p2);
     }
 
+    @Test
+    public void testStreamingWithOrderByTypes() throws Exception {
+        TopNProjection p = new TopNProjection(5, 0,
+                ImmutableList.<Symbol>of(createReference("foo", DataTypes.LONG), createReference("bar", DataTypes.STRING)),
+                new boolean[]{true, false},
+                new Boolean[]{null, true});
+        p.orderByTypes(ImmutableList.<DataType>of(DataTypes.LONG, DataTypes.STRING));
+        p.outputs(ImmutableList.<Symbol>of(new Value(DataTypes.LONG)));
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        Projection.toStream(p, out);
+
+        BytesStreamInput in = new BytesStreamInput(out.bytes());
+        TopNProjection p2 = (TopNProjection) Projection.fromStream(in);
+        assertEquals(p, p2);
+        assertEquals(p.orderByTypes(), p2.orderByTypes());
+    }
 }
@@ -0,0 +1,192 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.rest.action;
+
+import io.crate.action.sql.SQLResponse;
+import io.crate.http.netty.NettyHttpChannel;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class RestSQLActionTest {
+
+    private static SQLResponse response(int numRows) {
+        Object[][] rows = new Object[numRows][];
+        for (int i = 0; i < numRows; i++) {
+            rows[i] = new Object[]{i, "name " + i};
+        }
+        // no request time, so the duration is stable
+        return new SQLResponse(new String[]{"id", "name"}, rows, numRows, 0L);
+    }
+
+    private final List<byte[]> chunks = new ArrayList<>();
+
+    private NettyHttpChannel.ChunkedResponse chunkedResponse(boolean writable) {
+        NettyHttpChannel.ChunkedResponse chunkedResponse = mock(NettyHttpChannel.ChunkedResponse.class);
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                chunks.add(((BytesReference) invocation.getArguments()[0]).toBytes());
+                return null;
+            }
+        }).when(chunkedResponse).write(any(BytesReference.class));
+        when(chunkedResponse.isWritable()).thenReturn(writable);
+        return chunkedResponse;
+    }
+
+    private String content() throws Exception {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (byte[] chunk : chunks) {
+            content.write(chunk);
+        }
+        return new String(content.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String expectedContent(int numRows) throws Exception {
+        XContentBuilder builder = XContentFactory.jsonBuilder();
+        response(numRows).toXContent(builder, ToXContent.EMPTY_PARAMS);
+        return builder.string();
+    }
+
+    @Test
+    public void testWriteChunks() throws Exception {
+        NettyHttpChannel.ChunkedResponse chunkedResponse = chunkedResponse(true);
+        final SQLResponse response = response(25);
+        final RestSQLAction.ChunkWriter writer = new RestSQLAction.ChunkWriter(chunkedResponse, false, 10);
+        writer.start(response);
+        writer.writeRows(response, new ActionListener<Void>() {
+            @Override
+            public void onResponse(Void aVoid) {
+                writer.finish(response);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                throw new AssertionError(e);
+            }
+        });
+
+        // columns, 2 full chunks, the remaining rows and the end of the response
+        assertThat(chunks.size(), is(5));
+        assertThat(content(), is(expectedContent(25)));
+        verify(chunkedResponse).finish();
+        verify(chunkedResponse, never()).onFlushed(any(ActionListener.class));
+
+        // the written rows are released
+        assertThat(response.rows()[0], is(nullValue()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testWriteChunksWaitsUntilFlushed() throws Exception {
+        NettyHttpChannel.ChunkedResponse chunkedResponse = chunkedResponse(false);
+        final List<ActionListener<Void>> flushListeners = new ArrayList<>();
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                flushListeners.add((ActionListener<Void>) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(chunkedResponse).onFlushed(any(ActionListener.class));
+
+        final SQLResponse response = response(25);
+        final AtomicBoolean done = new AtomicBoolean(false);
+        RestSQLAction.ChunkWriter writer = new RestSQLAction.ChunkWriter(chunkedResponse, false, 10);
+        writer.start(response);
+        writer.writeRows(response, new ActionListener<Void>() {
+            @Override
+            public void onResponse(Void aVoid) {
+                done.set(true);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                throw new AssertionError(e);
+            }
+        });
+
+        // columns and the first chunk, the next chunk is written once these are flushed
+        assertThat(chunks.size(), is(2));
+        assertThat(flushListeners.size(), is(1));
+        flushListeners.get(0).onResponse(null);
+        assertThat(chunks.size(), is(3));
+        flushListeners.get(1).onResponse(null);
+        assertThat(chunks.size(), is(4));
+        assertThat(done.get(), is(false));
+        flushListeners.get(2).onResponse(null);
+        assertThat(done.get(), is(true));
+
+        writer.finish(response);
+        assertThat(content(), is(expectedContent(25)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testWriteChunksFailsIfFlushFails() throws Exception {
+        NettyHttpChannel.ChunkedResponse chunkedResponse = chunkedResponse(false);
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                ((ActionListener<Void>) invocation.getArguments()[0]).onFailure(new IOException("connection closed"));
+                return null;
+            }
+        }).when(chunkedResponse).onFlushed(any(ActionListener.class));
+
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        RestSQLAction.ChunkWriter writer = new RestSQLAction.ChunkWriter(chunkedResponse, false, 10);
+        writer.writeRows(response(25), new ActionListener<Void>() {
+            @Override
+            public void onResponse(Void aVoid) {
+                throw new AssertionError("expected a failure");
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                failure.set(e);
+            }
+        });
+
+        assertThat(failure.get(), instanceOf(IOException.class));
+        // no more rows are written after the failure
+        assertThat(chunks.size(), is(1));
+    }
+}